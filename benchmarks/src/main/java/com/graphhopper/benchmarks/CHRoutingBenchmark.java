@@ -0,0 +1,70 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.RoutingAlgorithmFactory;
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.storage.Graph;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the algorithms of the contraction hierarchies preparation between random nodes.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class CHRoutingBenchmark
+{
+    @Param(
+            {
+                AlgorithmOptions.DIJKSTRA_BI, AlgorithmOptions.ASTAR_BI
+            })
+    public String algorithm;
+    private RoutingAlgorithmFactory factory;
+    private Graph graph;
+    private AlgorithmOptions opts;
+    private int[][] pairs;
+    private int index;
+
+    @Setup
+    public void setUp( GraphHopperState state )
+    {
+        factory = state.getHopper().getAlgorithmFactory();
+        graph = state.getHopper().getGraph();
+        opts = AlgorithmOptions.start().algorithm(algorithm).flagEncoder(state.getEncoder()).
+                weighting(state.getHopper().createWeighting(new WeightingMap("fastest"), state.getEncoder())).
+                build();
+        pairs = state.createNodePairs(1000);
+    }
+
+    @Benchmark
+    public double calcPath()
+    {
+        int[] pair = pairs[index++ % pairs.length];
+        return factory.createAlgo(graph, opts).calcPath(pair[0], pair[1]).getDistance();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.storage.DAType;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.GHDirectory;
+import com.graphhopper.util.Helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures sequential and random int access of the different DataAccess implementations. One
+ * operation reads or writes all stored integers.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class DataAccessBenchmark
+{
+    @Param(
+            {
+                "RAM", "RAM_INT", "MMAP", "UNSAFE"
+            })
+    public String type;
+    private static final int INTS = 1 << 20;
+    private File folder;
+    private GHDirectory dir;
+    private DataAccess da;
+    private long[] randomPositions;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        folder = File.createTempFile("gh-benchmark", "");
+        Helper.removeDir(folder);
+        dir = new GHDirectory(folder.getAbsolutePath(), toDAType(type));
+        da = dir.find("benchmark").setSegmentSize(1 << 16).create(INTS * 4L);
+        for (int i = 0; i < INTS; i++)
+        {
+            da.setInt(i * 4L, i);
+        }
+
+        Random rand = new Random(123);
+        randomPositions = new long[INTS];
+        for (int i = 0; i < INTS; i++)
+        {
+            randomPositions[i] = rand.nextInt(INTS) * 4L;
+        }
+    }
+
+    private static DAType toDAType( String type )
+    {
+        if ("RAM".equals(type))
+            return DAType.RAM;
+        if ("RAM_INT".equals(type))
+            return DAType.RAM_INT;
+        if ("MMAP".equals(type))
+            return DAType.MMAP;
+        if ("UNSAFE".equals(type))
+            return DAType.UNSAFE_STORE;
+
+        throw new IllegalArgumentException("Unknown DataAccess type " + type);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        dir.clear();
+        Helper.removeDir(folder);
+    }
+
+    @Benchmark
+    public long readSequential()
+    {
+        long sum = 0;
+        for (int i = 0; i < INTS; i++)
+        {
+            sum += da.getInt(i * 4L);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readRandom()
+    {
+        long sum = 0;
+        for (int i = 0; i < INTS; i++)
+        {
+            sum += da.getInt(randomPositions[i]);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void writeSequential()
+    {
+        for (int i = 0; i < INTS; i++)
+        {
+            da.setInt(i * 4L, i);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.reader.OSMWay;
+import com.graphhopper.routing.util.EncodingManager;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures how fast the tags of typical OSM ways are encoded into the edge flags as it is done for
+ * every way while importing.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EncodingManagerBenchmark
+{
+    @Param(
+            {
+                "CAR", "CAR,FOOT,BIKE"
+            })
+    public String encoders;
+    private EncodingManager encodingManager;
+    private OSMWay[] ways;
+    private int index;
+
+    @Setup
+    public void setUp()
+    {
+        encodingManager = new EncodingManager(encoders);
+        ways = new OSMWay[]
+        {
+            createWay("highway", "primary", "maxspeed", "70"),
+            createWay("highway", "residential", "oneway", "yes"),
+            createWay("highway", "track", "tracktype", "grade2", "surface", "gravel"),
+            createWay("highway", "footway"),
+            createWay("highway", "cycleway", "surface", "asphalt"),
+            createWay("route", "ferry", "duration", "00:45"),
+            createWay("highway", "service", "access", "private"),
+            createWay("building", "yes")
+        };
+    }
+
+    private OSMWay createWay( String... keyValues )
+    {
+        OSMWay way = new OSMWay(1);
+        for (int i = 0; i < keyValues.length; i += 2)
+        {
+            way.setTag(keyValues[i], keyValues[i + 1]);
+        }
+        return way;
+    }
+
+    @Benchmark
+    public long encodeWay()
+    {
+        OSMWay way = ways[index++ % ways.length];
+        long includeWay = encodingManager.acceptWay(way);
+        if (includeWay == 0)
+            return 0;
+
+        return encodingManager.handleWayTags(way, includeWay, 0);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.Helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Imports the OSM file once per benchmark run with CH enabled for CAR and removes the graph
+ * afterwards. The default is the bundled extract of Monaco which requires that the benchmarks are
+ * started from the root directory, otherwise specify it via -p osmFile=some.osm.pbf
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Benchmark)
+public class GraphHopperState
+{
+    @Param("core/files/monaco.osm.gz")
+    public String osmFile;
+    private File graphFolder;
+    private GraphHopper hopper;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        if (!new File(osmFile).exists())
+            throw new IllegalArgumentException("OSM file " + new File(osmFile).getAbsolutePath() + " does not exist. "
+                    + "Start the benchmarks from the root directory or specify it via -p osmFile=");
+
+        graphFolder = File.createTempFile("gh-benchmark", "");
+        Helper.removeDir(graphFolder);
+        hopper = new GraphHopper().forServer().
+                setEncodingManager(new EncodingManager("CAR")).
+                setOSMFile(osmFile).
+                setGraphHopperLocation(graphFolder.getAbsolutePath()).
+                importOrLoad();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        hopper.close();
+        Helper.removeDir(graphFolder);
+    }
+
+    public GraphHopper getHopper()
+    {
+        return hopper;
+    }
+
+    public FlagEncoder getEncoder()
+    {
+        return hopper.getEncodingManager().getEncoder("CAR");
+    }
+
+    /**
+     * @return count pairs of random node ids for which the order is always the same
+     */
+    public int[][] createNodePairs( int count )
+    {
+        Graph graph = hopper.getGraph();
+        Random rand = new Random(123);
+        int[][] pairs = new int[count][2];
+        for (int i = 0; i < count; i++)
+        {
+            pairs[i][0] = rand.nextInt(graph.getNodes());
+            pairs[i][1] = rand.nextInt(graph.getNodes());
+        }
+        return pairs;
+    }
+}
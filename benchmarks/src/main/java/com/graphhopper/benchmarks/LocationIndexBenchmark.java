@@ -0,0 +1,71 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.util.shapes.BBox;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures LocationIndex.findClosest for random points within the bounds of the graph.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class LocationIndexBenchmark
+{
+    private LocationIndex index;
+    private EdgeFilter edgeFilter;
+    private double[] lats;
+    private double[] lons;
+    private int counter;
+
+    @Setup
+    public void setUp( GraphHopperState state )
+    {
+        index = state.getHopper().getLocationIndex();
+        edgeFilter = new DefaultEdgeFilter(state.getEncoder());
+        BBox bbox = state.getHopper().getGraph().getBounds();
+        Random rand = new Random(123);
+        lats = new double[1000];
+        lons = new double[lats.length];
+        for (int i = 0; i < lats.length; i++)
+        {
+            lats[i] = bbox.minLat + rand.nextDouble() * (bbox.maxLat - bbox.minLat);
+            lons[i] = bbox.minLon + rand.nextDouble() * (bbox.maxLon - bbox.minLon);
+        }
+    }
+
+    @Benchmark
+    public int findClosest()
+    {
+        int i = counter++ % lats.length;
+        return index.findClosest(lats[i], lons[i], edgeFilter).getClosestNode();
+    }
+}
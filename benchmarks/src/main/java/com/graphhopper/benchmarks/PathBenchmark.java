@@ -0,0 +1,96 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.benchmarks;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithmFactorySimple;
+import com.graphhopper.routing.util.FastestWeighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DouglasPeucker;
+import com.graphhopper.util.PathMerger;
+import com.graphhopper.util.Translation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Measures the post processing of already calculated paths: the instructions and the merging of
+ * the paths into the response.
+ * <p/>
+ * @author Peter Karich
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class PathBenchmark
+{
+    private final List<Path> paths = new ArrayList<Path>();
+    private Translation tr;
+    private PathMerger pathMerger;
+    private int index;
+
+    @Setup
+    public void setUp( GraphHopperState state )
+    {
+        Graph graph = state.getHopper().getGraph().getBaseGraph();
+        AlgorithmOptions opts = AlgorithmOptions.start().algorithm(AlgorithmOptions.DIJKSTRA_BI).
+                flagEncoder(state.getEncoder()).weighting(new FastestWeighting(state.getEncoder())).build();
+        RoutingAlgorithmFactorySimple factory = new RoutingAlgorithmFactorySimple();
+        for (int[] pair : state.createNodePairs(1000))
+        {
+            Path path = factory.createAlgo(graph, opts).calcPath(pair[0], pair[1]);
+            if (path.isFound())
+                paths.add(path);
+        }
+
+        if (paths.isEmpty())
+            throw new IllegalStateException("No path found in " + state.osmFile);
+
+        tr = state.getHopper().getTranslationMap().getWithFallBack(Locale.US);
+        pathMerger = new PathMerger().setDouglasPeucker(new DouglasPeucker().setMaxDistance(1));
+    }
+
+    private Path nextPath()
+    {
+        return paths.get(index++ % paths.size());
+    }
+
+    @Benchmark
+    public int calcInstructions()
+    {
+        return nextPath().calcInstructions(tr).size();
+    }
+
+    @Benchmark
+    public double mergePaths()
+    {
+        GHResponse rsp = new GHResponse();
+        pathMerger.doWork(rsp, Collections.singletonList(nextPath()), tr);
+        return rsp.getDistance();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.routing.util.WeightingMap;
+import com.graphhopper.util.shapes.GHPoint;
+
+/**
+ * Request to calculate all locations reachable from one point within a time or distance limit.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GHIsochroneRequest
+{
+    private final GHPoint point;
+    private final WeightingMap hints = new WeightingMap();
+    private String vehicle = "";
+    private long timeLimit = Long.MAX_VALUE;
+    private double distanceLimit = Double.MAX_VALUE;
+
+    public GHIsochroneRequest( double lat, double lon )
+    {
+        this(new GHPoint(lat, lon));
+    }
+
+    public GHIsochroneRequest( GHPoint point )
+    {
+        if (point == null)
+            throw new IllegalArgumentException("point cannot be null");
+
+        this.point = point;
+    }
+
+    public GHPoint getPoint()
+    {
+        return point;
+    }
+
+    /**
+     * Specifies the maximum time in milliseconds to reach a location.
+     */
+    public GHIsochroneRequest setTimeLimit( long timeLimit )
+    {
+        this.timeLimit = timeLimit;
+        return this;
+    }
+
+    public long getTimeLimit()
+    {
+        return timeLimit;
+    }
+
+    /**
+     * Specifies the maximum distance in meter to reach a location.
+     */
+    public GHIsochroneRequest setDistanceLimit( double distanceLimit )
+    {
+        this.distanceLimit = distanceLimit;
+        return this;
+    }
+
+    public double getDistanceLimit()
+    {
+        return distanceLimit;
+    }
+
+    /**
+     * By default it supports fastest and shortest. Or specify empty to use default.
+     */
+    public GHIsochroneRequest setWeighting( String w )
+    {
+        hints.setWeighting(w);
+        return this;
+    }
+
+    public String getWeighting()
+    {
+        return hints.getWeighting();
+    }
+
+    /**
+     * Specifiy car, bike or foot. Or specify empty to use default.
+     */
+    public GHIsochroneRequest setVehicle( String vehicle )
+    {
+        if (vehicle != null)
+            this.vehicle = vehicle;
+        return this;
+    }
+
+    public String getVehicle()
+    {
+        return vehicle;
+    }
+
+    public WeightingMap getHints()
+    {
+        return hints;
+    }
+
+    @Override
+    public String toString()
+    {
+        return point + ", time limit:" + timeLimit + ", distance limit:" + distanceLimit + ", " + vehicle + ", " + hints;
+    }
+}
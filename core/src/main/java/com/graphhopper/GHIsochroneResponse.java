@@ -0,0 +1,153 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.util.PointList;
+import gnu.trove.list.array.TDoubleArrayList;
+import gnu.trove.list.array.TLongArrayList;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper of the isochrone response. It contains every reached location with the time and
+ * distance from the start point.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GHIsochroneResponse
+{
+    private String debugInfo = "";
+    private final List<Throwable> errors = new ArrayList<Throwable>(4);
+    private final PointList points = new PointList(100, false);
+    private final TLongArrayList times = new TLongArrayList(100);
+    private final TDoubleArrayList distances = new TDoubleArrayList(100);
+
+    public GHIsochroneResponse()
+    {
+    }
+
+    public String getDebugInfo()
+    {
+        check("getDebugInfo");
+        return debugInfo;
+    }
+
+    public GHIsochroneResponse setDebugInfo( String debugInfo )
+    {
+        if (debugInfo != null)
+            this.debugInfo = debugInfo;
+        return this;
+    }
+
+    private void check( String method )
+    {
+        if (hasErrors())
+        {
+            throw new RuntimeException("You cannot call " + method + " if response contains errors. Check this with ghResponse.hasErrors(). "
+                    + "Errors are: " + getErrors());
+        }
+    }
+
+    /**
+     * @return true if one or more error found
+     */
+    public boolean hasErrors()
+    {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors()
+    {
+        return errors;
+    }
+
+    public GHIsochroneResponse addError( Throwable error )
+    {
+        errors.add(error);
+        return this;
+    }
+
+    public GHIsochroneResponse add( double lat, double lon, long time, double distance )
+    {
+        points.add(lat, lon);
+        times.add(time);
+        distances.add(distance);
+        return this;
+    }
+
+    /**
+     * @return the number of reached locations
+     */
+    public int size()
+    {
+        check("size");
+        return points.getSize();
+    }
+
+    /**
+     * @return all reached locations in the order of their weight
+     */
+    public PointList getPoints()
+    {
+        check("getPoints");
+        return points;
+    }
+
+    /**
+     * @return the time in milliseconds to reach the location with the specified index
+     */
+    public long getTime( int index )
+    {
+        check("getTime");
+        return times.get(index);
+    }
+
+    /**
+     * @return the distance in meter to reach the location with the specified index
+     */
+    public double getDistance( int index )
+    {
+        check("getDistance");
+        return distances.get(index);
+    }
+
+    /**
+     * @return all locations reachable within the specified time in milliseconds
+     */
+    public PointList getPoints( long timeLimit )
+    {
+        check("getPoints");
+        PointList list = new PointList(points.getSize(), false);
+        for (int i = 0; i < points.getSize(); i++)
+        {
+            if (times.get(i) <= timeLimit)
+                list.add(points.getLat(i), points.getLon(i));
+        }
+        return list;
+    }
+
+    @Override
+    public String toString()
+    {
+        if (hasErrors())
+            return "errors:" + errors;
+
+        return "reached locations:" + points.getSize();
+    }
+}
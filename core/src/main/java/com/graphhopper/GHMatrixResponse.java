@@ -0,0 +1,131 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper;
+
+import com.graphhopper.routing.DistanceMatrix;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper of the matrix response. Entries of not connected points have a distance and time of -1.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GHMatrixResponse
+{
+    private String debugInfo = "";
+    private final List<Throwable> errors = new ArrayList<Throwable>(4);
+    private DistanceMatrix matrix;
+
+    public GHMatrixResponse()
+    {
+    }
+
+    public String getDebugInfo()
+    {
+        check("getDebugInfo");
+        return debugInfo;
+    }
+
+    public GHMatrixResponse setDebugInfo( String debugInfo )
+    {
+        if (debugInfo != null)
+            this.debugInfo = debugInfo;
+        return this;
+    }
+
+    private void check( String method )
+    {
+        if (hasErrors())
+        {
+            throw new RuntimeException("You cannot call " + method + " if response contains errors. Check this with ghResponse.hasErrors(). "
+                    + "Errors are: " + getErrors());
+        }
+    }
+
+    /**
+     * @return true if one or more error found
+     */
+    public boolean hasErrors()
+    {
+        return !errors.isEmpty();
+    }
+
+    public List<Throwable> getErrors()
+    {
+        return errors;
+    }
+
+    public GHMatrixResponse addError( Throwable error )
+    {
+        errors.add(error);
+        return this;
+    }
+
+    public GHMatrixResponse setMatrix( DistanceMatrix matrix )
+    {
+        this.matrix = matrix;
+        return this;
+    }
+
+    public DistanceMatrix getMatrix()
+    {
+        check("getMatrix");
+        return matrix;
+    }
+
+    public boolean isConnected( int fromIndex, int toIndex )
+    {
+        check("isConnected");
+        return matrix.isConnected(fromIndex, toIndex);
+    }
+
+    /**
+     * @return the distance in meter or -1 if not connected
+     */
+    public double getDistance( int fromIndex, int toIndex )
+    {
+        check("getDistance");
+        return matrix.getDistance(fromIndex, toIndex);
+    }
+
+    /**
+     * @return the time in milliseconds or -1 if not connected
+     */
+    public long getTime( int fromIndex, int toIndex )
+    {
+        check("getTime");
+        return matrix.getTime(fromIndex, toIndex);
+    }
+
+    public double getWeight( int fromIndex, int toIndex )
+    {
+        check("getWeight");
+        return matrix.getWeight(fromIndex, toIndex);
+    }
+
+    @Override
+    public String toString()
+    {
+        if (hasErrors())
+            return "errors:" + errors;
+
+        return String.valueOf(matrix);
+    }
+}
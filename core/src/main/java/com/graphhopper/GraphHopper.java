@@ -18,6 +18,7 @@
 package com.graphhopper;
 
 import com.graphhopper.reader.DataReader;
+import com.graphhopper.reader.OSMChangeApplier;
 import com.graphhopper.reader.OSMReader;
 import com.graphhopper.reader.dem.CGIARProvider;
 import com.graphhopper.reader.dem.ElevationProvider;
@@ -27,6 +28,7 @@ import com.graphhopper.routing.ch.PrepareContractionHierarchies;
 import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.storage.index.LocationIndex;
+import com.graphhopper.storage.index.LocationIndexRTree;
 import com.graphhopper.storage.index.LocationIndexTree;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.*;
@@ -38,6 +40,7 @@ import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -49,6 +52,7 @@ import java.util.concurrent.atomic.AtomicLong;
  */
 public class GraphHopper implements GraphHopperAPI
 {
+    private static final String TRAFFIC = "traffic";
     private final Logger logger = LoggerFactory.getLogger(getClass());
     // for graph:
     private GraphStorage graph;
@@ -57,6 +61,10 @@ public class GraphHopper implements GraphHopperAPI
     private String ghLocation = "";
     private DAType dataAccessType = DAType.RAM_STORE;
     private boolean sortGraph = false;
+    private String sortOrder = "hilbert";
+    private boolean compactGeometry = false;
+    private boolean storeOsmIds = false;
+    private int maxNameHashEntries = 1 << 22;
     boolean removeZipped = true;
     private boolean elevation = false;
     private LockFactory lockFactory = new NativeFSLockFactory();
@@ -64,15 +72,25 @@ public class GraphHopper implements GraphHopperAPI
     private boolean allowWrites = true;
     boolean enableInstructions = true;
     private boolean fullyLoaded = false;
+    // memory mapped files which are read into physical memory after loading
+    private String warmupNames = "";
+    private boolean warmupInBackground = false;
+    private volatile boolean warmedUp = true;
+    private Thread warmupThread;
     // for routing
     private double defaultWeightLimit = Double.MAX_VALUE;
     private boolean simplifyResponse = true;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
     private RoutingAlgorithmFactory algoFactory;
+    // used if CH is enabled but not prepared for the requested vehicle
+    private final RoutingAlgorithmFactory fallbackAlgoFactory = new RoutingAlgorithmFactoryPooled();
     // for index
     private LocationIndex locationIndex;
+    private volatile EdgeSpeedOverlay speedOverlay;
+    private final ThreadLocal<LocationIndexTree.SearchContext> searchContexts = new ThreadLocal<LocationIndexTree.SearchContext>();
     private int preciseIndexResolution = 300;
     private int maxRegionSearch = 4;
+    private boolean edgeBasedIndex = false;
     // for prepare
     private int minNetworkSize = 200;
     private int minOneWayNetworkSize = 0;
@@ -80,14 +98,20 @@ public class GraphHopper implements GraphHopperAPI
     private boolean doPrepare = true;
     private boolean chEnabled = true;
     private String chWeightingStr = "fastest";
+    private String chVehiclesStr = "";
+    // additional CH profiles (vehicle|weighting) which share the base graph
+    private final Map<String, PrepareContractionHierarchies> chProfiles = new LinkedHashMap<String, PrepareContractionHierarchies>();
+    private final List<LevelGraphLayer> chLayers = new ArrayList<LevelGraphLayer>();
     private int periodicUpdates = -1;
     private int lazyUpdates = -1;
     private int neighborUpdates = -1;
     private double logMessages = -1;
+    private int prepareThreads = 1;
     // for OSM import
     private String osmFile;
     private double osmReaderWayPointMaxDistance = 1;
     private int workerThreads = -1;
+    private int encodingThreads = 1;
     private boolean calcPoints = true;
     // utils
     private static final AngleCalc ac = new AngleCalc();
@@ -229,6 +253,18 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Uses a location index which stores the edge segments in an R-tree instead of the tower nodes.
+     * It needs more space but always finds the closest edge with a predictable number of
+     * operations, also in areas with long edges of many pillar nodes.
+     */
+    public GraphHopper setEdgeBasedIndex( boolean edgeBasedIndex )
+    {
+        ensureNotLoaded();
+        this.edgeBasedIndex = edgeBasedIndex;
+        return this;
+    }
+
     public void setMinNetworkSize( int minNetworkSize, int minOneWayNetworkSize )
     {
         this.minNetworkSize = minNetworkSize;
@@ -287,8 +323,11 @@ public class GraphHopper implements GraphHopperAPI
      * Enables the use of contraction hierarchies to reduce query times. Enabled by default.
      * <p/>
      *
-     * @param weighting can be "fastest", "shortest" or your own weight-calculation type.
+     * @param weighting can be "fastest", "shortest" or your own weight-calculation type. Use a
+     *                  comma separated list to prepare one CH profile per weighting. The first
+     *                  weighting is used for the main preparation of the default vehicle.
      * @see #setCHEnable(boolean)
+     * @see #setCHVehicles(String)
      */
     public GraphHopper setCHWeighting( String weighting )
     {
@@ -302,6 +341,24 @@ public class GraphHopper implements GraphHopperAPI
         return chWeightingStr;
     }
 
+    /**
+     * Specifies a comma separated list of vehicles for which contraction hierarchies are prepared.
+     * Every vehicle is combined with every CH weighting. Each profile except the main one (default
+     * vehicle with the first weighting) is stored in a separate LevelGraphLayer sharing the base
+     * graph. If empty only the default vehicle is prepared.
+     */
+    public GraphHopper setCHVehicles( String vehicles )
+    {
+        ensureNotLoaded();
+        chVehiclesStr = vehicles;
+        return this;
+    }
+
+    public String getCHVehicles()
+    {
+        return chVehiclesStr;
+    }
+
     /**
      * Disables the "CH-preparation" preparation only. Use only if you know what you do. To disable
      * the full usage of CH use setCHEnable(false) instead.
@@ -452,6 +509,33 @@ public class GraphHopper implements GraphHopperAPI
         this.locationIndex = locationIndex;
     }
 
+    /**
+     * The live speeds used by the weighting 'traffic'. The overlay is created empty on the first
+     * call and kept in memory only. Speeds can be updated while routes are calculated.
+     * <p/>
+     * @throws IllegalStateException if the graph is not loaded
+     */
+    public EdgeSpeedOverlay getSpeedOverlay()
+    {
+        EdgeSpeedOverlay tmpOverlay = speedOverlay;
+        if (tmpOverlay != null)
+            return tmpOverlay;
+
+        synchronized (this)
+        {
+            if (speedOverlay == null)
+            {
+                if (!fullyLoaded)
+                    throw new IllegalStateException("Load the graph before using live speeds");
+
+                Graph baseGraph = graph.getBaseGraph();
+                speedOverlay = new EdgeSpeedOverlay(baseGraph, new GHDirectory("", DAType.RAM_INT)).
+                        create(baseGraph.getAllEdges().getCount());
+            }
+            return speedOverlay;
+        }
+    }
+
     /**
      * The location index created from the graph.
      * <p/>
@@ -466,6 +550,28 @@ public class GraphHopper implements GraphHopperAPI
         return locationIndex;
     }
 
+    /**
+     * Stores the pillar nodes delta encoded with a variable length which reduces the size of the
+     * geometry storage. Only used when a new graph is created.
+     */
+    public GraphHopper setCompactGeometry( boolean compactGeometry )
+    {
+        ensureNotLoaded();
+        this.compactGeometry = compactGeometry;
+        return this;
+    }
+
+    /**
+     * Stores the OSM ids in the graph which is necessary to apply OSM change files later, see
+     * applyChanges. Only used when a new graph is created.
+     */
+    public GraphHopper setStoreOsmIds( boolean storeOsmIds )
+    {
+        ensureNotLoaded();
+        this.storeOsmIds = storeOsmIds;
+        return this;
+    }
+
     /**
      * Sorts the graph which requires more RAM while import. See #12
      */
@@ -476,6 +582,45 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Specifies the node order if sorting is enabled. 'hilbert' (default) and 'bfs' renumber the
+     * nodes in place, 'dfs' copies the graph into a new one.
+     */
+    public GraphHopper setSortOrder( String sortOrder )
+    {
+        ensureNotLoaded();
+        if (!"hilbert".equals(sortOrder) && !"bfs".equals(sortOrder) && !"dfs".equals(sortOrder))
+            throw new IllegalArgumentException("Unknown sort order " + sortOrder + ", use hilbert, bfs or dfs");
+
+        this.sortOrder = sortOrder;
+        return this;
+    }
+
+    /**
+     * Reads the specified memory mapped files into physical memory after loading the graph. This
+     * avoids slow page faults for the first requests, see isWarmedUp.
+     * <p/>
+     * @param names comma separated names like nodes,edges,location_index,geometry. Empty disables
+     * the warmup
+     * @param background if true the warmup is done in a separate thread and load returns before
+     */
+    public GraphHopper setWarmup( String names, boolean background )
+    {
+        ensureNotLoaded();
+        this.warmupNames = names;
+        this.warmupInBackground = background;
+        return this;
+    }
+
+    /**
+     * @return true if the warmup has finished or if no warmup is configured. E.g. to put an
+     * instance into rotation only when the memory mapped files are read into memory.
+     */
+    public boolean isWarmedUp()
+    {
+        return warmedUp;
+    }
+
     /**
      * Specifies if it is allowed for GraphHopper to write. E.g. for read only filesystems it is not
      * possible to create a lock file and so we can avoid write locks.
@@ -525,7 +670,12 @@ public class GraphHopper implements GraphHopperAPI
         dataAccessType = DAType.fromString(graphDATypeStr);
 
         sortGraph = args.getBool("graph.doSort", sortGraph);
+        setSortOrder(args.get("graph.sortOrder", sortOrder));
+        compactGeometry = args.getBool("graph.compactGeometry", compactGeometry);
+        storeOsmIds = args.getBool("graph.storeOsmIds", storeOsmIds);
+        maxNameHashEntries = args.getInt("graph.names.maxHashEntries", maxNameHashEntries);
         removeZipped = args.getBool("graph.removeZipped", removeZipped);
+        setWarmup(args.get("graph.warmup", warmupNames), args.getBool("graph.warmup.background", warmupInBackground));
         int bytesForFlags = args.getInt("graph.bytesForFlags", 4);
         if (args.get("graph.locktype", "native").equals("simple"))
             lockFactory = new SimpleFSLockFactory();
@@ -563,14 +713,18 @@ public class GraphHopper implements GraphHopperAPI
         // prepare CH
         doPrepare = args.getBool("prepare.doPrepare", doPrepare);
         String tmpCHWeighting = args.get("prepare.chWeighting", "fastest");
-        chEnabled = "fastest".equals(tmpCHWeighting) || "shortest".equals(tmpCHWeighting);
+        String firstCHWeighting = splitList(tmpCHWeighting).isEmpty() ? "" : splitList(tmpCHWeighting).get(0);
+        chEnabled = "fastest".equals(firstCHWeighting) || "shortest".equals(firstCHWeighting);
         if (chEnabled)
             setCHWeighting(tmpCHWeighting);
 
+        setCHVehicles(args.get("prepare.chVehicles", chVehiclesStr));
+
         periodicUpdates = args.getInt("prepare.updates.periodic", periodicUpdates);
         lazyUpdates = args.getInt("prepare.updates.lazy", lazyUpdates);
         neighborUpdates = args.getInt("prepare.updates.neighbor", neighborUpdates);
         logMessages = args.getDouble("prepare.logmessages", logMessages);
+        prepareThreads = args.getInt("prepare.threads", prepareThreads);
 
         // osm import
         osmReaderWayPointMaxDistance = args.getDouble("osmreader.wayPointMaxDistance", osmReaderWayPointMaxDistance);
@@ -579,11 +733,13 @@ public class GraphHopper implements GraphHopperAPI
             setEncodingManager(new EncodingManager(flagEncoders, bytesForFlags));
 
         workerThreads = args.getInt("osmreader.workerThreads", workerThreads);
+        encodingThreads = args.getInt("osmreader.encodingThreads", encodingThreads);
         enableInstructions = args.getBool("osmreader.instructions", enableInstructions);
 
         // index
         preciseIndexResolution = args.getInt("index.highResolution", preciseIndexResolution);
         maxRegionSearch = args.getInt("index.maxRegionSearch", maxRegionSearch);
+        edgeBasedIndex = args.getBool("index.edgeBased", edgeBasedIndex);
 
         // routing
         defaultWeightLimit = args.getDouble("routing.defaultWeightLimit", defaultWeightLimit);
@@ -652,6 +808,60 @@ public class GraphHopper implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Applies an OSM change file (osc) to the loaded graph which has to be imported with
+     * setStoreOsmIds(true). Only the changed edges are added to the location index, unless it is
+     * edge based or the bounds of the graph changed. The edges of deleted or changed ways are
+     * removed but keep their space until more than a tenth of all edges are removed, then the
+     * edges are compacted and the location index is recreated. If CH is enabled the shortcuts are
+     * removed and the preparation is marked as stale: routes are calculated without CH until the
+     * graph is prepared again, which happens when it is loaded the next time. Call flush to store
+     * the changes. Do not calculate routes while changes are applied.
+     */
+    public void applyChanges( File changeFile )
+    {
+        ensureWriteAccess();
+        if (!fullyLoaded)
+            throw new IllegalStateException("Load graph before applying changes");
+
+        if (!(graph instanceof GraphHopperStorage) || !((GraphHopperStorage) graph).isStoreOsmIds())
+            throw new IllegalStateException("Changes can only be applied to a graph imported with graph.storeOsmIds=true");
+
+        if (graph instanceof LevelGraphStorage)
+        {
+            ((LevelGraphStorage) graph).removeShortcuts();
+            graph.getProperties().put("prepare.done", false);
+        }
+
+        GraphHopperStorage ghStorage = (GraphHopperStorage) graph;
+        OSMChangeApplier applier = new OSMChangeApplier(ghStorage, encodingManager).setElevationProvider(eleProvider);
+        try
+        {
+            applier.apply(changeFile);
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Cannot apply OSM change file " + changeFile, ex);
+        }
+        graph.getProperties().put("osmreader.changes.date", formatDateTime(new Date()));
+
+        // compacting changes the edge ids which requires a new location index
+        boolean compact = ghStorage.getRemovedEdges() * 10L > graph.getAllEdges().getCount();
+        if (compact)
+            graph.optimize();
+
+        if (!compact && locationIndex instanceof LocationIndexTree
+                && ((LocationIndexTree) locationIndex).addEdges(applier.getChangedEdges()))
+        {
+            locationIndex.flush();
+        } else
+        {
+            Directory dir = graph.getDirectory();
+            dir.remove(dir.find(edgeBasedIndex ? "location_index_rtree" : "location_index"));
+            locationIndex = null;
+            initLocationIndex();
+        }
+    }
+
     protected DataReader importData() throws IOException
     {
         ensureWriteAccess();
@@ -684,6 +894,7 @@ public class GraphHopper implements GraphHopperAPI
         return reader.setOSMFile(osmTmpFile).
                 setElevationProvider(eleProvider).
                 setWorkerThreads(workerThreads).
+                setEncodingThreads(encodingThreads).
                 setEncodingManager(encodingManager).
                 setWayPointMaxDistance(osmReaderWayPointMaxDistance);
     }
@@ -747,6 +958,8 @@ public class GraphHopper implements GraphHopperAPI
             graph = new GraphHopperStorage(dir, encodingManager, hasElevation());
 
         graph.setSegmentSize(defaultSegmentSize);
+        ((GraphHopperStorage) graph).setCompactGeometry(compactGeometry).setStoreOsmIds(storeOsmIds).
+                setMaxNameHashEntries(maxNameHashEntries);
 
         Lock lock = null;
         try
@@ -766,6 +979,7 @@ public class GraphHopper implements GraphHopperAPI
 
             postProcessing();
             fullyLoaded = true;
+            warmup();
             return true;
         } finally
         {
@@ -774,10 +988,65 @@ public class GraphHopper implements GraphHopperAPI
         }
     }
 
+    private void warmup()
+    {
+        if (Helper.isEmpty(warmupNames) || !(graph.getDirectory() instanceof GHDirectory))
+            return;
+
+        final GHDirectory dir = (GHDirectory) graph.getDirectory();
+        final List<String> names = new ArrayList<String>();
+        for (String name : warmupNames.split(","))
+        {
+            if (!name.trim().isEmpty())
+                names.add(name.trim());
+        }
+
+        warmedUp = false;
+        Runnable runnable = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                StopWatch sw = new StopWatch().start();
+                try
+                {
+                    long bytes = dir.warmup(names, new ProgressListener()
+                    {
+                        long nextLog = 256L << 20;
+
+                        @Override
+                        public void update( long val )
+                        {
+                            if (val < nextLog)
+                                return;
+
+                            nextLog += 256L << 20;
+                            logger.info("warmup of " + names + ": " + (val >> 20) + "MB");
+                        }
+                    });
+                    logger.info("finished warmup of " + names + ", " + (bytes >> 20) + "MB, took:" + sw.stop().getSeconds()
+                            + ", residency:" + dir.getResidency());
+                } finally
+                {
+                    // the instance is usable without the warmup, so waiting callers must not block forever
+                    warmedUp = true;
+                }
+            }
+        };
+
+        if (warmupInBackground)
+        {
+            warmupThread = new Thread(runnable, "gh-warmup");
+            warmupThread.setDaemon(true);
+            warmupThread.start();
+        } else
+            runnable.run();
+    }
+
     public RoutingAlgorithmFactory getAlgorithmFactory()
     {
         if (algoFactory == null)
-            this.algoFactory = new RoutingAlgorithmFactorySimple();
+            this.algoFactory = new RoutingAlgorithmFactoryPooled();
 
         return algoFactory;
     }
@@ -794,14 +1063,77 @@ public class GraphHopper implements GraphHopperAPI
     {
         initLocationIndex();
         if (chEnabled)
+        {
             algoFactory = createPrepare();
-        else
-            algoFactory = new RoutingAlgorithmFactorySimple();
+            initCHProfiles();
+        } else
+            algoFactory = new RoutingAlgorithmFactoryPooled();
 
         if (!isPrepared())
             prepare();
     }
 
+    /**
+     * Creates a LevelGraphLayer and its preparation for every configured CH profile apart from the
+     * main one. For an already prepared graph the layers are loaded from disc.
+     */
+    private void initCHProfiles()
+    {
+        List<String> weightings = splitList(chWeightingStr);
+        List<String> vehicles = splitList(chVehiclesStr);
+        if (vehicles.isEmpty())
+            vehicles.add(getDefaultVehicle().toString());
+
+        String mainProfile = createProfileKey(getDefaultVehicle().toString(), weightings.get(0));
+        boolean prepared = isPrepared();
+        for (String vehicle : vehicles)
+        {
+            if (!encodingManager.supports(vehicle))
+                throw new IllegalArgumentException("CH vehicle " + vehicle + " unsupported. Supported are: " + encodingManager);
+
+            for (String weighting : weightings)
+            {
+                String key = createProfileKey(vehicle, weighting);
+                if (key.equals(mainProfile) || chProfiles.containsKey(key))
+                    continue;
+
+                FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+                LevelGraphLayer layer = new LevelGraphLayer(vehicle + "_" + weighting.toLowerCase(), graph);
+                layer.setSegmentSize(defaultSegmentSize);
+                if (prepared)
+                {
+                    if (!layer.loadExisting())
+                        throw new IllegalStateException("Cannot load CH profile " + key + " from " + ghLocation
+                                + ". Was the graph prepared with a different prepare.chVehicles or prepare.chWeighting?");
+                } else
+                    layer.create(1000);
+
+                chLayers.add(layer);
+                chProfiles.put(key, createPrepare(layer, encoder, weighting));
+            }
+        }
+    }
+
+    private static String createProfileKey( String vehicle, String weighting )
+    {
+        if (weighting.isEmpty())
+            weighting = "fastest";
+
+        return vehicle.toLowerCase() + "|" + weighting.toLowerCase();
+    }
+
+    private static List<String> splitList( String str )
+    {
+        List<String> list = new ArrayList<String>();
+        for (String item : str.split(","))
+        {
+            item = item.trim();
+            if (!item.isEmpty())
+                list.add(item);
+        }
+        return list;
+    }
+
     private boolean isPrepared()
     {
         return "true".equals(graph.getProperties().get("prepare.done"));
@@ -809,14 +1141,23 @@ public class GraphHopper implements GraphHopperAPI
 
     protected RoutingAlgorithmFactory createPrepare()
     {
-        FlagEncoder defaultVehicle = getDefaultVehicle();
-        Weighting weighting = createWeighting(new WeightingMap(chWeightingStr), defaultVehicle);
+        return createPrepare((LevelGraph) graph, getDefaultVehicle(), splitList(chWeightingStr).get(0));
+    }
+
+    private PrepareContractionHierarchies createPrepare( LevelGraph lg, FlagEncoder encoder, String weightingStr )
+    {
+        if (TRAFFIC.equalsIgnoreCase(weightingStr))
+            throw new IllegalArgumentException("CH cannot be prepared for the weighting " + weightingStr
+                    + " as its live speeds change without a new preparation");
+
+        Weighting weighting = createWeighting(new WeightingMap(weightingStr), encoder);
         PrepareContractionHierarchies tmpPrepareCH = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
-                (LevelGraph) graph, defaultVehicle, weighting, traversalMode);
+                lg, encoder, weighting, traversalMode);
         tmpPrepareCH.setPeriodicUpdates(periodicUpdates).
                 setLazyUpdates(lazyUpdates).
                 setNeighborUpdates(neighborUpdates).
-                setLogMessages(logMessages);
+                setLogMessages(logMessages).
+                setThreads(prepareThreads);
 
         return tmpPrepareCH;
     }
@@ -841,6 +1182,9 @@ public class GraphHopper implements GraphHopperAPI
         if ("shortest".equalsIgnoreCase(weighting))
         {
             result = new ShortestWeighting();
+        } else if (TRAFFIC.equalsIgnoreCase(weighting))
+        {
+            result = new TrafficWeighting(encoder, weightingMap, getSpeedOverlay());
         } else if ("fastest".equalsIgnoreCase(weighting) || weighting.isEmpty())
         {
             if (encoder.supports(PriorityWeighting.class))
@@ -866,9 +1210,38 @@ public class GraphHopper implements GraphHopperAPI
 
     @Override
     public GHResponse route( GHRequest request )
+    {
+        return route(request, null);
+    }
+
+    /**
+     * Calculates the routes of all specified requests via the executor. Identical points of the
+     * requests are looked up in the location index only once.
+     * <p/>
+     * @return the futures of the responses in the order of the requests
+     */
+    public List<Future<GHResponse>> route( List<GHRequest> requests, ExecutorService executor )
+    {
+        final ConcurrentMap<String, QueryResult> snapCache = new ConcurrentHashMap<String, QueryResult>();
+        List<Future<GHResponse>> futures = new ArrayList<Future<GHResponse>>(requests.size());
+        for (final GHRequest request : requests)
+        {
+            futures.add(executor.submit(new Callable<GHResponse>()
+            {
+                @Override
+                public GHResponse call()
+                {
+                    return route(request, snapCache);
+                }
+            }));
+        }
+        return futures;
+    }
+
+    private GHResponse route( GHRequest request, ConcurrentMap<String, QueryResult> snapCache )
     {
         GHResponse response = new GHResponse();
-        List<Path> paths = getPaths(request, response);
+        List<Path> paths = getPaths(request, response, snapCache);
         if (response.hasErrors())
             return response;
 
@@ -888,6 +1261,11 @@ public class GraphHopper implements GraphHopperAPI
     }
 
     protected List<Path> getPaths( GHRequest request, GHResponse rsp )
+    {
+        return getPaths(request, rsp, null);
+    }
+
+    private List<Path> getPaths( GHRequest request, GHResponse rsp, ConcurrentMap<String, QueryResult> snapCache )
     {
         if (graph == null || !fullyLoaded)
             throw new IllegalStateException("Call load or importOrLoad before routing");
@@ -934,7 +1312,7 @@ public class GraphHopper implements GraphHopperAPI
         for (int placeIndex = 0; placeIndex < points.size(); placeIndex++)
         {
             GHPoint point = points.get(placeIndex);
-            QueryResult res = locationIndex.findClosest(point.lat, point.lon, edgeFilter);
+            QueryResult res = findClosest(point, encoder, edgeFilter, snapCache);
             if (!res.isValid())
                 rsp.addError(new IllegalArgumentException("Cannot find point " + placeIndex + ": " + point));
 
@@ -948,10 +1326,17 @@ public class GraphHopper implements GraphHopperAPI
 
         QueryGraph queryGraph;
         RoutingAlgorithmFactory tmpAlgoFactory = getAlgorithmFactory();
-        if (chEnabled && !vehicle.equalsIgnoreCase(getDefaultVehicle().toString()))
+        boolean useCH = isCHUsable(request.getHints());
+        PrepareContractionHierarchies profilePrepare = useCH
+                ? findCHProfile(vehicle, request.getHints().getWeighting()) : null;
+        if (profilePrepare != null)
+        {
+            tmpAlgoFactory = profilePrepare;
+            queryGraph = new QueryGraph(profilePrepare.getGraph());
+        } else if (chEnabled && (!useCH || !vehicle.equalsIgnoreCase(getDefaultVehicle().toString())))
         {
             // fall back to normal traversing
-            tmpAlgoFactory = new RoutingAlgorithmFactorySimple();
+            tmpAlgoFactory = fallbackAlgoFactory;
             queryGraph = new QueryGraph(graph.getBaseGraph());
         } else
         {
@@ -1021,8 +1406,277 @@ public class GraphHopper implements GraphHopperAPI
         return paths;
     }
 
+    /**
+     * Calculates the weight, distance and time from every from point to every to point. All points
+     * are looked up once and one QueryGraph is used for the whole matrix. With contraction
+     * hierarchies a bucket based many-to-many search is done, otherwise one DijkstraOneToMany
+     * search for every from point. Like for route the turn costs and the traversal mode are
+     * considered without contraction hierarchies, for an edge-based traversal every pair is
+     * calculated separately.
+     */
+    public GHMatrixResponse matrix( GHMatrixRequest request )
+    {
+        if (graph == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        if (graph.isClosed())
+            throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+
+        GHMatrixResponse rsp = new GHMatrixResponse();
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        if (!encodingManager.supports(vehicle))
+        {
+            rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
+                    + "Supported are: " + getEncodingManager()));
+            return rsp;
+        }
+
+        TraversalMode tMode;
+        String tModeStr = request.getHints().get("traversal_mode", traversalMode.toString());
+        try
+        {
+            tMode = TraversalMode.fromString(tModeStr);
+        } catch (Exception ex)
+        {
+            rsp.addError(ex);
+            return rsp;
+        }
+
+        List<GHPoint> fromPoints = request.getFromPoints();
+        List<GHPoint> toPoints = request.getToPoints();
+        if (fromPoints.isEmpty() || toPoints.isEmpty())
+        {
+            rsp.addError(new IllegalArgumentException("At least one from and one to point has to be specified, but was:"
+                    + fromPoints.size() + ", " + toPoints.size()));
+            return rsp;
+        }
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        EdgeFilter edgeFilter = new DefaultEdgeFilter(encoder);
+        StopWatch sw = new StopWatch().start();
+        List<QueryResult> qResults = new ArrayList<QueryResult>(fromPoints.size() + toPoints.size());
+        for (int i = 0; i < fromPoints.size() + toPoints.size(); i++)
+        {
+            boolean isFrom = i < fromPoints.size();
+            GHPoint point = isFrom ? fromPoints.get(i) : toPoints.get(i - fromPoints.size());
+            QueryResult res = findClosest(point.lat, point.lon, edgeFilter);
+            if (!res.isValid())
+                rsp.addError(new IllegalArgumentException("Cannot find " + (isFrom ? "from" : "to") + " point "
+                        + (isFrom ? i : i - fromPoints.size()) + ": " + point));
+
+            qResults.add(res);
+        }
+
+        if (rsp.hasErrors())
+            return rsp;
+
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+
+        QueryGraph queryGraph;
+        RoutingAlgorithmFactory tmpAlgoFactory = getAlgorithmFactory();
+        boolean useCH = isCHUsable(request.getHints());
+        PrepareContractionHierarchies tmpPrepare = useCH
+                ? findCHProfile(vehicle, request.getHints().getWeighting()) : null;
+        if (tmpPrepare != null)
+        {
+            queryGraph = new QueryGraph(tmpPrepare.getGraph());
+        } else if (chEnabled && (!useCH || !vehicle.equalsIgnoreCase(getDefaultVehicle().toString())))
+        {
+            // fall back to normal traversing
+            tmpAlgoFactory = fallbackAlgoFactory;
+            queryGraph = new QueryGraph(graph.getBaseGraph());
+        } else
+        {
+            if (getAlgorithmFactory() instanceof PrepareContractionHierarchies)
+                tmpPrepare = (PrepareContractionHierarchies) getAlgorithmFactory();
+
+            queryGraph = new QueryGraph(graph);
+        }
+        queryGraph.lookup(qResults);
+
+        int[] fromNodes = new int[fromPoints.size()];
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            fromNodes[i] = qResults.get(i).getClosestNode();
+        }
+        int[] toNodes = new int[toPoints.size()];
+        for (int i = 0; i < toNodes.length; i++)
+        {
+            toNodes[i] = qResults.get(fromNodes.length + i).getClosestNode();
+        }
+
+        sw = new StopWatch().start();
+        MatrixAlgorithm algo;
+        if (tmpPrepare != null)
+        {
+            algo = tmpPrepare.createMatrixAlgo(queryGraph);
+        } else
+        {
+            double weightLimit = request.getHints().getDouble("defaultWeightLimit", defaultWeightLimit);
+            Weighting weighting = createWeighting(request.getHints(), encoder);
+            weighting = createTurnWeighting(weighting, queryGraph, encoder);
+            if (tMode.isEdgeBased())
+            {
+                AlgorithmOptions algoOpts = AlgorithmOptions.start().
+                        algorithm(AlgorithmOptions.DIJKSTRA_BI).traversalMode(tMode).flagEncoder(encoder).
+                        weighting(weighting).build();
+                algo = new RoutingAlgorithmMatrix(queryGraph, tmpAlgoFactory, algoOpts).setWeightLimit(weightLimit);
+            } else
+            {
+                algo = new DijkstraOneToManyMatrix(queryGraph, encoder, weighting, tMode).
+                        setWeightLimit(weightLimit);
+            }
+        }
+
+        rsp.setMatrix(algo.calcMatrix(fromNodes, toNodes));
+        visitedSum.set(algo.getVisitedNodes());
+        rsp.setDebugInfo(debug + ", " + algo.getName() + "-matrix:" + sw.stop().getSeconds() + "s, visited nodes:"
+                + algo.getVisitedNodes());
+        return rsp;
+    }
+
+    /**
+     * Calculates all locations reachable from the specified point within the time and distance
+     * limit. Contraction hierarchies cannot be used as the full shortest path tree is required.
+     */
+    public GHIsochroneResponse isochrone( GHIsochroneRequest request )
+    {
+        if (graph == null || !fullyLoaded)
+            throw new IllegalStateException("Call load or importOrLoad before routing");
+
+        if (graph.isClosed())
+            throw new IllegalStateException("You need to create a new GraphHopper instance as it is already closed");
+
+        GHIsochroneResponse rsp = new GHIsochroneResponse();
+        String vehicle = request.getVehicle();
+        if (vehicle.isEmpty())
+            vehicle = getDefaultVehicle().toString();
+
+        if (!encodingManager.supports(vehicle))
+        {
+            rsp.addError(new IllegalArgumentException("Vehicle " + vehicle + " unsupported. "
+                    + "Supported are: " + getEncodingManager()));
+            return rsp;
+        }
+
+        if (request.getTimeLimit() == Long.MAX_VALUE && request.getDistanceLimit() == Double.MAX_VALUE)
+        {
+            rsp.addError(new IllegalArgumentException("Specify a time or distance limit"));
+            return rsp;
+        }
+
+        FlagEncoder encoder = encodingManager.getEncoder(vehicle);
+        StopWatch sw = new StopWatch().start();
+        GHPoint point = request.getPoint();
+        QueryResult res = findClosest(point.lat, point.lon, new DefaultEdgeFilter(encoder));
+        if (!res.isValid())
+        {
+            rsp.addError(new IllegalArgumentException("Cannot find point: " + point));
+            return rsp;
+        }
+
+        String debug = "idLookup:" + sw.stop().getSeconds() + "s";
+        QueryGraph queryGraph = new QueryGraph(graph.getBaseGraph());
+        queryGraph.lookup(Collections.singletonList(res));
+
+        sw = new StopWatch().start();
+        ShortestPathTree algo = new ShortestPathTree(queryGraph, encoder, createWeighting(request.getHints(), encoder),
+                TraversalMode.NODE_BASED).
+                setTimeLimit(request.getTimeLimit()).
+                setDistanceLimit(request.getDistanceLimit());
+        NodeAccess na = queryGraph.getNodeAccess();
+        for (ShortestPathTree.IsoLabel label : algo.search(res.getClosestNode()))
+        {
+            rsp.add(na.getLatitude(label.adjNode), na.getLongitude(label.adjNode), label.time, label.distance);
+        }
+        visitedSum.set(algo.getVisitedNodes());
+        rsp.setDebugInfo(debug + ", " + algo.getName() + ":" + sw.stop().getSeconds() + "s, visited nodes:"
+                + algo.getVisitedNodes());
+        return rsp;
+    }
+
+    /**
+     * Looks up the point in the location index and reuses the search buffers of the current thread
+     * if the index supports it.
+     */
+    private QueryResult findClosest( double lat, double lon, EdgeFilter edgeFilter )
+    {
+        LocationIndex tmpIndex = locationIndex;
+        if (!(tmpIndex instanceof LocationIndexTree))
+            return tmpIndex.findClosest(lat, lon, edgeFilter);
+
+        // reuse the search buffers per thread, the index changes e.g. after applyChanges
+        LocationIndexTree indexTree = (LocationIndexTree) tmpIndex;
+        LocationIndexTree.SearchContext context = searchContexts.get();
+        if (context == null || !context.isContextOf(indexTree))
+        {
+            context = indexTree.createSearchContext();
+            searchContexts.set(context);
+        }
+        return indexTree.findClosest(lat, lon, edgeFilter, context);
+    }
+
+    /**
+     * Looks up the point in the location index. If a cache is specified the lookup is done only once
+     * per vehicle and point and a copy of the cached result is returned as the QueryGraph modifies
+     * it.
+     */
+    private QueryResult findClosest( GHPoint point, FlagEncoder encoder, EdgeFilter edgeFilter,
+                                     ConcurrentMap<String, QueryResult> snapCache )
+    {
+        if (snapCache == null)
+            return findClosest(point.lat, point.lon, edgeFilter);
+
+        String key = encoder + "|" + point.lat + "," + point.lon;
+        QueryResult res = snapCache.get(key);
+        if (res == null)
+        {
+            res = findClosest(point.lat, point.lon, edgeFilter);
+            QueryResult prev = snapCache.putIfAbsent(key, res);
+            if (prev != null)
+                res = prev;
+        }
+        return res.copy();
+    }
+
+    /**
+     * CH is not used if the preparation is missing or for the traffic weighting which depends on
+     * the current live speeds.
+     */
+    private boolean isCHUsable( WeightingMap hints )
+    {
+        return chEnabled && isPrepared() && !TRAFFIC.equalsIgnoreCase(hints.getWeighting());
+    }
+
+    /**
+     * Returns the preparation of the additional CH profile for the specified vehicle and weighting.
+     * Returns null if the main preparation should be used or if there is no CH profile for exactly
+     * this combination, as the shortcuts of a different weighting would result in wrong routes.
+     */
+    private PrepareContractionHierarchies findCHProfile( String vehicle, String weighting )
+    {
+        if (chProfiles.isEmpty())
+            return null;
+
+        return chProfiles.get(createProfileKey(vehicle, weighting));
+    }
+
     protected LocationIndex createLocationIndex( Directory dir )
     {
+        if (edgeBasedIndex)
+        {
+            LocationIndex edgeIndex = new LocationIndexRTree(graph.getBaseGraph(), dir);
+            if (!edgeIndex.loadExisting())
+            {
+                ensureWriteAccess();
+                edgeIndex.prepareIndex();
+            }
+            return edgeIndex;
+        }
+
         LocationIndexTree tmpIndex = new LocationIndexTree(graph.getBaseGraph(), dir);
         tmpIndex.setResolution(preciseIndexResolution);
         tmpIndex.setMaxRegionSearch(maxRegionSearch);
@@ -1059,10 +1713,20 @@ public class GraphHopper implements GraphHopperAPI
             if (graph instanceof LevelGraph && isPrepared())
                 throw new IllegalArgumentException("Sorting prepared LevelGraph is not possible yet. See #12");
 
-            GraphStorage newGraph = GHUtility.newStorage(graph);
-            GHUtility.sortDFS(graph, newGraph);
-            logger.info("graph sorted (" + Helper.getMemInfo() + ")");
-            graph = newGraph;
+            if ("dfs".equals(sortOrder))
+            {
+                if (((GraphHopperStorage) graph).isStoreOsmIds())
+                    throw new IllegalArgumentException("Sorting via dfs does not keep the OSM ids, use hilbert or bfs");
+
+                GraphStorage newGraph = GHUtility.newStorage(graph);
+                GHUtility.sortDFS(graph, newGraph);
+                graph = newGraph;
+            } else
+            {
+                int[] oldToNew = "bfs".equals(sortOrder) ? GHUtility.createBFSOrder(graph) : GHUtility.createHilbertOrder(graph);
+                ((GraphHopperStorage) graph).renumberNodes(oldToNew);
+            }
+            logger.info("graph sorted via " + sortOrder + " (" + Helper.getMemInfo() + ")");
         }
     }
 
@@ -1074,6 +1738,11 @@ public class GraphHopper implements GraphHopperAPI
             ensureWriteAccess();
             logger.info("calling prepare.doWork for " + getDefaultVehicle() + " ... (" + Helper.getMemInfo() + ")");
             ((PrepareContractionHierarchies) algoFactory).doWork();
+            for (Map.Entry<String, PrepareContractionHierarchies> entry : chProfiles.entrySet())
+            {
+                logger.info("calling prepare.doWork for CH profile " + entry.getKey() + " ... (" + Helper.getMemInfo() + ")");
+                entry.getValue().doWork();
+            }
             graph.getProperties().put("prepare.date", formatDateTime(new Date()));
         }
         graph.getProperties().put("prepare.done", tmpPrepare);
@@ -1100,6 +1769,10 @@ public class GraphHopper implements GraphHopperAPI
         logger.info("flushing graph " + graph.toString() + ", details:" + graph.toDetailsString() + ", "
                 + Helper.getMemInfo() + ")");
         graph.flush();
+        for (LevelGraphLayer layer : chLayers)
+        {
+            layer.flush();
+        }
         fullyLoaded = true;
     }
 
@@ -1109,12 +1782,34 @@ public class GraphHopper implements GraphHopperAPI
      */
     public void close()
     {
+        if (warmupThread != null)
+        {
+            // do not read from unmapped files
+            warmupThread.interrupt();
+            try
+            {
+                warmupThread.join();
+            } catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            warmupThread = null;
+        }
+
         if (graph != null)
             graph.close();
 
+        for (LevelGraphLayer layer : chLayers)
+        {
+            layer.close();
+        }
+
         if (locationIndex != null)
             locationIndex.close();
 
+        if (speedOverlay != null)
+            speedOverlay.close();
+
         try
         {
             lockFactory.forceRemove(fileLockName, true);
@@ -0,0 +1,181 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.util.Helper;
+
+/**
+ * A map for OSM IDs which stores its values outside of the Java heap if the specified directory
+ * uses MMAP, DIRECT or UNSAFE. OSM IDs are dense and mostly sorted so the key space is split into blocks
+ * of 2^blockBits consecutive keys and every used block is allocated in a DataAccess when the first
+ * key of it is written. The values are then accessed directly via the key without searching. In
+ * contrast to OSMIDMap the keys can be inserted in any order.
+ * <p/>
+ * Negative keys, which occur only in custom created OSM files, and keys too big for the block index
+ * are stored in an in-memory tree.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMIDBlockMap implements LongIntMap
+{
+    private final Directory dir;
+    // maps the block index of a key to the (offset + 1) of the block in values
+    private final DataAccess blockPointers;
+    private final DataAccess values;
+    private final int blockBits;
+    private final long blockMask;
+    private final int blockBytes;
+    private final int noEntryValue;
+    private final long maxKey;
+    private final GHLongIntBTree outlierKeys;
+    private int blockCount;
+    private long size;
+    // ids are mostly sorted so avoid the lookup in blockPointers for subsequent keys
+    private long lastBlockIndex = -1;
+    private long lastBlockPointer;
+
+    public OSMIDBlockMap( Directory dir )
+    {
+        this(dir, -1, 12);
+    }
+
+    public OSMIDBlockMap( Directory dir, int noEntryValue, int blockBits )
+    {
+        if (blockBits < 1 || blockBits > 24)
+            throw new IllegalArgumentException("blockBits has to be in [1, 24] but was " + blockBits);
+
+        this.dir = dir;
+        this.noEntryValue = noEntryValue;
+        this.blockBits = blockBits;
+        this.blockMask = (1L << blockBits) - 1;
+        this.blockBytes = 4 << blockBits;
+        this.maxKey = ((long) Integer.MAX_VALUE << blockBits) | blockMask;
+        blockPointers = dir.find("tmpOsmidBlockPointers");
+        blockPointers.create(1000);
+        values = dir.find("tmpOsmidBlockValues");
+        values.create(blockBytes);
+        outlierKeys = new GHLongIntBTree(200);
+    }
+
+    @Override
+    public int put( long key, int value )
+    {
+        if (value == noEntryValue)
+            throw new IllegalArgumentException("Cannot store the value " + value + " which is reserved for no entry");
+
+        // memory of new blocks is zero, so store the values xor'ed to make 0 the empty entry
+        int oldValue;
+        if (key < 0 || key > maxKey)
+        {
+            // the tree uses -1 as empty key and value, ~ maps them to 0 which is not used here
+            oldValue = ~outlierKeys.put(~key, ~(value ^ noEntryValue));
+        } else
+        {
+            long valuePointer = getBlockPointer(key >>> blockBits, true) + ((key & blockMask) << 2);
+            oldValue = values.getInt(valuePointer);
+            values.setInt(valuePointer, value ^ noEntryValue);
+        }
+
+        if (oldValue == 0)
+        {
+            size++;
+            return noEntryValue;
+        }
+        return oldValue ^ noEntryValue;
+    }
+
+    @Override
+    public int get( long key )
+    {
+        if (key < 0 || key > maxKey)
+            return ~outlierKeys.get(~key) ^ noEntryValue;
+
+        long pointer = getBlockPointer(key >>> blockBits, false);
+        if (pointer < 0)
+            return noEntryValue;
+
+        return values.getInt(pointer + ((key & blockMask) << 2)) ^ noEntryValue;
+    }
+
+    /**
+     * @return the byte offset of the specified block in values or -1 if the block does not exist
+     * and create is false
+     */
+    private long getBlockPointer( long blockIndex, boolean create )
+    {
+        if (blockIndex == lastBlockIndex)
+            return lastBlockPointer;
+
+        long tmp = blockIndex << 2;
+        int storedBlock = tmp < blockPointers.getCapacity() ? blockPointers.getInt(tmp) : 0;
+        if (storedBlock == 0)
+        {
+            if (!create)
+                return -1;
+
+            blockPointers.ensureCapacity(tmp + 4);
+            blockCount++;
+            storedBlock = blockCount;
+            blockPointers.setInt(tmp, storedBlock);
+            values.ensureCapacity((long) blockCount * blockBytes);
+        }
+
+        lastBlockIndex = blockIndex;
+        lastBlockPointer = (long) (storedBlock - 1) * blockBytes;
+        return lastBlockPointer;
+    }
+
+    public int getNoEntryValue()
+    {
+        return noEntryValue;
+    }
+
+    @Override
+    public long getSize()
+    {
+        return size;
+    }
+
+    @Override
+    public void optimize()
+    {
+        outlierKeys.optimize();
+    }
+
+    /**
+     * @return memory usage in MB
+     */
+    @Override
+    public int getMemoryUsage()
+    {
+        return Math.round((blockPointers.getCapacity() + values.getCapacity()) / Helper.MB)
+                + outlierKeys.getMemoryUsage();
+    }
+
+    /**
+     * Releases the underlying storage. The map cannot be used afterwards.
+     */
+    public void clear()
+    {
+        dir.remove(blockPointers);
+        dir.remove(values);
+        outlierKeys.clear();
+    }
+}
@@ -0,0 +1,680 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.reader.dem.ElevationProvider;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint;
+import com.graphhopper.util.shapes.GHPoint3D;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TIntHashSet;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies an OSM change file (osc) to a graph which was imported with OSM ids, see
+ * GraphHopperStorage.setStoreOsmIds. This makes frequent updates possible without a full import.
+ * <p/>
+ * If only the tags of a way changed the flags of its edges are updated in place. Otherwise the
+ * edges of a modified or deleted way are removed, see GraphHopperStorage.removeEdge, and the edges
+ * of modified and created ways are added. Tower nodes and pillar nodes which were moved get the new
+ * coordinates. If a changed way is connected to a pillar node of an existing edge the edge is split
+ * there. Only the nodes and edges of the changed OSM ids are looked up in the graph, see
+ * GraphHopperStorage.findOsmNode.
+ * <p/>
+ * Relations, barriers and subnetworks are not considered, this requires a new import. The
+ * location index has to be updated with the changed edges, see getChangedEdges, and the
+ * contraction hierarchies have to be recreated afterwards, see GraphHopper.applyChanges.
+ * <p/>
+ * @author Peter Karich
+ */
+public class OSMChangeApplier
+{
+    private static final Logger logger = LoggerFactory.getLogger(OSMChangeApplier.class);
+    private final GraphHopperStorage graph;
+    private final NodeAccess nodeAccess;
+    private final EncodingManager encodingManager;
+    private final DistanceCalc distCalc = Helper.DIST_EARTH;
+    private ElevationProvider eleProvider = ElevationProvider.NOOP;
+    // the content of the change file
+    private final TLongObjectMap<OSMNode> changedNodes = new TLongObjectHashMap<OSMNode>();
+    private final Map<Long, OSMWay> changedWays = new LinkedHashMap<Long, OSMWay>();
+    private final TLongSet deletedWays = new TLongHashSet();
+    // how often a node is used from the changed ways
+    private final TLongIntMap nodeRefs = new TLongIntHashMap(100, 0.5f, -1, 0);
+    // the parts of the graph which are referenced from the changes
+    private final TLongIntMap towerNodes = new TLongIntHashMap(100, 0.5f, -1, -1);
+    private final TLongIntMap pillarEdges = new TLongIntHashMap(100, 0.5f, -1, -1);
+    private final TLongObjectMap<GHPoint3D> pillarPoints = new TLongObjectHashMap<GHPoint3D>();
+    private final TLongObjectMap<TIntList> wayEdges = new TLongObjectHashMap<TIntList>();
+    // the edges which were created or moved
+    private final TIntSet changedEdges = new TIntHashSet();
+    private int updatedEdges;
+    private int createdEdges;
+    private int disabledEdges;
+
+    public OSMChangeApplier( GraphHopperStorage graph, EncodingManager encodingManager )
+    {
+        if (!graph.isStoreOsmIds())
+            throw new IllegalArgumentException("Changes can only be applied to a graph with OSM ids, see GraphHopperStorage.setStoreOsmIds");
+
+        this.graph = graph;
+        this.nodeAccess = graph.getNodeAccess();
+        this.encodingManager = encodingManager;
+    }
+
+    public OSMChangeApplier setElevationProvider( ElevationProvider eleProvider )
+    {
+        if (eleProvider == null)
+            throw new IllegalStateException("Use the NOOP elevation provider instead of null or don't call setElevationProvider");
+
+        this.eleProvider = eleProvider;
+        return this;
+    }
+
+    /**
+     * Applies the specified change file, which can be gzipped.
+     */
+    public void apply( File changeFile ) throws IOException
+    {
+        StopWatch sw = new StopWatch().start();
+        InputStream is = new BufferedInputStream(new FileInputStream(changeFile), 50000);
+        try
+        {
+            if (changeFile.getName().endsWith(".gz"))
+                is = new GZIPInputStream(is, 50000);
+
+            read(is);
+        } catch (XMLStreamException ex)
+        {
+            throw new IOException("Cannot parse change file " + changeFile, ex);
+        } finally
+        {
+            Helper.close(is);
+        }
+
+        applyChanges();
+        logger.info("applied " + changeFile + ", updated edges:" + updatedEdges + ", created edges:" + createdEdges
+                + ", disabled edges:" + disabledEdges + ", took:" + sw.stop().getSeconds());
+    }
+
+    void read( InputStream is ) throws XMLStreamException
+    {
+        changedNodes.clear();
+        changedWays.clear();
+        deletedWays.clear();
+        XMLStreamReader parser = XMLInputFactory.newInstance().createXMLStreamReader(is, "UTF-8");
+        if (parser.nextTag() != XMLStreamConstants.START_ELEMENT || !parser.getLocalName().equals("osmChange"))
+            throw new IllegalArgumentException("File is not a valid OSM change stream");
+
+        String action = null;
+        int event = parser.next();
+        while (event != XMLStreamConstants.END_DOCUMENT)
+        {
+            if (event == XMLStreamConstants.START_ELEMENT)
+            {
+                String name = parser.getLocalName();
+                if ("create".equals(name) || "modify".equals(name) || "delete".equals(name))
+                {
+                    action = name;
+                } else if (action != null && ("node".equals(name) || "way".equals(name)))
+                {
+                    long id = Long.parseLong(parser.getAttributeValue(null, "id"));
+                    if ("delete".equals(action))
+                    {
+                        // the ways using a deleted node are modified or deleted too
+                        if ("way".equals(name))
+                        {
+                            changedWays.remove(id);
+                            deletedWays.add(id);
+                        } else
+                            changedNodes.remove(id);
+                    } else if ("way".equals(name))
+                    {
+                        changedWays.put(id, OSMWay.create(id, parser));
+                        deletedWays.remove(id);
+                    } else
+                        changedNodes.put(id, OSMNode.create(id, parser));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && parser.getLocalName().equals(action))
+            {
+                action = null;
+            }
+            event = parser.next();
+        }
+        parser.close();
+    }
+
+    void applyChanges()
+    {
+        updatedEdges = 0;
+        createdEdges = 0;
+        disabledEdges = 0;
+        nodeRefs.clear();
+        towerNodes.clear();
+        pillarEdges.clear();
+        pillarPoints.clear();
+        wayEdges.clear();
+        changedEdges.clear();
+
+        TLongSet neededNodes = new TLongHashSet(changedNodes.keySet());
+        TLongSet neededWays = new TLongHashSet(deletedWays);
+        for (OSMWay way : changedWays.values())
+        {
+            neededWays.add(way.getId());
+            if (acceptWay(way) == 0)
+                continue;
+
+            TLongList osmNodeIds = way.getNodes();
+            for (int i = 0; i < osmNodeIds.size(); i++)
+            {
+                nodeRefs.adjustOrPutValue(osmNodeIds.get(i), 1, 1);
+                neededNodes.add(osmNodeIds.get(i));
+            }
+        }
+        findInGraph(neededNodes, neededWays);
+        moveNodes();
+
+        for (long wayId : deletedWays.toArray())
+        {
+            disableWay(wayId);
+        }
+
+        List<OSMWay> newWays = new ArrayList<OSMWay>();
+        TLongList newWayFlags = new TLongArrayList();
+        for (OSMWay way : changedWays.values())
+        {
+            long includeWay = acceptWay(way);
+            long flags = 0;
+            if (includeWay != 0)
+            {
+                setEstimatedTags(way);
+                flags = encodingManager.handleWayTags(way, includeWay, 0);
+            }
+
+            if (flags == 0)
+            {
+                disableWay(way.getId());
+            } else if (!updateInPlace(way, flags))
+            {
+                newWays.add(way);
+                newWayFlags.add(flags);
+            }
+        }
+
+        // first disable all edges so that no pillar node of them is converted into a tower node
+        for (OSMWay way : newWays)
+        {
+            disableWay(way.getId());
+        }
+
+        for (int i = 0; i < newWays.size(); i++)
+        {
+            addWay(newWays.get(i), newWayFlags.get(i));
+        }
+    }
+
+    private long acceptWay( OSMWay way )
+    {
+        // ignore multipolygon geometry like OSMReader
+        if (way.getNodes().size() < 2 || !way.hasTags())
+            return 0;
+
+        return encodingManager.acceptWay(way);
+    }
+
+    /**
+     * Collects the tower nodes, pillar nodes and edges of the graph which are used from the changes
+     * via the lookup from the OSM ids of the graph.
+     */
+    private void findInGraph( TLongSet neededNodes, TLongSet neededWays )
+    {
+        for (long osmId : neededNodes.toArray())
+        {
+            int node = graph.findOsmNode(osmId);
+            if (node >= 0)
+                towerNodes.put(osmId, node);
+
+            int edge = graph.findOsmPillarEdge(osmId);
+            if (edge >= 0)
+            {
+                EdgeIteratorState edgeState = graph.getEdgeProps(edge, Integer.MIN_VALUE);
+                int index = indexOf(graph.getOsmPillarIds(edgeState), osmId);
+                pillarEdges.put(osmId, edge);
+                pillarPoints.put(osmId, edgeState.fetchWayGeometry(0).toGHPoint(index));
+            }
+        }
+
+        for (long wayId : neededWays.toArray())
+        {
+            TIntList edges = graph.findOsmWayEdges(wayId);
+            if (!edges.isEmpty())
+                wayEdges.put(wayId, edges);
+        }
+    }
+
+    /**
+     * Sets the new coordinates of changed nodes which are already in the graph and updates the
+     * distance of their edges.
+     */
+    private void moveNodes()
+    {
+        TIntSet movedEdges = new TIntHashSet();
+        EdgeExplorer explorer = graph.createEdgeExplorer();
+        for (long osmId : changedNodes.keys())
+        {
+            GHPoint3D point = getPoint(osmId);
+            int node = towerNodes.get(osmId);
+            if (node >= 0)
+            {
+                setNode(node, point);
+                EdgeIterator iter = explorer.setBaseNode(node);
+                while (iter.next())
+                {
+                    movedEdges.add(iter.getEdge());
+                }
+            }
+
+            int edge = pillarEdges.get(osmId);
+            if (edge >= 0)
+            {
+                pillarPoints.put(osmId, point);
+                EdgeIteratorState edgeState = graph.getEdgeProps(edge, Integer.MIN_VALUE);
+                int index = indexOf(graph.getOsmPillarIds(edgeState), osmId);
+                PointList pillarNodes = edgeState.fetchWayGeometry(0);
+                pillarNodes.set(index, point.lat, point.lon, point.ele);
+                edgeState.setWayGeometry(pillarNodes);
+                movedEdges.add(edge);
+            }
+        }
+
+        for (int edge : movedEdges.toArray())
+        {
+            EdgeIteratorState edgeState = graph.getEdgeProps(edge, Integer.MIN_VALUE);
+            edgeState.setDistance(calcDistance(edgeState.fetchWayGeometry(3)));
+        }
+        changedEdges.addAll(movedEdges);
+    }
+
+    private void setNode( int node, GHPoint3D point )
+    {
+        if (nodeAccess.is3D())
+            nodeAccess.setNode(node, point.lat, point.lon, point.ele);
+        else
+            nodeAccess.setNode(node, point.lat, point.lon);
+    }
+
+    /**
+     * @return the coordinates of the specified node from the changes or from the graph or null if
+     * unknown
+     */
+    private GHPoint3D getPoint( long osmId )
+    {
+        OSMNode osmNode = changedNodes.get(osmId);
+        if (osmNode != null)
+        {
+            double ele = nodeAccess.is3D() ? eleProvider.getEle(osmNode.getLat(), osmNode.getLon()) : Double.NaN;
+            return new GHPoint3D(osmNode.getLat(), osmNode.getLon(), ele);
+        }
+
+        int node = towerNodes.get(osmId);
+        if (node >= 0)
+        {
+            double ele = nodeAccess.is3D() ? nodeAccess.getElevation(node) : Double.NaN;
+            return new GHPoint3D(nodeAccess.getLatitude(node), nodeAccess.getLongitude(node), ele);
+        }
+        return pillarPoints.get(osmId);
+    }
+
+    /**
+     * @return the nodes of the specified way without the nodes which are neither in the changes
+     * nor in the graph, e.g. as they are outside of the imported area
+     */
+    private TLongList getKnownNodes( OSMWay way )
+    {
+        TLongList osmNodeIds = way.getNodes();
+        TLongList knownIds = new TLongArrayList(osmNodeIds.size());
+        for (int i = 0; i < osmNodeIds.size(); i++)
+        {
+            if (getPoint(osmNodeIds.get(i)) != null)
+                knownIds.add(osmNodeIds.get(i));
+        }
+        return knownIds;
+    }
+
+    private void setEstimatedTags( OSMWay way )
+    {
+        // estimate length of the track e.g. for ferry speed calculation like OSMReader
+        TLongList osmNodeIds = way.getNodes();
+        GHPoint3D first = getPoint(osmNodeIds.get(0));
+        GHPoint3D last = getPoint(osmNodeIds.get(osmNodeIds.size() - 1));
+        if (first != null && last != null)
+        {
+            way.setTag("estimated_distance", distCalc.calcDist(first.lat, first.lon, last.lat, last.lon));
+            way.setTag("estimated_center", new GHPoint((first.lat + last.lat) / 2, (first.lon + last.lon) / 2));
+        }
+    }
+
+    /**
+     * A node of a way needs to be a tower node if it is the first or the last one, if it is used
+     * from another changed way or from an existing edge of another way.
+     */
+    private boolean isTowerNode( long osmId, boolean endStanding, long wayId )
+    {
+        if (endStanding || towerNodes.containsKey(osmId) || nodeRefs.get(osmId) > 1)
+            return true;
+
+        int edge = pillarEdges.get(osmId);
+        if (edge < 0)
+            return false;
+
+        long edgeWayId = graph.getOsmWayId(edge);
+        return edgeWayId != 0 && edgeWayId != wayId;
+    }
+
+    /**
+     * Updates the flags of the existing edges if the way still consists of the same tower and
+     * pillar nodes.
+     * <p/>
+     * @return false if the edges have to be recreated
+     */
+    private boolean updateInPlace( OSMWay way, long flags )
+    {
+        TIntList edges = wayEdges.get(way.getId());
+        if (edges == null)
+            return false;
+
+        TLongList osmNodeIds = getKnownNodes(way);
+        List<EdgeIteratorState> matched = new ArrayList<EdgeIteratorState>(edges.size());
+        TIntSet used = new TIntHashSet();
+        int start = 0;
+        for (int i = 1; i < osmNodeIds.size(); i++)
+        {
+            long osmId = osmNodeIds.get(i);
+            if (!isTowerNode(osmId, i == osmNodeIds.size() - 1, way.getId()))
+                continue;
+
+            // a new tower node requires new edges
+            if (!towerNodes.containsKey(osmId) || !towerNodes.containsKey(osmNodeIds.get(start)))
+                return false;
+
+            EdgeIteratorState edge = findEdge(edges, used, osmNodeIds.toArray(start, i - start + 1));
+            if (edge == null)
+                return false;
+
+            used.add(edge.getEdge());
+            matched.add(edge);
+            start = i;
+        }
+
+        if (matched.size() != edges.size())
+            return false;
+
+        for (EdgeIteratorState edge : matched)
+        {
+            edge.setFlags(flags);
+            encodingManager.applyWayTags(way, edge);
+            updatedEdges++;
+        }
+        return true;
+    }
+
+    /**
+     * @return the edge which consists of the specified nodes in the direction of the nodes or null
+     */
+    private EdgeIteratorState findEdge( TIntList edges, TIntSet used, long[] osmIds )
+    {
+        for (int i = 0; i < edges.size(); i++)
+        {
+            int edge = edges.get(i);
+            if (used.contains(edge))
+                continue;
+
+            EdgeIteratorState edgeState = graph.getEdgeProps(edge, Integer.MIN_VALUE);
+            long[] pillarIds = graph.getOsmPillarIds(edgeState);
+            if (pillarIds.length != osmIds.length - 2)
+                continue;
+
+            long baseId = graph.getOsmNodeId(edgeState.getBaseNode());
+            long adjId = graph.getOsmNodeId(edgeState.getAdjNode());
+            if (baseId == osmIds[0] && adjId == osmIds[osmIds.length - 1]
+                    && Arrays.equals(pillarIds, Arrays.copyOfRange(osmIds, 1, osmIds.length - 1)))
+                return edgeState;
+
+            reverse(pillarIds);
+            if (adjId == osmIds[0] && baseId == osmIds[osmIds.length - 1]
+                    && Arrays.equals(pillarIds, Arrays.copyOfRange(osmIds, 1, osmIds.length - 1)))
+                return graph.getEdgeProps(edge, edgeState.getBaseNode());
+        }
+        return null;
+    }
+
+    private void disableWay( long wayId )
+    {
+        TIntList edges = wayEdges.remove(wayId);
+        if (edges == null)
+            return;
+
+        for (int i = 0; i < edges.size(); i++)
+        {
+            disableEdge(edges.get(i));
+        }
+    }
+
+    /**
+     * The edge is disconnected but keeps its id until the graph is optimized, so the ids of the
+     * other edges do not change.
+     */
+    private void disableEdge( int edge )
+    {
+        graph.setOsmWayId(edge, 0);
+        graph.removeEdge(edge);
+        changedEdges.remove(edge);
+        disabledEdges++;
+    }
+
+    private void addWay( OSMWay way, long flags )
+    {
+        TLongList osmNodeIds = getKnownNodes(way);
+        if (osmNodeIds.size() < 2)
+        {
+            logger.warn("Cannot add way " + way.getId() + " as the coordinates of its nodes are unknown");
+            return;
+        }
+
+        PointList pointList = new PointList(osmNodeIds.size(), nodeAccess.is3D());
+        TLongList pointOsmIds = new TLongArrayList(osmNodeIds.size());
+        int firstNode = -1;
+        for (int i = 0; i < osmNodeIds.size(); i++)
+        {
+            long osmId = osmNodeIds.get(i);
+            GHPoint3D point = getPoint(osmId);
+            pointList.add(point);
+            pointOsmIds.add(osmId);
+            if (!isTowerNode(osmId, i == 0 || i == osmNodeIds.size() - 1, way.getId()))
+                continue;
+
+            int node = getOrCreateTowerNode(osmId, point);
+            if (firstNode >= 0)
+            {
+                EdgeIteratorState edge = addEdge(firstNode, node, pointList,
+                        pointOsmIds.toArray(1, pointOsmIds.size() - 2), flags, way.getId());
+                encodingManager.applyWayTags(way, edge);
+                pointList.clear();
+                pointList.add(point);
+                pointOsmIds.clear();
+                pointOsmIds.add(osmId);
+            }
+            firstNode = node;
+        }
+    }
+
+    private int getOrCreateTowerNode( long osmId, GHPoint3D point )
+    {
+        int node = towerNodes.get(osmId);
+        if (node >= 0)
+            return node;
+
+        node = graph.getNodes();
+        setNode(node, point);
+        graph.setOsmNodeId(node, osmId);
+        towerNodes.put(osmId, node);
+
+        // the way is connected to a pillar node of an existing edge
+        int edge = pillarEdges.get(osmId);
+        if (edge >= 0 && graph.getOsmWayId(edge) != 0)
+            splitEdge(edge, osmId, node);
+
+        return node;
+    }
+
+    /**
+     * Replaces the specified edge with two edges which are connected via the new tower node at the
+     * position of the specified pillar node.
+     */
+    private void splitEdge( int edge, long osmId, int towerNode )
+    {
+        EdgeIteratorState edgeState = graph.getEdgeProps(edge, Integer.MIN_VALUE);
+        long wayId = graph.getOsmWayId(edge);
+        long[] pillarIds = graph.getOsmPillarIds(edgeState);
+        PointList points = edgeState.fetchWayGeometry(3);
+        int index = indexOf(pillarIds, osmId);
+        long flags = edgeState.getFlags();
+        String name = edgeState.getName();
+
+        // the tower node is at index + 1 in the points
+        EdgeIteratorState first = addEdge(edgeState.getBaseNode(), towerNode, points.copy(0, index + 2),
+                Arrays.copyOfRange(pillarIds, 0, index), flags, wayId).setName(name);
+        EdgeIteratorState second = addEdge(towerNode, edgeState.getAdjNode(), points.copy(index + 1, points.getSize()),
+                Arrays.copyOfRange(pillarIds, index + 1, pillarIds.length), flags, wayId).setName(name);
+        disableEdge(edge);
+
+        TIntList edges = wayEdges.get(wayId);
+        if (edges != null)
+        {
+            edges.remove(edge);
+            edges.add(first.getEdge());
+            edges.add(second.getEdge());
+        }
+        updatePillarEdges(first);
+        updatePillarEdges(second);
+    }
+
+    private void updatePillarEdges( EdgeIteratorState edge )
+    {
+        for (long osmId : graph.getOsmPillarIds(edge))
+        {
+            if (pillarEdges.containsKey(osmId))
+                pillarEdges.put(osmId, edge.getEdge());
+        }
+    }
+
+    /**
+     * @param pointList the points including the tower nodes
+     * @param pillarIds the OSM ids of the pillar nodes
+     */
+    private EdgeIteratorState addEdge( int fromNode, int toNode, PointList pointList, long[] pillarIds, long flags,
+                                       long wayId )
+    {
+        EdgeIteratorState edge = graph.edge(fromNode, toNode).setDistance(calcDistance(pointList)).setFlags(flags);
+        if (pointList.getSize() > 2)
+            edge.setWayGeometry(pointList.copy(1, pointList.getSize() - 1));
+
+        graph.setOsmWayId(edge.getEdge(), wayId);
+        graph.setOsmPillarIds(edge, pillarIds);
+        changedEdges.add(edge.getEdge());
+        createdEdges++;
+        return edge;
+    }
+
+    private double calcDistance( PointList pointList )
+    {
+        // avoid zero distances like OSMReader
+        return Math.max(pointList.calcDistance(distCalc), 0.0001);
+    }
+
+    private static int indexOf( long[] osmIds, long osmId )
+    {
+        for (int i = 0; i < osmIds.length; i++)
+        {
+            if (osmIds[i] == osmId)
+                return i;
+        }
+        throw new IllegalStateException("Pillar node " + osmId + " not found in " + Arrays.toString(osmIds));
+    }
+
+    private static void reverse( long[] arr )
+    {
+        for (int i = 0; i < arr.length / 2; i++)
+        {
+            long tmp = arr[i];
+            arr[i] = arr[arr.length - 1 - i];
+            arr[arr.length - 1 - i] = tmp;
+        }
+    }
+
+    public int getUpdatedEdges()
+    {
+        return updatedEdges;
+    }
+
+    public int getCreatedEdges()
+    {
+        return createdEdges;
+    }
+
+    public int getDisabledEdges()
+    {
+        return disabledEdges;
+    }
+
+    /**
+     * @return the edges which were created or whose geometry changed with the last change file
+     */
+    public TIntSet getChangedEdges()
+    {
+        return changedEdges;
+    }
+}
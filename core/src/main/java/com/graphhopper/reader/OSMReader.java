@@ -39,7 +39,7 @@ import javax.xml.stream.XMLStreamException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.graphhopper.coll.GHLongIntBTree;
+import com.graphhopper.coll.OSMIDBlockMap;
 import com.graphhopper.coll.LongIntMap;
 import com.graphhopper.reader.OSMTurnRelation.TurnCostTableEntry;
 import com.graphhopper.reader.dem.ElevationProvider;
@@ -51,6 +51,11 @@ import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * This class parses an OSM xml or pbf file and creates a graph from it. It does so in a two phase
@@ -89,6 +94,12 @@ public class OSMReader implements DataReader
     private final NodeAccess nodeAccess;
     private EncodingManager encodingManager = null;
     private int workerThreads = -1;
+    private int encodingThreads = 1;
+    private int wayBatchSize = 1000;
+    // ways are encoded in batches on a worker pool and written in the original order
+    private ExecutorService encodingService;
+    private List<OSMWay> wayBatch;
+    private final LinkedList<WayBatch> pendingWayBatches = new LinkedList<WayBatch>();
     protected long zeroCounter = 0;
     // Using the correct Map<Long, Integer> is hard. We need a memory efficient and fast solution for big data sets!
     //
@@ -97,9 +108,10 @@ public class OSMReader implements DataReader
     // same here: not applicable as ways introduces the nodes in 'wrong' order: new OSMIDSegmentedMap
     // memory overhead due to open addressing and full rehash:
     //        nodeOsmIdToIndexMap = new BigLongIntMap(expectedNodes, EMPTY);
-    // smaller memory overhead for bigger data sets because of avoiding a "rehash"
+    // smaller memory overhead for bigger data sets because of avoiding a "rehash": new GHLongIntBTree(200)
+    // no search and off-heap for MMAP, DIRECT or UNSAFE as OSM IDs are dense: new OSMIDBlockMap
     // remember how many times a node was used to identify tower nodes
-    private LongIntMap osmNodeIdToInternalNodeMap;
+    private OSMIDBlockMap osmNodeIdToInternalNodeMap;
     private TLongLongHashMap osmNodeIdToNodeFlagsMap;
     private TLongLongHashMap osmWayIdToRouteWeightMap;
     // stores osm way ids used by relations to identify which edge ids needs to be mapped later
@@ -120,13 +132,19 @@ public class OSMReader implements DataReader
     private File osmFile;
     private Map<FlagEncoder, EdgeExplorer> outExplorerMap = new HashMap<FlagEncoder, EdgeExplorer>();
     private Map<FlagEncoder, EdgeExplorer> inExplorerMap = new HashMap<FlagEncoder, EdgeExplorer>();
+    // not null if the OSM ids need to be stored in the graph
+    private final GraphHopperStorage osmIdStorage;
 
     public OSMReader( GraphStorage storage )
     {
         this.graphStorage = storage;
         this.nodeAccess = graphStorage.getNodeAccess();
+        if (storage instanceof GraphHopperStorage && ((GraphHopperStorage) storage).isStoreOsmIds())
+            osmIdStorage = (GraphHopperStorage) storage;
+        else
+            osmIdStorage = null;
 
-        osmNodeIdToInternalNodeMap = new GHLongIntBTree(200);
+        osmNodeIdToInternalNodeMap = new OSMIDBlockMap(graphStorage.getDirectory(), EMPTY, 12);
         osmNodeIdToNodeFlagsMap = new TLongLongHashMap(200, .5f, 0, 0);
         osmWayIdToRouteWeightMap = new TLongLongHashMap(200, .5f, 0, 0);
         pillarInfo = new PillarInfo(nodeAccess.is3D(), graphStorage.getDirectory());
@@ -275,6 +293,11 @@ public class OSMReader implements DataReader
         long relationStart = -1;
         long counter = 1;
         OSMInputFile in = null;
+        if (encodingThreads > 1)
+        {
+            encodingService = Executors.newFixedThreadPool(encodingThreads);
+            wayBatch = new ArrayList<OSMWay>(wayBatchSize);
+        }
         try
         {
             in = new OSMInputFile(osmFile).setWorkerThreads(workerThreads).open();
@@ -283,6 +306,9 @@ public class OSMReader implements DataReader
             OSMElement item;
             while ((item = in.getNext()) != null)
             {
+                if (encodingService != null && !item.isType(OSMElement.WAY))
+                    flushWays();
+
                 switch (item.getType())
                 {
                     case OSMElement.NODE:
@@ -298,7 +324,10 @@ public class OSMReader implements DataReader
                             logger.info(nf(counter) + ", now parsing ways");
                             wayStart = counter;
                         }
-                        processWay((OSMWay) item);
+                        if (encodingService == null)
+                            processWay((OSMWay) item);
+                        else
+                            enqueueWay((OSMWay) item);
                         break;
                     case OSMElement.RELATION:
                         if (relationStart < 0)
@@ -315,6 +344,9 @@ public class OSMReader implements DataReader
                 }
             }
 
+            if (encodingService != null)
+                flushWays();
+
             // logger.info("storage nodes:" + storage.nodes() + " vs. graph nodes:" + storage.getGraph().nodes());
         } catch (Exception ex)
         {
@@ -322,6 +354,13 @@ public class OSMReader implements DataReader
         } finally
         {
             Helper.close(in);
+            if (encodingService != null)
+            {
+                encodingService.shutdownNow();
+                encodingService = null;
+                wayBatch = null;
+                pendingWayBatches.clear();
+            }
         }
 
         finishedReading();
@@ -341,14 +380,128 @@ public class OSMReader implements DataReader
         if (!way.hasTags())
             return;
 
-        long wayOsmId = way.getId();
-
         long includeWay = encodingManager.acceptWay(way);
         if (includeWay == 0)
             return;
 
-        long relationFlags = getRelFlagsMap().get(way.getId());
+        setEstimatedTags(way);
+        long wayFlags = encodingManager.handleWayTags(way, includeWay, getRelFlagsMap().get(way.getId()));
+        if (wayFlags == 0)
+            return;
+
+        addWay(way, wayFlags);
+    }
+
+    /**
+     * Collects the way into the current batch. If the batch is full its tags are encoded on the
+     * worker pool. Already encoded batches are written to the graph in the order they were read.
+     */
+    private void enqueueWay( OSMWay way )
+    {
+        if (way.getNodes().size() < 2)
+            return;
+
+        // ignore multipolygon geometry
+        if (!way.hasTags())
+            return;
+
+        // the node map is only accessed from this thread
+        setEstimatedTags(way);
+        wayBatch.add(way);
+        if (wayBatch.size() < wayBatchSize)
+            return;
+
+        submitWayBatch();
+        // limit the memory used for parsed but not yet written ways
+        while (pendingWayBatches.size() > 2 * encodingThreads)
+        {
+            writeWayBatch(pendingWayBatches.removeFirst());
+        }
+    }
+
+    private void submitWayBatch()
+    {
+        if (wayBatch.isEmpty())
+            return;
+
+        final List<OSMWay> ways = wayBatch;
+        wayBatch = new ArrayList<OSMWay>(wayBatchSize);
+        Future<long[]> future = encodingService.submit(new Callable<long[]>()
+        {
+            @Override
+            public long[] call()
+            {
+                long[] flags = new long[ways.size()];
+                for (int i = 0; i < flags.length; i++)
+                {
+                    OSMWay way = ways.get(i);
+                    long includeWay = encodingManager.acceptWay(way);
+                    if (includeWay != 0)
+                        flags[i] = encodingManager.handleWayTags(way, includeWay, getRelFlagsMap().get(way.getId()));
+                }
+                return flags;
+            }
+        });
+        pendingWayBatches.add(new WayBatch(ways, future));
+    }
+
+    private void writeWayBatch( WayBatch batch )
+    {
+        long[] flags;
+        try
+        {
+            flags = batch.flags.get();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while encoding ways", ex);
+        } catch (ExecutionException ex)
+        {
+            throw new RuntimeException("Problem while encoding ways", ex.getCause());
+        }
+
+        for (int i = 0; i < flags.length; i++)
+        {
+            if (flags[i] != 0)
+                addWay(batch.ways.get(i), flags[i]);
+        }
+    }
+
+    /**
+     * Writes all collected ways to the graph. Must be called before elements are processed which
+     * depend on the created edges.
+     */
+    private void flushWays()
+    {
+        if (wayBatch.isEmpty() && pendingWayBatches.isEmpty())
+            return;
+
+        submitWayBatch();
+        while (!pendingWayBatches.isEmpty())
+        {
+            writeWayBatch(pendingWayBatches.removeFirst());
+        }
+    }
+
+    private static class WayBatch
+    {
+        final List<OSMWay> ways;
+        final Future<long[]> flags;
 
+        public WayBatch( List<OSMWay> ways, Future<long[]> flags )
+        {
+            this.ways = ways;
+            this.flags = flags;
+        }
+    }
+
+    /**
+     * Estimates the length and the center of the way from its first and last node which is e.g.
+     * necessary for the ferry speed calculation. Must be called from the thread creating the graph
+     * as the node map is not thread safe.
+     */
+    private void setEstimatedTags( OSMWay way )
+    {
         // TODO move this after we have created the edge and know the coordinates => encodingManager.applyWayTags
         // estimate length of the track e.g. for ferry speed calculation
         TLongList osmNodeIds = way.getNodes();
@@ -365,11 +518,15 @@ public class OSMReader implements DataReader
                 way.setTag("estimated_center", new GHPoint((firstLat + lastLat) / 2, (firstLon + lastLon) / 2));
             }
         }
+    }
 
-        long wayFlags = encodingManager.handleWayTags(way, includeWay, relationFlags);
-        if (wayFlags == 0)
-            return;
-
+    /**
+     * Creates the edges for the specified way with the already encoded flags.
+     */
+    private void addWay( OSMWay way, long wayFlags )
+    {
+        long wayOsmId = way.getId();
+        TLongList osmNodeIds = way.getNodes();
         List<EdgeIteratorState> createdEdges = new ArrayList<EdgeIteratorState>();
         // look for barriers along the way
         final int size = osmNodeIds.size();
@@ -651,6 +808,9 @@ public class OSMReader implements DataReader
         else
             nodeAccess.setNode(nextTowerId, lat, lon);
 
+        if (osmIdStorage != null)
+            osmIdStorage.setOsmNodeId(nextTowerId, osmId);
+
         int id = -(nextTowerId + 3);
         getNodeMap().put(osmId, id);
         nextTowerId++;
@@ -663,10 +823,13 @@ public class OSMReader implements DataReader
     Collection<EdgeIteratorState> addOSMWay( final TLongList osmNodeIds, final long flags, final long wayOsmId )
     {
         PointList pointList = new PointList(osmNodeIds.size(), nodeAccess.is3D());
+        // the OSM ids of the points in pointList
+        TLongList pointOsmIds = new TLongArrayList(osmNodeIds.size());
         List<EdgeIteratorState> newEdges = new ArrayList<EdgeIteratorState>(5);
         int firstNode = -1;
         int lastIndex = osmNodeIds.size() - 1;
         int lastInBoundsPillarNode = -1;
+        long lastInBoundsPillarOsmId = -1;
         try
         {
             for (int i = 0; i < osmNodeIds.size(); i++)
@@ -689,14 +852,17 @@ public class OSMReader implements DataReader
                     {
                         // transform the pillar node to a tower node
                         tmpNode = lastInBoundsPillarNode;
-                        tmpNode = handlePillarNode(tmpNode, osmId, null, true);
+                        tmpNode = handlePillarNode(tmpNode, lastInBoundsPillarOsmId, null, true);
                         tmpNode = -tmpNode - 3;
                         if (pointList.getSize() > 1 && firstNode >= 0)
                         {
                             // TOWER node
-                            newEdges.add(addEdge(firstNode, tmpNode, pointList, flags, wayOsmId));
+                            newEdges.add(addEdge(firstNode, tmpNode, pointList, flags, wayOsmId, pointOsmIds));
+                            long lastOsmId = pointOsmIds.get(pointOsmIds.size() - 1);
                             pointList.clear();
                             pointList.add(nodeAccess, tmpNode);
+                            pointOsmIds.clear();
+                            pointOsmIds.add(lastOsmId);
                         }
                         firstNode = tmpNode;
                         lastInBoundsPillarNode = -1;
@@ -713,10 +879,13 @@ public class OSMReader implements DataReader
                     if (!convertToTowerNode)
                     {
                         lastInBoundsPillarNode = tmpNode;
+                        lastInBoundsPillarOsmId = osmId;
                     }
 
                     // PILLAR node, but convert to towerNode if end-standing
                     tmpNode = handlePillarNode(tmpNode, osmId, pointList, convertToTowerNode);
+                    if (!convertToTowerNode)
+                        pointOsmIds.add(osmId);
                 }
 
                 if (tmpNode < TOWER_NODE)
@@ -724,11 +893,14 @@ public class OSMReader implements DataReader
                     // TOWER node
                     tmpNode = -tmpNode - 3;
                     pointList.add(nodeAccess, tmpNode);
+                    pointOsmIds.add(osmId);
                     if (firstNode >= 0)
                     {
-                        newEdges.add(addEdge(firstNode, tmpNode, pointList, flags, wayOsmId));
+                        newEdges.add(addEdge(firstNode, tmpNode, pointList, flags, wayOsmId, pointOsmIds));
                         pointList.clear();
                         pointList.add(nodeAccess, tmpNode);
+                        pointOsmIds.clear();
+                        pointOsmIds.add(osmId);
                     }
                     firstNode = tmpNode;
                 }
@@ -743,6 +915,15 @@ public class OSMReader implements DataReader
     }
 
     EdgeIteratorState addEdge( int fromIndex, int toIndex, PointList pointList, long flags, long wayOsmId )
+    {
+        return addEdge(fromIndex, toIndex, pointList, flags, wayOsmId, null);
+    }
+
+    /**
+     * @param pointOsmIds the OSM ids of the points, only used if OSM ids are stored in the graph
+     */
+    EdgeIteratorState addEdge( int fromIndex, int toIndex, PointList pointList, long flags, long wayOsmId,
+                               TLongList pointOsmIds )
     {
         // sanity checks
         if (fromIndex < 0 || toIndex < 0)
@@ -796,11 +977,18 @@ public class OSMReader implements DataReader
         EdgeIteratorState iter = graphStorage.edge(fromIndex, toIndex).setDistance(towerNodeDistance).setFlags(flags);
         if (nodes > 2)
         {
-            if (doSimplify)
+            // every pillar node needs to be kept to find it via its OSM id later
+            if (doSimplify && osmIdStorage == null)
                 simplifyAlgo.simplify(pillarNodes);
 
             iter.setWayGeometry(pillarNodes);
         }
+        if (osmIdStorage != null)
+        {
+            osmIdStorage.setOsmWayId(iter.getEdge(), wayOsmId);
+            if (nodes > 2 && pointOsmIds != null)
+                osmIdStorage.setOsmPillarIds(iter, pointOsmIds.toArray(1, nodes - 2));
+        }
         storeOsmWayID(iter.getEdge(), wayOsmId);
         return iter;
     }
@@ -850,6 +1038,7 @@ public class OSMReader implements DataReader
         printInfo("way");
         pillarInfo.clear();
         eleProvider.release();
+        osmNodeIdToInternalNodeMap.clear();
         osmNodeIdToInternalNodeMap = null;
         osmNodeIdToNodeFlagsMap = null;
         osmWayIdToRouteWeightMap = null;
@@ -985,6 +1174,32 @@ public class OSMReader implements DataReader
         return this;
     }
 
+    /**
+     * Specifies the number of threads used to parse the way tags and to encode the flags while
+     * creating the graph. The edges are still created from one thread in the order of the file.
+     * The default is 1 which encodes the ways in the reading thread.
+     */
+    public OSMReader setEncodingThreads( int encodingThreads )
+    {
+        if (encodingThreads < 1)
+            throw new IllegalArgumentException("encodingThreads has to be at least 1 but was " + encodingThreads);
+
+        this.encodingThreads = encodingThreads;
+        return this;
+    }
+
+    /**
+     * Specifies how many ways are encoded together by one thread.
+     */
+    public OSMReader setWayBatchSize( int wayBatchSize )
+    {
+        if (wayBatchSize < 1)
+            throw new IllegalArgumentException("wayBatchSize has to be at least 1 but was " + wayBatchSize);
+
+        this.wayBatchSize = wayBatchSize;
+        return this;
+    }
+
     public OSMReader setElevationProvider( ElevationProvider eleProvider )
     {
         if (eleProvider == null)
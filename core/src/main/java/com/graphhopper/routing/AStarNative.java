@@ -0,0 +1,183 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.BeelineWeightApproximator;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.WeightApproximator;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DistancePlaneProjection;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * The same as AStar but with the primitive arrays and the IntDoubleBinHeap of AStarNative. The
+ * heap key is the weight from the start plus the approximated weight to the goal whereas the
+ * arrays store only the weight from the start.
+ * <p/>
+ * calcPath can be called multiple times on the same instance. Only node based traversal is
+ * supported.
+ * <p/>
+ * @author Peter Karich
+ */
+public class AStarNative extends AbstractRoutingAlgorithm implements ReusableRoutingAlgorithm
+{
+    private final NodeStateArrays state;
+    private final IntDoubleBinHeap heap;
+    private WeightApproximator weightApprox;
+    private int visitedNodes;
+    private int currNode = -1;
+    private int from = -1;
+    private int to = -1;
+
+    public AStarNative( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        super(g, encoder, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Only node based traversal is supported for " + getName());
+
+        state = new NodeStateArrays(g.getNodes());
+        heap = new IntDoubleBinHeap(1000);
+        BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
+        defaultApprox.setDistanceCalc(new DistancePlaneProjection());
+        setApproximation(defaultApprox);
+    }
+
+    /**
+     * @param approx defines how distance to goal Node is approximated
+     */
+    public AStarNative setApproximation( WeightApproximator approx )
+    {
+        weightApprox = approx;
+        return this;
+    }
+
+    /**
+     * Note: the approximation has to be set again afterwards as it depends on the graph.
+     */
+    @Override
+    public void reset( Graph graph, Weighting weighting )
+    {
+        resetGraph(graph, weighting);
+        BeelineWeightApproximator defaultApprox = new BeelineWeightApproximator(nodeAccess, weighting);
+        defaultApprox.setDistanceCalc(new DistancePlaneProjection());
+        setApproximation(defaultApprox);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        if (from >= graph.getNodes() || to >= graph.getNodes())
+            return createEmptyPath();
+
+        state.reset(graph.getNodes());
+        heap.clear();
+        visitedNodes = 0;
+        this.from = from;
+        this.to = to;
+        currNode = from;
+        weightApprox.setGoalNode(to);
+        state.setStart(from, 0);
+        runAlgo();
+        return extractPath();
+    }
+
+    protected void runAlgo()
+    {
+        while (true)
+        {
+            visitedNodes++;
+            state.setSettled(currNode);
+            if (isWeightLimitExceeded() || finished())
+                break;
+
+            double currWeight = state.getWeight(currNode);
+            int currEdge = state.getParentEdge(currNode);
+            EdgeIterator iter = outEdgeExplorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                if (state.isSettled(adjNode))
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter, false, currEdge) + currWeight;
+                if (Double.isInfinite(tmpWeight) || tmpWeight >= state.getWeight(adjNode))
+                    continue;
+
+                state.set(adjNode, tmpWeight, currNode, iter.getEdge());
+                heap.insert_(tmpWeight + weightApprox.approximate(adjNode), adjNode);
+            }
+
+            currNode = pollUnsettled();
+            if (currNode < 0)
+                break;
+        }
+    }
+
+    private int pollUnsettled()
+    {
+        while (!heap.isEmpty())
+        {
+            int node = heap.poll_element();
+            if (!state.isSettled(node))
+                return node;
+        }
+        return -1;
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currNode == to;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (currNode < 0 || isWeightLimitExceeded() || !finished())
+            return createEmptyPath();
+
+        PathNative p = new PathNative(graph, flagEncoder, state.getParentNodes(), state.getParentEdges());
+        p.setWeight(state.getWeight(to));
+        p.setFromNode(from);
+        return p.setEndNode(to).extract();
+    }
+
+    @Override
+    protected boolean isWeightLimitExceeded()
+    {
+        return state.getWeight(currNode) > weightLimit;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName()
+    {
+        return AlgorithmOptions.ASTAR_NATIVE;
+    }
+}
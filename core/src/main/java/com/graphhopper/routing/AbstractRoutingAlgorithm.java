@@ -31,11 +31,11 @@ import com.graphhopper.util.EdgeIteratorState;
 public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
 {
     private EdgeFilter additionalEdgeFilter;
-    protected final Graph graph;
+    protected Graph graph;
     protected NodeAccess nodeAccess;
     protected EdgeExplorer inEdgeExplorer;
     protected EdgeExplorer outEdgeExplorer;
-    protected final Weighting weighting;
+    protected Weighting weighting;
     protected final FlagEncoder flagEncoder;
     protected final TraversalMode traversalMode;
     protected double weightLimit = Double.MAX_VALUE;
@@ -58,6 +58,25 @@ public abstract class AbstractRoutingAlgorithm implements RoutingAlgorithm
         inEdgeExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, true, false));
     }
 
+    /**
+     * Prepares this algorithm for a new search on the specified graph with the specified weighting
+     * and forgets the weight limit and edge filter of the previous search. Used from
+     * ReusableRoutingAlgorithm implementations.
+     */
+    protected void resetGraph( Graph graph, Weighting weighting )
+    {
+        this.weighting = weighting;
+        this.weightLimit = Double.MAX_VALUE;
+        this.additionalEdgeFilter = null;
+        if (this.graph == graph)
+            return;
+
+        this.graph = graph;
+        this.nodeAccess = graph.getNodeAccess();
+        outEdgeExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, false, true));
+        inEdgeExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(flagEncoder, true, false));
+    }
+
     @Override
     public void setWeightLimit( double weight )
     {
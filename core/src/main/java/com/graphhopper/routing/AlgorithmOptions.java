@@ -55,6 +55,18 @@ public class AlgorithmOptions
      * Bidirectional A*
      */
     public static final String ASTAR_BI = "astarbi";
+    /**
+     * Unidirectional Dijkstra storing the state in primitive arrays
+     */
+    public static final String DIJKSTRA_NATIVE = "dijkstraNative";
+    /**
+     * Bidirectional Dijkstra storing the state in primitive arrays
+     */
+    public static final String DIJKSTRA_BI_NATIVE = "dijkstrabiNative";
+    /**
+     * Unidirectional A* storing the state in primitive arrays
+     */
+    public static final String ASTAR_NATIVE = "astarNative";
     private String algorithm = DIJKSTRA_BI;
     private Weighting weighting;
     private TraversalMode traversalMode = TraversalMode.NODE_BASED;
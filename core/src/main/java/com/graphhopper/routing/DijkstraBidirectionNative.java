@@ -0,0 +1,231 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * The same as DijkstraBidirectionRef but with the primitive arrays and the IntDoubleBinHeap of
+ * DijkstraNative for both directions.
+ * <p/>
+ * calcPath can be called multiple times on the same instance. Only node based traversal is
+ * supported.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraBidirectionNative extends AbstractBidirAlgo implements ReusableRoutingAlgorithm
+{
+    private final NodeStateArrays stateFrom;
+    private final NodeStateArrays stateTo;
+    private final IntDoubleBinHeap heapFrom;
+    private final IntDoubleBinHeap heapTo;
+    private int currFrom;
+    private int currTo;
+    private int meetingNode;
+    private double bestWeight;
+    private PathBidirNative bestPath;
+
+    public DijkstraBidirectionNative( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        super(graph, encoder, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Only node based traversal is supported for " + getName());
+
+        stateFrom = new NodeStateArrays(graph.getNodes());
+        stateTo = new NodeStateArrays(graph.getNodes());
+        heapFrom = new IntDoubleBinHeap(1000);
+        heapTo = new IntDoubleBinHeap(1000);
+    }
+
+    @Override
+    public void reset( Graph graph, Weighting weighting )
+    {
+        resetGraph(graph, weighting);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        if (from >= graph.getNodes() || to >= graph.getNodes())
+            return createEmptyPath();
+
+        stateFrom.reset(graph.getNodes());
+        stateTo.reset(graph.getNodes());
+        heapFrom.clear();
+        heapTo.clear();
+        visitedCountFrom = 0;
+        visitedCountTo = 0;
+        finishedFrom = false;
+        finishedTo = false;
+        meetingNode = -1;
+        bestWeight = Double.MAX_VALUE;
+        createAndInitPath();
+        initFrom(from, 0);
+        initTo(to, 0);
+        runAlgo();
+        return extractPath();
+    }
+
+    @Override
+    void initFrom( int from, double weight )
+    {
+        currFrom = from;
+        stateFrom.setStart(from, weight);
+    }
+
+    @Override
+    void initTo( int to, double weight )
+    {
+        currTo = to;
+        stateTo.setStart(to, weight);
+        if (stateFrom.isVisited(to))
+            updateBestPath(to, stateFrom.getWeight(to) + weight);
+    }
+
+    @Override
+    protected Path createAndInitPath()
+    {
+        bestPath = new PathBidirNative(graph, flagEncoder, stateFrom, stateTo);
+        return bestPath;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (meetingNode < 0 || !finished())
+            return bestPath;
+
+        return bestPath.setMeetingNode(meetingNode).setWeight(bestWeight).extract();
+    }
+
+    @Override
+    protected double getCurrentFromWeight()
+    {
+        return stateFrom.getWeight(currFrom);
+    }
+
+    @Override
+    protected double getCurrentToWeight()
+    {
+        return stateTo.getWeight(currTo);
+    }
+
+    @Override
+    boolean fillEdgesFrom()
+    {
+        if (visitedCountFrom > 0)
+        {
+            currFrom = pollUnsettled(heapFrom, stateFrom);
+            if (currFrom < 0)
+                return false;
+        }
+
+        fillEdges(currFrom, heapFrom, stateFrom, stateTo, outEdgeExplorer, false);
+        visitedCountFrom++;
+        return true;
+    }
+
+    @Override
+    boolean fillEdgesTo()
+    {
+        if (visitedCountTo > 0)
+        {
+            currTo = pollUnsettled(heapTo, stateTo);
+            if (currTo < 0)
+                return false;
+        }
+
+        fillEdges(currTo, heapTo, stateTo, stateFrom, inEdgeExplorer, true);
+        visitedCountTo++;
+        return true;
+    }
+
+    private int pollUnsettled( IntDoubleBinHeap heap, NodeStateArrays state )
+    {
+        while (!heap.isEmpty())
+        {
+            int node = heap.poll_element();
+            if (!state.isSettled(node))
+                return node;
+        }
+        return -1;
+    }
+
+    private void fillEdges( int currNode, IntDoubleBinHeap heap, NodeStateArrays state, NodeStateArrays stateOther,
+                            EdgeExplorer explorer, boolean reverse )
+    {
+        state.setSettled(currNode);
+        double currWeight = state.getWeight(currNode);
+        int currEdge = state.getParentEdge(currNode);
+        EdgeIterator iter = explorer.setBaseNode(currNode);
+        while (iter.next())
+        {
+            if (!accept(iter, currEdge))
+                continue;
+
+            int adjNode = iter.getAdjNode();
+            if (state.isSettled(adjNode))
+                continue;
+
+            double tmpWeight = weighting.calcWeight(iter, reverse, currEdge) + currWeight;
+            if (Double.isInfinite(tmpWeight) || tmpWeight >= state.getWeight(adjNode))
+                continue;
+
+            state.set(adjNode, tmpWeight, currNode, iter.getEdge());
+            heap.insert_(tmpWeight, adjNode);
+            if (stateOther.isVisited(adjNode))
+                updateBestPath(adjNode, tmpWeight + stateOther.getWeight(adjNode));
+        }
+    }
+
+    private void updateBestPath( int node, double weight )
+    {
+        if (weight < bestWeight)
+        {
+            bestWeight = weight;
+            meetingNode = node;
+        }
+    }
+
+    @Override
+    public boolean finished()
+    {
+        if (finishedFrom || finishedTo)
+            return true;
+
+        return getCurrentFromWeight() + getCurrentToWeight() >= bestWeight;
+    }
+
+    @Override
+    protected boolean isWeightLimitExceeded()
+    {
+        return getCurrentFromWeight() + getCurrentToWeight() > weightLimit;
+    }
+
+    @Override
+    public String getName()
+    {
+        return AlgorithmOptions.DIJKSTRA_BI_NATIVE;
+    }
+}
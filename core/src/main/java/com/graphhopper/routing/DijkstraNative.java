@@ -0,0 +1,162 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+
+/**
+ * The same as Dijkstra but the state per node is stored in primitive arrays and the heap is an
+ * IntDoubleBinHeap, so no objects are created per visited node. A node is inserted into the heap
+ * again if a better weight is found and outdated heap entries are skipped as the node is already
+ * settled.
+ * <p/>
+ * In contrast to the other algorithms calcPath can be called multiple times on the same instance
+ * which only resets the arrays in O(1). Via reset the instance can be reused for other graphs.
+ * Only node based traversal is supported.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraNative extends AbstractRoutingAlgorithm implements ReusableRoutingAlgorithm
+{
+    private final NodeStateArrays state;
+    private final IntDoubleBinHeap heap;
+    private int visitedNodes;
+    private int currNode = -1;
+    private int from = -1;
+    private int to = -1;
+
+    public DijkstraNative( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        super(g, encoder, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Only node based traversal is supported for " + getName());
+
+        state = new NodeStateArrays(g.getNodes());
+        heap = new IntDoubleBinHeap(1000);
+    }
+
+    @Override
+    public void reset( Graph graph, Weighting weighting )
+    {
+        resetGraph(graph, weighting);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        if (from >= graph.getNodes() || to >= graph.getNodes())
+            return createEmptyPath();
+
+        state.reset(graph.getNodes());
+        heap.clear();
+        visitedNodes = 0;
+        this.from = from;
+        this.to = to;
+        currNode = from;
+        state.setStart(from, 0);
+        runAlgo();
+        return extractPath();
+    }
+
+    protected void runAlgo()
+    {
+        while (true)
+        {
+            visitedNodes++;
+            state.setSettled(currNode);
+            if (isWeightLimitExceeded() || finished())
+                break;
+
+            double currWeight = state.getWeight(currNode);
+            int currEdge = state.getParentEdge(currNode);
+            EdgeIterator iter = outEdgeExplorer.setBaseNode(currNode);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                if (state.isSettled(adjNode))
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter, false, currEdge) + currWeight;
+                if (Double.isInfinite(tmpWeight) || tmpWeight >= state.getWeight(adjNode))
+                    continue;
+
+                state.set(adjNode, tmpWeight, currNode, iter.getEdge());
+                heap.insert_(tmpWeight, adjNode);
+            }
+
+            currNode = pollUnsettled();
+            if (currNode < 0)
+                break;
+        }
+    }
+
+    private int pollUnsettled()
+    {
+        while (!heap.isEmpty())
+        {
+            int node = heap.poll_element();
+            if (!state.isSettled(node))
+                return node;
+        }
+        return -1;
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currNode == to;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (currNode < 0 || isWeightLimitExceeded() || !finished())
+            return createEmptyPath();
+
+        PathNative p = new PathNative(graph, flagEncoder, state.getParentNodes(), state.getParentEdges());
+        p.setWeight(state.getWeight(to));
+        p.setFromNode(from);
+        return p.setEndNode(to).extract();
+    }
+
+    @Override
+    protected boolean isWeightLimitExceeded()
+    {
+        return state.getWeight(currNode) > weightLimit;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName()
+    {
+        return AlgorithmOptions.DIJKSTRA_NATIVE;
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+
+/**
+ * Calculates the matrix without a prepared graph. The search tree of DijkstraOneToMany is kept for
+ * all destinations of one start node, so every start node is explored only once.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DijkstraOneToManyMatrix implements MatrixAlgorithm
+{
+    private final DijkstraOneToMany algo;
+    private int visitedNodes;
+
+    public DijkstraOneToManyMatrix( Graph graph, FlagEncoder encoder, Weighting weighting )
+    {
+        this(graph, encoder, weighting, TraversalMode.NODE_BASED);
+    }
+
+    /**
+     * @param tMode only node-based traversal is supported, use RoutingAlgorithmMatrix otherwise
+     */
+    public DijkstraOneToManyMatrix( Graph graph, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Edge-based traversal is not supported, use RoutingAlgorithmMatrix instead: " + tMode);
+
+        algo = new DijkstraOneToMany(graph, encoder, weighting, tMode);
+    }
+
+    /**
+     * Limits the search to avoid full graph exploration in the case of disconnected networks.
+     */
+    public DijkstraOneToManyMatrix setWeightLimit( double weightLimit )
+    {
+        algo.setWeightLimit(weightLimit);
+        return this;
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix( int[] fromNodes, int[] toNodes )
+    {
+        DistanceMatrix matrix = new DistanceMatrix(fromNodes.length, toNodes.length);
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            algo.clear();
+            for (int j = 0; j < toNodes.length; j++)
+            {
+                // the cached search of DijkstraOneToMany does not find the start node again
+                if (fromNodes[i] == toNodes[j])
+                {
+                    matrix.set(i, j, 0, 0, 0);
+                    continue;
+                }
+
+                Path path = algo.calcPath(fromNodes[i], toNodes[j]);
+                visitedNodes += algo.getVisitedNodes();
+                if (path.isFound())
+                    matrix.set(i, j, path.getWeight(), path.getDistance(), path.getTime());
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "dijkstraOneToManyMatrix";
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import java.util.Arrays;
+
+/**
+ * Holds the result of a MatrixAlgorithm. Entries which are not connected have a weight of
+ * Double.MAX_VALUE and a distance and time of -1.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DistanceMatrix
+{
+    private final double[][] weights;
+    private final double[][] distances;
+    private final long[][] times;
+
+    public DistanceMatrix( int fromCount, int toCount )
+    {
+        weights = new double[fromCount][toCount];
+        distances = new double[fromCount][toCount];
+        times = new long[fromCount][toCount];
+        for (int i = 0; i < fromCount; i++)
+        {
+            Arrays.fill(weights[i], Double.MAX_VALUE);
+            Arrays.fill(distances[i], -1);
+            Arrays.fill(times[i], -1);
+        }
+    }
+
+    public void set( int fromIndex, int toIndex, double weight, double distance, long time )
+    {
+        weights[fromIndex][toIndex] = weight;
+        distances[fromIndex][toIndex] = distance;
+        times[fromIndex][toIndex] = time;
+    }
+
+    public boolean isConnected( int fromIndex, int toIndex )
+    {
+        return weights[fromIndex][toIndex] < Double.MAX_VALUE;
+    }
+
+    public double getWeight( int fromIndex, int toIndex )
+    {
+        return weights[fromIndex][toIndex];
+    }
+
+    /**
+     * @return the distance in meter or -1 if not connected
+     */
+    public double getDistance( int fromIndex, int toIndex )
+    {
+        return distances[fromIndex][toIndex];
+    }
+
+    /**
+     * @return the time in milliseconds or -1 if not connected
+     */
+    public long getTime( int fromIndex, int toIndex )
+    {
+        return times[fromIndex][toIndex];
+    }
+
+    public int getFromCount()
+    {
+        return weights.length;
+    }
+
+    public int getToCount()
+    {
+        return weights.length == 0 ? 0 : weights[0].length;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < getFromCount(); i++)
+        {
+            sb.append(Arrays.toString(distances[i])).append('\n');
+        }
+        return sb.toString();
+    }
+}
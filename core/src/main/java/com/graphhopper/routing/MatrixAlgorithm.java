@@ -0,0 +1,45 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.util.NotThreadSafe;
+
+/**
+ * Calculates the weight, distance and time between every pair of the specified from and to nodes
+ * without creating the paths.
+ * <p/>
+ * @author Peter Karich
+ */
+@NotThreadSafe
+public interface MatrixAlgorithm
+{
+    /**
+     * @return the matrix where the row i contains the values from fromNodes[i] to all toNodes
+     */
+    DistanceMatrix calcMatrix( int[] fromNodes, int[] toNodes );
+
+    /**
+     * @return name of this algorithm
+     */
+    String getName();
+
+    /**
+     * Returns the visited nodes after searching. Useful for debugging.
+     */
+    int getVisitedNodes();
+}
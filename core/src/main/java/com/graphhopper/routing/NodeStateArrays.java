@@ -0,0 +1,133 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.util.EdgeIterator;
+
+import java.util.Arrays;
+
+/**
+ * Stores the weight, parent node and parent edge per node of one search in primitive arrays.
+ * Instead of clearing all arrays for the next search only the version is increased and entries
+ * with an older version are treated as not visited. So reset is O(1) and no garbage is produced
+ * per visited node.
+ * <p/>
+ * @author Peter Karich
+ */
+class NodeStateArrays
+{
+    private int[] visitedVersions;
+    private int[] settledVersions;
+    private double[] weights;
+    private int[] parentNodes;
+    private int[] parentEdges;
+    private int version = 1;
+
+    public NodeStateArrays( int nodes )
+    {
+        visitedVersions = new int[nodes];
+        settledVersions = new int[nodes];
+        weights = new double[nodes];
+        parentNodes = new int[nodes];
+        parentEdges = new int[nodes];
+    }
+
+    /**
+     * Forgets all entries of the previous search. The arrays grow if the graph has more nodes now,
+     * e.g. if a different QueryGraph is used.
+     */
+    public void reset( int nodes )
+    {
+        if (nodes > weights.length)
+        {
+            visitedVersions = Arrays.copyOf(visitedVersions, nodes);
+            settledVersions = Arrays.copyOf(settledVersions, nodes);
+            weights = Arrays.copyOf(weights, nodes);
+            parentNodes = Arrays.copyOf(parentNodes, nodes);
+            parentEdges = Arrays.copyOf(parentEdges, nodes);
+        }
+
+        version++;
+        if (version == Integer.MAX_VALUE)
+        {
+            // on overflow we have to really clear the arrays
+            Arrays.fill(visitedVersions, 0);
+            Arrays.fill(settledVersions, 0);
+            version = 1;
+        }
+    }
+
+    public boolean isVisited( int node )
+    {
+        return visitedVersions[node] == version;
+    }
+
+    public boolean isSettled( int node )
+    {
+        return settledVersions[node] == version;
+    }
+
+    public void setSettled( int node )
+    {
+        settledVersions[node] = version;
+    }
+
+    /**
+     * @return the weight of the specified node or Double.MAX_VALUE if not yet visited
+     */
+    public double getWeight( int node )
+    {
+        return isVisited(node) ? weights[node] : Double.MAX_VALUE;
+    }
+
+    public int getParentNode( int node )
+    {
+        return parentNodes[node];
+    }
+
+    public int getParentEdge( int node )
+    {
+        return isVisited(node) ? parentEdges[node] : EdgeIterator.NO_EDGE;
+    }
+
+    public void setStart( int node, double weight )
+    {
+        set(node, weight, -1, EdgeIterator.NO_EDGE);
+    }
+
+    public void set( int node, double weight, int parentNode, int parentEdge )
+    {
+        visitedVersions[node] = version;
+        weights[node] = weight;
+        parentNodes[node] = parentNode;
+        parentEdges[node] = parentEdge;
+    }
+
+    /**
+     * The parent arrays are only valid for nodes visited in the current search.
+     */
+    int[] getParentNodes()
+    {
+        return parentNodes;
+    }
+
+    int[] getParentEdges()
+    {
+        return parentEdges;
+    }
+}
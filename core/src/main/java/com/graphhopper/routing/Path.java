@@ -351,10 +351,13 @@ public class Path
         points.add(nodeAccess, tmpNode);
         forEveryEdge(new EdgeVisitor()
         {
+            // reused for every edge to avoid an allocation per edge
+            private final PointList pl = new PointList(10, nodeAccess.is3D());
+
             @Override
             public void next( EdgeIteratorState eb, int index )
             {
-                PointList pl = eb.fetchWayGeometry(2);
+                eb.fetchWayGeometry(2, pl);
                 for (int j = 0; j < pl.getSize(); j++)
                 {
                     points.add(pl, j);
@@ -0,0 +1,37 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+
+/**
+ * A routing algorithm which keeps its allocated memory and can be used for several searches, also
+ * on different graphs like a new QueryGraph per request. See RoutingAlgorithmFactoryPooled.
+ * <p/>
+ * @author Peter Karich
+ */
+public interface ReusableRoutingAlgorithm extends RoutingAlgorithm
+{
+    /**
+     * Prepares this algorithm for the next calcPath call on the specified graph with the specified
+     * weighting. The weight limit and edge filter of the previous search are removed. The graph
+     * must be based on the same graph this algorithm was created for, e.g. be a QueryGraph of it.
+     */
+    void reset( Graph graph, Weighting weighting );
+}
@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.Graph;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Creates the same algorithms as RoutingAlgorithmFactorySimple but keeps one instance per thread,
+ * flag encoder and algorithm for algorithms which implement ReusableRoutingAlgorithm, so that
+ * their memory is allocated only once and not per request. For a node based traversal dijkstrabi,
+ * dijkstra and astar are served by their native implementations DijkstraBidirectionNative,
+ * DijkstraNative and AStarNative, which find the same shortest paths. All other algorithms are
+ * created for every call.
+ * <p/>
+ * The returned algorithm must not be used after the next call of createAlgo with the same
+ * algorithm in the same thread. The memory of the pooled instances is only released when the
+ * thread ends: every instance keeps about 24 bytes per node of the graph and search direction,
+ * i.e. 48 bytes per node for the bidirectional algorithms. So the memory needed is this times
+ * the number of request threads and the number of used vehicle and algorithm combinations.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RoutingAlgorithmFactoryPooled extends RoutingAlgorithmFactorySimple
+{
+    private static final String[] POOLED_ALGOS =
+    {
+        AlgorithmOptions.DIJKSTRA_BI_NATIVE, AlgorithmOptions.DIJKSTRA_NATIVE, AlgorithmOptions.ASTAR_NATIVE
+    };
+    // per thread and encoder the instances in the order of POOLED_ALGOS
+    private final ThreadLocal<Map<FlagEncoder, ReusableRoutingAlgorithm[]>> pool = new ThreadLocal<Map<FlagEncoder, ReusableRoutingAlgorithm[]>>()
+    {
+        @Override
+        protected Map<FlagEncoder, ReusableRoutingAlgorithm[]> initialValue()
+        {
+            return new IdentityHashMap<FlagEncoder, ReusableRoutingAlgorithm[]>();
+        }
+    };
+
+    @Override
+    public RoutingAlgorithm createAlgo( Graph g, AlgorithmOptions opts )
+    {
+        int algoIndex = getPoolIndex(opts);
+        if (algoIndex < 0)
+            return super.createAlgo(g, opts);
+
+        Map<FlagEncoder, ReusableRoutingAlgorithm[]> encoderAlgos = pool.get();
+        ReusableRoutingAlgorithm[] algos = encoderAlgos.get(opts.getFlagEncoder());
+        if (algos == null)
+        {
+            algos = new ReusableRoutingAlgorithm[POOLED_ALGOS.length];
+            encoderAlgos.put(opts.getFlagEncoder(), algos);
+        }
+
+        ReusableRoutingAlgorithm algo = algos[algoIndex];
+        if (algo == null)
+        {
+            algo = (ReusableRoutingAlgorithm) super.createAlgo(g, AlgorithmOptions.start(opts).
+                    algorithm(POOLED_ALGOS[algoIndex]).build());
+            algos[algoIndex] = algo;
+        } else
+        {
+            algo.reset(g, opts.getWeighting());
+        }
+
+        if (algo instanceof AStarNative)
+            // use the approximation configured for the requested algorithm name
+            ((AStarNative) algo).setApproximation(getApproximation(opts.getAlgorithm(), opts, g.getNodeAccess()));
+
+        return algo;
+    }
+
+    /**
+     * @return the index into POOLED_ALGOS or -1 if the requested algorithm is not pooled
+     */
+    private static int getPoolIndex( AlgorithmOptions opts )
+    {
+        if (opts.getTraversalMode().isEdgeBased())
+            return -1;
+
+        String algoStr = opts.getAlgorithm();
+        if (AlgorithmOptions.DIJKSTRA_BI.equalsIgnoreCase(algoStr)
+                || AlgorithmOptions.DIJKSTRA_BI_NATIVE.equalsIgnoreCase(algoStr))
+            return 0;
+        if (AlgorithmOptions.DIJKSTRA.equalsIgnoreCase(algoStr)
+                || AlgorithmOptions.DIJKSTRA_NATIVE.equalsIgnoreCase(algoStr))
+            return 1;
+        if (AlgorithmOptions.ASTAR.equalsIgnoreCase(algoStr)
+                || AlgorithmOptions.ASTAR_NATIVE.equalsIgnoreCase(algoStr))
+            return 2;
+        return -1;
+    }
+}
@@ -55,6 +55,17 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory
             AStar aStar = new AStar(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode());
             aStar.setApproximation(getApproximation(AlgorithmOptions.ASTAR, opts, g.getNodeAccess()));
             return aStar;
+        } else if (AlgorithmOptions.DIJKSTRA_NATIVE.equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraNative(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode());
+        } else if (AlgorithmOptions.DIJKSTRA_BI_NATIVE.equalsIgnoreCase(algoStr))
+        {
+            return new DijkstraBidirectionNative(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode());
+        } else if (AlgorithmOptions.ASTAR_NATIVE.equalsIgnoreCase(algoStr))
+        {
+            AStarNative aStar = new AStarNative(g, opts.getFlagEncoder(), opts.getWeighting(), opts.getTraversalMode());
+            aStar.setApproximation(getApproximation(AlgorithmOptions.ASTAR_NATIVE, opts, g.getNodeAccess()));
+            return aStar;
         } else
         {
             throw new IllegalArgumentException("Algorithm " + algoStr + " not found in " + getClass().getName());
@@ -62,7 +73,7 @@ public class RoutingAlgorithmFactorySimple implements RoutingAlgorithmFactory
 
     }
 
-    private WeightApproximator getApproximation( String prop, AlgorithmOptions opts, NodeAccess na )
+    protected WeightApproximator getApproximation( String prop, AlgorithmOptions opts, NodeAccess na )
     {
         String approxAsStr = opts.getHints().get(prop + ".approximation", "BeelineSimplification");
         if ("BeelineSimplification".equals(approxAsStr))
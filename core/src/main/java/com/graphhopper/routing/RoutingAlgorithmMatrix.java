@@ -0,0 +1,89 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.storage.Graph;
+
+/**
+ * Calculates the matrix with one search of the specified algorithm per pair of nodes. Slower than
+ * DijkstraOneToManyMatrix but supports every traversal mode, e.g. the edge-based traversal which
+ * is required for turn restrictions.
+ * <p/>
+ * @author Peter Karich
+ */
+public class RoutingAlgorithmMatrix implements MatrixAlgorithm
+{
+    private final Graph graph;
+    private final RoutingAlgorithmFactory factory;
+    private final AlgorithmOptions opts;
+    private double weightLimit = Double.MAX_VALUE;
+    private int visitedNodes;
+
+    public RoutingAlgorithmMatrix( Graph graph, RoutingAlgorithmFactory factory, AlgorithmOptions opts )
+    {
+        this.graph = graph;
+        this.factory = factory;
+        this.opts = opts;
+    }
+
+    /**
+     * Limits every search to avoid full graph exploration in the case of disconnected networks.
+     */
+    public RoutingAlgorithmMatrix setWeightLimit( double weightLimit )
+    {
+        this.weightLimit = weightLimit;
+        return this;
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix( int[] fromNodes, int[] toNodes )
+    {
+        DistanceMatrix matrix = new DistanceMatrix(fromNodes.length, toNodes.length);
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            for (int j = 0; j < toNodes.length; j++)
+            {
+                if (fromNodes[i] == toNodes[j])
+                {
+                    matrix.set(i, j, 0, 0, 0);
+                    continue;
+                }
+
+                RoutingAlgorithm algo = factory.createAlgo(graph, opts);
+                algo.setWeightLimit(weightLimit);
+                Path path = algo.calcPath(fromNodes[i], toNodes[j]);
+                visitedNodes += algo.getVisitedNodes();
+                if (path.isFound())
+                    matrix.set(i, j, path.getWeight(), path.getDistance(), path.getTime());
+            }
+        }
+        return matrix;
+    }
+
+    @Override
+    public String getName()
+    {
+        return opts.getAlgorithm() + "Matrix";
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+}
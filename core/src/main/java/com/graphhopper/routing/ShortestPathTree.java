@@ -0,0 +1,231 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.coll.GHBitSet;
+import com.graphhopper.coll.GHTBitSet;
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.EdgeEntry;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeIterator;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A Dijkstra which explores the full shortest path tree from a start node until the weight, time
+ * or distance limit is reached. Useful to calculate isochrones, i.e. everything reachable within a
+ * certain time.
+ * <p/>
+ * The heap does not support an efficient decrease-key operation, so a node is inserted again if a
+ * better weight is found and outdated heap entries are skipped via the settled bit set.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ShortestPathTree extends AbstractRoutingAlgorithm
+{
+    private final TIntObjectMap<IsoLabel> fromMap;
+    private final IntDoubleBinHeap fromHeap;
+    private final GHBitSet settled;
+    private long timeLimit = Long.MAX_VALUE;
+    private double distanceLimit = Double.MAX_VALUE;
+    private IsoLabel currEdge;
+    private int visitedNodes;
+    private int to = -1;
+
+    public ShortestPathTree( Graph g, FlagEncoder encoder, Weighting weighting, TraversalMode tMode )
+    {
+        super(g, encoder, weighting, tMode);
+        if (tMode.isEdgeBased())
+            throw new IllegalArgumentException("Only node based traversal is supported for the shortest path tree");
+
+        fromMap = new TIntObjectHashMap<IsoLabel>(1000);
+        fromHeap = new IntDoubleBinHeap(1000);
+        settled = new GHTBitSet(1000);
+    }
+
+    /**
+     * Nodes which can be reached only with a longer time in milliseconds are not explored.
+     */
+    public ShortestPathTree setTimeLimit( long timeLimit )
+    {
+        this.timeLimit = timeLimit;
+        return this;
+    }
+
+    /**
+     * Nodes which can be reached only with a longer distance in meter are not explored.
+     */
+    public ShortestPathTree setDistanceLimit( double distanceLimit )
+    {
+        this.distanceLimit = distanceLimit;
+        return this;
+    }
+
+    /**
+     * Explores all nodes reachable from the specified node within the limits.
+     * <p/>
+     * @return the labels of all reached nodes in the order they were settled. Every label links
+     * to its parent label so that the tree can be traversed back to the start node.
+     */
+    public List<IsoLabel> search( int from )
+    {
+        checkAlreadyRun();
+        List<IsoLabel> list = new ArrayList<IsoLabel>();
+        currEdge = new IsoLabel(EdgeIterator.NO_EDGE, from, 0, 0, 0);
+        fromMap.put(from, currEdge);
+        while (true)
+        {
+            visitedNodes++;
+            settled.add(currEdge.adjNode);
+            list.add(currEdge);
+            if (finished())
+                break;
+
+            EdgeIterator iter = outEdgeExplorer.setBaseNode(currEdge.adjNode);
+            while (iter.next())
+            {
+                if (!accept(iter, currEdge.edge))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                if (settled.contains(adjNode))
+                    continue;
+
+                double tmpWeight = weighting.calcWeight(iter, false, currEdge.edge) + currEdge.weight;
+                if (Double.isInfinite(tmpWeight) || tmpWeight > weightLimit)
+                    continue;
+
+                double tmpDistance = iter.getDistance() + currEdge.distance;
+                long tmpTime = calcMillis(iter.getDistance(), iter.getFlags()) + currEdge.time;
+                if (tmpTime > timeLimit || tmpDistance > distanceLimit)
+                    continue;
+
+                IsoLabel nEdge = fromMap.get(adjNode);
+                if (nEdge == null)
+                {
+                    nEdge = new IsoLabel(iter.getEdge(), adjNode, tmpWeight, tmpTime, tmpDistance);
+                    fromMap.put(adjNode, nEdge);
+                } else if (nEdge.weight > tmpWeight)
+                {
+                    nEdge.edge = iter.getEdge();
+                    nEdge.weight = tmpWeight;
+                    nEdge.time = tmpTime;
+                    nEdge.distance = tmpDistance;
+                } else
+                    continue;
+
+                nEdge.parent = currEdge;
+                fromHeap.insert_(tmpWeight, adjNode);
+            }
+
+            currEdge = null;
+            while (!fromHeap.isEmpty())
+            {
+                int node = fromHeap.poll_element();
+                if (!settled.contains(node))
+                {
+                    currEdge = fromMap.get(node);
+                    break;
+                }
+            }
+
+            if (currEdge == null)
+                break;
+        }
+        return list;
+    }
+
+    private long calcMillis( double distance, long flags )
+    {
+        double speed = flagEncoder.getSpeed(flags);
+        if (speed <= 0)
+            throw new IllegalStateException("Invalid speed stored in edge! " + speed);
+
+        return (long) (distance * 3600 / speed);
+    }
+
+    @Override
+    public Path calcPath( int from, int to )
+    {
+        this.to = to;
+        search(from);
+        return extractPath();
+    }
+
+    @Override
+    protected boolean finished()
+    {
+        return currEdge.adjNode == to;
+    }
+
+    @Override
+    protected Path extractPath()
+    {
+        if (currEdge == null || !finished())
+            return createEmptyPath();
+
+        return new Path(graph, flagEncoder).setWeight(currEdge.weight).setEdgeEntry(currEdge).extract();
+    }
+
+    @Override
+    protected boolean isWeightLimitExceeded()
+    {
+        return currEdge.weight > weightLimit;
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    @Override
+    public String getName()
+    {
+        return "shortestPathTree";
+    }
+
+    /**
+     * An entry of the shortest path tree which additionally stores the time and distance from the
+     * start node.
+     */
+    public static class IsoLabel extends EdgeEntry
+    {
+        public long time;
+        public double distance;
+
+        public IsoLabel( int edgeId, int adjNode, double weight, long time, double distance )
+        {
+            super(edgeId, adjNode, weight);
+            this.time = time;
+            this.distance = distance;
+        }
+
+        @Override
+        public String toString()
+        {
+            return super.toString() + ", time: " + time + ", distance: " + distance;
+        }
+    }
+}
@@ -89,6 +89,12 @@ class VirtualEdgeIterator implements EdgeIterator, EdgeSkipIterState
         return edges.get(current).fetchWayGeometry(mode);
     }
 
+    @Override
+    public PointList fetchWayGeometry( int mode, PointList pillarNodes )
+    {
+        return edges.get(current).fetchWayGeometry(mode, pillarNodes);
+    }
+
     @Override
     public EdgeIteratorState setWayGeometry( PointList list )
     {
@@ -184,13 +190,15 @@ class VirtualEdgeIterator implements EdgeIterator, EdgeSkipIterState
     @Override
     public int getSkippedEdge1()
     {
-        throw new UnsupportedOperationException("Not supported.");
+        // the iterator contains the original edges of a tower node and those can be shortcuts
+        return ((EdgeSkipIterState) edges.get(current)).getSkippedEdge1();
     }
 
     @Override
     public int getSkippedEdge2()
     {
-        throw new UnsupportedOperationException("Not supported.");
+        // the iterator contains the original edges of a tower node and those can be shortcuts
+        return ((EdgeSkipIterState) edges.get(current)).getSkippedEdge2();
     }
 
     @Override
@@ -100,6 +100,23 @@ public class VirtualEdgeIteratorState implements EdgeIteratorState, EdgeSkipIter
         throw new UnsupportedOperationException("Illegal mode:" + mode);
     }
 
+    @Override
+    public PointList fetchWayGeometry( int mode, PointList pillarNodes )
+    {
+        if (mode < 0 || mode > 3)
+            throw new UnsupportedOperationException("Illegal mode:" + mode);
+
+        pillarNodes.clear();
+        int size = pointList.getSize();
+        int from = (mode & 1) != 0 ? 0 : 1;
+        int end = (mode & 2) != 0 ? size : size - 1;
+        for (int i = from; i < end; i++)
+        {
+            pillarNodes.add(pointList, i);
+        }
+        return pillarNodes;
+    }
+
     @Override
     public EdgeIteratorState setWayGeometry( PointList list )
     {
@@ -0,0 +1,298 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.routing.MatrixAlgorithm;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.Weighting;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.EdgeExplorer;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeSkipIterState;
+import gnu.trove.map.TIntObjectMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Bucket based many-to-many algorithm for contraction hierarchies. First an upward search is done
+ * backwards from every target and the settled nodes store the target and its weight in a bucket.
+ * Then an upward search is done from every source and the buckets of all settled nodes are
+ * scanned for better entries. See 'Computing Many-to-Many Shortest Paths Using Highway
+ * Hierarchies' from Knopp et al.
+ * <p/>
+ * The time is not stored for shortcuts and the stored distance is less precise. Both are
+ * calculated from the skipped edges instead and cached per shortcut and direction.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ManyToManyCH implements MatrixAlgorithm
+{
+    private final Graph graph;
+    private final FlagEncoder encoder;
+    private final Weighting weighting;
+    private final EdgeFilter levelFilter;
+    private final EdgeExplorer outExplorer;
+    private final EdgeExplorer inExplorer;
+    private final TIntObjectMap<List<Entry>> buckets = new TIntObjectHashMap<List<Entry>>();
+    // key is the shortcut edge and the end node of its traversal
+    private final TLongObjectMap<EdgeCost> shortcutCosts = new TLongObjectHashMap<EdgeCost>();
+    private int visitedNodes;
+
+    public ManyToManyCH( Graph graph, FlagEncoder encoder, Weighting weighting, EdgeFilter levelFilter )
+    {
+        this.graph = graph;
+        this.encoder = encoder;
+        this.weighting = weighting;
+        this.levelFilter = levelFilter;
+        outExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, false, true));
+        inExplorer = graph.createEdgeExplorer(new DefaultEdgeFilter(encoder, true, false));
+    }
+
+    @Override
+    public DistanceMatrix calcMatrix( int[] fromNodes, int[] toNodes )
+    {
+        DistanceMatrix matrix = new DistanceMatrix(fromNodes.length, toNodes.length);
+        buckets.clear();
+        for (int j = 0; j < toNodes.length; j++)
+        {
+            for (Entry e : searchUpward(toNodes[j], true))
+            {
+                List<Entry> bucket = buckets.get(e.node);
+                if (bucket == null)
+                {
+                    bucket = new ArrayList<Entry>(4);
+                    buckets.put(e.node, bucket);
+                }
+                // reuse the entry as bucket entry where the node is the index of the target
+                e.node = j;
+                bucket.add(e);
+            }
+        }
+
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            for (Entry fromEntry : searchUpward(fromNodes[i], false))
+            {
+                List<Entry> bucket = buckets.get(fromEntry.node);
+                if (bucket == null)
+                    continue;
+
+                for (Entry toEntry : bucket)
+                {
+                    double weight = fromEntry.weight + toEntry.weight;
+                    if (weight < matrix.getWeight(i, toEntry.node))
+                        matrix.set(i, toEntry.node, weight, fromEntry.distance + toEntry.distance,
+                                fromEntry.time + toEntry.time);
+                }
+            }
+        }
+        buckets.clear();
+        return matrix;
+    }
+
+    /**
+     * Explores the upward search space of the specified node completely.
+     * <p/>
+     * @return all settled nodes with the weight, distance and time from or to the start node
+     */
+    List<Entry> searchUpward( int startNode, boolean reverse )
+    {
+        EdgeExplorer explorer = reverse ? inExplorer : outExplorer;
+        TIntObjectMap<Entry> map = new TIntObjectHashMap<Entry>();
+        PriorityQueue<Entry> heap = new PriorityQueue<Entry>();
+        List<Entry> settled = new ArrayList<Entry>();
+        Entry curr = new Entry(startNode, EdgeIterator.NO_EDGE, 0, 0, 0);
+        map.put(startNode, curr);
+        while (true)
+        {
+            visitedNodes++;
+            settled.add(curr);
+            EdgeIterator iter = explorer.setBaseNode(curr.node);
+            while (iter.next())
+            {
+                if (iter.getEdge() == curr.edge || !levelFilter.accept(iter))
+                    continue;
+
+                double weight = curr.weight + weighting.calcWeight(iter, reverse, curr.edge);
+                if (Double.isInfinite(weight))
+                    continue;
+
+                int adjNode = iter.getAdjNode();
+                Entry adj = map.get(adjNode);
+                if (adj != null && adj.weight <= weight)
+                    continue;
+
+                if (adj == null)
+                {
+                    adj = new Entry(adjNode, iter.getEdge(), weight, curr.distance, curr.time);
+                    map.put(adjNode, adj);
+                } else
+                {
+                    heap.remove(adj);
+                    adj.edge = iter.getEdge();
+                    adj.weight = weight;
+                    adj.distance = curr.distance;
+                    adj.time = curr.time;
+                }
+
+                EdgeSkipIterState edgeState = (EdgeSkipIterState) iter;
+                if (edgeState.isShortcut())
+                {
+                    EdgeCost cost = getShortcutCost(edgeState, reverse);
+                    adj.distance += cost.distance;
+                    adj.time += cost.time;
+                } else
+                {
+                    adj.distance += edgeState.getDistance();
+                    adj.time += calcMillis(edgeState.getDistance(), edgeState.getFlags(), reverse);
+                }
+                heap.add(adj);
+            }
+
+            if (heap.isEmpty())
+                break;
+
+            curr = heap.poll();
+        }
+        return settled;
+    }
+
+    /**
+     * Returns the distance and time of the specified shortcut from its skipped edges, which is
+     * more precise than the stored distance.
+     * <p/>
+     * @param reverse if true the shortcut is traversed from the adjacent to the base node
+     */
+    private EdgeCost getShortcutCost( EdgeSkipIterState shortcut, boolean reverse )
+    {
+        int from = shortcut.getBaseNode(), to = shortcut.getAdjNode();
+        if (reverse)
+        {
+            int tmp = from;
+            from = to;
+            to = tmp;
+        }
+
+        long key = ((long) shortcut.getEdge() << 32) | to;
+        EdgeCost cost = shortcutCosts.get(key);
+        if (cost != null)
+            return cost;
+
+        // the same unpacking as in Path4CH: one skipped edge is adjacent to 'from', the other to 'to'
+        int skippedEdge1 = shortcut.getSkippedEdge1();
+        int skippedEdge2 = shortcut.getSkippedEdge2();
+        EdgeSkipIterState edgeState = (EdgeSkipIterState) graph.getEdgeProps(skippedEdge1, from);
+        boolean empty = edgeState == null;
+        if (empty)
+            edgeState = (EdgeSkipIterState) graph.getEdgeProps(skippedEdge2, from);
+
+        cost = new EdgeCost();
+        addCost(cost, edgeState, true);
+        if (empty)
+            edgeState = (EdgeSkipIterState) graph.getEdgeProps(skippedEdge1, to);
+        else
+            edgeState = (EdgeSkipIterState) graph.getEdgeProps(skippedEdge2, to);
+
+        addCost(cost, edgeState, false);
+        shortcutCosts.put(key, cost);
+        return cost;
+    }
+
+    private void addCost( EdgeCost cost, EdgeSkipIterState edgeState, boolean reverse )
+    {
+        if (edgeState.isShortcut())
+        {
+            EdgeCost scCost = getShortcutCost(edgeState, reverse);
+            cost.distance += scCost.distance;
+            cost.time += scCost.time;
+        } else
+        {
+            cost.distance += edgeState.getDistance();
+            cost.time += calcMillis(edgeState.getDistance(), edgeState.getFlags(), reverse);
+        }
+    }
+
+    private long calcMillis( double distance, long flags, boolean reverse )
+    {
+        double speed = reverse ? encoder.getReverseSpeed(flags) : encoder.getSpeed(flags);
+        if (speed <= 0)
+            throw new IllegalStateException("Invalid speed stored in edge! " + speed);
+
+        return (long) (distance * 3600 / speed);
+    }
+
+    @Override
+    public String getName()
+    {
+        return "manyToManyCH";
+    }
+
+    @Override
+    public int getVisitedNodes()
+    {
+        return visitedNodes;
+    }
+
+    static class Entry implements Comparable<Entry>
+    {
+        int node;
+        int edge;
+        double weight;
+        double distance;
+        long time;
+
+        public Entry( int node, int edge, double weight, double distance, long time )
+        {
+            this.node = node;
+            this.edge = edge;
+            this.weight = weight;
+            this.distance = distance;
+            this.time = time;
+        }
+
+        @Override
+        public int compareTo( Entry o )
+        {
+            if (weight < o.weight)
+                return -1;
+
+            // assumption no NaN and no -0
+            return weight > o.weight ? 1 : 0;
+        }
+
+        @Override
+        public String toString()
+        {
+            return node + " (" + edge + ") weight: " + weight;
+        }
+    }
+
+    static class EdgeCost
+    {
+        double distance;
+        long time;
+    }
+}
@@ -28,7 +28,14 @@ import com.graphhopper.routing.util.*;
 import com.graphhopper.storage.*;
 import com.graphhopper.util.*;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -51,28 +58,32 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
     private final PreparationWeighting prepareWeighting;
     private final FlagEncoder prepareFlagEncoder;
     private final TraversalMode traversalMode;
-    private EdgeSkipExplorer vehicleInExplorer;
-    private EdgeSkipExplorer vehicleOutExplorer;
     private EdgeSkipExplorer vehicleAllExplorer;
     private EdgeSkipExplorer vehicleAllTmpExplorer;
-    private EdgeSkipExplorer calcPrioAllExplorer;
+    private EdgeFilter accessWithLevelFilter;
     private final LevelEdgeFilter levelFilter;
     private int maxLevel;
     private final LevelGraph prepareGraph;
+    // the direction bits of a shortcut are the access bits of the prepared vehicle
+    private final long scFwdDir;
+    private final long scDirMask;
 
     // the most important nodes comes last
     private GHTreeMapComposed sortedNodes;
     private int oldPriorities[];
     private final DataAccess originalEdges;
-    private final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
-    private IgnoreNodeFilter ignoreNodeFilter;
-    private DijkstraOneToMany prepareAlgo;
+    // the witness search of the main thread and additional ones for parallel contraction
+    private WitnessSearch mainSearch;
+    private WitnessSearch[] workerSearches;
+    private ExecutorService executorService;
+    private int threads = 1;
+    // marks nodes which cannot be contracted in the current round of the parallel contraction
+    private int[] nodeRounds;
+    private int round;
     private long counter;
     private int newShortcuts;
-    private long dijkstraCount;
     private double meanDegree;
     private final Random rand = new Random(123);
-    private StopWatch dijkstraSW = new StopWatch();
     private final StopWatch allSW = new StopWatch();
     private int periodicUpdatesPercentage = 20;
     private int lastNodesLazyUpdatePercentage = 10;
@@ -86,18 +97,29 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         this.prepareGraph = g;
         this.traversalMode = traversalMode;
         this.prepareFlagEncoder = encoder;
-        long scFwdDir = encoder.setAccess(0, true, false);
+        scFwdDir = encoder.setAccess(0, true, false);
+        scDirMask = scFwdDir | encoder.setAccess(0, false, true);
         levelFilter = new LevelEdgeFilter(prepareGraph);
 
-        // shortcuts store weight in flags where we assume bit 1 and 2 are used for access restriction
-        if ((scFwdDir & PrepareEncoder.getScFwdDir()) == 0)
-            throw new IllegalArgumentException("Enabling the speed-up mode is currently only supported for the first vehicle.");
+        // LevelGraphStorage stores the weight in the flags of a shortcut where we assume bit 1 and 2
+        // are used for access restriction. A LevelGraphLayer stores the weight separately.
+        if (prepareGraph instanceof LevelGraphStorage && (scFwdDir & PrepareEncoder.getScFwdDir()) == 0)
+            throw new IllegalArgumentException("Enabling the speed-up mode is currently only supported for the first vehicle. "
+                    + "Use a LevelGraphLayer for other vehicles.");
 
         prepareWeighting = new PreparationWeighting(weighting);
         originalEdges = dir.find("original_edges");
         originalEdges.create(1000);
     }
 
+    /**
+     * @return the graph where the levels and shortcuts of this preparation are stored
+     */
+    public LevelGraph getGraph()
+    {
+        return prepareGraph;
+    }
+
     /**
      * The higher the values are the longer the preparation takes but the less shortcuts are
      * produced.
@@ -170,6 +192,23 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         this.nodesContractedPercentage = nodesContracted;
     }
 
+    /**
+     * Specifies how many threads should be used to contract the nodes. If more than one thread is
+     * used in every round a set of independent nodes (no common neighbors) with the lowest
+     * priorities is selected. Then the witness searches for these nodes are done concurrently and
+     * the found shortcuts are added to the graph afterwards. Every thread needs its own
+     * DijkstraOneToMany instance, i.e. memory for several int arrays of the node count. The
+     * default is 1 which uses the sequential contraction.
+     */
+    public PrepareContractionHierarchies setThreads( int threads )
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads has to be at least 1 but was " + threads);
+
+        this.threads = threads;
+        return this;
+    }
+
     /**
      * While creating an algorithm out of this preparation class 10 000 nodes are assumed which can
      * be too high for your mobile application. E.g. A 500km query only traverses roughly 2000
@@ -193,13 +232,36 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         super.doWork();
 
         initFromGraph();
-        if (!prepareEdges())
-            return;
+        if (threads > 1)
+        {
+            executorService = Executors.newFixedThreadPool(threads);
+            workerSearches = new WitnessSearch[threads];
+            for (int i = 0; i < threads; i++)
+            {
+                workerSearches[i] = new WitnessSearch();
+            }
+            nodeRounds = new int[prepareGraph.getNodes()];
+        }
+
+        try
+        {
+            if (!prepareEdges())
+                return;
 
-        if (!prepareNodes())
-            return;
+            if (!prepareNodes())
+                return;
 
-        contractNodes();
+            contractNodes();
+        } finally
+        {
+            if (executorService != null)
+            {
+                executorService.shutdown();
+                executorService = null;
+            }
+            workerSearches = null;
+            nodeRounds = null;
+        }
     }
 
     boolean prepareEdges()
@@ -222,9 +284,15 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             prepareGraph.setLevel(node, maxLevel);
         }
 
+        int[] allNodes = new int[nodes];
         for (int node = 0; node < nodes; node++)
         {
-            int priority = oldPriorities[node] = calculatePriority(node);
+            allNodes[node] = node;
+        }
+        int[] priorities = calculatePriorities(allNodes);
+        for (int node = 0; node < nodes; node++)
+        {
+            int priority = oldPriorities[node] = priorities[node];
             sortedNodes.insert(node, priority);
         }
 
@@ -253,6 +321,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         if (periodicUpdatesPercentage == 0)
             periodicUpdate = false;
 
+        // the parallel contraction increases the counter by more than one per iteration
+        long nextPeriodicUpdate = periodicUpdatesCount;
+        long nextLog = 0;
+
         // disable as preparation is slower and query time does not benefit
         long lastNodesLazyUpdates = lastNodesLazyUpdatePercentage == 0
                 ? 0L
@@ -271,22 +343,28 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
             neighborUpdate = false;
 
         StopWatch neighborSW = new StopWatch();
-        LevelGraphStorage levelGraphCast = ((LevelGraphStorage) prepareGraph);
         while (!sortedNodes.isEmpty())
         {
             // periodically update priorities of ALL nodes            
-            if (periodicUpdate && counter > 0 && counter % periodicUpdatesCount == 0)
+            if (periodicUpdate && counter >= nextPeriodicUpdate)
             {
+                nextPeriodicUpdate = counter + periodicUpdatesCount;
                 periodSW.start();
                 sortedNodes.clear();
+                TIntArrayList uncontracted = new TIntArrayList();
                 int len = prepareGraph.getNodes();
                 for (int node = 0; node < len; node++)
                 {
-                    if (prepareGraph.getLevel(node) != maxLevel)
-                        continue;
+                    if (prepareGraph.getLevel(node) == maxLevel)
+                        uncontracted.add(node);
+                }
 
-                    int priority = oldPriorities[node] = calculatePriority(node);
-                    sortedNodes.insert(node, priority);
+                int[] nodes = uncontracted.toArray();
+                int[] priorities = calculatePriorities(nodes);
+                for (int i = 0; i < nodes.length; i++)
+                {
+                    int priority = oldPriorities[nodes[i]] = priorities[i];
+                    sortedNodes.insert(nodes[i], priority);
                 }
                 periodSW.stop();
                 updateCounter++;
@@ -294,25 +372,38 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                     throw new IllegalStateException("Cannot prepare as no unprepared nodes where found. Called preparation twice?");
             }
 
-            if (counter % logSize == 0)
+            if (counter >= nextLog)
             {
+                nextLog = counter + logSize;
                 logger.info(Helper.nf(counter) + ", updates:" + updateCounter
                         + ", nodes: " + Helper.nf(sortedNodes.getSize())
                         + ", shortcuts:" + Helper.nf(newShortcuts)
-                        + ", dijkstras:" + Helper.nf(dijkstraCount)
-                        + ", t(dijk):" + (int) dijkstraSW.getSeconds()
+                        + ", dijkstras:" + Helper.nf(getDijkstraCount())
+                        + ", t(dijk):" + (int) getDijkstraSeconds()
                         + ", t(period):" + (int) periodSW.getSeconds()
                         + ", t(lazy):" + (int) lazySW.getSeconds()
                         + ", t(neighbor):" + (int) neighborSW.getSeconds()
                         + ", meanDegree:" + (long) meanDegree
-                        + ", algo:" + prepareAlgo.getMemoryUsageAsString()
+                        + ", algo:" + mainSearch.algo.getMemoryUsageAsString()
                         + ", " + Helper.getMemInfo());
-                dijkstraSW = new StopWatch();
+                resetDijkstraStopWatches();
                 periodSW = new StopWatch();
                 lazySW = new StopWatch();
                 neighborSW = new StopWatch();
             }
 
+            if (executorService != null)
+            {
+                int contracted = contractIndependentNodes(level, lastNodesLazyUpdates, neighborUpdate, lazySW, neighborSW);
+                counter += contracted;
+                level += contracted;
+                if (sortedNodes.getSize() < nodesToAvoidContract)
+                    // skipped nodes are already set to maxLevel
+                    break;
+
+                continue;
+            }
+
             counter++;
             int polledNode = sortedNodes.pollKey();
             if (sortedNodes.getSize() < lastNodesLazyUpdates)
@@ -356,7 +447,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                     neighborSW.stop();
                 }
 
-                levelGraphCast.disconnect(vehicleAllTmpExplorer, iter);
+                prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
             }
         }
 
@@ -367,8 +458,9 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", new shortcuts: " + newShortcuts
                 + ", " + prepareWeighting
                 + ", " + prepareFlagEncoder
-                + ", dijkstras:" + dijkstraCount
-                + ", t(dijk):" + (int) dijkstraSW.getSeconds()
+                + ", threads:" + threads
+                + ", dijkstras:" + getDijkstraCount()
+                + ", t(dijk):" + (int) getDijkstraSeconds()
                 + ", t(period):" + (int) periodSW.getSeconds()
                 + ", t(lazy):" + (int) lazySW.getSeconds()
                 + ", t(neighbor):" + (int) neighborSW.getSeconds()
@@ -380,17 +472,278 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 + ", " + Helper.getMemInfo());
     }
 
+    /**
+     * Contracts one round of the parallel contraction: selects a set of independent nodes with the
+     * lowest priorities, searches their shortcuts concurrently and adds them to the graph.
+     * <p/>
+     * @return the number of contracted nodes
+     */
+    private int contractIndependentNodes( int level, long lastNodesLazyUpdates, boolean neighborUpdate,
+                                          StopWatch lazySW, StopWatch neighborSW )
+    {
+        round++;
+        boolean lazyUpdate = sortedNodes.getSize() < lastNodesLazyUpdates;
+        int maxCandidates = threads * 16;
+        TIntArrayList candidates = new TIntArrayList(maxCandidates);
+        TIntArrayList skipped = new TIntArrayList();
+        while (!sortedNodes.isEmpty() && candidates.size() + skipped.size() < maxCandidates)
+        {
+            int node = sortedNodes.pollKey();
+            if (!markIndependent(node))
+            {
+                skipped.add(node);
+                continue;
+            }
+            candidates.add(node);
+        }
+        for (int i = 0; i < skipped.size(); i++)
+        {
+            int node = skipped.get(i);
+            sortedNodes.insert(node, oldPriorities[node]);
+        }
+
+        // the graph is only read while searching shortcuts for independent nodes
+        final int[] nodes = candidates.toArray();
+        final int[] priorities = new int[nodes.length];
+        final long[] degreeCounters = new long[nodes.length];
+        final List<List<Shortcut>> foundShortcuts = new ArrayList<List<Shortcut>>(nodes.length);
+        for (int i = 0; i < nodes.length; i++)
+        {
+            foundShortcuts.add(null);
+        }
+        final boolean calcPriority = lazyUpdate;
+        runInParallel(new WorkerTask()
+        {
+            @Override
+            public void run( WitnessSearch search, int index )
+            {
+                int node = nodes[index];
+                if (calcPriority)
+                    priorities[index] = search.calculatePriority(node);
+
+                degreeCounters[index] = search.findShortcuts(search.addScHandler.setNode(node));
+                foundShortcuts.set(index, new ArrayList<Shortcut>(search.addScHandler.shortcuts.keySet()));
+            }
+        }, nodes.length);
+
+        int contracted = 0;
+        TIntArrayList neighbors = new TIntArrayList();
+        for (int i = 0; i < nodes.length; i++)
+        {
+            int node = nodes[i];
+            if (lazyUpdate)
+            {
+                lazySW.start();
+                oldPriorities[node] = priorities[i];
+                if (!sortedNodes.isEmpty() && priorities[i] > sortedNodes.peekValue())
+                {
+                    // current node got more important => insert as new value and contract it later
+                    sortedNodes.insert(node, priorities[i]);
+                    lazySW.stop();
+                    continue;
+                }
+                lazySW.stop();
+            }
+
+            updateMeanDegree(degreeCounters[i]);
+            newShortcuts += applyShortcuts(foundShortcuts.get(i));
+            prepareGraph.setLevel(node, level + contracted);
+            contracted++;
+
+            EdgeSkipIterator iter = vehicleAllExplorer.setBaseNode(node);
+            while (iter.next())
+            {
+                int nn = iter.getAdjNode();
+                if (prepareGraph.getLevel(nn) != maxLevel)
+                    continue;
+
+                if (neighborUpdate && rand.nextInt(100) < neighborUpdatePercentage)
+                    neighbors.add(nn);
+
+                prepareGraph.disconnect(vehicleAllTmpExplorer, iter);
+            }
+        }
+
+        if (!neighbors.isEmpty())
+        {
+            neighborSW.start();
+            int[] updateNodes = neighbors.toArray();
+            int[] updatePriorities = calculatePriorities(updateNodes);
+            for (int i = 0; i < updateNodes.length; i++)
+            {
+                int nn = updateNodes[i];
+                int oldPrio = oldPriorities[nn];
+                int priority = updatePriorities[i];
+                // a neighbor could be listed twice
+                if (priority != oldPrio)
+                {
+                    oldPriorities[nn] = priority;
+                    sortedNodes.update(nn, oldPrio, priority);
+                }
+            }
+            neighborSW.stop();
+        }
+        return contracted;
+    }
+
+    /**
+     * Marks the specified node and its uncontracted neighbors for the current round if neither the
+     * node nor one of its neighbors is already marked.
+     * <p/>
+     * @return false if the node is not independent from the already selected nodes
+     */
+    private boolean markIndependent( int node )
+    {
+        if (nodeRounds[node] == round)
+            return false;
+
+        EdgeSkipIterator iter = vehicleAllExplorer.setBaseNode(node);
+        while (iter.next())
+        {
+            int nn = iter.getAdjNode();
+            if (nodeRounds[nn] == round && prepareGraph.getLevel(nn) == maxLevel)
+                return false;
+        }
+
+        nodeRounds[node] = round;
+        iter = vehicleAllExplorer.setBaseNode(node);
+        while (iter.next())
+        {
+            int nn = iter.getAdjNode();
+            if (prepareGraph.getLevel(nn) == maxLevel)
+                nodeRounds[nn] = round;
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the priorities of the specified nodes, concurrently if more than one thread is
+     * configured. The graph must not be changed meanwhile.
+     */
+    private int[] calculatePriorities( final int[] nodes )
+    {
+        final int[] priorities = new int[nodes.length];
+        if (executorService == null)
+        {
+            for (int i = 0; i < nodes.length; i++)
+            {
+                priorities[i] = calculatePriority(nodes[i]);
+            }
+            return priorities;
+        }
+
+        runInParallel(new WorkerTask()
+        {
+            @Override
+            public void run( WitnessSearch search, int index )
+            {
+                priorities[index] = search.calculatePriority(nodes[index]);
+            }
+        }, nodes.length);
+        return priorities;
+    }
+
+    interface WorkerTask
+    {
+        void run( WitnessSearch search, int index );
+    }
+
+    /**
+     * Calls the task for every index in [0, size) where every thread uses its own WitnessSearch.
+     */
+    private void runInParallel( final WorkerTask task, final int size )
+    {
+        List<Callable<Object>> callables = new ArrayList<Callable<Object>>(threads);
+        for (int t = 0; t < threads; t++)
+        {
+            final int start = t;
+            final WitnessSearch search = workerSearches[t];
+            callables.add(new Callable<Object>()
+            {
+                @Override
+                public Object call()
+                {
+                    for (int index = start; index < size; index += threads)
+                    {
+                        task.run(search, index);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try
+        {
+            for (Future<Object> future : executorService.invokeAll(callables))
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Contraction was interrupted", ex);
+        } catch (ExecutionException ex)
+        {
+            throw new RuntimeException("Problem while contracting nodes", ex.getCause());
+        }
+    }
+
+    private long getDijkstraCount()
+    {
+        long count = mainSearch.dijkstraCount;
+        if (workerSearches != null)
+        {
+            for (WitnessSearch search : workerSearches)
+            {
+                count += search.dijkstraCount;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return the time spent in witness searches summed over all threads
+     */
+    private double getDijkstraSeconds()
+    {
+        double seconds = mainSearch.dijkstraSW.getSeconds();
+        if (workerSearches != null)
+        {
+            for (WitnessSearch search : workerSearches)
+            {
+                seconds += search.dijkstraSW.getSeconds();
+            }
+        }
+        return seconds;
+    }
+
+    private void resetDijkstraStopWatches()
+    {
+        mainSearch.dijkstraSW = new StopWatch();
+        if (workerSearches != null)
+        {
+            for (WitnessSearch search : workerSearches)
+            {
+                search.dijkstraSW = new StopWatch();
+            }
+        }
+    }
+
     public void close()
     {
-        prepareAlgo.close();
+        mainSearch.algo.close();
+        if (workerSearches != null)
+        {
+            for (WitnessSearch search : workerSearches)
+            {
+                search.algo.close();
+            }
+        }
         originalEdges.close();
         sortedNodes = null;
         oldPriorities = null;
     }
 
-    AddShortcutHandler addScHandler = new AddShortcutHandler();
-    CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
-
     interface ShortcutHandler
     {
         void foundShortcut( int u_fromNode, int w_toNode,
@@ -434,6 +787,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     class AddShortcutHandler implements ShortcutHandler
     {
+        final Map<Shortcut, Shortcut> shortcuts = new HashMap<Shortcut, Shortcut>();
         int node;
 
         public AddShortcutHandler()
@@ -475,7 +829,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
                 // overwrite flags only if skipped edges are identical
                 if (tmpRetSc.skippedEdge2 == skippedEdge1 && tmpRetSc.skippedEdge1 == outgoingEdges.getEdge())
                 {
-                    tmpRetSc.flags = PrepareEncoder.getScDirMask();
+                    tmpRetSc.flags = scDirMask;
                     return;
                 }
             }
@@ -489,8 +843,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     Set<Shortcut> testFindShortcuts( int node )
     {
-        findShortcuts(addScHandler.setNode(node));
-        return shortcuts.keySet();
+        mainSearch.findShortcuts(mainSearch.addScHandler.setNode(node));
+        return mainSearch.addScHandler.shortcuts.keySet();
     }
 
     /**
@@ -501,138 +855,43 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
      */
     int calculatePriority( int v )
     {
-        // set of shortcuts that would be added if adjNode v would be contracted next.
-        findShortcuts(calcScHandler.setNode(v));
-
-//        System.out.println(v + "\t " + tmpShortcuts);
-        // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
-        //
-        // every adjNode has an 'original edge' number associated. initially it is r=1
-        // when a new shortcut is introduced then r of the associated edges is summed up:
-        // r(u,w)=r(u,v)+r(v,w) now we can define
-        // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
-        int originalEdgesCount = calcScHandler.originalEdgesCount;
-//        for (Shortcut sc : tmpShortcuts) {
-//            originalEdgesCount += sc.originalEdges;
-//        }
-
-        // # lowest influence on preparation speed or shortcut creation count 
-        // (but according to paper should speed up queries)
-        //
-        // number of already contracted neighbors of v
-        int contractedNeighbors = 0;
-        int degree = 0;
-        EdgeSkipIterator iter = calcPrioAllExplorer.setBaseNode(v);
-        while (iter.next())
-        {
-            degree++;
-            if (iter.isShortcut())
-                contractedNeighbors++;
-        }
-
-        // from shortcuts we can compute the edgeDifference
-        // # low influence: with it the shortcut creation is slightly faster
-        //
-        // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
-        // meanDegree is used instead of outDegree+inDegree as if one adjNode is in both directions
-        // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
-        int edgeDifference = calcScHandler.shortcuts - degree;
-
-        // according to the paper do a simple linear combination of the properties to get the priority.
-        // this is the current optimum for unterfranken:
-        return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        return mainSearch.calculatePriority(v);
     }
 
     /**
-     * Finds shortcuts, does not change the underlying graph.
+     * Introduces the necessary shortcuts for adjNode v in the graph.
      */
-    void findShortcuts( ShortcutHandler sch )
+    int addShortcuts( int v )
     {
-        long tmpDegreeCounter = 0;
-        EdgeIterator incomingEdges = vehicleInExplorer.setBaseNode(sch.getNode());
-        // collect outgoing nodes (goal-nodes) only once
-        while (incomingEdges.next())
-        {
-            int u_fromNode = incomingEdges.getAdjNode();
-            // accept only uncontracted nodes
-            if (prepareGraph.getLevel(u_fromNode) != maxLevel)
-                continue;
-
-            double v_u_dist = incomingEdges.getDistance();
-            double v_u_weight = prepareWeighting.calcWeight(incomingEdges, true, EdgeIterator.NO_EDGE);
-            int skippedEdge1 = incomingEdges.getEdge();
-            int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
-            // collect outgoing nodes (goal-nodes) only once
-            EdgeIterator outgoingEdges = vehicleOutExplorer.setBaseNode(sch.getNode());
-            // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
-            prepareAlgo.clear();
-            tmpDegreeCounter++;
-            while (outgoingEdges.next())
-            {
-                int w_toNode = outgoingEdges.getAdjNode();
-                // add only uncontracted nodes
-                if (prepareGraph.getLevel(w_toNode) != maxLevel || u_fromNode == w_toNode)
-                    continue;
-
-                // Limit weight as ferries or forbidden edges can increase local search too much.
-                // If we decrease the correct weight we only explore less and introduce more shortcuts.
-                // I.e. no change to accuracy is made.
-                double existingDirectWeight = v_u_weight + prepareWeighting.calcWeight(outgoingEdges, false, incomingEdges.getEdge());
-                if (Double.isNaN(existingDirectWeight))
-                    throw new IllegalStateException("Weighting should never return NaN values"
-                            + ", in:" + getCoords(incomingEdges, prepareGraph) + ", out:" + getCoords(outgoingEdges, prepareGraph)
-                            + ", dist:" + outgoingEdges.getDistance() + ", speed:" + prepareFlagEncoder.getSpeed(outgoingEdges.getFlags()));
-
-                if (Double.isInfinite(existingDirectWeight))
-                    continue;
-
-                double existingDistSum = v_u_dist + outgoingEdges.getDistance();
-                prepareAlgo.setWeightLimit(existingDirectWeight);
-                prepareAlgo.setLimitVisitedNodes((int) meanDegree * 100)
-                        .setEdgeFilter(ignoreNodeFilter.setAvoidNode(sch.getNode()));
-
-                dijkstraSW.start();
-                dijkstraCount++;
-                int endNode = prepareAlgo.findEndNode(u_fromNode, w_toNode);
-                dijkstraSW.stop();
-
-                // compare end node as the limit could force dijkstra to finish earlier
-                if (endNode == w_toNode && prepareAlgo.getWeight(endNode) <= existingDirectWeight)
-                    // FOUND witness path, so do not add shortcut                
-                    continue;
+        updateMeanDegree(mainSearch.findShortcuts(mainSearch.addScHandler.setNode(v)));
+        return applyShortcuts(mainSearch.addScHandler.shortcuts.keySet());
+    }
 
-                sch.foundShortcut(u_fromNode, w_toNode,
-                        existingDirectWeight, existingDistSum,
-                        outgoingEdges,
-                        skippedEdge1, incomingEdgeOrigCount);
-            }
-        }
-        if (sch instanceof AddShortcutHandler)
-        {
-            // sliding mean value when using "*2" => slower changes
-            meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
-            // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
-        }
+    private void updateMeanDegree( long tmpDegreeCounter )
+    {
+        // sliding mean value when using "*2" => slower changes
+        meanDegree = (meanDegree * 2 + tmpDegreeCounter) / 3;
+        // meanDegree = (meanDegree + tmpDegreeCounter) / 2;
     }
 
     /**
-     * Introduces the necessary shortcuts for adjNode v in the graph.
+     * Adds the specified shortcuts to the graph or updates existing ones.
+     * <p/>
+     * @return the number of new shortcuts
      */
-    int addShortcuts( int v )
+    private int applyShortcuts( Collection<Shortcut> foundShortcuts )
     {
-        shortcuts.clear();
-        findShortcuts(addScHandler.setNode(v));
         int tmpNewShortcuts = 0;
         NEXT_SC:
-        for (Shortcut sc : shortcuts.keySet())
+        for (Shortcut sc : foundShortcuts)
         {
             boolean updatedInGraph = false;
             // check if we need to update some existing shortcut in the graph
-            EdgeSkipIterator iter = vehicleOutExplorer.setBaseNode(sc.from);
+            EdgeSkipIterator iter = mainSearch.outExplorer.setBaseNode(sc.from);
             while (iter.next())
             {
                 if (iter.isShortcut() && iter.getAdjNode() == sc.to
-                        && PrepareEncoder.canBeOverwritten(iter.getFlags(), sc.flags))
+                        && PrepareEncoder.canBeOverwritten(iter.getFlags(), sc.flags, scDirMask))
                 {
                     if (sc.weight >= prepareWeighting.calcWeight(iter, false, EdgeIterator.NO_EDGE))
                         continue NEXT_SC;
@@ -674,6 +933,144 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return tmpNewShortcuts;
     }
 
+    /**
+     * Holds everything which is necessary to search witness paths. Instances can be used
+     * concurrently from different threads as long as the graph is not changed.
+     */
+    class WitnessSearch
+    {
+        final EdgeSkipExplorer inExplorer;
+        final EdgeSkipExplorer outExplorer;
+        final EdgeSkipExplorer prioExplorer;
+        final DijkstraOneToMany algo;
+        final IgnoreNodeFilter ignoreNodeFilter;
+        final CalcShortcutHandler calcScHandler = new CalcShortcutHandler();
+        final AddShortcutHandler addScHandler = new AddShortcutHandler();
+        long dijkstraCount;
+        StopWatch dijkstraSW = new StopWatch();
+
+        WitnessSearch()
+        {
+            inExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
+            outExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
+            prioExplorer = prepareGraph.createEdgeExplorer(accessWithLevelFilter);
+            algo = new DijkstraOneToMany(prepareGraph, prepareFlagEncoder, prepareWeighting, traversalMode);
+            ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph, maxLevel);
+        }
+
+        int calculatePriority( int v )
+        {
+            // set of shortcuts that would be added if adjNode v would be contracted next.
+            findShortcuts(calcScHandler.setNode(v));
+
+            // # huge influence: the bigger the less shortcuts gets created and the faster is the preparation
+            //
+            // every adjNode has an 'original edge' number associated. initially it is r=1
+            // when a new shortcut is introduced then r of the associated edges is summed up:
+            // r(u,w)=r(u,v)+r(v,w) now we can define
+            // originalEdgesCount = σ(v) := sum_{ (u,w) ∈ shortcuts(v) } of r(u, w)
+            int originalEdgesCount = calcScHandler.originalEdgesCount;
+    //        for (Shortcut sc : tmpShortcuts) {
+    //            originalEdgesCount += sc.originalEdges;
+    //        }
+
+            // # lowest influence on preparation speed or shortcut creation count 
+            // (but according to paper should speed up queries)
+            //
+            // number of already contracted neighbors of v
+            int contractedNeighbors = 0;
+            int degree = 0;
+            EdgeSkipIterator iter = prioExplorer.setBaseNode(v);
+            while (iter.next())
+            {
+                degree++;
+                if (iter.isShortcut())
+                    contractedNeighbors++;
+            }
+
+            // from shortcuts we can compute the edgeDifference
+            // # low influence: with it the shortcut creation is slightly faster
+            //
+            // |shortcuts(v)| − |{(u, v) | v uncontracted}| − |{(v, w) | v uncontracted}|        
+            // meanDegree is used instead of outDegree+inDegree as if one adjNode is in both directions
+            // only one bucket memory is used. Additionally one shortcut could also stand for two directions.
+            int edgeDifference = calcScHandler.shortcuts - degree;
+
+            // according to the paper do a simple linear combination of the properties to get the priority.
+            // this is the current optimum for unterfranken:
+            return 10 * edgeDifference + originalEdgesCount + contractedNeighbors;
+        }
+
+        /**
+         * Finds shortcuts, does not change the underlying graph.
+         * <p/>
+         * @return the number of visited incoming edges which is used to update the mean degree
+         */
+        long findShortcuts( ShortcutHandler sch )
+        {
+            long tmpDegreeCounter = 0;
+            EdgeIterator incomingEdges = inExplorer.setBaseNode(sch.getNode());
+            // collect outgoing nodes (goal-nodes) only once
+            while (incomingEdges.next())
+            {
+                int u_fromNode = incomingEdges.getAdjNode();
+                // accept only uncontracted nodes
+                if (prepareGraph.getLevel(u_fromNode) != maxLevel)
+                    continue;
+
+                double v_u_dist = incomingEdges.getDistance();
+                double v_u_weight = prepareWeighting.calcWeight(incomingEdges, true, EdgeIterator.NO_EDGE);
+                int skippedEdge1 = incomingEdges.getEdge();
+                int incomingEdgeOrigCount = getOrigEdgeCount(skippedEdge1);
+                // collect outgoing nodes (goal-nodes) only once
+                EdgeIterator outgoingEdges = outExplorer.setBaseNode(sch.getNode());
+                // force fresh maps etc as this cannot be determined by from node alone (e.g. same from node but different avoidNode)
+                algo.clear();
+                tmpDegreeCounter++;
+                while (outgoingEdges.next())
+                {
+                    int w_toNode = outgoingEdges.getAdjNode();
+                    // add only uncontracted nodes
+                    if (prepareGraph.getLevel(w_toNode) != maxLevel || u_fromNode == w_toNode)
+                        continue;
+
+                    // Limit weight as ferries or forbidden edges can increase local search too much.
+                    // If we decrease the correct weight we only explore less and introduce more shortcuts.
+                    // I.e. no change to accuracy is made.
+                    double existingDirectWeight = v_u_weight + prepareWeighting.calcWeight(outgoingEdges, false, incomingEdges.getEdge());
+                    if (Double.isNaN(existingDirectWeight))
+                        throw new IllegalStateException("Weighting should never return NaN values"
+                                + ", in:" + getCoords(incomingEdges, prepareGraph) + ", out:" + getCoords(outgoingEdges, prepareGraph)
+                                + ", dist:" + outgoingEdges.getDistance() + ", speed:" + prepareFlagEncoder.getSpeed(outgoingEdges.getFlags()));
+
+                    if (Double.isInfinite(existingDirectWeight))
+                        continue;
+
+                    double existingDistSum = v_u_dist + outgoingEdges.getDistance();
+                    algo.setWeightLimit(existingDirectWeight);
+                    algo.setLimitVisitedNodes((int) meanDegree * 100)
+                            .setEdgeFilter(ignoreNodeFilter.setAvoidNode(sch.getNode()));
+
+                    dijkstraSW.start();
+                    dijkstraCount++;
+                    int endNode = algo.findEndNode(u_fromNode, w_toNode);
+                    dijkstraSW.stop();
+
+                    // compare end node as the limit could force dijkstra to finish earlier
+                    if (endNode == w_toNode && algo.getWeight(endNode) <= existingDirectWeight)
+                        // FOUND witness path, so do not add shortcut                
+                        continue;
+
+                    sch.foundShortcut(u_fromNode, w_toNode,
+                            existingDirectWeight, existingDistSum,
+                            outgoingEdges,
+                            skippedEdge1, incomingEdgeOrigCount);
+                }
+            }
+            return tmpDegreeCounter;
+        }
+    }
+
     String getCoords( EdgeIteratorState e, Graph g )
     {
         NodeAccess na = g.getNodeAccess();
@@ -685,12 +1082,10 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
 
     PrepareContractionHierarchies initFromGraph()
     {
-        vehicleInExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, true, false));
-        vehicleOutExplorer = prepareGraph.createEdgeExplorer(new DefaultEdgeFilter(prepareFlagEncoder, false, true));
         final EdgeFilter allFilter = new DefaultEdgeFilter(prepareFlagEncoder, true, true);
 
         // filter by vehicle and level number
-        final EdgeFilter accessWithLevelFilter = new LevelEdgeFilter(prepareGraph)
+        accessWithLevelFilter = new LevelEdgeFilter(prepareGraph)
         {
             @Override
             public final boolean accept( EdgeIteratorState edgeState )
@@ -703,10 +1098,8 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         };
 
         maxLevel = prepareGraph.getNodes() + 1;
-        ignoreNodeFilter = new IgnoreNodeFilter(prepareGraph, maxLevel);
         vehicleAllExplorer = prepareGraph.createEdgeExplorer(allFilter);
         vehicleAllTmpExplorer = prepareGraph.createEdgeExplorer(allFilter);
-        calcPrioAllExplorer = prepareGraph.createEdgeExplorer(accessWithLevelFilter);
 
         // Use an alternative to PriorityQueue as it has some advantages: 
         //   1. Gets automatically smaller if less entries are stored => less total RAM used. 
@@ -715,7 +1108,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         //   but we need the additional oldPriorities array to keep the old value which is necessary for the update method
         sortedNodes = new GHTreeMapComposed();
         oldPriorities = new int[prepareGraph.getNodes()];
-        prepareAlgo = new DijkstraOneToMany(prepareGraph, prepareFlagEncoder, prepareWeighting, traversalMode);
+        mainSearch = new WitnessSearch();
         return this;
     }
 
@@ -875,6 +1268,15 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         return algo;
     }
 
+    /**
+     * Creates the bucket based many-to-many algorithm for the prepared graph or a QueryGraph on
+     * top of it.
+     */
+    public MatrixAlgorithm createMatrixAlgo( Graph graph )
+    {
+        return new ManyToManyCH(graph, prepareFlagEncoder, prepareWeighting, levelFilter);
+    }
+
     private static class PriorityNode implements Comparable<PriorityNode>
     {
         int node;
@@ -908,7 +1310,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         double dist;
         double weight;
         int originalEdges;
-        long flags = PrepareEncoder.getScFwdDir();
+        long flags = scFwdDir;
 
         public Shortcut( int from, int to, double weight, double dist )
         {
@@ -945,7 +1347,7 @@ public class PrepareContractionHierarchies extends AbstractAlgoPreparation imple
         public String toString()
         {
             String str;
-            if (flags == PrepareEncoder.getScDirMask())
+            if (flags == scDirMask)
                 str = from + "<->";
             else
                 str = from + "->";
@@ -60,7 +60,7 @@ public class FastestWeighting implements Weighting
     @Override
     public double calcWeight( EdgeIteratorState edge, boolean reverse, int prevOrNextEdgeId )
     {
-        double speed = reverse ? encoder.getReverseSpeed(edge.getFlags()) : encoder.getSpeed(edge.getFlags());
+        double speed = getSpeed(edge, reverse);
         if (speed == 0)
             return Double.POSITIVE_INFINITY;
 
@@ -74,6 +74,14 @@ public class FastestWeighting implements Weighting
         return time;
     }
 
+    /**
+     * @return the speed in km/h of the specified edge in the direction of travel
+     */
+    protected double getSpeed( EdgeIteratorState edge, boolean reverse )
+    {
+        return reverse ? encoder.getReverseSpeed(edge.getFlags()) : encoder.getSpeed(edge.getFlags());
+    }
+
     @Override
     public String toString()
     {
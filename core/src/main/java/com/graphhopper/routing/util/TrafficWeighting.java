@@ -0,0 +1,80 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.util;
+
+import com.graphhopper.routing.VirtualEdgeIteratorState;
+import com.graphhopper.storage.EdgeSpeedOverlay;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.PMap;
+
+/**
+ * The same as FastestWeighting but the live speeds of the EdgeSpeedOverlay overrule the speeds
+ * encoded in the flags. Roads without access stay inaccessible and live speeds are limited to the
+ * maximum speed of the encoder to keep getMinWeight valid.
+ * <p/>
+ * Virtual edges of a QueryGraph do not know the direction of their original edge and use the
+ * lower live speed of both directions. As the speeds can change at any time this weighting cannot
+ * be used for a CH preparation.
+ * <p/>
+ * @author Peter Karich
+ */
+public class TrafficWeighting extends FastestWeighting
+{
+    private final EdgeSpeedOverlay speedOverlay;
+    private final double maxSpeed;
+
+    public TrafficWeighting( FlagEncoder encoder, PMap pMap, EdgeSpeedOverlay speedOverlay )
+    {
+        super(encoder, pMap);
+        this.speedOverlay = speedOverlay;
+        maxSpeed = encoder.getMaxSpeed();
+    }
+
+    public TrafficWeighting( FlagEncoder encoder, EdgeSpeedOverlay speedOverlay )
+    {
+        this(encoder, new PMap(0), speedOverlay);
+    }
+
+    @Override
+    protected double getSpeed( EdgeIteratorState edge, boolean reverse )
+    {
+        double speed = super.getSpeed(edge, reverse);
+        if (speed == 0)
+            return 0;
+
+        double liveSpeed = EdgeSpeedOverlay.NO_SPEED;
+        if (edge.getEdge() >= speedOverlay.getEdgeCount())
+        {
+            // the iterators of a QueryGraph return virtual edges only via detach
+            EdgeIteratorState virtualEdge = edge instanceof VirtualEdgeIteratorState ? edge : edge.detach(false);
+            if (virtualEdge instanceof VirtualEdgeIteratorState)
+                liveSpeed = speedOverlay.getMinSpeed(((VirtualEdgeIteratorState) virtualEdge).getOriginalTraversalKey() / 2);
+        } else
+            liveSpeed = speedOverlay.getSpeed(edge, reverse);
+
+        if (liveSpeed == EdgeSpeedOverlay.NO_SPEED)
+            return speed;
+        return Math.min(liveSpeed, maxSpeed);
+    }
+
+    @Override
+    public String toString()
+    {
+        return "TRAFFIC|" + encoder;
+    }
+}
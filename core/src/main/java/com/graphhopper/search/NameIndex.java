@@ -26,6 +26,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
+ * Stores the names of the ways. Every distinct name is stored only once: a hash table over the
+ * name pointers is kept in a separate DataAccess ('names_index') using open addressing with
+ * linear probing. The table does not store the names itself, on a collision the stored bytes are
+ * compared. As the names are stored consecutively the table can always be rebuilt from the names,
+ * e.g. if it grows or if it is missing for a graph created by an older version.
+ * <p/>
+ * To limit the memory usage while import the table does not grow beyond the specified maximum
+ * entries. If it is full new names are still stored but without deduplication.
+ * <p/>
  * @author Ottavio Campana
  * @author Peter Karich
  */
@@ -33,15 +42,37 @@ public class NameIndex implements Storable<NameIndex>
 {
     private static final Logger logger = LoggerFactory.getLogger(NameIndex.class);
     private static final long START_POINTER = 1;
+    private static final int INITIAL_SLOTS = 1 << 10;
     private final DataAccess names;
+    private final DataAccess hashIndex;
     private long bytePointer = START_POINTER;
     // minor optimization for the previous stored name
     private String lastName;
     private long lastIndex;
+    // 0 means the hash table is not yet created or loaded
+    private int slots;
+    private int entries;
+    private int maxEntries = 1 << 22;
+    private final byte[] compareBytes = new byte[255];
 
     public NameIndex( Directory dir )
     {
         names = dir.find("names");
+        hashIndex = dir.find("names_index");
+    }
+
+    /**
+     * Limits the number of distinct names which are deduplicated. The table needs 8 bytes per
+     * entry, i.e. 32MB for the default of 4 million entries. Use 0 to disable the deduplication
+     * except for consecutive equal names.
+     */
+    public NameIndex setMaxEntries( int maxEntries )
+    {
+        if (maxEntries < 0 || maxEntries > 1 << 29)
+            throw new IllegalArgumentException("maxEntries is out of range: " + maxEntries);
+
+        this.maxEntries = maxEntries;
+        return this;
     }
 
     @Override
@@ -56,7 +87,12 @@ public class NameIndex implements Storable<NameIndex>
     {
         if (names.loadExisting())
         {
-            bytePointer = BitUtil.LITTLE.combineIntsToLong(names.getHeader(0), names.getHeader(1));
+            bytePointer = BitUtil.LITTLE.combineIntsToLong(names.getHeader(0), names.getHeader(4));
+            if (hashIndex.loadExisting())
+            {
+                slots = hashIndex.getHeader(0);
+                entries = hashIndex.getHeader(4);
+            }
             return true;
         }
 
@@ -77,6 +113,15 @@ public class NameIndex implements Storable<NameIndex>
             return lastIndex;
         }
         byte[] bytes = getBytes(name);
+        int hash = hash(bytes, bytes.length);
+        long existing = find(bytes, bytes.length, hash);
+        if (existing > 0)
+        {
+            lastName = name;
+            lastIndex = existing;
+            return existing;
+        }
+
         long oldPointer = bytePointer;
         names.ensureCapacity(bytePointer + 1 + bytes.length);
         byte[] sizeBytes = new byte[]
@@ -89,9 +134,140 @@ public class NameIndex implements Storable<NameIndex>
         bytePointer += bytes.length;
         lastName = name;
         lastIndex = oldPointer;
+        addToIndex(oldPointer, hash);
         return oldPointer;
     }
 
+    /**
+     * @return the pointer of the stored name which has the specified bytes or 0 if not found
+     */
+    private long find( byte[] bytes, int length, int hash )
+    {
+        if (maxEntries == 0 || !ensureIndex())
+            return 0;
+
+        int mask = slots - 1;
+        for (int slot = hash & mask;; slot = (slot + 1) & mask)
+        {
+            int pointer = hashIndex.getInt((long) slot * 4);
+            if (pointer == 0)
+                return 0;
+
+            if (equalBytes(pointer, bytes, length))
+                return pointer;
+        }
+    }
+
+    private boolean equalBytes( long pointer, byte[] bytes, int length )
+    {
+        names.getBytes(pointer, compareBytes, 1);
+        if ((compareBytes[0] & 0xFF) != length)
+            return false;
+
+        names.getBytes(pointer + 1, compareBytes, length);
+        for (int i = 0; i < length; i++)
+        {
+            if (compareBytes[i] != bytes[i])
+                return false;
+        }
+        return true;
+    }
+
+    private void addToIndex( long pointer, int hash )
+    {
+        // the edges reference names via an int
+        if (slots == 0 || pointer > Integer.MAX_VALUE)
+            return;
+
+        // keep the load factor below 0.5 and do not grow beyond the limit
+        if ((entries + 1) * 2L > slots)
+        {
+            if (slots >= 2L * maxEntries)
+                return;
+
+            rebuildIndex(slots * 2);
+        } else
+        {
+            insert((int) pointer, hash);
+        }
+    }
+
+    private void insert( int pointer, int hash )
+    {
+        int mask = slots - 1;
+        int slot = hash & mask;
+        while (hashIndex.getInt((long) slot * 4) != 0)
+        {
+            slot = (slot + 1) & mask;
+        }
+        hashIndex.setInt((long) slot * 4, pointer);
+        entries++;
+    }
+
+    /**
+     * Creates the hash table if not yet done. A created table can be read only, e.g. for MMAP_RO.
+     * <p/>
+     * @return false if no table is available
+     */
+    private boolean ensureIndex()
+    {
+        if (slots > 0)
+            return true;
+
+        if (!names.getType().isAllowWrites())
+            return false;
+
+        rebuildIndex(INITIAL_SLOTS);
+        return true;
+    }
+
+    /**
+     * Fills a cleared table of the specified size with all names stored so far, only the first of
+     * several equal names is added.
+     */
+    private void rebuildIndex( int newSlots )
+    {
+        long bytes = (long) newSlots * 4;
+        if (slots == 0 && hashIndex.getCapacity() == 0)
+            hashIndex.create(bytes);
+        else
+            hashIndex.ensureCapacity(bytes);
+
+        for (long pos = 0; pos < bytes; pos += 4)
+        {
+            hashIndex.setInt(pos, 0);
+        }
+
+        slots = newSlots;
+        entries = 0;
+        byte[] tmpBytes = new byte[255];
+        byte[] sizeBytes = new byte[1];
+        long pointer = START_POINTER;
+        while (pointer < bytePointer && pointer <= Integer.MAX_VALUE && (entries + 1) * 2L <= slots)
+        {
+            names.getBytes(pointer, sizeBytes, 1);
+            int size = sizeBytes[0] & 0xFF;
+            names.getBytes(pointer + 1, tmpBytes, size);
+            int hash = hash(tmpBytes, size);
+            if (find(tmpBytes, size, hash) == 0)
+                insert((int) pointer, hash);
+
+            pointer += 1 + size;
+        }
+    }
+
+    private static int hash( byte[] bytes, int length )
+    {
+        int hash = 0;
+        for (int i = 0; i < length; i++)
+        {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the higher bits as only the lower bits are used for the slot
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+
     private byte[] getBytes( String name )
     {
         byte[] bytes = null;
@@ -140,12 +316,19 @@ public class NameIndex implements Storable<NameIndex>
         names.setHeader(0, BitUtil.LITTLE.getIntLow(bytePointer));
         names.setHeader(4, BitUtil.LITTLE.getIntHigh(bytePointer));
         names.flush();
+        if (slots > 0)
+        {
+            hashIndex.setHeader(0, slots);
+            hashIndex.setHeader(4, entries);
+            hashIndex.flush();
+        }
     }
 
     @Override
     public void close()
     {
         names.close();
+        hashIndex.close();
     }
 
     @Override
@@ -157,16 +340,21 @@ public class NameIndex implements Storable<NameIndex>
     public void setSegmentSize( int segments )
     {
         names.setSegmentSize(segments);
+        hashIndex.setSegmentSize(segments);
     }
 
     @Override
     public long getCapacity()
     {
-        return names.getCapacity();
+        return names.getCapacity() + hashIndex.getCapacity();
     }
 
     public void copyTo( NameIndex nameIndex )
     {
         names.copyTo(nameIndex.names);
+        nameIndex.bytePointer = bytePointer;
+        // the table of the copy is rebuilt on demand
+        nameIndex.slots = 0;
+        nameIndex.entries = 0;
     }
 }
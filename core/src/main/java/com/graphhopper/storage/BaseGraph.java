@@ -130,6 +130,12 @@ class BaseGraph implements Graph
                 return tmpIter.fetchWayGeometry(type);
             }
 
+            @Override
+            public PointList fetchWayGeometry( int type, PointList pillarNodes )
+            {
+                return tmpIter.fetchWayGeometry(type, pillarNodes);
+            }
+
             @Override
             public EdgeIteratorState setWayGeometry( PointList list )
             {
@@ -52,6 +52,16 @@ public class DAType
      * embedded data stores.
      */
     public static final DAType MMAP_RO = new DAType(MemRef.MMAP, true, false, false, false);
+    /**
+     * The DA object is hold entirely in-memory but outside of the JVM heap. It is not stored. See
+     * DirectDataAccess.
+     */
+    public static final DAType DIRECT = new DAType(MemRef.DIRECT, false, false, true, false);
+    /**
+     * Like DIRECT but it will load from disc and flush to it with the same file format as
+     * RAM_STORE. Use this instead of RAM_STORE for big graphs to avoid a big heap.
+     */
+    public static final DAType DIRECT_STORE = new DAType(MemRef.DIRECT, true, false, true, false);
     /**
      * Experimental API. Do not use yet.
      */
@@ -59,7 +69,7 @@ public class DAType
 
     public enum MemRef
     {
-        HEAP, MMAP, UNSAFE /*, DIRECT */
+        HEAP, MMAP, UNSAFE, DIRECT
 
     }
 
@@ -114,6 +124,14 @@ public class DAType
         return memRef == MemRef.MMAP;
     }
 
+    /**
+     * @return true if data resides in direct memory outside of the JVM heap.
+     */
+    public boolean isDirect()
+    {
+        return memRef == MemRef.DIRECT;
+    }
+
     /**
      * Temporary data or store (with loading and storing)? default is false
      */
@@ -148,6 +166,8 @@ public class DAType
             str = "MMAP";
         else if (getMemRef() == MemRef.HEAP)
             str = "RAM";
+        else if (getMemRef() == MemRef.DIRECT)
+            str = "DIRECT";
         else
             str = "UNSAFE";
 
@@ -168,6 +188,13 @@ public class DAType
             type = DAType.MMAP;
         else if (dataAccess.contains("UNSAFE"))
             type = DAType.UNSAFE_STORE;
+        else if (dataAccess.contains("DIRECT"))
+        {
+            if (dataAccess.contains("STORE"))
+                type = DAType.DIRECT_STORE;
+            else
+                type = DAType.DIRECT;
+        }
         else
         {
             if (dataAccess.contains("RAM_STORE"))
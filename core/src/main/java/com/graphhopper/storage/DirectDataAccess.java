@@ -0,0 +1,359 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.Helper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * This is an in-memory data structure like RAMDataAccess but the segments are direct ByteBuffers
+ * outside of the JVM heap. So big graphs do not need a big heap and do not increase garbage
+ * collection pauses. The file format is identical to RAMDataAccess, so both can load the files of
+ * the other. Read thread safe.
+ * <p/>
+ * @author Peter Karich
+ */
+public class DirectDataAccess extends AbstractDataAccess
+{
+    private ByteBuffer[] segments = new ByteBuffer[0];
+    private boolean store;
+
+    DirectDataAccess( String name, String location, boolean store, ByteOrder order )
+    {
+        super(name, location, order);
+        this.store = store;
+    }
+
+    @Override
+    public boolean isStoring()
+    {
+        return store;
+    }
+
+    @Override
+    public DirectDataAccess create( long bytes )
+    {
+        if (segments.length > 0)
+            throw new IllegalThreadStateException("already created");
+
+        // initialize transient values
+        setSegmentSize(segmentSizeInBytes);
+        ensureCapacity(Math.max(10 * 4, bytes));
+        return this;
+    }
+
+    @Override
+    public boolean ensureCapacity( long bytes )
+    {
+        if (bytes < 0)
+            throw new IllegalArgumentException("new capacity has to be strictly positive");
+
+        long cap = getCapacity();
+        long todoBytes = bytes - cap;
+        if (todoBytes <= 0)
+            return false;
+
+        int segmentsToCreate = (int) (todoBytes / segmentSizeInBytes);
+        if (todoBytes % segmentSizeInBytes != 0)
+            segmentsToCreate++;
+
+        try
+        {
+            ByteBuffer[] newSegs = Arrays.copyOf(segments, segments.length + segmentsToCreate);
+            for (int i = segments.length; i < newSegs.length; i++)
+            {
+                newSegs[i] = newByteBuffer();
+            }
+            segments = newSegs;
+        } catch (OutOfMemoryError err)
+        {
+            throw new OutOfMemoryError(err.getMessage() + " - problem when allocating new direct memory, see"
+                    + " -XX:MaxDirectMemorySize. Old capacity: " + cap + ", new bytes:" + todoBytes
+                    + ", segmentSizeIntsPower:" + segmentSizePower + ", new segments:" + segmentsToCreate
+                    + ", existing:" + segments.length);
+        }
+        return true;
+    }
+
+    private ByteBuffer newByteBuffer()
+    {
+        // direct buffers are already initialized with zeros
+        return ByteBuffer.allocateDirect(segmentSizeInBytes).order(byteOrder);
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (segments.length > 0)
+            throw new IllegalStateException("already initialized");
+
+        if (isClosed())
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return false;
+
+        File file = new File(getFullName());
+        if (!file.exists() || file.length() == 0)
+            return false;
+
+        try
+        {
+            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "r");
+            try
+            {
+                long byteCount = readHeader(raFile) - HEADER_OFFSET;
+                if (byteCount < 0)
+                    return false;
+
+                int segmentCount = (int) (byteCount / segmentSizeInBytes);
+                if (byteCount % segmentSizeInBytes != 0)
+                    segmentCount++;
+
+                // read directly into the buffers without a copy on the heap
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
+                segments = new ByteBuffer[segmentCount];
+                for (int s = 0; s < segmentCount; s++)
+                {
+                    ByteBuffer bb = newByteBuffer();
+                    while (bb.hasRemaining())
+                    {
+                        int read = channel.read(bb, position);
+                        if (read < 0)
+                            break;
+                        position += read;
+                    }
+                    if (bb.position() == 0)
+                        throw new IllegalStateException("segment " + s + " is empty? " + toString());
+
+                    bb.clear();
+                    segments[s] = bb;
+                }
+                return true;
+            } finally
+            {
+                raFile.close();
+            }
+        } catch (IOException ex)
+        {
+            throw new RuntimeException("Problem while loading " + getFullName(), ex);
+        }
+    }
+
+    @Override
+    public void flush()
+    {
+        if (closed)
+            throw new IllegalStateException("already closed");
+
+        if (!store)
+            return;
+
+        try
+        {
+            RandomAccessFile raFile = new RandomAccessFile(getFullName(), "rw");
+            try
+            {
+                long len = getCapacity();
+                writeHeader(raFile, len, segmentSizeInBytes);
+                FileChannel channel = raFile.getChannel();
+                long position = HEADER_OFFSET;
+                for (int s = 0; s < segments.length; s++)
+                {
+                    // duplicate to keep the buffer itself untouched for concurrent readers
+                    ByteBuffer bb = segments[s].duplicate();
+                    bb.clear();
+                    while (bb.hasRemaining())
+                    {
+                        position += channel.write(bb, position);
+                    }
+                }
+            } finally
+            {
+                raFile.close();
+            }
+        } catch (Exception ex)
+        {
+            throw new RuntimeException("Couldn't store bytes to " + toString(), ex);
+        }
+    }
+
+    @Override
+    public final void setInt( long bytePos, int value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        segments[bufferIndex].putInt(index, value);
+    }
+
+    @Override
+    public final int getInt( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        return segments[bufferIndex].getInt(index);
+    }
+
+    @Override
+    public final void setShort( long bytePos, short value )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        segments[bufferIndex].putShort(index, value);
+    }
+
+    @Override
+    public final short getShort( long bytePos )
+    {
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        return segments[bufferIndex].getShort(index);
+    }
+
+    @Override
+    public void setBytes( long bytePos, byte[] values, int length )
+    {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        // the position of a duplicate is independent of other threads
+        ByteBuffer bb = segments[bufferIndex].duplicate();
+        bb.position(index);
+        int delta = index + length - segmentSizeInBytes;
+        if (delta > 0)
+        {
+            length -= delta;
+            bb.put(values, 0, length);
+            bb = segments[bufferIndex + 1].duplicate();
+            bb.put(values, length, delta);
+        } else
+        {
+            bb.put(values, 0, length);
+        }
+    }
+
+    @Override
+    public void getBytes( long bytePos, byte[] values, int length )
+    {
+        assert length <= segmentSizeInBytes : "the length has to be smaller or equal to the segment size: " + length + " vs. " + segmentSizeInBytes;
+        assert segmentSizePower > 0 : "call create or loadExisting before usage!";
+        int bufferIndex = (int) (bytePos >>> segmentSizePower);
+        int index = (int) (bytePos & indexDivisor);
+        ByteBuffer bb = segments[bufferIndex].duplicate();
+        bb.position(index);
+        int delta = index + length - segmentSizeInBytes;
+        if (delta > 0)
+        {
+            length -= delta;
+            bb.get(values, 0, length);
+            bb = segments[bufferIndex + 1].duplicate();
+            bb.get(values, length, delta);
+        } else
+        {
+            bb.get(values, 0, length);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+        clean(0, segments.length);
+        segments = new ByteBuffer[0];
+        closed = true;
+    }
+
+    /**
+     * Releases the memory of the direct buffers immediately instead of waiting for the garbage
+     * collector.
+     */
+    private void clean( int from, int to )
+    {
+        for (int i = from; i < to; i++)
+        {
+            Helper.cleanMappedByteBuffer(segments[i]);
+            segments[i] = null;
+        }
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return (long) getSegments() * segmentSizeInBytes;
+    }
+
+    @Override
+    public int getSegments()
+    {
+        return segments.length;
+    }
+
+    @Override
+    public void trimTo( long capacity )
+    {
+        if (capacity > getCapacity())
+        {
+            throw new IllegalStateException("Cannot increase capacity (" + getCapacity() + ") to " + capacity
+                    + " via trimTo. Use ensureCapacity instead. ");
+        }
+
+        if (capacity < segmentSizeInBytes)
+            capacity = segmentSizeInBytes;
+
+        int remainingSegments = (int) (capacity / segmentSizeInBytes);
+        if (capacity % segmentSizeInBytes != 0)
+            remainingSegments++;
+
+        clean(remainingSegments, segments.length);
+        segments = Arrays.copyOf(segments, remainingSegments);
+    }
+
+    @Override
+    public void rename( String newName )
+    {
+        if (!checkBeforeRename(newName))
+            return;
+
+        if (store)
+            super.rename(newName);
+
+        // in every case set the name
+        name = newName;
+    }
+
+    @Override
+    public DAType getType()
+    {
+        if (isStoring())
+            return DAType.DIRECT_STORE;
+        return DAType.DIRECT;
+    }
+}
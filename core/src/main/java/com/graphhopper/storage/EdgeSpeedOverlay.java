@@ -0,0 +1,264 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+
+/**
+ * Stores live speeds per edge which overrule the speeds encoded in the edge flags without a new
+ * import or preparation. Every edge has one integer where the lower 16 bits hold the speed from
+ * the lower to the higher node id and the upper 16 bits the speed of the opposite direction. 0
+ * means no live speed is known.
+ * <p/>
+ * Reading is lock free and can happen while speeds are updated. Use a DataAccess of type RAM_INT
+ * or an off-heap type so that the integer of an edge is always written at once. Writes are
+ * synchronized.
+ * <p/>
+ * @author Peter Karich
+ */
+public class EdgeSpeedOverlay implements Storable<EdgeSpeedOverlay>
+{
+    /**
+     * Returned if no live speed is known for an edge
+     */
+    public static final double NO_SPEED = -1;
+    private static final double FACTOR = 10;
+    private static final int MAX_VALUE = 0xFFFF;
+    private final Graph graph;
+    private final DataAccess speeds;
+    private volatile int edgeCount;
+
+    public EdgeSpeedOverlay( Graph graph, Directory dir )
+    {
+        this.graph = graph;
+        this.speeds = dir.find("edge_speeds");
+        this.edgeCount = graph.getAllEdges().getCount();
+    }
+
+    @Override
+    public EdgeSpeedOverlay create( long edges )
+    {
+        speeds.create(Math.max(1, edges) * 4);
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        return speeds.loadExisting();
+    }
+
+    /**
+     * Sets the speed in km/h for the specified edge in both directions.
+     */
+    public synchronized void setSpeed( int edgeId, double speed )
+    {
+        int value = toValue(speed);
+        setValue(edgeId, value << 16 | value);
+    }
+
+    /**
+     * Sets the speed in km/h for the specified edge in the direction towards adjNode.
+     */
+    public synchronized void setSpeed( int edgeId, int adjNode, double speed )
+    {
+        EdgeIteratorState edge = graph.getEdgeProps(edgeId, adjNode);
+        if (edge == null)
+            throw new IllegalArgumentException("Node " + adjNode + " is not adjacent to edge " + edgeId);
+
+        int value = toValue(speed);
+        if (edge.getBaseNode() == edge.getAdjNode())
+        {
+            setValue(edgeId, value << 16 | value);
+            return;
+        }
+
+        int oldValue = getValue(edgeId);
+        if (edge.getBaseNode() < edge.getAdjNode())
+            setValue(edgeId, oldValue & 0xFFFF0000 | value);
+        else
+            setValue(edgeId, value << 16 | oldValue & MAX_VALUE);
+    }
+
+    /**
+     * Removes the live speeds of the specified edge so that the encoded speed is used again.
+     */
+    public synchronized void removeSpeed( int edgeId )
+    {
+        if ((long) edgeId * 4 < speeds.getCapacity())
+            speeds.setInt((long) edgeId * 4, 0);
+    }
+
+    /**
+     * @return the live speed in km/h of the specified edge in the direction of travel or NO_SPEED
+     */
+    public double getSpeed( EdgeIteratorState edge, boolean reverse )
+    {
+        int value = getValue(edge.getEdge());
+        boolean forward = edge.getBaseNode() <= edge.getAdjNode() ? !reverse : reverse;
+        value = forward ? value & MAX_VALUE : value >>> 16;
+        if (value == 0)
+            return NO_SPEED;
+
+        return toSpeed(value);
+    }
+
+    /**
+     * @return the lower live speed in km/h of both directions of the specified edge or NO_SPEED
+     */
+    public double getMinSpeed( int edgeId )
+    {
+        int value = getValue(edgeId);
+        if (value == 0)
+            return NO_SPEED;
+
+        int fwd = value & MAX_VALUE;
+        int bwd = value >>> 16;
+        if (fwd == 0)
+            return toSpeed(bwd);
+        if (bwd == 0)
+            return toSpeed(fwd);
+        return toSpeed(Math.min(fwd, bwd));
+    }
+
+    /**
+     * @return the number of edges of the graph when the overlay was last updated. Higher edge ids
+     * are usually virtual edges of a QueryGraph.
+     */
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+    /**
+     * Reads speed updates line by line until the end of the stream is reached, e.g. from a file or
+     * a socket. Every line is either 'edgeId,speed' for both directions or 'edgeId,adjNode,speed'
+     * for the direction towards adjNode. A negative speed removes the live speeds of the edge.
+     * Empty lines and lines starting with '#' are skipped. The stream is not closed.
+     * <p/>
+     * @return the number of applied updates
+     */
+    public int readUpdates( InputStream is ) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(is, Helper.UTF_CS), 1 << 16);
+        int lineNumber = 0;
+        int updates = 0;
+        String line;
+        while ((line = reader.readLine()) != null)
+        {
+            lineNumber++;
+            if (line.isEmpty() || line.charAt(0) == '#')
+                continue;
+
+            try
+            {
+                int firstIndex = line.indexOf(',');
+                int lastIndex = line.lastIndexOf(',');
+                if (firstIndex < 0)
+                    throw new IllegalArgumentException("Missing speed");
+
+                int edgeId = Integer.parseInt(line.substring(0, firstIndex).trim());
+                double speed = Double.parseDouble(line.substring(lastIndex + 1).trim());
+                if (speed < 0)
+                    removeSpeed(edgeId);
+                else if (firstIndex == lastIndex)
+                    setSpeed(edgeId, speed);
+                else
+                    setSpeed(edgeId, Integer.parseInt(line.substring(firstIndex + 1, lastIndex).trim()), speed);
+            } catch (RuntimeException ex)
+            {
+                throw new IllegalArgumentException("Cannot read speed update in line " + lineNumber + ": " + line, ex);
+            }
+            updates++;
+        }
+        return updates;
+    }
+
+    private int getValue( int edgeId )
+    {
+        long pointer = (long) edgeId * 4;
+        if (pointer >= speeds.getCapacity())
+            return 0;
+
+        return speeds.getInt(pointer);
+    }
+
+    private void setValue( int edgeId, int value )
+    {
+        // the graph can grow e.g. via OSM changes, so only then the current count is fetched
+        if (edgeId >= edgeCount)
+            edgeCount = graph.getAllEdges().getCount();
+
+        if (edgeId < 0 || edgeId >= edgeCount)
+            throw new IllegalArgumentException("edgeId " + edgeId + " out of bounds");
+
+        long pointer = (long) edgeId * 4;
+        speeds.ensureCapacity(pointer + 4);
+        speeds.setInt(pointer, value);
+    }
+
+    private static int toValue( double speed )
+    {
+        if (Double.isNaN(speed) || speed < 0 || speed * FACTOR + 1 > MAX_VALUE)
+            throw new IllegalArgumentException("Illegal speed " + speed);
+
+        // 0 is reserved for a missing speed
+        return (int) Math.round(speed * FACTOR) + 1;
+    }
+
+    private static double toSpeed( int value )
+    {
+        return (value - 1) / FACTOR;
+    }
+
+    @Override
+    public void flush()
+    {
+        speeds.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        speeds.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return speeds.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return speeds.getCapacity();
+    }
+
+    @Override
+    public String toString()
+    {
+        return "edge_speeds";
+    }
+}
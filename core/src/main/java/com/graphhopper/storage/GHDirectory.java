@@ -18,12 +18,14 @@
 package com.graphhopper.storage;
 
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.ProgressListener;
 
 import java.io.File;
 import java.nio.ByteOrder;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Implements some common methods for the subclasses.
@@ -123,6 +125,9 @@ public class GHDirectory implements Directory
         } else if (type.isMMap())
         {
             da = new MMapDataAccess(name, location, byteOrder, type.isAllowWrites());
+        } else if (type.isDirect())
+        {
+            da = new DirectDataAccess(name, location, type.isStoring(), byteOrder);
         } else
         {
             da = new UnsafeDataAccess(name, location, byteOrder);
@@ -180,6 +185,61 @@ public class GHDirectory implements Directory
             throw new IllegalStateException("Couldn't remove dataAccess object:" + name);
     }
 
+    /**
+     * Sequentially reads the memory mapped DataAccess objects of the specified names into physical
+     * memory, e.g. nodes, edges, location_index and geometry. Other DataAccess objects are already
+     * in memory and unknown names are ignored. Stops early if the current thread is interrupted.
+     * <p/>
+     * @param listener is called after every segment with the number of bytes loaded so far, can be
+     * null
+     * @return the number of loaded bytes
+     */
+    public long warmup( Collection<String> names, ProgressListener listener )
+    {
+        long bytes = 0;
+        for (String name : names)
+        {
+            DataAccess da = map.get(name);
+            if (!(da instanceof MMapDataAccess) || da.isClosed())
+                continue;
+
+            MMapDataAccess mmapDA = (MMapDataAccess) da;
+            for (int segment = 0; segment < mmapDA.getSegments(); segment++)
+            {
+                if (Thread.currentThread().isInterrupted())
+                    return bytes;
+
+                bytes += mmapDA.loadSegment(segment);
+                if (listener != null)
+                    listener.update(bytes);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the fraction of segments per DataAccess object which are resident in physical memory.
+     * This is 1 for in-memory DataAccess objects and only a hint for memory mapped ones.
+     */
+    public Map<String, Double> getResidency()
+    {
+        Map<String, Double> residency = new TreeMap<String, Double>();
+        for (DataAccess da : map.values())
+        {
+            if (da.isClosed())
+                continue;
+
+            if (da instanceof MMapDataAccess)
+            {
+                int segments = da.getSegments();
+                double loaded = segments == 0 ? 1 : (double) ((MMapDataAccess) da).getLoadedSegments() / segments;
+                residency.put(da.getName(), loaded);
+            } else
+                residency.put(da.getName(), 1d);
+        }
+        return residency;
+    }
+
     @Override
     public DAType getDefaultType()
     {
@@ -26,10 +26,13 @@ import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.search.NameIndex;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
+import gnu.trove.list.TIntList;
+import gnu.trove.list.array.TIntArrayList;
 
 import static com.graphhopper.util.Helper.nf;
 
 import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 
 /**
  * The main implementation which handles nodes and edges file format. It can be used with different
@@ -54,9 +57,11 @@ public class GraphHopperStorage implements GraphStorage
     private static final int MAX_EDGES = 1000;
     // distance of around +-1000 000 meter are ok
     private static final double INT_DIST_FACTOR = 1000d;
+    private static final long[] NO_OSM_IDS = new long[0];
     private final Directory dir;
     // edge memory layout:
     protected int E_NODEA, E_NODEB, E_LINKA, E_LINKB, E_DIST, E_FLAGS, E_GEO, E_NAME, E_ADDITIONAL;
+    private int E_OSM_WAY, E_OSM_PILLARS;
     /**
      * Specifies how many entries (integers) are used per edge.
      */
@@ -68,6 +73,7 @@ public class GraphHopperStorage implements GraphStorage
     protected int edgeCount;
     // node memory layout:
     protected int N_EDGE_REF, N_LAT, N_LON, N_ELE, N_ADDITIONAL;
+    private int N_OSM;
     /**
      * Specifies how many entries (integers) are used per node
      */
@@ -85,6 +91,19 @@ public class GraphHopperStorage implements GraphStorage
     // as we use integer index in 'egdes' area => 'geometry' area is limited to 2GB (currently ~311M for world wide)
     private final DataAccess wayGeometry;
     private int maxGeoRef;
+    // if true the pillar nodes are stored as delta encoded variable length longs instead of 4 byte integers
+    private boolean compactGeometry = false;
+    // length | osmId of first pillar node | ... | osmId of last pillar node, stored from nodeA to nodeB
+    private final DataAccess osmPillarIds;
+    private int maxOsmPillarRef;
+    // if true the OSM ids of tower nodes, ways and pillar nodes are stored to apply OSM changes later
+    private boolean storeOsmIds = false;
+    // from the OSM ids to the tower nodes, the edges containing the pillar nodes and the edges of the ways
+    private final OsmIdIndex osmNodeIndex;
+    private final OsmIdIndex osmPillarIndex;
+    private final OsmIdIndex osmWayIndex;
+    // the edges which were removed via removeEdge but still need space until the next optimize call
+    private int removedEdges;
     private boolean initialized = false;
     private EncodingManager encodingManager;
     private final NameIndex nameIndex;
@@ -113,6 +132,10 @@ public class GraphHopperStorage implements GraphStorage
         this.nodes = dir.find("nodes");
         this.edges = dir.find("edges");
         this.wayGeometry = dir.find("geometry");
+        this.osmPillarIds = dir.find("osm_pillar_ids");
+        this.osmNodeIndex = new OsmIdIndex(dir, "osm_node_index");
+        this.osmPillarIndex = new OsmIdIndex(dir, "osm_pillar_index");
+        this.osmWayIndex = new OsmIdIndex(dir, "osm_way_index");
         this.nameIndex = new NameIndex(dir);
         this.properties = new StorableProperties(dir);
         this.bounds = BBox.createInverse(withElevation);
@@ -169,10 +192,60 @@ public class GraphHopperStorage implements GraphStorage
         nodes.setSegmentSize(bytes);
         edges.setSegmentSize(bytes);
         wayGeometry.setSegmentSize(bytes);
+        osmPillarIds.setSegmentSize(bytes);
+        osmNodeIndex.setSegmentSize(bytes);
+        osmPillarIndex.setSegmentSize(bytes);
+        osmWayIndex.setSegmentSize(bytes);
         nameIndex.setSegmentSize(bytes);
         extStorage.setSegmentSize(bytes);
     }
 
+    /**
+     * Stores the pillar nodes of new graphs delta encoded with a variable length which needs less
+     * space than the default format. For an existing graph the stored format is used.
+     */
+    public GraphHopperStorage setCompactGeometry( boolean compactGeometry )
+    {
+        checkInit();
+        this.compactGeometry = compactGeometry;
+        return this;
+    }
+
+    public boolean isCompactGeometry()
+    {
+        return compactGeometry;
+    }
+
+    /**
+     * Stores the OSM ids of every tower node, the OSM way id of every edge and the OSM ids of its
+     * pillar nodes. Needs 8 bytes per node, 12 bytes per edge and 8 bytes per pillar node but makes
+     * it possible to apply OSM change files to the graph, see OSMChangeApplier. The lookup from the
+     * OSM ids, see findOsmNode, needs additionally 16 to 48 bytes per node, edge and pillar node. It
+     * is created on flush or on the first lookup. For an existing graph the stored setting is used.
+     */
+    public GraphHopperStorage setStoreOsmIds( boolean storeOsmIds )
+    {
+        checkInit();
+        this.storeOsmIds = storeOsmIds;
+        return this;
+    }
+
+    public boolean isStoreOsmIds()
+    {
+        return storeOsmIds;
+    }
+
+    /**
+     * Limits the memory of the hash table which is used to store every street name only once.
+     * <p/>
+     * @see NameIndex#setMaxEntries(int)
+     */
+    public GraphHopperStorage setMaxNameHashEntries( int maxEntries )
+    {
+        nameIndex.setMaxEntries(maxEntries);
+        return this;
+    }
+
     /**
      * After configuring this storage you need to create it explicitly.
      */
@@ -187,6 +260,8 @@ public class GraphHopperStorage implements GraphStorage
         nodes.create(initSize);
         edges.create(initSize);
         wayGeometry.create(initSize);
+        if (storeOsmIds)
+            osmPillarIds.create(initSize);
         nameIndex.create(1000);
         properties.create(100);
         extStorage.create(initSize);
@@ -196,10 +271,13 @@ public class GraphHopperStorage implements GraphStorage
 
         properties.put("graph.byteOrder", dir.getByteOrder());
         properties.put("graph.dimension", nodeAccess.getDimension());
+        properties.put("geometry.format", compactGeometry ? "delta" : "int");
+        properties.put("graph.osm_ids", storeOsmIds);
         properties.putCurrentVersions();
         initStorage();
         // 0 stands for no separate geoRef
         maxGeoRef = 4;
+        maxOsmPillarRef = 1;
 
         initNodeRefs(0, nodes.getCapacity());
         return this;
@@ -324,6 +402,7 @@ public class GraphHopperStorage implements GraphStorage
         ensureNodeIndex(Math.max(a, b));
         int edge = internalEdgeAdd(a, b);
         EdgeIterable iter = new EdgeIterable(EdgeFilter.ALL_EDGES);
+        iter.detached = true;
         iter.setBaseNode(a);
         iter.setEdgeId(edge);
         if (extStorage.isRequireEdgeField())
@@ -349,6 +428,13 @@ public class GraphHopperStorage implements GraphStorage
     {
         int newEdgeId = nextEdge();
         writeEdge(newEdgeId, fromNodeId, toNodeId, EdgeIterator.NO_EDGE, EdgeIterator.NO_EDGE);
+        if (storeOsmIds)
+        {
+            // the entry could contain an old edge after compactEdges
+            long edgePointer = (long) newEdgeId * edgeEntryBytes;
+            setLong(edges, edgePointer + E_OSM_WAY, 0);
+            edges.setInt(edgePointer + E_OSM_PILLARS, 0);
+        }
         connectNewEdge(fromNodeId, newEdgeId);
         if (fromNodeId != toNodeId)
             connectNewEdge(toNodeId, newEdgeId);
@@ -508,6 +594,9 @@ public class GraphHopperStorage implements GraphStorage
         private int nodeA;
         private int nodeB;
         private boolean reverse = false;
+        // detached states can be shared between threads and must not reuse the geometry buffer
+        private boolean detached;
+        private VLongStorage geometryBuffer;
 
         public AllEdgeIterator()
         {
@@ -607,7 +696,24 @@ public class GraphHopperStorage implements GraphStorage
         public PointList fetchWayGeometry( int type )
         {
             return GraphHopperStorage.this.fetchWayGeometry(edgePointer, reverse,
-                    type, getBaseNode(), getAdjNode());
+                    type, getBaseNode(), getAdjNode(), getGeometryBuffer());
+        }
+
+        @Override
+        public PointList fetchWayGeometry( int type, PointList pillarNodes )
+        {
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, reverse,
+                    type, getBaseNode(), getAdjNode(), pillarNodes, getGeometryBuffer());
+        }
+
+        private VLongStorage getGeometryBuffer()
+        {
+            if (detached)
+                return new VLongStorage(64);
+
+            if (geometryBuffer == null)
+                geometryBuffer = new VLongStorage(64);
+            return geometryBuffer;
         }
 
         @Override
@@ -641,6 +747,7 @@ public class GraphHopperStorage implements GraphStorage
             if (edgePointer < 0)
                 throw new IllegalStateException("call next before detaching");
             AllEdgeIterator iter = new AllEdgeIterator();
+            iter.detached = true;
             iter.nodeA = nodeA;
             iter.nodeB = nodeB;
             iter.edgePointer = edgePointer;
@@ -733,6 +840,7 @@ public class GraphHopperStorage implements GraphStorage
         public SingleEdge( int edgeId, int nodeId )
         {
             super(EdgeFilter.ALL_EDGES);
+            detached = true;
             setBaseNode(nodeId);
             setEdgeId(edgeId);
             nextEdge = EdgeIterable.NO_EDGE;
@@ -760,6 +868,9 @@ public class GraphHopperStorage implements GraphStorage
         long edgePointer;
         int nextEdge;
         boolean reverse;
+        // detached states can be shared between threads and must not reuse the geometry buffer
+        boolean detached;
+        private VLongStorage geometryBuffer;
 
         public EdgeIterable( EdgeFilter filter )
         {
@@ -882,7 +993,25 @@ public class GraphHopperStorage implements GraphStorage
         @Override
         public PointList fetchWayGeometry( int mode )
         {
-            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, reverse, mode, getBaseNode(), getAdjNode());
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, reverse, mode, getBaseNode(), getAdjNode(),
+                    getGeometryBuffer());
+        }
+
+        @Override
+        public PointList fetchWayGeometry( int mode, PointList pillarNodes )
+        {
+            return GraphHopperStorage.this.fetchWayGeometry(edgePointer, reverse, mode, getBaseNode(), getAdjNode(),
+                    pillarNodes, getGeometryBuffer());
+        }
+
+        private VLongStorage getGeometryBuffer()
+        {
+            if (detached)
+                return new VLongStorage(64);
+
+            if (geometryBuffer == null)
+                geometryBuffer = new VLongStorage(64);
+            return geometryBuffer;
         }
 
         @Override
@@ -923,6 +1052,7 @@ public class GraphHopperStorage implements GraphStorage
                 throw new IllegalStateException("call next before detaching");
 
             EdgeIterable iter = new EdgeIterable(filter);
+            iter.detached = true;
             iter.setBaseNode(baseNode);
             iter.setEdgeId(edgeId);
             iter.next();
@@ -979,58 +1109,444 @@ public class GraphHopperStorage implements GraphStorage
                 throw new IllegalArgumentException("Cannot use pointlist which is " + pillarNodes.getDimension()
                         + "D for graph which is " + nodeAccess.getDimension() + "D");
 
-            int len = pillarNodes.getSize();
-            int dim = nodeAccess.getDimension();
-            int tmpRef = nextGeoRef(len * dim);
-            edges.setInt(edgePointer + E_GEO, tmpRef);
-            long geoRef = (long) tmpRef * 4;
-            byte[] bytes = new byte[len * dim * 4 + 4];
-            ensureGeometry(geoRef, bytes.length);
-            bitUtil.fromInt(bytes, len, 0);
             if (reverse)
                 pillarNodes.reverse();
 
-            int tmpOffset = 4;
-            boolean is3D = nodeAccess.is3D();
-            for (int i = 0; i < len; i++)
+            if (compactGeometry)
+                setCompactWayGeometry(pillarNodes, edgePointer);
+            else
+                setIntWayGeometry(pillarNodes, edgePointer);
+        } else
+        {
+            edges.setInt(edgePointer + E_GEO, 0);
+        }
+    }
+
+    private void setIntWayGeometry( PointList pillarNodes, long edgePointer )
+    {
+        int len = pillarNodes.getSize();
+        int dim = nodeAccess.getDimension();
+        int tmpRef = nextGeoRef(len * dim);
+        edges.setInt(edgePointer + E_GEO, tmpRef);
+        long geoRef = (long) tmpRef * 4;
+        ensureGeometry(geoRef, len * dim * 4 + 4);
+        writeIntWayGeometry(pillarNodes, geoRef);
+    }
+
+    private void writeIntWayGeometry( PointList pillarNodes, long geoRef )
+    {
+        int len = pillarNodes.getSize();
+        byte[] bytes = new byte[len * nodeAccess.getDimension() * 4 + 4];
+        bitUtil.fromInt(bytes, len, 0);
+
+        int tmpOffset = 4;
+        boolean is3D = nodeAccess.is3D();
+        for (int i = 0; i < len; i++)
+        {
+            double lat = pillarNodes.getLatitude(i);
+            bitUtil.fromInt(bytes, Helper.degreeToInt(lat), tmpOffset);
+            tmpOffset += 4;
+            bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
+            tmpOffset += 4;
+
+            if (is3D)
             {
-                double lat = pillarNodes.getLatitude(i);
-                bitUtil.fromInt(bytes, Helper.degreeToInt(lat), tmpOffset);
-                tmpOffset += 4;
-                bitUtil.fromInt(bytes, Helper.degreeToInt(pillarNodes.getLongitude(i)), tmpOffset);
+                bitUtil.fromInt(bytes, Helper.eleToInt(pillarNodes.getElevation(i)), tmpOffset);
                 tmpOffset += 4;
-
-                if (is3D)
-                {
-                    bitUtil.fromInt(bytes, Helper.eleToInt(pillarNodes.getElevation(i)), tmpOffset);
-                    tmpOffset += 4;
-                }
             }
+        }
+
+        wayGeometry.setBytes(geoRef, bytes, bytes.length);
+    }
+
+    /**
+     * Stores the byte length, the point count and then the difference of every point to its
+     * predecessor. The first point is stored absolute and not relative to the tower node as the
+     * tower node coordinates can still change after the geometry was set. The reference is kept
+     * aligned to 4 bytes to use the same addressing as the integer format.
+     */
+    private void setCompactWayGeometry( PointList pillarNodes, long edgePointer )
+    {
+        VLongStorage stream = encodeCompactWayGeometry(pillarNodes);
+        int byteLength = (int) stream.getPosition();
+        int tmpRef = nextGeoRef((byteLength + 3) / 4);
+        edges.setInt(edgePointer + E_GEO, tmpRef);
+        long geoRef = (long) tmpRef * 4;
+        ensureGeometry(geoRef, byteLength + 4);
+        wayGeometry.setInt(geoRef, byteLength);
+        wayGeometry.setBytes(geoRef + 4, stream.getBytes(), byteLength);
+    }
+
+    private VLongStorage encodeCompactWayGeometry( PointList pillarNodes )
+    {
+        int len = pillarNodes.getSize();
+        boolean is3D = nodeAccess.is3D();
+        int[] values = new int[len * nodeAccess.getDimension()];
+        int index = 0;
+        for (int i = 0; i < len; i++)
+        {
+            values[index++] = Helper.degreeToInt(pillarNodes.getLatitude(i));
+            values[index++] = Helper.degreeToInt(pillarNodes.getLongitude(i));
+            if (is3D)
+                values[index++] = Helper.eleToInt(pillarNodes.getElevation(i));
+        }
+        return encodeCompactWayGeometry(values);
+    }
+
+    /**
+     * @param values the stored integers of all points, i.e. lat, lon and for 3D also ele per point
+     */
+    private VLongStorage encodeCompactWayGeometry( int[] values )
+    {
+        int dim = nodeAccess.getDimension();
+        VLongStorage stream = new VLongStorage(values.length * 3 + 5);
+        stream.writeVLong(values.length / dim);
+        for (int i = 0; i < values.length; i++)
+        {
+            long prev = i < dim ? 0 : values[i - dim];
+            stream.writeSignedVLong(values[i] - prev);
+        }
+        return stream;
+    }
 
-            wayGeometry.setBytes(geoRef, bytes, bytes.length);
+    /**
+     * Reverses the pillar nodes of the specified edge. The stored integers are reversed directly
+     * as converting them to degrees and back is lossy. If possible the existing space is reused,
+     * which is always the case for the integer format.
+     */
+    private void reverseWayGeometry( long edgePointer, VLongStorage buffer )
+    {
+        long geoRef = (long) edges.getInt(edgePointer + E_GEO) * 4;
+        if (geoRef == 0)
+            return;
+
+        int dim = nodeAccess.getDimension();
+        int[] values;
+        // the point count for the integer format and the byte length for the compact format
+        int header = wayGeometry.getInt(geoRef);
+        if (compactGeometry)
+        {
+            wayGeometry.getBytes(geoRef + 4, buffer.reset(header), header);
+            values = new int[(int) buffer.readVLong() * dim];
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i] = (int) ((i < dim ? 0 : values[i - dim]) + buffer.readSignedVLong());
+            }
         } else
         {
-            edges.setInt(edgePointer + E_GEO, 0);
+            values = new int[header * dim];
+            for (int i = 0; i < values.length; i++)
+            {
+                values[i] = wayGeometry.getInt(geoRef + 4 + i * 4);
+            }
+        }
+
+        int count = values.length / dim;
+        for (int i = 0; i < count / 2; i++)
+        {
+            for (int j = 0; j < dim; j++)
+            {
+                int tmp = values[i * dim + j];
+                values[i * dim + j] = values[(count - 1 - i) * dim + j];
+                values[(count - 1 - i) * dim + j] = tmp;
+            }
         }
+
+        if (!compactGeometry)
+        {
+            for (int i = 0; i < values.length; i++)
+            {
+                wayGeometry.setInt(geoRef + 4 + i * 4, values[i]);
+            }
+            return;
+        }
+
+        VLongStorage stream = encodeCompactWayGeometry(values);
+        int byteLength = (int) stream.getPosition();
+        if ((byteLength + 3) / 4 > (header + 3) / 4)
+        {
+            int tmpRef = nextGeoRef((byteLength + 3) / 4);
+            edges.setInt(edgePointer + E_GEO, tmpRef);
+            geoRef = (long) tmpRef * 4;
+            ensureGeometry(geoRef, byteLength + 4);
+        }
+        wayGeometry.setInt(geoRef, byteLength);
+        wayGeometry.setBytes(geoRef + 4, stream.getBytes(), byteLength);
     }
 
-    private PointList fetchWayGeometry( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode )
+    private void checkOsmIds()
     {
-        long geoRef = edges.getInt(edgePointer + E_GEO);
-        int count = 0;
-        byte[] bytes = null;
-        if (geoRef > 0)
+        if (!storeOsmIds)
+            throw new IllegalStateException("OSM ids are not stored in this graph, see setStoreOsmIds");
+    }
+
+    private long getLong( DataAccess da, long pointer )
+    {
+        return bitUtil.combineIntsToLong(da.getInt(pointer), da.getInt(pointer + 4));
+    }
+
+    private void setLong( DataAccess da, long pointer, long value )
+    {
+        da.setInt(pointer, bitUtil.getIntLow(value));
+        da.setInt(pointer + 4, bitUtil.getIntHigh(value));
+    }
+
+    public void setOsmNodeId( int node, long osmId )
+    {
+        checkOsmIds();
+        ensureNodeIndex(node);
+        setLong(nodes, (long) node * nodeEntryBytes + N_OSM, osmId);
+        if (osmId != 0 && !osmNodeIndex.put(osmId, node))
+            osmNodeIndex.invalidate();
+    }
+
+    /**
+     * @return the OSM id of the specified tower node or 0 if unknown
+     */
+    public long getOsmNodeId( int node )
+    {
+        checkOsmIds();
+        return getLong(nodes, (long) node * nodeEntryBytes + N_OSM);
+    }
+
+    public void setOsmWayId( int edge, long osmWayId )
+    {
+        checkOsmIds();
+        setLong(edges, (long) edge * edgeEntryBytes + E_OSM_WAY, osmWayId);
+        if (osmWayId != 0 && !osmWayIndex.put(osmWayId, edge))
+            osmWayIndex.invalidate();
+    }
+
+    /**
+     * @return the OSM id of the way the specified edge was created from or 0 if unknown
+     */
+    public long getOsmWayId( int edge )
+    {
+        checkOsmIds();
+        return getLong(edges, (long) edge * edgeEntryBytes + E_OSM_WAY);
+    }
+
+    /**
+     * Stores the OSM ids of the pillar nodes of the specified edge. The ids are in the direction
+     * from the base to the adjacent node, like the pillar nodes for setWayGeometry.
+     */
+    public void setOsmPillarIds( EdgeIteratorState edge, long[] osmIds )
+    {
+        checkOsmIds();
+        long edgePointer = (long) edge.getEdge() * edgeEntryBytes;
+        if (osmIds.length == 0)
         {
-            geoRef *= 4;
-            count = wayGeometry.getInt(geoRef);
+            edges.setInt(edgePointer + E_OSM_PILLARS, 0);
+            return;
+        }
+
+        int tmpRef = maxOsmPillarRef;
+        maxOsmPillarRef += osmIds.length * 2 + 1;
+        if (maxOsmPillarRef < 0)
+            throw new IllegalStateException("Too many OSM pillar ids. Cannot store more than 8GB");
 
-            geoRef += 4;
-            bytes = new byte[count * nodeAccess.getDimension() * 4];
-            wayGeometry.getBytes(geoRef, bytes, bytes.length);
-        } else if (mode == 0)
+        long pointer = (long) tmpRef * 4;
+        osmPillarIds.ensureCapacity(pointer + osmIds.length * 8 + 4);
+        osmPillarIds.setInt(pointer, osmIds.length);
+        boolean reverse = edge.getBaseNode() > edge.getAdjNode();
+        for (int i = 0; i < osmIds.length; i++)
+        {
+            setLong(osmPillarIds, pointer + 4 + i * 8, osmIds[reverse ? osmIds.length - 1 - i : i]);
+            if (!osmPillarIndex.put(osmIds[i], edge.getEdge()))
+                osmPillarIndex.invalidate();
+        }
+        edges.setInt(edgePointer + E_OSM_PILLARS, tmpRef);
+    }
+
+    /**
+     * @return the OSM ids of the pillar nodes in the direction from the base to the adjacent node
+     * of the specified edge
+     */
+    public long[] getOsmPillarIds( EdgeIteratorState edge )
+    {
+        checkOsmIds();
+        long pointer = (long) edges.getInt((long) edge.getEdge() * edgeEntryBytes + E_OSM_PILLARS) * 4;
+        if (pointer == 0)
+            return NO_OSM_IDS;
+
+        long[] osmIds = new long[osmPillarIds.getInt(pointer)];
+        boolean reverse = edge.getBaseNode() > edge.getAdjNode();
+        for (int i = 0; i < osmIds.length; i++)
+        {
+            osmIds[reverse ? osmIds.length - 1 - i : i] = getLong(osmPillarIds, pointer + 4 + i * 8);
+        }
+        return osmIds;
+    }
+
+    /**
+     * Keeps the OSM ids of the pillar nodes in the same order as the geometry, see
+     * reverseWayGeometry.
+     */
+    private void reverseOsmPillarIds( long edgePointer )
+    {
+        if (!storeOsmIds)
+            return;
+
+        long pointer = (long) edges.getInt(edgePointer + E_OSM_PILLARS) * 4;
+        if (pointer == 0)
+            return;
+
+        int count = osmPillarIds.getInt(pointer);
+        for (int i = 0; i < count / 2; i++)
+        {
+            long first = pointer + 4 + i * 8;
+            long last = pointer + 4 + (count - 1 - i) * 8;
+            long tmp = getLong(osmPillarIds, first);
+            setLong(osmPillarIds, first, getLong(osmPillarIds, last));
+            setLong(osmPillarIds, last, tmp);
+        }
+    }
+
+    /**
+     * @return the tower node with the specified OSM id or -1 if there is none
+     */
+    public int findOsmNode( long osmNodeId )
+    {
+        TIntList nodeIds = findOsmIds(osmNodeIndex, osmNodeId);
+        for (int i = 0; i < nodeIds.size(); i++)
+        {
+            int node = nodeIds.get(i);
+            if (node < nodeCount && getOsmNodeId(node) == osmNodeId)
+                return node;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the edge which contains the pillar node with the specified OSM id or -1 if there is
+     * none
+     */
+    public int findOsmPillarEdge( long osmNodeId )
+    {
+        TIntList edgeIds = findOsmIds(osmPillarIndex, osmNodeId);
+        for (int i = 0; i < edgeIds.size(); i++)
+        {
+            int edge = edgeIds.get(i);
+            if (!isValidOsmEdge(edge))
+                continue;
+
+            long pointer = (long) edges.getInt((long) edge * edgeEntryBytes + E_OSM_PILLARS) * 4;
+            if (pointer == 0)
+                continue;
+
+            int count = osmPillarIds.getInt(pointer);
+            for (int j = 0; j < count; j++)
+            {
+                if (getLong(osmPillarIds, pointer + 4 + j * 8) == osmNodeId)
+                    return edge;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the edges which were created from the OSM way with the specified id
+     */
+    public TIntList findOsmWayEdges( long osmWayId )
+    {
+        TIntList edgeIds = findOsmIds(osmWayIndex, osmWayId);
+        TIntList result = new TIntArrayList(edgeIds.size());
+        for (int i = 0; i < edgeIds.size(); i++)
+        {
+            int edge = edgeIds.get(i);
+            if (isValidOsmEdge(edge) && getOsmWayId(edge) == osmWayId)
+                result.add(edge);
+        }
+        return result;
+    }
+
+    private TIntList findOsmIds( OsmIdIndex index, long osmId )
+    {
+        checkOsmIds();
+        ensureOsmIdIndex();
+        TIntList ids = new TIntArrayList(4);
+        index.get(osmId, ids);
+        return ids;
+    }
+
+    private boolean isValidOsmEdge( int edge )
+    {
+        return edge < edgeCount && edges.getInt((long) edge * edgeEntryBytes + E_NODEA) != NO_NODE
+                && getOsmWayId(edge) != 0;
+    }
+
+    /**
+     * Fills the lookup tables from the stored OSM ids if they are not yet created, if they are full
+     * or if the node or edge ids changed.
+     */
+    private void ensureOsmIdIndex()
+    {
+        if (osmNodeIndex.isCreated() && osmPillarIndex.isCreated() && osmWayIndex.isCreated())
+            return;
+
+        osmNodeIndex.clear(nodeCount);
+        for (int node = 0; node < nodeCount; node++)
+        {
+            long osmId = getOsmNodeId(node);
+            if (osmId != 0)
+                osmNodeIndex.put(osmId, node);
+        }
+
+        osmWayIndex.clear(edgeCount);
+        // every pillar node needs two ints and every edge with pillar nodes one int more
+        osmPillarIndex.clear(maxOsmPillarRef / 2);
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            long edgePointer = (long) edge * edgeEntryBytes;
+            if (edges.getInt(edgePointer + E_NODEA) == NO_NODE)
+                continue;
+
+            long wayId = getLong(edges, edgePointer + E_OSM_WAY);
+            if (wayId == 0)
+                continue;
+
+            osmWayIndex.put(wayId, edge);
+            long pointer = (long) edges.getInt(edgePointer + E_OSM_PILLARS) * 4;
+            if (pointer == 0)
+                continue;
+
+            int count = osmPillarIds.getInt(pointer);
+            for (int i = 0; i < count; i++)
+            {
+                osmPillarIndex.put(getLong(osmPillarIds, pointer + 4 + i * 8), edge);
+            }
+        }
+    }
+
+    private void invalidateOsmIdIndex()
+    {
+        osmNodeIndex.invalidate();
+        osmPillarIndex.invalidate();
+        osmWayIndex.invalidate();
+    }
+
+    private PointList fetchWayGeometry( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode,
+                                        VLongStorage buffer )
+    {
+        if (mode == 0 && edges.getInt(edgePointer + E_GEO) == 0)
             return PointList.EMPTY;
 
-        PointList pillarNodes = new PointList(count + mode, nodeAccess.is3D());
+        return fetchWayGeometry(edgePointer, reverse, mode, baseNode, adjNode,
+                new PointList(10, nodeAccess.is3D()), buffer);
+    }
+
+    /**
+     * Clears the specified list and adds the requested points. The buffer is used to read the raw
+     * bytes so that no object is created per call.
+     */
+    private PointList fetchWayGeometry( long edgePointer, boolean reverse, int mode, int baseNode, int adjNode,
+                                        PointList pillarNodes, VLongStorage buffer )
+    {
+        if (pillarNodes.is3D() != nodeAccess.is3D())
+            throw new IllegalArgumentException("Cannot use pointlist which is " + pillarNodes.getDimension()
+                    + "D for graph which is " + nodeAccess.getDimension() + "D");
+
+        pillarNodes.clear();
         if (reverse)
         {
             if ((mode & 2) != 0)
@@ -1041,6 +1557,36 @@ public class GraphHopperStorage implements GraphStorage
                 pillarNodes.add(nodeAccess, baseNode);
         }
 
+        long geoRef = edges.getInt(edgePointer + E_GEO);
+        if (geoRef > 0)
+        {
+            if (compactGeometry)
+                addCompactWayGeometry(geoRef * 4, pillarNodes, buffer);
+            else
+                addIntWayGeometry(geoRef * 4, pillarNodes, buffer);
+        }
+
+        if (reverse)
+        {
+            if ((mode & 1) != 0)
+                pillarNodes.add(nodeAccess, baseNode);
+            pillarNodes.reverse();
+        } else
+        {
+            if ((mode & 2) != 0)
+                pillarNodes.add(nodeAccess, adjNode);
+        }
+
+        return pillarNodes;
+    }
+
+    private void addIntWayGeometry( long geoPointer, PointList pillarNodes, VLongStorage buffer )
+    {
+        int count = wayGeometry.getInt(geoPointer);
+        int length = count * nodeAccess.getDimension() * 4;
+        byte[] bytes = buffer.reset(length);
+        wayGeometry.getBytes(geoPointer + 4, bytes, length);
+
         int index = 0;
         for (int i = 0; i < count; i++)
         {
@@ -1057,19 +1603,28 @@ public class GraphHopperStorage implements GraphStorage
                 pillarNodes.add(lat, lon);
             }
         }
+    }
 
-        if (reverse)
-        {
-            if ((mode & 1) != 0)
-                pillarNodes.add(nodeAccess, baseNode);
-            pillarNodes.reverse();
-        } else
+    private void addCompactWayGeometry( long geoPointer, PointList pillarNodes, VLongStorage buffer )
+    {
+        int length = wayGeometry.getInt(geoPointer);
+        wayGeometry.getBytes(geoPointer + 4, buffer.reset(length), length);
+
+        int count = (int) buffer.readVLong();
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < count; i++)
         {
-            if ((mode & 2) != 0)
-                pillarNodes.add(nodeAccess, adjNode);
+            lat += (int) buffer.readSignedVLong();
+            lon += (int) buffer.readSignedVLong();
+            if (nodeAccess.is3D())
+            {
+                ele += (int) buffer.readSignedVLong();
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon), Helper.intToEle(ele));
+            } else
+            {
+                pillarNodes.add(Helper.intToDegree(lat), Helper.intToDegree(lon));
+            }
         }
-
-        return pillarNodes;
     }
 
     @Override
@@ -1116,10 +1671,19 @@ public class GraphHopperStorage implements GraphStorage
         wayGeometry.copyTo(clonedG.wayGeometry);
         clonedG.loadWayGeometryHeader();
 
+        if (storeOsmIds)
+        {
+            osmPillarIds.copyTo(clonedG.osmPillarIds);
+            clonedG.maxOsmPillarRef = maxOsmPillarRef;
+        }
+
         // extStorage
         extStorage.copyTo(clonedG.extStorage);
 
         properties.copyTo(clonedG.properties);
+        clonedG.compactGeometry = compactGeometry;
+        clonedG.storeOsmIds = storeOsmIds;
+        clonedG.removedEdges = removedEdges;
 
         if (removedNodes == null)
             clonedG.removedNodes = null;
@@ -1155,23 +1719,130 @@ public class GraphHopperStorage implements GraphStorage
     public void optimize()
     {
         int delNodes = getRemovedNodes().getCardinality();
-        if (delNodes <= 0)
+        if (delNodes <= 0 && removedEdges <= 0)
             return;
 
-        // Deletes only nodes.
-        // It reduces the fragmentation of the node space but introduces new unused edges.
-        inPlaceNodeRemove(delNodes);
+        // Deletes nodes which reduces the fragmentation of the node space but introduces unused edges
+        if (delNodes > 0)
+            inPlaceNodeRemove(delNodes);
+
+        // Now remove the unused edges, also the ones from removeEdge
+        compactEdges();
+        removedEdges = 0;
+        if (storeOsmIds)
+            invalidateOsmIdIndex();
 
         // Reduce memory usage
         trimToSize();
     }
 
+    /**
+     * Disconnects the specified edge from its nodes, e.g. if its way was deleted. The edge id is
+     * not reused and the other edges keep their ids until the next optimize call which frees the
+     * space of the removed edges. Turn cost entries of the edge are not removed.
+     */
+    public void removeEdge( int edge )
+    {
+        if (edge <= EdgeIterator.NO_EDGE || edge >= edgeCount)
+            throw new IllegalArgumentException("edge " + edge + " out of bounds [0," + nf(edgeCount) + "]");
+
+        long edgePointer = (long) edge * edgeEntryBytes;
+        int nodeA = edges.getInt(edgePointer + E_NODEA);
+        if (nodeA == NO_NODE)
+            throw new IllegalArgumentException("edge " + edge + " was already removed");
+
+        int nodeB = edges.getInt(edgePointer + E_NODEB);
+        disconnectEdge(edge, nodeA, nodeB);
+        if (nodeA != nodeB)
+            disconnectEdge(edge, nodeB, nodeA);
+
+        invalidateEdge(edgePointer);
+        removedEdges++;
+    }
+
+    private void disconnectEdge( int edge, int node, int otherNode )
+    {
+        // the previous edge in the list of the node needs the link to the next edge
+        long prevPointer = -1;
+        int currEdge = nodes.getInt((long) node * nodeEntryBytes + N_EDGE_REF);
+        while (currEdge != edge)
+        {
+            if (currEdge == EdgeIterator.NO_EDGE)
+                throw new IllegalStateException("edge " + edge + " not found in the edges of node " + node);
+
+            prevPointer = (long) currEdge * edgeEntryBytes;
+            currEdge = edges.getInt(getLinkPosInEdgeArea(node, getOtherNode(node, prevPointer), prevPointer));
+        }
+        internalEdgeDisconnect(edge, prevPointer, node, otherNode);
+    }
+
+    /**
+     * @return the number of edges which were removed since the last optimize call
+     */
+    public int getRemovedEdges()
+    {
+        return removedEdges;
+    }
+
     private void trimToSize()
     {
         long nodeCap = (long) nodeCount * nodeEntryBytes;
         nodes.trimTo(nodeCap);
-//        long edgeCap = (long) (edgeCount + 1) * edgeEntrySize;
-//        edges.trimTo(edgeCap * 4);
+        // keep one more entry as ensureEdgeIndex does
+        long edgeCap = (long) (edgeCount + 1) * edgeEntryBytes;
+        edges.trimTo(edgeCap);
+    }
+
+    /**
+     * Removes the edges which were invalidated while removing nodes. The remaining edges keep
+     * their order but get new ids, so the links, the edge references of the nodes and the turn
+     * cost entries are updated. The way geometry is not compacted.
+     */
+    void compactEdges()
+    {
+        int[] oldToNewEdges = new int[edgeCount];
+        int newEdgeCount = 0;
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            if (edges.getInt((long) edge * edgeEntryBytes + E_NODEA) == NO_NODE)
+                oldToNewEdges[edge] = EdgeIterator.NO_EDGE;
+            else
+                oldToNewEdges[edge] = newEdgeCount++;
+        }
+
+        if (newEdgeCount == edgeCount)
+            return;
+
+        // the new id is never bigger, so moving forward does not overwrite entries still to be read
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            int newEdge = oldToNewEdges[edge];
+            if (newEdge == EdgeIterator.NO_EDGE)
+                continue;
+
+            long oldPointer = (long) edge * edgeEntryBytes;
+            long newPointer = (long) newEdge * edgeEntryBytes;
+            if (newEdge != edge)
+            {
+                for (int i = 0; i < edgeEntryBytes; i += 4)
+                {
+                    edges.setInt(newPointer + i, edges.getInt(oldPointer + i));
+                }
+            }
+            edges.setInt(newPointer + E_LINKA, renumberEdge(edges.getInt(newPointer + E_LINKA), oldToNewEdges));
+            edges.setInt(newPointer + E_LINKB, renumberEdge(edges.getInt(newPointer + E_LINKB), oldToNewEdges));
+        }
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            long nodePointer = (long) node * nodeEntryBytes;
+            nodes.setInt(nodePointer + N_EDGE_REF, renumberEdge(nodes.getInt(nodePointer + N_EDGE_REF), oldToNewEdges));
+        }
+
+        if (extStorage instanceof TurnCostExtension)
+            ((TurnCostExtension) extStorage).renumberEdges(oldToNewEdges);
+
+        edgeCount = newEdgeCount;
     }
 
     /**
@@ -1273,6 +1944,7 @@ public class GraphHopperStorage implements GraphStorage
             }
         }
 
+        VLongStorage geometryBuffer = new VLongStorage(64);
         GHBitSet toMoveSet = new GHBitSetImpl(removeNodeCount * 3);
         EdgeExplorer movedEdgeExplorer = createEdgeExplorer();
         // marks connected nodes to rewrite the edges
@@ -1336,7 +2008,10 @@ public class GraphHopperStorage implements GraphStorage
             writeEdge(edge, updatedA, updatedB, linkA, linkB);
             setFlags(edgePointer, updatedA > updatedB, flags);
             if (updatedA < updatedB != nodeA < nodeB)
-                setWayGeometry(fetchWayGeometry(edgePointer, true, 0, -1, -1), edgePointer, false);
+            {
+                reverseWayGeometry(edgePointer, geometryBuffer);
+                reverseOsmPillarIds(edgePointer);
+            }
         }
 
         if (removeNodeCount >= nodeCount)
@@ -1387,6 +2062,130 @@ public class GraphHopperStorage implements GraphStorage
         removedNodes = null;
     }
 
+    /**
+     * Renumbers the nodes in place, e.g. to store nodes which are close to each other also close
+     * in memory which reduces page faults for mmapped graphs. The edges are reordered too: they are
+     * sorted by their smaller new node id and invalid edges of removed nodes are moved to the end.
+     * Turn cost entries are updated but everything else referencing node or edge ids, like the
+     * location index, needs to be created afterwards.
+     * <p/>
+     * @param oldToNewNodes a permutation of all node ids, see GHUtility.createHilbertOrder
+     */
+    public void renumberNodes( int[] oldToNewNodes )
+    {
+        if (oldToNewNodes.length != nodeCount)
+            throw new IllegalArgumentException("Node mapping needs " + nodeCount + " entries but was " + oldToNewNodes.length);
+        if (getRemovedNodes().getCardinality() > 0)
+            throw new IllegalStateException("Call optimize to remove nodes before renumbering");
+
+        GHBitSet used = new GHBitSetImpl(nodeCount);
+        for (int newNode : oldToNewNodes)
+        {
+            if (newNode < 0 || newNode >= nodeCount || used.contains(newNode))
+                throw new IllegalArgumentException("Node mapping is not a permutation, invalid or duplicate node " + newNode);
+            used.add(newNode);
+        }
+
+        // sort by the smaller new node id, the original edge id is stored in the lower bits
+        long[] keys = new long[edgeCount];
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            long edgePointer = (long) edge * edgeEntryBytes;
+            int nodeA = edges.getInt(edgePointer + E_NODEA);
+            long key = nodeA == NO_NODE ? Integer.MAX_VALUE
+                    : Math.min(oldToNewNodes[nodeA], oldToNewNodes[edges.getInt(edgePointer + E_NODEB)]);
+            keys[edge] = key << 32 | edge;
+        }
+        Arrays.sort(keys);
+        int[] oldToNewEdges = new int[edgeCount];
+        for (int i = 0; i < edgeCount; i++)
+        {
+            oldToNewEdges[(int) keys[i]] = i;
+        }
+        keys = null;
+
+        // update the edge content at the old position
+        VLongStorage geometryBuffer = new VLongStorage(64);
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            long edgePointer = (long) edge * edgeEntryBytes;
+            int nodeA = edges.getInt(edgePointer + E_NODEA);
+            if (nodeA == NO_NODE)
+                continue;
+
+            int nodeB = edges.getInt(edgePointer + E_NODEB);
+            int newA = oldToNewNodes[nodeA];
+            int newB = oldToNewNodes[nodeB];
+            int linkA = renumberEdge(edges.getInt(edgePointer + E_LINKA), oldToNewEdges);
+            int linkB = renumberEdge(edges.getInt(edgePointer + E_LINKB), oldToNewEdges);
+            writeEdge(edge, newA, newB, linkA, linkB);
+            // flags and geometry are stored in the direction from the smaller to the bigger node
+            if (newA > newB)
+            {
+                setFlags(edgePointer, true, getFlags(edgePointer, false));
+                reverseWayGeometry(edgePointer, geometryBuffer);
+                reverseOsmPillarIds(edgePointer);
+            }
+        }
+        permute(edges, edgeEntryBytes, oldToNewEdges);
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            long nodePointer = (long) node * nodeEntryBytes;
+            nodes.setInt(nodePointer + N_EDGE_REF, renumberEdge(nodes.getInt(nodePointer + N_EDGE_REF), oldToNewEdges));
+        }
+        permute(nodes, nodeEntryBytes, oldToNewNodes);
+
+        if (extStorage instanceof TurnCostExtension)
+            ((TurnCostExtension) extStorage).renumberEdges(oldToNewEdges);
+
+        if (storeOsmIds)
+            invalidateOsmIdIndex();
+    }
+
+    private static int renumberEdge( int edge, int[] oldToNewEdges )
+    {
+        return edge == EdgeIterator.NO_EDGE ? EdgeIterator.NO_EDGE : oldToNewEdges[edge];
+    }
+
+    /**
+     * Moves every entry to its new position by following the cycles of the permutation, so only
+     * two entries are held in memory.
+     */
+    private static void permute( DataAccess da, int entryBytes, int[] oldToNew )
+    {
+        int[] current = new int[entryBytes / 4];
+        int[] next = new int[current.length];
+        GHBitSet moved = new GHBitSetImpl(oldToNew.length);
+        for (int start = 0; start < oldToNew.length; start++)
+        {
+            if (oldToNew[start] == start || moved.contains(start))
+                continue;
+
+            long startPointer = (long) start * entryBytes;
+            for (int i = 0; i < current.length; i++)
+            {
+                current[i] = da.getInt(startPointer + i * 4);
+            }
+
+            int index = start;
+            do
+            {
+                index = oldToNew[index];
+                long pointer = (long) index * entryBytes;
+                for (int i = 0; i < current.length; i++)
+                {
+                    next[i] = da.getInt(pointer + i * 4);
+                    da.setInt(pointer + i * 4, current[i]);
+                }
+                moved.add(index);
+                int[] tmp = current;
+                current = next;
+                next = tmp;
+            } while (index != start);
+        }
+    }
+
     private static boolean isTestingEnabled()
     {
         boolean enableIfAssert = false;
@@ -1440,6 +2239,13 @@ public class GraphHopperStorage implements GraphStorage
             if (!wayGeometry.loadExisting())
                 throw new IllegalStateException("Cannot load geometry. corrupt file or directory? " + dir);
 
+            // graphs without this property were created with the integer format
+            compactGeometry = "delta".equals(properties.get("geometry.format"));
+
+            storeOsmIds = "true".equals(properties.get("graph.osm_ids"));
+            if (storeOsmIds && !osmPillarIds.loadExisting())
+                throw new IllegalStateException("Cannot load OSM ids. corrupt file or directory? " + dir);
+
             if (!nameIndex.loadExisting())
                 throw new IllegalStateException("Cannot load name index. corrupt file or directory? " + dir);
 
@@ -1453,6 +2259,16 @@ public class GraphHopperStorage implements GraphStorage
             loadNodesHeader();
             loadEdgesHeader();
             loadWayGeometryHeader();
+            if (storeOsmIds)
+            {
+                maxOsmPillarRef = osmPillarIds.getHeader(0);
+                // a missing lookup is created again from the OSM ids
+                osmNodeIndex.loadExisting();
+                osmPillarIndex.loadExisting();
+                osmWayIndex.loadExisting();
+            }
+            String removedEdgesStr = properties.get("graph.removed_edges");
+            removedEdges = removedEdgesStr.isEmpty() ? 0 : Integer.parseInt(removedEdgesStr);
             return true;
         }
         return false;
@@ -1476,6 +2292,16 @@ public class GraphHopperStorage implements GraphStorage
         else
             E_ADDITIONAL = -1;
 
+        if (storeOsmIds)
+        {
+            E_OSM_WAY = nextEdgeEntryIndex(8);
+            E_OSM_PILLARS = nextEdgeEntryIndex(4);
+        } else
+        {
+            E_OSM_WAY = -1;
+            E_OSM_PILLARS = -1;
+        }
+
         N_EDGE_REF = nextNodeEntryIndex(4);
         N_LAT = nextNodeEntryIndex(4);
         N_LON = nextNodeEntryIndex(4);
@@ -1489,6 +2315,11 @@ public class GraphHopperStorage implements GraphStorage
         else
             N_ADDITIONAL = -1;
 
+        if (storeOsmIds)
+            N_OSM = nextNodeEntryIndex(8);
+        else
+            N_OSM = -1;
+
         initNodeAndEdgeEntrySize();
         initialized = true;
     }
@@ -1565,16 +2396,28 @@ public class GraphHopperStorage implements GraphStorage
     @Override
     public void flush()
     {
+        // the extension could modify the additional node field so flush it before the nodes
+        extStorage.flush();
+
         setNodesHeader();
         setEdgesHeader();
         setWayGeometryHeader();
 
+        properties.put("graph.removed_edges", removedEdges);
         properties.flush();
         wayGeometry.flush();
+        if (storeOsmIds)
+        {
+            osmPillarIds.setHeader(0, maxOsmPillarRef);
+            osmPillarIds.flush();
+            ensureOsmIdIndex();
+            osmNodeIndex.flush();
+            osmPillarIndex.flush();
+            osmWayIndex.flush();
+        }
         nameIndex.flush();
         edges.flush();
         nodes.flush();
-        extStorage.flush();
     }
 
     @Override
@@ -1582,6 +2425,13 @@ public class GraphHopperStorage implements GraphStorage
     {
         properties.close();
         wayGeometry.close();
+        if (storeOsmIds)
+        {
+            osmPillarIds.close();
+            osmNodeIndex.close();
+            osmPillarIndex.close();
+            osmWayIndex.close();
+        }
         nameIndex.close();
         edges.close();
         nodes.close();
@@ -1604,7 +2454,8 @@ public class GraphHopperStorage implements GraphStorage
     public long getCapacity()
     {
         return edges.getCapacity() + nodes.getCapacity() + nameIndex.getCapacity() + wayGeometry.getCapacity()
-                + properties.getCapacity() + extStorage.getCapacity();
+                + properties.getCapacity() + extStorage.getCapacity() + (storeOsmIds ? osmPillarIds.getCapacity() + osmNodeIndex.getCapacity() + osmPillarIndex.getCapacity()
+                + osmWayIndex.getCapacity() : 0);
     }
 
     @Override
@@ -19,6 +19,7 @@ package com.graphhopper.storage;
 
 import com.graphhopper.routing.util.AllEdgesSkipIterator;
 import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.util.EdgeIteratorState;
 import com.graphhopper.util.EdgeSkipExplorer;
 import com.graphhopper.util.EdgeSkipIterState;
 
@@ -48,6 +49,12 @@ public interface LevelGraph extends Graph
      */
     EdgeSkipIterState shortcut( int a, int b );
 
+    /**
+     * Disconnects the shortcut specified via edgeState from its adjacent node, so that it is only
+     * reachable from the base node afterwards. Normal edges are not touched.
+     */
+    void disconnect( EdgeSkipExplorer explorer, EdgeIteratorState edgeState );
+
     @Override
     EdgeSkipIterState getEdgeProps( int edgeId, int endNode );
 
@@ -0,0 +1,870 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.AllEdgesSkipIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+
+import static com.graphhopper.util.Helper.nf;
+
+/**
+ * A LevelGraph which keeps the levels and shortcuts in its own DataAccess objects and uses the
+ * nodes and edges of an existing GraphStorage as base graph. Several layers can share the same
+ * base storage which makes it possible to prepare contraction hierarchies for more than one
+ * vehicle and weighting combination without duplicating the road network.
+ * <p/>
+ * Shortcut ids start after the last edge id of the base graph, so all edges of the base graph have
+ * to be created before the first shortcut. Different to LevelGraphStorage the flags of a shortcut
+ * only contain the access bits of the prepared vehicle and the weight is stored separately.
+ * <p/>
+ * @author Peter Karich
+ * @see LevelGraphStorage
+ */
+public class LevelGraphLayer implements LevelGraph, Storable<LevelGraphLayer>
+{
+    private static final double WEIGHT_FACTOR = 1000f;
+    private static final double MAX_WEIGHT = Integer.MAX_VALUE / WEIGHT_FACTOR;
+    private static final double INT_DIST_FACTOR = 1000d;
+    private final String name;
+    private final GraphStorage storage;
+    private final Graph baseGraph;
+    private final EncodingManager encodingManager;
+    private final BitUtil bitUtil;
+    // node memory layout:
+    private final int N_LEVEL, N_SC_REF;
+    private final int nodeEntryBytes;
+    private final DataAccess nodesCH;
+    private int nodeCount;
+    // shortcut memory layout:
+    private final int S_NODEA, S_NODEB, S_LINKA, S_LINKB, S_DIST, S_FLAGS, S_WEIGHT, S_SKIP_EDGE1, S_SKIP_EDGE2;
+    private final int shortcutEntryBytes;
+    private final DataAccess shortcuts;
+    private int shortcutCount;
+    // the edge count of the base graph when the first shortcut was created
+    private int baseEdgeCount;
+
+    /**
+     * @param name a unique name of this layer in the directory of the storage e.g. bike_fastest
+     */
+    public LevelGraphLayer( String name, GraphStorage storage )
+    {
+        if (Helper.isEmpty(name))
+            throw new IllegalArgumentException("Name of the level graph layer cannot be empty");
+
+        this.name = name;
+        this.storage = storage;
+        this.baseGraph = storage.getBaseGraph();
+        this.encodingManager = storage.getEncodingManager();
+        this.bitUtil = BitUtil.get(storage.getDirectory().getByteOrder());
+        this.nodesCH = storage.getDirectory().find("nodes_ch_" + name);
+        this.shortcuts = storage.getDirectory().find("shortcuts_" + name);
+
+        N_LEVEL = 0;
+        N_SC_REF = 4;
+        nodeEntryBytes = 8;
+
+        S_NODEA = 0;
+        S_NODEB = 4;
+        S_LINKA = 8;
+        S_LINKB = 12;
+        S_DIST = 16;
+        S_FLAGS = 20;
+        S_WEIGHT = 28;
+        S_SKIP_EDGE1 = 32;
+        S_SKIP_EDGE2 = 36;
+        shortcutEntryBytes = 40;
+    }
+
+    public String getName()
+    {
+        return name;
+    }
+
+    public void setSegmentSize( int bytes )
+    {
+        nodesCH.setSegmentSize(bytes);
+        shortcuts.setSegmentSize(bytes);
+    }
+
+    @Override
+    public LevelGraphLayer create( long byteCount )
+    {
+        long initSize = Math.max(byteCount, 100);
+        nodesCH.create(initSize);
+        shortcuts.create(initSize);
+        nodeCount = 0;
+        shortcutCount = 0;
+        baseEdgeCount = 0;
+        ensureNodeIndex(baseGraph.getNodes() - 1);
+        return this;
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (!nodesCH.loadExisting())
+            return false;
+
+        if (!shortcuts.loadExisting())
+            throw new IllegalStateException("Cannot load shortcuts of " + name + ". corrupt file or directory? "
+                    + storage.getDirectory());
+
+        if (nodesCH.getHeader(0) != nodeEntryBytes || shortcuts.getHeader(0) != shortcutEntryBytes)
+            throw new IllegalStateException("Cannot load level graph layer " + name + " with a different memory layout");
+
+        nodeCount = nodesCH.getHeader(1 * 4);
+        shortcutCount = shortcuts.getHeader(1 * 4);
+        baseEdgeCount = shortcuts.getHeader(2 * 4);
+        return true;
+    }
+
+    @Override
+    public void flush()
+    {
+        nodesCH.setHeader(0, nodeEntryBytes);
+        nodesCH.setHeader(1 * 4, nodeCount);
+        shortcuts.setHeader(0, shortcutEntryBytes);
+        shortcuts.setHeader(1 * 4, shortcutCount);
+        shortcuts.setHeader(2 * 4, baseEdgeCount);
+        nodesCH.flush();
+        shortcuts.flush();
+    }
+
+    @Override
+    public void close()
+    {
+        nodesCH.close();
+        shortcuts.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return nodesCH.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return nodesCH.getCapacity() + shortcuts.getCapacity();
+    }
+
+    public String toDetailsString()
+    {
+        return name + " shortcuts:" + nf(shortcutCount) + "(" + shortcuts.getCapacity() / Helper.MB + "), "
+                + "nodesCH:" + nf(nodeCount) + "(" + nodesCH.getCapacity() / Helper.MB + ")";
+    }
+
+    private void ensureNodeIndex( int node )
+    {
+        if (node < nodeCount)
+            return;
+
+        long oldNodes = nodeCount;
+        nodeCount = node + 1;
+        nodesCH.ensureCapacity((long) nodeCount * nodeEntryBytes);
+        for (long pointer = oldNodes * nodeEntryBytes; pointer < (long) nodeCount * nodeEntryBytes; pointer += nodeEntryBytes)
+        {
+            nodesCH.setInt(pointer + N_LEVEL, 0);
+            nodesCH.setInt(pointer + N_SC_REF, EdgeIterator.NO_EDGE);
+        }
+    }
+
+    private int getShortcutRef( int node )
+    {
+        if (node >= nodeCount)
+            return EdgeIterator.NO_EDGE;
+
+        return nodesCH.getInt((long) node * nodeEntryBytes + N_SC_REF);
+    }
+
+    @Override
+    public final void setLevel( int nodeIndex, int level )
+    {
+        if (nodeIndex >= getNodes())
+            return;
+
+        ensureNodeIndex(nodeIndex);
+        nodesCH.setInt((long) nodeIndex * nodeEntryBytes + N_LEVEL, level);
+    }
+
+    @Override
+    public final int getLevel( int nodeIndex )
+    {
+        if (nodeIndex >= getNodes())
+            throw new IllegalStateException("node " + nodeIndex + " is invalid. Not in [0," + getNodes() + ")");
+
+        if (nodeIndex >= nodeCount)
+            return 0;
+
+        return nodesCH.getInt((long) nodeIndex * nodeEntryBytes + N_LEVEL);
+    }
+
+    @Override
+    public final boolean isShortcut( int edgeId )
+    {
+        return shortcutCount > 0 && edgeId >= baseEdgeCount;
+    }
+
+    @Override
+    public EdgeSkipIterState shortcut( int a, int b )
+    {
+        if (a >= getNodes() || b >= getNodes())
+            throw new IllegalStateException("Cannot create shortcut " + a + "->" + b + " for nodes not in the base graph");
+
+        int baseEdges = baseGraph.getAllEdges().getCount();
+        if (shortcutCount == 0)
+            baseEdgeCount = baseEdges;
+        else if (baseEdges != baseEdgeCount)
+            throw new IllegalStateException("Base graph of " + name + " was changed after the first shortcut was created");
+
+        ensureNodeIndex(Math.max(a, b));
+        int scIndex = shortcutCount;
+        shortcutCount++;
+        if (baseEdgeCount + shortcutCount < 0)
+            throw new IllegalStateException("too many shortcuts. new shortcut id would be negative. " + toString());
+
+        shortcuts.ensureCapacity((long) shortcutCount * shortcutEntryBytes);
+        long scPointer = (long) scIndex * shortcutEntryBytes;
+        shortcuts.setInt(scPointer + S_NODEA, Math.min(a, b));
+        shortcuts.setInt(scPointer + S_NODEB, Math.max(a, b));
+        shortcuts.setInt(scPointer + S_LINKA, EdgeIterator.NO_EDGE);
+        shortcuts.setInt(scPointer + S_LINKB, EdgeIterator.NO_EDGE);
+        shortcuts.setInt(scPointer + S_DIST, 0);
+        shortcuts.setInt(scPointer + S_FLAGS, 0);
+        shortcuts.setInt(scPointer + S_FLAGS + 4, 0);
+        shortcuts.setInt(scPointer + S_WEIGHT, 0);
+        shortcuts.setInt(scPointer + S_SKIP_EDGE1, EdgeIterator.NO_EDGE);
+        shortcuts.setInt(scPointer + S_SKIP_EDGE2, EdgeIterator.NO_EDGE);
+        connectShortcut(a, b, scIndex);
+        if (a != b)
+            connectShortcut(b, a, scIndex);
+
+        LayerEdgeIterator iter = new LayerEdgeIterator(EdgeFilter.ALL_EDGES);
+        iter.setShortcut(scIndex, a, b);
+        return iter;
+    }
+
+    private void connectShortcut( int node, int otherNode, int scIndex )
+    {
+        long nodePointer = (long) node * nodeEntryBytes;
+        int firstSc = nodesCH.getInt(nodePointer + N_SC_REF);
+        if (firstSc > EdgeIterator.NO_EDGE)
+            shortcuts.setInt(getLinkPos(node, otherNode, (long) scIndex * shortcutEntryBytes), firstSc);
+
+        nodesCH.setInt(nodePointer + N_SC_REF, scIndex);
+    }
+
+    private long getLinkPos( int nodeThis, int nodeOther, long scPointer )
+    {
+        return nodeThis <= nodeOther ? scPointer + S_LINKA : scPointer + S_LINKB;
+    }
+
+    /**
+     * Disconnects the shortcut (higher->lower node) via the specified edgeState pointing from lower
+     * to higher node. Normal edges are shared with the base graph and are never disconnected.
+     */
+    @Override
+    public void disconnect( EdgeSkipExplorer explorer, EdgeIteratorState edgeState )
+    {
+        if (!isShortcut(edgeState.getEdge()))
+            return;
+
+        int scIndex = edgeState.getEdge() - baseEdgeCount;
+        int node = edgeState.getAdjNode();
+        int prevSc = EdgeIterator.NO_EDGE;
+        int currSc = getShortcutRef(node);
+        for (int i = 0; currSc != EdgeIterator.NO_EDGE; i++)
+        {
+            if (i >= shortcutCount)
+                throw new IllegalStateException("something went wrong: there seems to be no end of the shortcut list of node " + node);
+
+            long currPointer = (long) currSc * shortcutEntryBytes;
+            int otherNode = getOtherNode(node, currPointer);
+            int nextSc = shortcuts.getInt(getLinkPos(node, otherNode, currPointer));
+            if (currSc == scIndex)
+            {
+                if (prevSc == EdgeIterator.NO_EDGE)
+                {
+                    nodesCH.setInt((long) node * nodeEntryBytes + N_SC_REF, nextSc);
+                } else
+                {
+                    long prevPointer = (long) prevSc * shortcutEntryBytes;
+                    shortcuts.setInt(getLinkPos(node, getOtherNode(node, prevPointer), prevPointer), nextSc);
+                }
+                return;
+            }
+            prevSc = currSc;
+            currSc = nextSc;
+        }
+    }
+
+    private int getOtherNode( int nodeThis, long scPointer )
+    {
+        int nodeA = shortcuts.getInt(scPointer + S_NODEA);
+        if (nodeA == nodeThis)
+            return shortcuts.getInt(scPointer + S_NODEB);
+
+        return nodeA;
+    }
+
+    @Override
+    public Graph getBaseGraph()
+    {
+        return baseGraph;
+    }
+
+    @Override
+    public int getNodes()
+    {
+        return baseGraph.getNodes();
+    }
+
+    @Override
+    public NodeAccess getNodeAccess()
+    {
+        return baseGraph.getNodeAccess();
+    }
+
+    @Override
+    public BBox getBounds()
+    {
+        return baseGraph.getBounds();
+    }
+
+    @Override
+    public EdgeSkipIterState edge( int a, int b )
+    {
+        if (shortcutCount > 0)
+            throw new IllegalStateException("Cannot create edge after first shortcut was created");
+
+        LayerEdgeIterator iter = new LayerEdgeIterator(EdgeFilter.ALL_EDGES);
+        iter.setBaseState(baseGraph.edge(a, b));
+        return iter;
+    }
+
+    @Override
+    public EdgeIteratorState edge( int a, int b, double distance, boolean bothDirections )
+    {
+        return edge(a, b).setDistance(distance).setFlags(encodingManager.flagsDefault(true, bothDirections));
+    }
+
+    @Override
+    public EdgeSkipIterState getEdgeProps( int edgeId, int adjNode )
+    {
+        if (isShortcut(edgeId))
+        {
+            int scIndex = edgeId - baseEdgeCount;
+            if (scIndex >= shortcutCount)
+                throw new IllegalStateException("shortcut " + edgeId + " out of bounds [" + baseEdgeCount
+                        + "," + nf(baseEdgeCount + shortcutCount) + "]");
+
+            long scPointer = (long) scIndex * shortcutEntryBytes;
+            int nodeA = shortcuts.getInt(scPointer + S_NODEA);
+            int nodeB = shortcuts.getInt(scPointer + S_NODEB);
+            LayerEdgeIterator iter = new LayerEdgeIterator(EdgeFilter.ALL_EDGES);
+            if (adjNode == nodeB || adjNode == Integer.MIN_VALUE)
+                iter.setShortcut(scIndex, nodeA, nodeB);
+            else if (adjNode == nodeA)
+                iter.setShortcut(scIndex, nodeB, nodeA);
+            else
+                return null;
+
+            return iter;
+        }
+
+        EdgeIteratorState edgeState = baseGraph.getEdgeProps(edgeId, adjNode);
+        if (edgeState == null)
+            return null;
+
+        LayerEdgeIterator iter = new LayerEdgeIterator(EdgeFilter.ALL_EDGES);
+        iter.setBaseState(edgeState);
+        return iter;
+    }
+
+    @Override
+    public EdgeSkipExplorer createEdgeExplorer()
+    {
+        return createEdgeExplorer(EdgeFilter.ALL_EDGES);
+    }
+
+    @Override
+    public EdgeSkipExplorer createEdgeExplorer( EdgeFilter filter )
+    {
+        return new LayerEdgeIterator(filter);
+    }
+
+    @Override
+    public AllEdgesSkipIterator getAllEdges()
+    {
+        return new AllLayerEdgeIterator();
+    }
+
+    @Override
+    public Graph copyTo( Graph g )
+    {
+        throw new UnsupportedOperationException("Copying a level graph layer is not supported");
+    }
+
+    @Override
+    public GraphExtension getExtension()
+    {
+        return baseGraph.getExtension();
+    }
+
+    private double getDist( long scPointer )
+    {
+        int val = shortcuts.getInt(scPointer + S_DIST);
+        if (val == Integer.MAX_VALUE)
+            return Double.POSITIVE_INFINITY;
+
+        return val / INT_DIST_FACTOR;
+    }
+
+    private void setDist( long scPointer, double distance )
+    {
+        int integ = (int) (distance * INT_DIST_FACTOR);
+        if (integ < 0)
+            throw new IllegalArgumentException("Distance cannot be negative: " + distance);
+
+        shortcuts.setInt(scPointer + S_DIST, integ);
+    }
+
+    private long getFlags( long scPointer, boolean reverse )
+    {
+        long flags = bitUtil.combineIntsToLong(shortcuts.getInt(scPointer + S_FLAGS),
+                shortcuts.getInt(scPointer + S_FLAGS + 4));
+        if (reverse)
+            return encodingManager.reverseFlags(flags);
+        return flags;
+    }
+
+    private void setFlags( long scPointer, boolean reverse, long flags )
+    {
+        if (reverse)
+            flags = encodingManager.reverseFlags(flags);
+
+        shortcuts.setInt(scPointer + S_FLAGS, bitUtil.getIntLow(flags));
+        shortcuts.setInt(scPointer + S_FLAGS + 4, bitUtil.getIntHigh(flags));
+    }
+
+    private double getWeight( long scPointer )
+    {
+        int weightInt = shortcuts.getInt(scPointer + S_WEIGHT);
+        if (weightInt == Integer.MAX_VALUE)
+            return Double.POSITIVE_INFINITY;
+
+        return weightInt / WEIGHT_FACTOR;
+    }
+
+    private void setWeight( long scPointer, double weight )
+    {
+        if (weight < 0)
+            throw new IllegalArgumentException("weight cannot be negative! but was " + weight);
+
+        int weightInt;
+        if (weight >= MAX_WEIGHT)
+            weightInt = Integer.MAX_VALUE;
+        else
+            weightInt = (int) (weight * WEIGHT_FACTOR);
+
+        shortcuts.setInt(scPointer + S_WEIGHT, weightInt);
+    }
+
+    /**
+     * Iterates first over the shortcuts of the base node and then over the edges of the base graph.
+     * An instance either points to a shortcut stored in this layer or delegates to an edge of the
+     * base graph.
+     */
+    class LayerEdgeIterator implements EdgeSkipExplorer, EdgeSkipIterator
+    {
+        final EdgeFilter filter;
+        EdgeExplorer baseExplorer;
+        EdgeIterator baseIter;
+        EdgeIteratorState baseState;
+        boolean shortcut;
+        int baseNode;
+        int adjNode;
+        int edgeId;
+        long scPointer;
+        int nextShortcut = EdgeIterator.NO_EDGE;
+        // the number of shortcuts of the current base node which were already visited
+        int shortcutVisits;
+        boolean reverse;
+
+        LayerEdgeIterator( EdgeFilter filter )
+        {
+            if (filter == null)
+                throw new IllegalArgumentException("Instead null filter use EdgeFilter.ALL_EDGES");
+
+            this.filter = filter;
+        }
+
+        final void setShortcut( int scIndex, int base, int adj )
+        {
+            shortcut = true;
+            scPointer = (long) scIndex * shortcutEntryBytes;
+            edgeId = baseEdgeCount + scIndex;
+            baseNode = base;
+            adjNode = adj;
+            reverse = base > adj;
+            baseState = null;
+        }
+
+        final void setBaseState( EdgeIteratorState state )
+        {
+            shortcut = false;
+            baseState = state;
+            edgeId = state.getEdge();
+            baseNode = state.getBaseNode();
+            adjNode = state.getAdjNode();
+        }
+
+        @Override
+        public EdgeSkipIterator setBaseNode( int baseNode )
+        {
+            if (baseExplorer == null)
+                baseExplorer = baseGraph.createEdgeExplorer();
+
+            this.baseNode = baseNode;
+            nextShortcut = getShortcutRef(baseNode);
+            shortcutVisits = 0;
+            baseIter = baseExplorer.setBaseNode(baseNode);
+            return this;
+        }
+
+        @Override
+        public boolean next()
+        {
+            while (nextShortcut != EdgeIterator.NO_EDGE)
+            {
+                if (++shortcutVisits > shortcutCount)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the shortcut list of node " + baseNode);
+
+                int scIndex = nextShortcut;
+                long tmpPointer = (long) scIndex * shortcutEntryBytes;
+                int tmpAdj = getOtherNode(baseNode, tmpPointer);
+                nextShortcut = shortcuts.getInt(getLinkPos(baseNode, tmpAdj, tmpPointer));
+                if (nextShortcut == scIndex)
+                    throw new AssertionError("endless loop detected for " + baseNode + ", " + tmpAdj + ", " + scIndex);
+
+                shortcut = true;
+                scPointer = tmpPointer;
+                edgeId = baseEdgeCount + scIndex;
+                adjNode = tmpAdj;
+                reverse = baseNode > adjNode;
+                if (filter.accept(this))
+                    return true;
+            }
+            nextShortcut = EdgeIterator.NO_EDGE;
+
+            if (baseIter == null)
+                return false;
+
+            shortcut = false;
+            while (baseIter.next())
+            {
+                baseState = baseIter;
+                edgeId = baseIter.getEdge();
+                adjNode = baseIter.getAdjNode();
+                if (filter.accept(this))
+                    return true;
+            }
+            return false;
+        }
+
+        @Override
+        public final int getEdge()
+        {
+            return edgeId;
+        }
+
+        @Override
+        public final int getBaseNode()
+        {
+            return baseNode;
+        }
+
+        @Override
+        public final int getAdjNode()
+        {
+            return adjNode;
+        }
+
+        @Override
+        public final boolean isShortcut()
+        {
+            return shortcut;
+        }
+
+        @Override
+        public final double getDistance()
+        {
+            if (shortcut)
+                return getDist(scPointer);
+            return baseState.getDistance();
+        }
+
+        @Override
+        public final EdgeIteratorState setDistance( double dist )
+        {
+            if (shortcut)
+                setDist(scPointer, dist);
+            else
+                baseState.setDistance(dist);
+            return this;
+        }
+
+        @Override
+        public final long getFlags()
+        {
+            if (shortcut)
+                return LevelGraphLayer.this.getFlags(scPointer, reverse);
+            return baseState.getFlags();
+        }
+
+        @Override
+        public final EdgeIteratorState setFlags( long flags )
+        {
+            if (shortcut)
+                LevelGraphLayer.this.setFlags(scPointer, reverse, flags);
+            else
+                baseState.setFlags(flags);
+            return this;
+        }
+
+        @Override
+        public final EdgeSkipIterState setWeight( double weight )
+        {
+            if (!shortcut)
+                throw new IllegalStateException("setWeight is only available for shortcuts");
+
+            LevelGraphLayer.this.setWeight(scPointer, weight);
+            return this;
+        }
+
+        @Override
+        public final double getWeight()
+        {
+            if (!shortcut)
+                throw new IllegalStateException("getWeight is only available for shortcuts");
+
+            return LevelGraphLayer.this.getWeight(scPointer);
+        }
+
+        @Override
+        public final void setSkippedEdges( int edge1, int edge2 )
+        {
+            if (EdgeIterator.Edge.isValid(edge1) != EdgeIterator.Edge.isValid(edge2))
+            {
+                throw new IllegalStateException("Skipped edges of a shortcut needs "
+                        + "to be both valid or invalid but they were not " + edge1 + ", " + edge2);
+            }
+
+            if (!shortcut)
+            {
+                if (EdgeIterator.Edge.isValid(edge1))
+                    throw new IllegalStateException("Skipped edges can only be set for shortcuts " + getEdge());
+                return;
+            }
+
+            shortcuts.setInt(scPointer + S_SKIP_EDGE1, edge1);
+            shortcuts.setInt(scPointer + S_SKIP_EDGE2, edge2);
+        }
+
+        @Override
+        public final int getSkippedEdge1()
+        {
+            if (!shortcut)
+                return EdgeIterator.NO_EDGE;
+            return shortcuts.getInt(scPointer + S_SKIP_EDGE1);
+        }
+
+        @Override
+        public final int getSkippedEdge2()
+        {
+            if (!shortcut)
+                return EdgeIterator.NO_EDGE;
+            return shortcuts.getInt(scPointer + S_SKIP_EDGE2);
+        }
+
+        @Override
+        public PointList fetchWayGeometry( int mode )
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call fetchWayGeometry on shortcut " + getEdge());
+            return baseState.fetchWayGeometry(mode);
+        }
+
+        @Override
+        public PointList fetchWayGeometry( int mode, PointList pillarNodes )
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call fetchWayGeometry on shortcut " + getEdge());
+            return baseState.fetchWayGeometry(mode, pillarNodes);
+        }
+
+        @Override
+        public EdgeIteratorState setWayGeometry( PointList list )
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call setWayGeometry on shortcut " + getEdge());
+            baseState.setWayGeometry(list);
+            return this;
+        }
+
+        @Override
+        public String getName()
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call getName on shortcut " + getEdge());
+            return baseState.getName();
+        }
+
+        @Override
+        public EdgeIteratorState setName( String name )
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call setName on shortcut " + getEdge());
+            baseState.setName(name);
+            return this;
+        }
+
+        @Override
+        public int getAdditionalField()
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call getAdditionalField on shortcut " + getEdge());
+            return baseState.getAdditionalField();
+        }
+
+        @Override
+        public EdgeIteratorState setAdditionalField( int value )
+        {
+            if (shortcut)
+                throw new IllegalStateException("Cannot call setAdditionalField on shortcut " + getEdge());
+            baseState.setAdditionalField(value);
+            return this;
+        }
+
+        @Override
+        public boolean getBoolean( int key, boolean reverse, boolean _default )
+        {
+            if (shortcut)
+                return _default;
+            return baseState.getBoolean(key, reverse, _default);
+        }
+
+        @Override
+        public EdgeIteratorState detach( boolean reverseArg )
+        {
+            if (!shortcut && baseState == null)
+                throw new IllegalStateException("call next before detaching");
+
+            LayerEdgeIterator iter = new LayerEdgeIterator(filter);
+            if (shortcut)
+            {
+                iter.setShortcut((int) (scPointer / shortcutEntryBytes), baseNode, adjNode);
+                if (reverseArg)
+                {
+                    iter.baseNode = adjNode;
+                    iter.adjNode = baseNode;
+                    iter.reverse = !reverse;
+                }
+            } else
+            {
+                iter.setBaseState(baseState.detach(reverseArg));
+            }
+            return iter;
+        }
+
+        @Override
+        public EdgeIteratorState copyPropertiesTo( EdgeIteratorState edge )
+        {
+            if (!shortcut)
+                return baseState.copyPropertiesTo(edge);
+
+            edge.setDistance(getDistance()).setFlags(getFlags());
+            if (edge instanceof EdgeSkipIterState)
+            {
+                EdgeSkipIterState skipEdge = (EdgeSkipIterState) edge;
+                skipEdge.setWeight(getWeight());
+                skipEdge.setSkippedEdges(getSkippedEdge1(), getSkippedEdge2());
+            }
+            return edge;
+        }
+
+        @Override
+        public String toString()
+        {
+            return getEdge() + " " + getBaseNode() + "-" + getAdjNode();
+        }
+    }
+
+    /**
+     * Includes all edges of the base graph and then all shortcuts of this layer.
+     */
+    class AllLayerEdgeIterator extends LayerEdgeIterator implements AllEdgesSkipIterator
+    {
+        private final AllEdgesIterator baseAllIter;
+        private int scIndex = -1;
+
+        AllLayerEdgeIterator()
+        {
+            super(EdgeFilter.ALL_EDGES);
+            baseAllIter = baseGraph.getAllEdges();
+        }
+
+        @Override
+        public int getCount()
+        {
+            if (shortcutCount == 0)
+                return baseAllIter.getCount();
+
+            return baseEdgeCount + shortcutCount;
+        }
+
+        @Override
+        public boolean next()
+        {
+            if (scIndex < 0 && baseAllIter.next())
+            {
+                setBaseState(baseAllIter);
+                return true;
+            }
+
+            scIndex++;
+            if (scIndex >= shortcutCount)
+                return false;
+
+            long tmpPointer = (long) scIndex * shortcutEntryBytes;
+            setShortcut(scIndex, shortcuts.getInt(tmpPointer + S_NODEA), shortcuts.getInt(tmpPointer + S_NODEB));
+            return true;
+        }
+    }
+
+    @Override
+    public String toString()
+    {
+        return "LevelGraphLayer|" + name + "|" + storage.toString();
+    }
+}
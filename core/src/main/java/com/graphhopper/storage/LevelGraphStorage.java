@@ -106,6 +106,7 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
         ensureNodeIndex(Math.max(a, b));
         int edgeId = internalEdgeAdd(a, b);
         EdgeSkipIteratorImpl iter = new EdgeSkipIteratorImpl(EdgeFilter.ALL_EDGES);
+        iter.detached = true;
         iter.setBaseNode(a);
         iter.setEdgeId(edgeId);
         iter.next();
@@ -113,6 +114,54 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
         return iter;
     }
 
+    @Override
+    void compactEdges()
+    {
+        // the skipped edges of shortcuts would need an update too
+        if (lastEdgeIndex + 1 < edgeCount)
+            throw new IllegalStateException("Cannot compact edges of a graph with shortcuts");
+
+        super.compactEdges();
+        lastEdgeIndex = edgeCount - 1;
+    }
+
+    /**
+     * Removes all shortcuts and resets the levels, e.g. to change the underlying graph of a prepared
+     * graph. Afterwards the contraction hierarchies need to be prepared again. As shortcuts are
+     * created after all edges they are at the beginning of the edge list of every node.
+     */
+    public void removeShortcuts()
+    {
+        if (lastEdgeIndex + 1 >= edgeCount)
+            return;
+
+        for (int node = 0; node < getNodes(); node++)
+        {
+            long nodePointer = (long) node * nodeEntryBytes;
+            int edge = nodes.getInt(nodePointer + N_EDGE_REF);
+            while (edge > lastEdgeIndex)
+            {
+                long edgePointer = (long) edge * edgeEntryBytes;
+                int nodeA = edges.getInt(edgePointer + E_NODEA);
+                int nodeB = edges.getInt(edgePointer + E_NODEB);
+                edge = edges.getInt(getLinkPosInEdgeArea(node, nodeA == node ? nodeB : nodeA, edgePointer));
+            }
+            nodes.setInt(nodePointer + N_EDGE_REF, edge);
+            nodes.setInt(nodePointer + I_LEVEL, 0);
+        }
+        edgeCount = lastEdgeIndex + 1;
+    }
+
+    @Override
+    public void renumberNodes( int[] oldToNewNodes )
+    {
+        // the skipped edges of shortcuts would need an update too
+        if (lastEdgeIndex + 1 < edgeCount)
+            throw new IllegalStateException("Cannot renumber nodes of a graph with shortcuts");
+
+        super.renumberNodes(oldToNewNodes);
+    }
+
     @Override
     public EdgeSkipExplorer createEdgeExplorer()
     {
@@ -201,6 +250,7 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
             if (edgeId == nextEdge)
                 throw new IllegalStateException("call next before detaching");
             EdgeSkipIteratorImpl iter = new EdgeSkipIteratorImpl(filter);
+            iter.detached = true;
             iter.setBaseNode(baseNode);
             iter.setEdgeId(edgeId);
             iter.next();
@@ -247,6 +297,14 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
             return super.fetchWayGeometry(mode);
         }
 
+        @Override
+        public PointList fetchWayGeometry( int mode, PointList pillarNodes )
+        {
+            if (isShortcut())
+                throw new IllegalStateException("Cannot call fetchWayGeometry on shortcut " + getEdge());
+            return super.fetchWayGeometry(mode, pillarNodes);
+        }
+
         @Override
         public EdgeIteratorState setWayGeometry( PointList list )
         {
@@ -278,6 +336,7 @@ public class LevelGraphStorage extends GraphHopperStorage implements LevelGraph
      * <p/>
      * @param edgeState the edge from lower to higher
      */
+    @Override
     public void disconnect( EdgeSkipExplorer explorer, EdgeIteratorState edgeState )
     {
         // search edge with opposite direction but we need to know the previousEdge for the internalEdgeDisconnect so we cannot simply do:
@@ -374,6 +374,37 @@ public class MMapDataAccess extends AbstractDataAccess
         }
     }
 
+    /**
+     * Reads the specified segment into physical memory, see MappedByteBuffer.load. Useful to avoid
+     * page faults for the first requests after loading the graph.
+     * <p/>
+     * @return the number of loaded bytes
+     */
+    long loadSegment( int segment )
+    {
+        ByteBuffer bb = segments.get(segment);
+        if (!(bb instanceof MappedByteBuffer))
+            return 0;
+
+        ((MappedByteBuffer) bb).load();
+        return bb.capacity();
+    }
+
+    /**
+     * @return the number of segments which are probably resident in physical memory. This is only
+     * a hint from the operating system, see MappedByteBuffer.isLoaded
+     */
+    public int getLoadedSegments()
+    {
+        int count = 0;
+        for (ByteBuffer bb : segments)
+        {
+            if (bb instanceof MappedByteBuffer && ((MappedByteBuffer) bb).isLoaded())
+                count++;
+        }
+        return count;
+    }
+
     @Override
     public long getCapacity()
     {
@@ -0,0 +1,189 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.util.BitUtil;
+import gnu.trove.list.TIntList;
+
+/**
+ * A hash table from OSM ids to node or edge ids which is stored in a DataAccess, see
+ * GraphHopperStorage.setStoreOsmIds. It uses open addressing with linear probing where an OSM id
+ * can have several entries, e.g. for the edges of a way. Entries are never removed, so the caller
+ * has to check if a found node or edge still belongs to the OSM id. Like the names_index of
+ * NameIndex the table is rebuilt from the graph if it is full, if the ids in the graph change or if
+ * it is missing for a graph created by an older version.
+ * <p/>
+ * @author Peter Karich
+ */
+class OsmIdIndex
+{
+    private static final int MIN_SLOTS = 1 << 10;
+    // osm id (two ints) | node or edge
+    private static final int SLOT_BYTES = 12;
+    private final DataAccess table;
+    // 0 means the table is not yet created or loaded or was invalidated
+    private int slots;
+    private int entries;
+
+    OsmIdIndex( Directory dir, String name )
+    {
+        table = dir.find(name);
+    }
+
+    void loadExisting()
+    {
+        if (table.loadExisting())
+        {
+            slots = table.getHeader(0);
+            entries = table.getHeader(4);
+        }
+    }
+
+    boolean isCreated()
+    {
+        return slots > 0;
+    }
+
+    /**
+     * Marks the table as outdated, it has to be filled again via clear and put.
+     */
+    void invalidate()
+    {
+        slots = 0;
+        entries = 0;
+    }
+
+    /**
+     * Empties the table and makes it big enough for the specified number of entries with a load
+     * factor below 0.5.
+     */
+    void clear( long expectedEntries )
+    {
+        long newSlots = MIN_SLOTS;
+        while (newSlots < expectedEntries * 2)
+        {
+            newSlots *= 2;
+        }
+        if (newSlots > 1 << 30)
+            throw new IllegalStateException("Too many OSM ids for the index: " + expectedEntries);
+
+        long bytes = newSlots * SLOT_BYTES;
+        if (table.getCapacity() == 0)
+            table.create(bytes);
+        else
+            table.ensureCapacity(bytes);
+
+        for (long pos = 0; pos < bytes; pos += 4)
+        {
+            table.setInt(pos, 0);
+        }
+        slots = (int) newSlots;
+        entries = 0;
+    }
+
+    /**
+     * Adds the specified entry if the table is created and does not contain it already.
+     * <p/>
+     * @return false if the table is full and needs to be filled again
+     */
+    boolean put( long osmId, int id )
+    {
+        if (slots == 0)
+            return true;
+
+        // keep the load factor below 0.75
+        if ((entries + 1) * 4L > slots * 3L)
+            return false;
+
+        int mask = slots - 1;
+        for (int slot = hash(osmId) & mask;; slot = (slot + 1) & mask)
+        {
+            long pointer = (long) slot * SLOT_BYTES;
+            long storedId = getOsmId(pointer);
+            if (storedId == 0)
+            {
+                table.setInt(pointer, BitUtil.LITTLE.getIntLow(osmId));
+                table.setInt(pointer + 4, BitUtil.LITTLE.getIntHigh(osmId));
+                table.setInt(pointer + 8, id);
+                entries++;
+                return true;
+            }
+
+            if (storedId == osmId && table.getInt(pointer + 8) == id)
+                return true;
+        }
+    }
+
+    /**
+     * Adds the nodes or edges which were stored for the specified OSM id to the list.
+     */
+    void get( long osmId, TIntList ids )
+    {
+        if (slots == 0)
+            throw new IllegalStateException("OSM id index is not created");
+
+        int mask = slots - 1;
+        for (int slot = hash(osmId) & mask;; slot = (slot + 1) & mask)
+        {
+            long pointer = (long) slot * SLOT_BYTES;
+            long storedId = getOsmId(pointer);
+            if (storedId == 0)
+                return;
+
+            if (storedId == osmId)
+                ids.add(table.getInt(pointer + 8));
+        }
+    }
+
+    private long getOsmId( long pointer )
+    {
+        return BitUtil.LITTLE.combineIntsToLong(table.getInt(pointer), table.getInt(pointer + 4));
+    }
+
+    private static int hash( long osmId )
+    {
+        // spread the higher bits as only the lower bits are used for the slot
+        long hash = osmId * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+
+    void flush()
+    {
+        if (slots == 0)
+            return;
+
+        table.setHeader(0, slots);
+        table.setHeader(4, entries);
+        table.flush();
+    }
+
+    void close()
+    {
+        table.close();
+    }
+
+    void setSegmentSize( int bytes )
+    {
+        table.setSegmentSize(bytes);
+    }
+
+    long getCapacity()
+    {
+        return table.getCapacity();
+    }
+}
@@ -24,6 +24,12 @@ import com.graphhopper.util.EdgeIterator;
  * towards the first entry within a node cost table to identify turn restrictions, or later, turn
  * getCosts.
  * <p/>
+ * While importing new entries are prepended to a linked list per node, so adding is O(1). On
+ * flush the entries are rewritten into one contiguous block per node sorted by the from and to
+ * edge, then the next pointer of an entry points to the end of its block and a lookup is a
+ * binary search within the block. Nodes without entries are skipped without touching the turn
+ * cost storage.
+ * <p/>
  * @author Karl Hübner
  * @author Peter Karich
  */
@@ -43,6 +49,8 @@ public class TurnCostExtension implements GraphExtension
     private int turnCostsEntryIndex = -4;
     private int turnCostsEntryBytes;
     private int turnCostsCount;
+    // true if the entries are stored in sorted blocks instead of linked lists
+    private boolean sorted;
 
     private GraphStorage graph;
     private NodeAccess nodeAccess;
@@ -90,8 +98,12 @@ public class TurnCostExtension implements GraphExtension
     @Override
     public void flush()
     {
+        if (!sorted)
+            sortEntries();
+
         turnCosts.setHeader(0, turnCostsEntryBytes);
         turnCosts.setHeader(1 * 4, turnCostsCount);
+        turnCosts.setHeader(2 * 4, sorted ? 1 : 0);
         turnCosts.flush();
     }
 
@@ -115,12 +127,13 @@ public class TurnCostExtension implements GraphExtension
 
         turnCostsEntryBytes = turnCosts.getHeader(0);
         turnCostsCount = turnCosts.getHeader(4);
+        sorted = turnCosts.getHeader(2 * 4) == 1;
         return true;
     }
 
     /**
      * This method adds a new entry which is a turn restriction or cost information via the
-     * turnFlags.
+     * turnFlags. If an entry for the same edges already exists the new turnFlags are used instead.
      */
     public void addTurnInfo( int from, int viaNode, int to, long turnFlags )
     {
@@ -128,40 +141,24 @@ public class TurnCostExtension implements GraphExtension
         if (turnFlags == EMPTY_FLAGS)
             return;
 
+        if (sorted)
+            toLinkedLists();
+
         // append
         int newEntryIndex = turnCostsCount;
         turnCostsCount++;
         ensureTurnCostIndex(newEntryIndex);
 
-        // determine if we already have an cost entry for this node
-        int previousEntryIndex = nodeAccess.getAdditionalNodeField(viaNode);
-        if (previousEntryIndex == NO_TURN_ENTRY)
-        {
-            // set cost-pointer to this new cost entry
-            nodeAccess.setAdditionalNodeField(viaNode, newEntryIndex);
-        } else
-        {
-            int i = 0;
-            int tmp = previousEntryIndex;
-            while ((tmp = turnCosts.getInt((long) tmp * turnCostsEntryBytes + TC_NEXT)) != NO_TURN_ENTRY)
-            {
-                previousEntryIndex = tmp;
-                // search for the last added cost entry
-                if (i++ > 1000)
-                {
-                    throw new IllegalStateException("Something unexpected happened. A node probably will not have 1000+ relations.");
-                }
-            }
-            // set next-pointer to this new cost entry
-            turnCosts.setInt((long) previousEntryIndex * turnCostsEntryBytes + TC_NEXT, newEntryIndex);
-        }
+        // prepend the new entry to the list of the node, this avoids walking to the tail
+        int nextEntryIndex = nodeAccess.getAdditionalNodeField(viaNode);
+        nodeAccess.setAdditionalNodeField(viaNode, newEntryIndex);
+
         // add entry
         long costsBase = (long) newEntryIndex * turnCostsEntryBytes;
         turnCosts.setInt(costsBase + TC_FROM, from);
         turnCosts.setInt(costsBase + TC_TO, to);
         turnCosts.setInt(costsBase + TC_FLAGS, (int) turnFlags);
-        // next-pointer is NO_TURN_ENTRY
-        turnCosts.setInt(costsBase + TC_NEXT, NO_TURN_ENTRY);
+        turnCosts.setInt(costsBase + TC_NEXT, nextEntryIndex);
     }
 
     /**
@@ -174,12 +171,41 @@ public class TurnCostExtension implements GraphExtension
         if (nodeVia < 0)
             throw new IllegalArgumentException("via node cannot be negative");
 
-        return nextCostFlags(edgeFrom, nodeVia, edgeTo);
+        if (turnCostsCount == 0)
+            return EMPTY_FLAGS;
+
+        int turnCostIndex = nodeAccess.getAdditionalNodeField(nodeVia);
+        if (turnCostIndex == NO_TURN_ENTRY)
+            return EMPTY_FLAGS;
+
+        if (sorted)
+            return searchCostFlags(edgeFrom, turnCostIndex, edgeTo);
+
+        return nextCostFlags(edgeFrom, turnCostIndex, edgeTo);
     }
 
-    private long nextCostFlags( int edgeFrom, int nodeVia, int edgeTo )
+    private long searchCostFlags( int edgeFrom, int firstIndex, int edgeTo )
+    {
+        int low = firstIndex;
+        int high = turnCosts.getInt((long) firstIndex * turnCostsEntryBytes + TC_NEXT) - 1;
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            long turnCostPtr = (long) mid * turnCostsEntryBytes;
+            int cmp = compare(turnCosts.getInt(turnCostPtr + TC_FROM), turnCosts.getInt(turnCostPtr + TC_TO),
+                    edgeFrom, edgeTo);
+            if (cmp < 0)
+                low = mid + 1;
+            else if (cmp > 0)
+                high = mid - 1;
+            else
+                return turnCosts.getInt(turnCostPtr + TC_FLAGS);
+        }
+        return EMPTY_FLAGS;
+    }
+
+    private long nextCostFlags( int edgeFrom, int turnCostIndex, int edgeTo )
     {
-        int turnCostIndex = nodeAccess.getAdditionalNodeField(nodeVia);
         int i = 0;
         for (; i < 1000; i++)
         {
@@ -204,6 +230,159 @@ public class TurnCostExtension implements GraphExtension
         return EMPTY_FLAGS;
     }
 
+    private static int compare( int from1, int to1, int from2, int to2 )
+    {
+        if (from1 != from2)
+            return from1 < from2 ? -1 : 1;
+        if (to1 != to2)
+            return to1 < to2 ? -1 : 1;
+        return 0;
+    }
+
+    /**
+     * Rewrites all entries into one block per node which is sorted by the from and to edge. Entries
+     * of removed edges or nodes are dropped and for duplicates only the latest entry is kept.
+     */
+    void sortEntries()
+    {
+        int[] froms = new int[turnCostsCount];
+        int[] tos = new int[turnCostsCount];
+        int[] flags = new int[turnCostsCount];
+        int[] ends = new int[turnCostsCount];
+        int newCount = 0;
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++)
+        {
+            int turnCostIndex = nodeAccess.getAdditionalNodeField(node);
+            if (turnCostIndex == NO_TURN_ENTRY)
+                continue;
+
+            // in both layouts the newer entries of a duplicate come first
+            int start = newCount;
+            int blockEnd = sorted ? turnCosts.getInt((long) turnCostIndex * turnCostsEntryBytes + TC_NEXT) : -1;
+            for (int i = 0; turnCostIndex != NO_TURN_ENTRY; i++)
+            {
+                if (i >= turnCostsCount)
+                    throw new IllegalStateException("something went wrong: there seems to be no end of the turn cost-list of node " + node);
+
+                long turnCostPtr = (long) turnCostIndex * turnCostsEntryBytes;
+                int from = turnCosts.getInt(turnCostPtr + TC_FROM);
+                int to = turnCosts.getInt(turnCostPtr + TC_TO);
+                if (from != EdgeIterator.NO_EDGE && to != EdgeIterator.NO_EDGE)
+                {
+                    froms[newCount] = from;
+                    tos[newCount] = to;
+                    flags[newCount] = turnCosts.getInt(turnCostPtr + TC_FLAGS);
+                    newCount++;
+                }
+
+                if (sorted)
+                    turnCostIndex = turnCostIndex + 1 < blockEnd ? turnCostIndex + 1 : NO_TURN_ENTRY;
+                else
+                    turnCostIndex = turnCosts.getInt(turnCostPtr + TC_NEXT);
+            }
+
+            newCount = sortBlock(froms, tos, flags, start, newCount);
+            for (int i = start; i < newCount; i++)
+            {
+                ends[i] = newCount;
+            }
+            nodeAccess.setAdditionalNodeField(node, newCount > start ? start : NO_TURN_ENTRY);
+        }
+
+        for (int i = 0; i < newCount; i++)
+        {
+            long turnCostPtr = (long) i * turnCostsEntryBytes;
+            turnCosts.setInt(turnCostPtr + TC_FROM, froms[i]);
+            turnCosts.setInt(turnCostPtr + TC_TO, tos[i]);
+            turnCosts.setInt(turnCostPtr + TC_FLAGS, flags[i]);
+            turnCosts.setInt(turnCostPtr + TC_NEXT, ends[i]);
+        }
+        turnCostsCount = newCount;
+        sorted = true;
+    }
+
+    /**
+     * Sorts the entries from start to end (exclusive) via a stable insertion sort, a node has only
+     * a few entries. Of equal entries only the first one is kept.
+     * <p/>
+     * @return the new end of the block
+     */
+    private static int sortBlock( int[] froms, int[] tos, int[] flags, int start, int end )
+    {
+        for (int i = start + 1; i < end; i++)
+        {
+            int from = froms[i], to = tos[i], flag = flags[i];
+            int j = i - 1;
+            for (; j >= start && compare(froms[j], tos[j], from, to) > 0; j--)
+            {
+                froms[j + 1] = froms[j];
+                tos[j + 1] = tos[j];
+                flags[j + 1] = flags[j];
+            }
+            froms[j + 1] = from;
+            tos[j + 1] = to;
+            flags[j + 1] = flag;
+        }
+
+        int newEnd = start;
+        for (int i = start; i < end; i++)
+        {
+            if (i > start && froms[i] == froms[newEnd - 1] && tos[i] == tos[newEnd - 1])
+                continue;
+
+            froms[newEnd] = froms[i];
+            tos[newEnd] = tos[i];
+            flags[newEnd] = flags[i];
+            newEnd++;
+        }
+        return newEnd;
+    }
+
+    /**
+     * Converts the sorted blocks back into linked lists so that new entries can be added.
+     */
+    private void toLinkedLists()
+    {
+        int nodes = graph.getNodes();
+        for (int node = 0; node < nodes; node++)
+        {
+            int turnCostIndex = nodeAccess.getAdditionalNodeField(node);
+            if (turnCostIndex == NO_TURN_ENTRY)
+                continue;
+
+            int blockEnd = turnCosts.getInt((long) turnCostIndex * turnCostsEntryBytes + TC_NEXT);
+            for (int i = turnCostIndex; i < blockEnd; i++)
+            {
+                turnCosts.setInt((long) i * turnCostsEntryBytes + TC_NEXT, i + 1 < blockEnd ? i + 1 : NO_TURN_ENTRY);
+            }
+        }
+        sorted = false;
+    }
+
+    /**
+     * Updates the edge ids of all entries after the edges of the graph were renumbered. Entries
+     * of removed edges get NO_EDGE and won't match anymore.
+     */
+    void renumberEdges( int[] oldToNewEdges )
+    {
+        for (int entry = 0; entry < turnCostsCount; entry++)
+        {
+            long turnCostPtr = (long) entry * turnCostsEntryBytes;
+            turnCosts.setInt(turnCostPtr + TC_FROM, renumberEdge(turnCosts.getInt(turnCostPtr + TC_FROM), oldToNewEdges));
+            turnCosts.setInt(turnCostPtr + TC_TO, renumberEdge(turnCosts.getInt(turnCostPtr + TC_TO), oldToNewEdges));
+        }
+
+        // the new edge ids break the order within the blocks
+        if (sorted)
+            sortEntries();
+    }
+
+    private static int renumberEdge( int edge, int[] oldToNewEdges )
+    {
+        return edge == EdgeIterator.NO_EDGE ? EdgeIterator.NO_EDGE : oldToNewEdges[edge];
+    }
+
     private void ensureTurnCostIndex( int nodeIndex )
     {
         turnCosts.ensureCapacity(((long) nodeIndex + 4) * turnCostsEntryBytes);
@@ -246,6 +425,7 @@ public class TurnCostExtension implements GraphExtension
 
         turnCosts.copyTo(clonedTC.turnCosts);
         clonedTC.turnCostsCount = turnCostsCount;
+        clonedTC.sorted = sorted;
 
         return clonedStorage;
     }
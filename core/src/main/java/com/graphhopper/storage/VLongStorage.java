@@ -168,6 +168,39 @@ public class VLongStorage
         throw new RuntimeException("Invalid vLong detected (negative values disallowed)");
     }
 
+    /**
+     * Writes a long which can be negative via zig-zag encoding so that values close to zero take
+     * few bytes, e.g. useful for deltas.
+     */
+    public final void writeSignedVLong( long i )
+    {
+        writeVLong((i << 1) ^ (i >> 63));
+    }
+
+    /**
+     * Reads a long stored via writeSignedVLong.
+     */
+    public long readSignedVLong()
+    {
+        long i = readVLong();
+        return (i >>> 1) ^ -(i & 1);
+    }
+
+    /**
+     * Moves the pointer to the beginning and makes sure that the underlying array can hold the
+     * specified number of bytes, e.g. to reuse this storage for reading.
+     * <p/>
+     * @return the underlying array which could be filled now
+     */
+    public byte[] reset( int capacity )
+    {
+        if (bytes.length < capacity)
+            bytes = new byte[Math.max(capacity, (int) (bytes.length * 1.5f))];
+
+        pointer = 0;
+        return bytes;
+    }
+
     public void trimToSize()
     {
         if (bytes.length > pointer)
@@ -0,0 +1,167 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.DistanceCalc;
+import com.graphhopper.util.shapes.GHPoint3D;
+
+import java.util.Arrays;
+
+/**
+ * The results of a bulk lookup in primitive arrays instead of one QueryResult per point. The
+ * results are in the order of the query points. Use createQueryResult to get the QueryResult of
+ * one point, e.g. for a QueryGraph.
+ * <p/>
+ * @author Peter Karich
+ */
+public class BulkQueryResult
+{
+    private static final QueryResult.Position[] POSITIONS = QueryResult.Position.values();
+    private final Graph graph;
+    private final DistanceCalc distCalc;
+    private final double[] queryLats;
+    private final double[] queryLons;
+    private final int[] closestNodes;
+    private final int[] closestEdges;
+    private final int[] adjNodes;
+    private final int[] wayIndices;
+    private final byte[] positions;
+    private final double[] queryDistances;
+    private final double[] snappedLats;
+    private final double[] snappedLons;
+
+    BulkQueryResult( Graph graph, DistanceCalc distCalc, double[] queryLats, double[] queryLons )
+    {
+        if (queryLats.length != queryLons.length)
+            throw new IllegalArgumentException("latitudes and longitudes have to be of the same length "
+                    + queryLats.length + " vs. " + queryLons.length);
+
+        this.graph = graph;
+        this.distCalc = distCalc;
+        int size = queryLats.length;
+        this.queryLats = queryLats;
+        this.queryLons = queryLons;
+        closestNodes = new int[size];
+        closestEdges = new int[size];
+        adjNodes = new int[size];
+        wayIndices = new int[size];
+        positions = new byte[size];
+        queryDistances = new double[size];
+        snappedLats = new double[size];
+        snappedLons = new double[size];
+        Arrays.fill(closestNodes, -1);
+        Arrays.fill(closestEdges, -1);
+    }
+
+    void set( int index, QueryResult res )
+    {
+        if (!res.isValid())
+            return;
+
+        closestNodes[index] = res.getClosestNode();
+        closestEdges[index] = res.getClosestEdge().getEdge();
+        adjNodes[index] = res.getClosestEdge().getAdjNode();
+        wayIndices[index] = res.getWayIndex();
+        positions[index] = (byte) res.getSnappedPosition().ordinal();
+        queryDistances[index] = res.getQueryDistance();
+        GHPoint3D snappedPoint = res.getSnappedPoint();
+        snappedLats[index] = snappedPoint.lat;
+        snappedLons[index] = snappedPoint.lon;
+    }
+
+    public int getSize()
+    {
+        return closestNodes.length;
+    }
+
+    /**
+     * @return true if a close node was found for the point at the specified index
+     */
+    public boolean isValid( int index )
+    {
+        return closestNodes[index] >= 0;
+    }
+
+    public int getClosestNode( int index )
+    {
+        return closestNodes[index];
+    }
+
+    /**
+     * @return the id of the closest edge or -1 if nothing was found
+     */
+    public int getClosestEdge( int index )
+    {
+        return closestEdges[index];
+    }
+
+    /**
+     * @return the adjacent node of the closest edge which defines the direction of the way index
+     */
+    public int getAdjNode( int index )
+    {
+        return adjNodes[index];
+    }
+
+    public int getWayIndex( int index )
+    {
+        return wayIndices[index];
+    }
+
+    public QueryResult.Position getSnappedPosition( int index )
+    {
+        return POSITIONS[positions[index]];
+    }
+
+    /**
+     * @return the distance in meter of the query point to the snapped point
+     */
+    public double getQueryDistance( int index )
+    {
+        return queryDistances[index];
+    }
+
+    public double getSnappedLat( int index )
+    {
+        return snappedLats[index];
+    }
+
+    public double getSnappedLon( int index )
+    {
+        return snappedLons[index];
+    }
+
+    /**
+     * Creates the QueryResult of the point at the specified index as returned from findClosest.
+     */
+    public QueryResult createQueryResult( int index )
+    {
+        QueryResult res = new QueryResult(queryLats[index], queryLons[index]);
+        if (!isValid(index))
+            return res;
+
+        res.setQueryDistance(queryDistances[index]);
+        res.setClosestNode(closestNodes[index]);
+        res.setClosestEdge(graph.getEdgeProps(closestEdges[index], adjNodes[index]));
+        res.setWayIndex(wayIndices[index]);
+        res.setSnappedPosition(getSnappedPosition(index));
+        res.calcSnappedPoint(distCalc);
+        return res;
+    }
+}
@@ -0,0 +1,490 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.coll.IntDoubleBinHeap;
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.storage.DataAccess;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.LevelGraph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.GHPoint3D;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.util.Arrays;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * This implementation indexes the edge segments (two subsequent points of the way geometry)
+ * directly in a packed R-tree instead of the tower nodes. The tree is bulk loaded via 'sort tile
+ * recursive' (STR) and stored in a DataAccess. A query walks the tree best-first and stops as
+ * soon as no node can contain a closer segment, so it always finds the closest segment and the
+ * costs do not depend on long edges with many pillar nodes.
+ * <p/>
+ * Every tree node starts with the number of its entries, negative for leaf nodes. An entry of an
+ * inner node is the bounding box (minLat, minLon, maxLat, maxLon) and the pointer of the child
+ * node. An entry of a leaf node is the segment (lat1, lon1, lat2, lon2), the edge id and the
+ * index of the segment within the way geometry where the lowest bit marks the last segment.
+ * <p/>
+ * @author Peter Karich
+ * @see LocationIndexTree which indexes the tower nodes and needs less space
+ */
+public class LocationIndexRTree implements LocationIndex
+{
+    private static final int MAGIC_INT = Integer.MAX_VALUE / 31782;
+    private static final int INNER_ENTRY_INTS = 5;
+    private static final int LEAF_ENTRY_INTS = 6;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    protected DistanceCalc distCalc = Helper.DIST_PLANE;
+    protected final Graph graph;
+    private final NodeAccess nodeAccess;
+    private final DataAccess dataAccess;
+    private int maxEntries = 16;
+    private int rootPointer = -1;
+    private double equalNormedDelta;
+    private boolean initialized = false;
+
+    /**
+     * @param g the graph for which this index should do the lookup based on latitude,longitude.
+     */
+    public LocationIndexRTree( Graph g, Directory dir )
+    {
+        if (g instanceof LevelGraph)
+            throw new IllegalArgumentException("Call LevelGraph.getBaseGraph() instead of using the LevelGraph itself");
+
+        this.graph = g;
+        this.nodeAccess = g.getNodeAccess();
+        dataAccess = dir.find("location_index_rtree");
+        equalNormedDelta = distCalc.calcNormalizedDist(0.1);
+    }
+
+    /**
+     * The maximum number of entries of one tree node. More entries mean a flatter tree but more
+     * distance calculations per visited node. Default is 16.
+     */
+    public LocationIndexRTree setMaxEntries( int maxEntries )
+    {
+        if (maxEntries < 2)
+            throw new IllegalArgumentException("A tree node needs at least 2 entries but was " + maxEntries);
+
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    public int getMaxEntries()
+    {
+        return maxEntries;
+    }
+
+    /**
+     * The lookup is exact, so there is no resolution to choose and this setting is ignored.
+     */
+    @Override
+    public LocationIndex setResolution( int resolution )
+    {
+        return this;
+    }
+
+    @Override
+    public LocationIndex setApproximation( boolean approx )
+    {
+        if (approx)
+            distCalc = Helper.DIST_PLANE;
+        else
+            distCalc = Helper.DIST_EARTH;
+
+        equalNormedDelta = distCalc.calcNormalizedDist(0.1);
+        return this;
+    }
+
+    @Override
+    public LocationIndexRTree create( long size )
+    {
+        throw new UnsupportedOperationException("Not supported. Use prepareIndex instead.");
+    }
+
+    @Override
+    public boolean loadExisting()
+    {
+        if (initialized)
+            throw new IllegalStateException("Call loadExisting only once");
+
+        if (!dataAccess.loadExisting())
+            return false;
+
+        if (dataAccess.getHeader(0) != MAGIC_INT)
+            throw new IllegalStateException("incorrect location index version, expected:" + MAGIC_INT);
+
+        if (dataAccess.getHeader(1 * 4) != calcChecksum())
+            throw new IllegalStateException("location index was opened with incorrect graph: "
+                    + dataAccess.getHeader(1 * 4) + " vs. " + calcChecksum());
+
+        rootPointer = dataAccess.getHeader(2 * 4);
+        maxEntries = dataAccess.getHeader(3 * 4);
+        initialized = true;
+        return true;
+    }
+
+    @Override
+    public void flush()
+    {
+        dataAccess.setHeader(0, MAGIC_INT);
+        dataAccess.setHeader(1 * 4, calcChecksum());
+        dataAccess.setHeader(2 * 4, rootPointer);
+        dataAccess.setHeader(3 * 4, maxEntries);
+        dataAccess.flush();
+    }
+
+    int calcChecksum()
+    {
+        return graph.getNodes();
+    }
+
+    @Override
+    public LocationIndex prepareIndex()
+    {
+        if (initialized)
+            throw new IllegalStateException("Call prepareIndex only once");
+
+        StopWatch sw = new StopWatch().start();
+        // collect all segments in the direction of the stored edge
+        TIntArrayList segments = new TIntArrayList();
+        AllEdgesIterator allIter = graph.getAllEdges();
+        while (allIter.next())
+        {
+            PointList points = allIter.fetchWayGeometry(3);
+            int last = points.getSize() - 2;
+            for (int i = 0; i <= last; i++)
+            {
+                segments.add(Helper.degreeToInt(points.getLatitude(i)));
+                segments.add(Helper.degreeToInt(points.getLongitude(i)));
+                segments.add(Helper.degreeToInt(points.getLatitude(i + 1)));
+                segments.add(Helper.degreeToInt(points.getLongitude(i + 1)));
+                segments.add(allIter.getEdge());
+                segments.add(i << 1 | (i == last ? 1 : 0));
+            }
+        }
+
+        dataAccess.create(64 * 1024);
+        int size = segments.size() / LEAF_ENTRY_INTS;
+        int levels = 0;
+        try
+        {
+            if (size > 0)
+            {
+                levels = store(segments.toArray(), size);
+            }
+            flush();
+        } catch (Exception ex)
+        {
+            throw new IllegalStateException("Problem while storing location index. " + Helper.getMemInfo(), ex);
+        }
+        initialized = true;
+        logger.info("location index created in " + sw.stop().getSeconds()
+                + "s, segments:" + Helper.nf(size)
+                + ", levels:" + levels
+                + ", maxEntries:" + maxEntries
+                + ", size:" + Helper.nf(getCapacity())
+                + ", checksum:" + calcChecksum());
+        return this;
+    }
+
+    /**
+     * Packs the segments bottom up into the tree, every level is sorted via STR.
+     * <p/>
+     * @return the number of levels
+     */
+    private int store( int[] segments, int size )
+    {
+        int[] minLats = new int[size];
+        int[] minLons = new int[size];
+        int[] maxLats = new int[size];
+        int[] maxLons = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            int offset = i * LEAF_ENTRY_INTS;
+            minLats[i] = Math.min(segments[offset], segments[offset + 2]);
+            minLons[i] = Math.min(segments[offset + 1], segments[offset + 3]);
+            maxLats[i] = Math.max(segments[offset], segments[offset + 2]);
+            maxLons[i] = Math.max(segments[offset + 1], segments[offset + 3]);
+        }
+
+        long pointer = 0;
+        int[] childPointers = null;
+        int levels = 0;
+        while (true)
+        {
+            levels++;
+            int[] order = sortTileRecursive(size, minLats, minLons, maxLats, maxLons);
+            int nodes = (size + maxEntries - 1) / maxEntries;
+            int[] nodeMinLats = new int[nodes];
+            int[] nodeMinLons = new int[nodes];
+            int[] nodeMaxLats = new int[nodes];
+            int[] nodeMaxLons = new int[nodes];
+            int[] nodePointers = new int[nodes];
+            int entryInts = childPointers == null ? LEAF_ENTRY_INTS : INNER_ENTRY_INTS;
+            for (int node = 0; node < nodes; node++)
+            {
+                int from = node * maxEntries;
+                int to = Math.min(size, from + maxEntries);
+                if (pointer + 1 + (long) (to - from) * entryInts > Integer.MAX_VALUE)
+                    throw new IllegalStateException("Too many segments for the location index " + size);
+
+                dataAccess.ensureCapacity((pointer + 1 + (to - from) * entryInts) * 4);
+                nodePointers[node] = (int) pointer;
+                dataAccess.setInt(pointer * 4, childPointers == null ? from - to : to - from);
+                pointer++;
+                int minLat = Integer.MAX_VALUE, minLon = Integer.MAX_VALUE;
+                int maxLat = Integer.MIN_VALUE, maxLon = Integer.MIN_VALUE;
+                for (int i = from; i < to; i++)
+                {
+                    int entry = order[i];
+                    minLat = Math.min(minLat, minLats[entry]);
+                    minLon = Math.min(minLon, minLons[entry]);
+                    maxLat = Math.max(maxLat, maxLats[entry]);
+                    maxLon = Math.max(maxLon, maxLons[entry]);
+                    if (childPointers == null)
+                    {
+                        int offset = entry * LEAF_ENTRY_INTS;
+                        for (int j = 0; j < LEAF_ENTRY_INTS; j++)
+                        {
+                            dataAccess.setInt((pointer + j) * 4, segments[offset + j]);
+                        }
+                    } else
+                    {
+                        dataAccess.setInt(pointer * 4, minLats[entry]);
+                        dataAccess.setInt((pointer + 1) * 4, minLons[entry]);
+                        dataAccess.setInt((pointer + 2) * 4, maxLats[entry]);
+                        dataAccess.setInt((pointer + 3) * 4, maxLons[entry]);
+                        dataAccess.setInt((pointer + 4) * 4, childPointers[entry]);
+                    }
+                    pointer += entryInts;
+                }
+                nodeMinLats[node] = minLat;
+                nodeMinLons[node] = minLon;
+                nodeMaxLats[node] = maxLat;
+                nodeMaxLons[node] = maxLon;
+            }
+
+            if (nodes == 1)
+            {
+                rootPointer = nodePointers[0];
+                return levels;
+            }
+
+            size = nodes;
+            minLats = nodeMinLats;
+            minLons = nodeMinLons;
+            maxLats = nodeMaxLats;
+            maxLons = nodeMaxLons;
+            childPointers = nodePointers;
+        }
+    }
+
+    /**
+     * @return the order of the entries so that every maxEntries subsequent entries form one tree
+     * node: all entries are sorted by longitude, cut into vertical slices and every slice is sorted
+     * by latitude.
+     */
+    int[] sortTileRecursive( int size, int[] minLats, int[] minLons, int[] maxLats, int[] maxLons )
+    {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = i;
+        }
+        int nodes = (size + maxEntries - 1) / maxEntries;
+        int slices = (int) Math.ceil(Math.sqrt(nodes));
+        int sliceSize = slices * maxEntries;
+        sortByCenter(order, 0, size, minLons, maxLons);
+        for (int from = 0; from < size; from += sliceSize)
+        {
+            sortByCenter(order, from, Math.min(size, from + sliceSize), minLats, maxLats);
+        }
+        return order;
+    }
+
+    /**
+     * Sorts the specified range by the center of the entries. The sum of minimum and maximum (33
+     * bits) and the entry (31 bits) are packed into one long to avoid boxing.
+     */
+    private static void sortByCenter( int[] order, int from, int to, int[] mins, int[] maxs )
+    {
+        long[] packed = new long[to - from];
+        for (int i = from; i < to; i++)
+        {
+            int entry = order[i];
+            packed[i - from] = ((long) mins[entry] + maxs[entry]) << 31 | entry;
+        }
+        Arrays.sort(packed);
+        for (int i = from; i < to; i++)
+        {
+            order[i] = (int) (packed[i - from] & Integer.MAX_VALUE);
+        }
+    }
+
+    @Override
+    public int findID( double lat, double lon )
+    {
+        return findClosest(lat, lon, EdgeFilter.ALL_EDGES).getClosestNode();
+    }
+
+    @Override
+    public QueryResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+
+        QueryResult res = new QueryResult(queryLat, queryLon);
+        if (rootPointer < 0)
+            return res;
+
+        double closestNormedDist = Double.MAX_VALUE;
+        int closestEdge = -1;
+        int closestWayIndex = -1;
+        QueryResult.Position closestPosition = null;
+        IntDoubleBinHeap heap = new IntDoubleBinHeap(32);
+        heap.insert_(0, rootPointer);
+        while (!heap.isEmpty() && heap.peek_key() < closestNormedDist)
+        {
+            long pointer = (long) heap.poll_element() * 4;
+            int count = dataAccess.getInt(pointer);
+            pointer += 4;
+            if (count > 0)
+            {
+                for (int i = 0; i < count; i++, pointer += INNER_ENTRY_INTS * 4)
+                {
+                    double minLat = Helper.intToDegree(dataAccess.getInt(pointer));
+                    double minLon = Helper.intToDegree(dataAccess.getInt(pointer + 4));
+                    double maxLat = Helper.intToDegree(dataAccess.getInt(pointer + 8));
+                    double maxLon = Helper.intToDegree(dataAccess.getInt(pointer + 12));
+                    // the closest point of the bounding box is a lower bound for all its segments
+                    double normedDist = distCalc.calcNormalizedDist(queryLat, queryLon,
+                            Math.max(minLat, Math.min(maxLat, queryLat)),
+                            Math.max(minLon, Math.min(maxLon, queryLon)));
+                    if (normedDist < closestNormedDist)
+                        heap.insert_(normedDist, dataAccess.getInt(pointer + 16));
+                }
+                continue;
+            }
+
+            for (int i = 0; i < -count; i++, pointer += LEAF_ENTRY_INTS * 4)
+            {
+                double lat1 = Helper.intToDegree(dataAccess.getInt(pointer));
+                double lon1 = Helper.intToDegree(dataAccess.getInt(pointer + 4));
+                double lat2 = Helper.intToDegree(dataAccess.getInt(pointer + 8));
+                double lon2 = Helper.intToDegree(dataAccess.getInt(pointer + 12));
+                int segment = dataAccess.getInt(pointer + 20);
+                int segmentIndex = segment >>> 1;
+                double dist1 = distCalc.calcNormalizedDist(queryLat, queryLon, lat1, lon1);
+                double dist2 = distCalc.calcNormalizedDist(queryLat, queryLon, lat2, lon2);
+                double normedDist;
+                int wayIndex;
+                QueryResult.Position pos;
+                if (dist1 <= dist2)
+                {
+                    normedDist = dist1;
+                    wayIndex = segmentIndex;
+                    pos = segmentIndex == 0 ? QueryResult.Position.TOWER : QueryResult.Position.PILLAR;
+                } else
+                {
+                    normedDist = dist2;
+                    wayIndex = segmentIndex + 1;
+                    pos = (segment & 1) == 1 ? QueryResult.Position.TOWER : QueryResult.Position.PILLAR;
+                }
+
+                if (normedDist > equalNormedDelta
+                        && distCalc.validEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2))
+                {
+                    normedDist = distCalc.calcNormalizedEdgeDistance(queryLat, queryLon, lat1, lon1, lat2, lon2);
+                    wayIndex = segmentIndex;
+                    pos = QueryResult.Position.EDGE;
+                }
+
+                if (normedDist >= closestNormedDist)
+                    continue;
+
+                int edgeId = dataAccess.getInt(pointer + 16);
+                if (edgeId != closestEdge && !edgeFilter.accept(graph.getEdgeProps(edgeId, Integer.MIN_VALUE)))
+                    continue;
+
+                closestNormedDist = normedDist;
+                closestEdge = edgeId;
+                closestWayIndex = wayIndex;
+                closestPosition = pos;
+            }
+        }
+
+        if (closestEdge < 0)
+            return res;
+
+        EdgeIteratorState edge = graph.getEdgeProps(closestEdge, Integer.MIN_VALUE);
+        int closestNode;
+        if (closestPosition == QueryResult.Position.TOWER)
+        {
+            closestNode = closestWayIndex == 0 ? edge.getBaseNode() : edge.getAdjNode();
+        } else
+        {
+            int baseNode = edge.getBaseNode();
+            int adjNode = edge.getAdjNode();
+            double baseDist = distCalc.calcNormalizedDist(queryLat, queryLon,
+                    nodeAccess.getLatitude(baseNode), nodeAccess.getLongitude(baseNode));
+            double adjDist = distCalc.calcNormalizedDist(queryLat, queryLon,
+                    nodeAccess.getLatitude(adjNode), nodeAccess.getLongitude(adjNode));
+            closestNode = adjDist < baseDist ? adjNode : baseNode;
+        }
+
+        res.setClosestNode(closestNode);
+        res.setClosestEdge(edge);
+        res.setWayIndex(closestWayIndex);
+        res.setSnappedPosition(closestPosition);
+        res.calcSnappedPoint(distCalc);
+        GHPoint3D snappedPoint = res.getSnappedPoint();
+        res.setQueryDistance(distCalc.calcDist(queryLat, queryLon, snappedPoint.lat, snappedPoint.lon));
+        return res;
+    }
+
+    @Override
+    public void close()
+    {
+        dataAccess.close();
+    }
+
+    @Override
+    public boolean isClosed()
+    {
+        return dataAccess.isClosed();
+    }
+
+    @Override
+    public long getCapacity()
+    {
+        return dataAccess.getCapacity();
+    }
+
+    @Override
+    public void setSegmentSize( int bytes )
+    {
+        dataAccess.setSegmentSize(bytes);
+    }
+}
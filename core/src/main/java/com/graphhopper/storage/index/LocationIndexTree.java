@@ -29,12 +29,19 @@ import com.graphhopper.storage.NodeAccess;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 import com.graphhopper.util.shapes.GHPoint;
+import gnu.trove.TIntCollection;
 import gnu.trove.iterator.TIntIterator;
+import gnu.trove.list.array.TDoubleArrayList;
 import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntIntHashMap;
 import gnu.trove.procedure.TIntProcedure;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -65,10 +72,17 @@ public class LocationIndexTree implements LocationIndex
     private int minResolutionInMeter = 300;
     private double deltaLat;
     private double deltaLon;
+    // the bounds of the graph which were used to calculate the tiles
+    private BBox indexBounds;
     private int initSizeLeafEntries = 4;
     private boolean initialized = false;
+    // the int index after the last stored entry, 0 if unknown
+    private int nextIntIndex;
     // do not start with 0 as a positive value means leaf and a negative means "entry with subentries"
     static final int START_POINTER = 1;
+    // a bulk lookup is split into this many chunks to balance the threads of the executor
+    private static final int BULK_CHUNKS = 64;
+    private static final int MIN_BULK_CHUNK_SIZE = 256;
     int maxRegionSearch = 4;
     /**
      * If normed distance is smaller than this value the node or edge is 'identical' and the
@@ -179,6 +193,7 @@ public class LocationIndexTree implements LocationIndex
             throw new IllegalStateException("sum of all shifts does not fit into a long variable");
 
         keyAlgo = new SpatialKeyAlgo(shiftSum).bounds(bounds);
+        indexBounds = bounds.clone();
         parts = Math.round(Math.sqrt(parts));
         deltaLat = (bounds.maxLat - bounds.minLat) / parts;
         deltaLon = (bounds.maxLon - bounds.minLon) / parts;
@@ -289,6 +304,7 @@ public class LocationIndexTree implements LocationIndex
                     + dataAccess.getHeader(1 * 4) + " vs. " + calcChecksum());
 
         setMinResolutionInMeter(dataAccess.getHeader(2 * 4));
+        nextIntIndex = dataAccess.getHeader(3 * 4);
         prepareAlgo();
         initialized = true;
         return true;
@@ -300,6 +316,7 @@ public class LocationIndexTree implements LocationIndex
         dataAccess.setHeader(0, MAGIC_INT);
         dataAccess.setHeader(1 * 4, calcChecksum());
         dataAccess.setHeader(2 * 4, minResolutionInMeter);
+        dataAccess.setHeader(3 * 4, nextIntIndex);
 
         // saving space not necessary: dataAccess.trimTo((lastPointer + 1) * 4);
         dataAccess.flush();
@@ -320,7 +337,7 @@ public class LocationIndexTree implements LocationIndex
         dataAccess.create(64 * 1024);
         try
         {
-            inMem.store(inMem.root, START_POINTER);
+            nextIntIndex = inMem.store(inMem.root, START_POINTER);
             flush();
         } catch (Exception ex)
         {
@@ -340,6 +357,132 @@ public class LocationIndexTree implements LocationIndex
         return this;
     }
 
+    /**
+     * Adds the specified edges to the stored tiles they cross, e.g. after they were created or
+     * their geometry changed, see OSMChangeApplier. Entries of removed or moved edges are kept as
+     * they are only used as start for the search. The space of a changed leaf is not reused, so
+     * prepare the index again from time to time. Call flush to store the changes.
+     * <p/>
+     * @return false if the index needs to be prepared again as the bounds of the graph changed or
+     * as it was created by an older version
+     */
+    public boolean addEdges( TIntCollection edgeIds )
+    {
+        if (!initialized)
+            throw new IllegalStateException("Call prepareIndex or loadExisting before adding edges");
+
+        if (nextIntIndex <= 0 || !indexBounds.equals(graph.getBounds()))
+            return false;
+
+        TIntIterator iter = edgeIds.iterator();
+        while (iter.hasNext())
+        {
+            EdgeIteratorState edge = graph.getEdgeProps(iter.next(), Integer.MIN_VALUE);
+            final int node = edge.getBaseNode();
+            PointEmitter pointEmitter = new PointEmitter()
+            {
+                @Override
+                public void set( double lat, double lon )
+                {
+                    addToStoredTile(createReverseKey(lat, lon), node);
+                }
+            };
+            PointList points = edge.fetchWayGeometry(3);
+            for (int i = 1; i < points.getSize(); i++)
+            {
+                BresenhamLine.calcPoints(points.getLatitude(i - 1), points.getLongitude(i - 1),
+                        points.getLatitude(i), points.getLongitude(i), pointEmitter,
+                        indexBounds.minLat, indexBounds.minLon, deltaLat, deltaLon);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Like InMemConstructionIndex.addNode but for the stored tree. A missing sub entry is appended
+     * and a changed leaf is copied to the end.
+     */
+    private void addToStoredTile( long keyPart, int node )
+    {
+        int intIndex = START_POINTER;
+        for (int depth = 0; depth < entries.length; depth++)
+        {
+            long refPointer = ((long) intIndex << 2) + ((bitmasks[depth] & keyPart) << 2);
+            keyPart = keyPart >>> shifts[depth];
+            int value = dataAccess.getInt(refPointer);
+            if (depth + 1 == entries.length)
+            {
+                int leafIndex = addToLeaf(value, node);
+                if (leafIndex != value)
+                    dataAccess.setInt(refPointer, leafIndex);
+            } else
+            {
+                if (value == 0)
+                {
+                    value = allocate(entries[depth + 1]);
+                    dataAccess.setInt(refPointer, value);
+                }
+                intIndex = value;
+            }
+        }
+    }
+
+    /**
+     * @return the int index of the leaf which contains the old entries and the specified node
+     */
+    private int addToLeaf( int leafIndex, int node )
+    {
+        TIntArrayList leafNodes = new TIntArrayList(initSizeLeafEntries);
+        if (leafIndex > 0)
+        {
+            int value = dataAccess.getInt((long) leafIndex << 2);
+            if (value < 0)
+            {
+                leafNodes.add(-(value + 1));
+            } else
+            {
+                for (int index = leafIndex + 1; index < value; index++)
+                {
+                    leafNodes.add(dataAccess.getInt((long) index << 2));
+                }
+            }
+            if (leafNodes.contains(node))
+                return leafIndex;
+        }
+        leafNodes.add(node);
+
+        int len = leafNodes.size();
+        if (len == 1)
+        {
+            int newIndex = allocate(1);
+            dataAccess.setInt((long) newIndex << 2, -node - 1);
+            return newIndex;
+        }
+
+        int newIndex = allocate(len + 1);
+        for (int i = 0; i < len; i++)
+        {
+            dataAccess.setInt((long) (newIndex + 1 + i) << 2, leafNodes.get(i));
+        }
+        dataAccess.setInt((long) newIndex << 2, newIndex + 1 + len);
+        return newIndex;
+    }
+
+    private int allocate( int ints )
+    {
+        int intIndex = nextIntIndex;
+        nextIntIndex += ints;
+        if (nextIntIndex < 0)
+            throw new IllegalStateException("location index is too big");
+
+        dataAccess.ensureCapacity((long) nextIntIndex << 2);
+        for (int index = intIndex; index < nextIntIndex; index++)
+        {
+            dataAccess.setInt((long) index << 2, 0);
+        }
+        return intIndex;
+    }
+
     int calcChecksum()
     {
         // do not include the edges as we could get problem with LevelGraph due to shortcuts
@@ -711,7 +854,12 @@ public class LocationIndexTree implements LocationIndex
     public final TIntHashSet findNetworkEntries( double queryLat, double queryLon, int maxIteration )
     {
         TIntHashSet foundEntries = new TIntHashSet();
+        findNetworkEntries(foundEntries, queryLat, queryLon, maxIteration);
+        return foundEntries;
+    }
 
+    final void findNetworkEntries( TIntHashSet foundEntries, double queryLat, double queryLon, int maxIteration )
+    {
         for (int iteration = 0; iteration < maxIteration; iteration++)
         {
             // find entries in border of searchbox
@@ -756,7 +904,6 @@ public class LocationIndexTree implements LocationIndex
                 }
             }
         }
-        return foundEntries;
     }
 
     final double calcMinDistance( double queryLat, double queryLon, TIntHashSet pointset )
@@ -783,61 +930,351 @@ public class LocationIndexTree implements LocationIndex
         fillIDs(keyPart, START_POINTER, storedNetworkEntryIds, 0);
     }
 
+    /**
+     * Creates the reusable buffers for findClosest and findNClosest. A context must not be shared
+     * between threads, e.g. keep one per thread in a ThreadLocal of the caller.
+     */
+    public SearchContext createSearchContext()
+    {
+        return new SearchContext();
+    }
+
     @Override
-    public QueryResult findClosest( final double queryLat, final double queryLon, final EdgeFilter edgeFilter )
+    public QueryResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter )
+    {
+        return findClosest(queryLat, queryLon, edgeFilter, new SearchContext());
+    }
+
+    /**
+     * Finds the closest edge like findClosest but reuses the buffers of the specified context so
+     * that only the returned QueryResult and its edge are allocated.
+     */
+    public QueryResult findClosest( double queryLat, double queryLon, EdgeFilter edgeFilter, SearchContext context )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (!context.isContextOf(this))
+            throw new IllegalArgumentException("The search context was created from another index");
+
+        context.search(queryLat, queryLon, edgeFilter, false);
+        if (context.closestEdge < 0)
+            return new QueryResult(queryLat, queryLon);
+
+        return createQueryResult(queryLat, queryLon, context.closestNormedDist, context.closestNode,
+                context.closestEdge, context.closestAdjNode, context.closestWayIndex, context.closestPosition);
+    }
+
+    /**
+     * Finds the closest edges for many points at once. The points are processed in the order of
+     * their spatial key so that subsequent lookups traverse the same tiles and hit the same
+     * segments of the index. The sorted points are split into contiguous chunks which are
+     * processed with one SearchContext each.
+     * <p/>
+     * @param executor runs the chunks in parallel. If null all points are processed in the calling
+     * thread.
+     * @return the results in the order of the specified points
+     */
+    public BulkQueryResult findClosest( final double[] queryLats, final double[] queryLons,
+                                        final EdgeFilter edgeFilter, ExecutorService executor )
     {
         if (isClosed())
             throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
 
-        final TIntHashSet storedNetworkEntryIds = findNetworkEntries(queryLat, queryLon, maxRegionSearch);
-        final QueryResult closestMatch = new QueryResult(queryLat, queryLon);
-        if (storedNetworkEntryIds.isEmpty())
-            return closestMatch;
+        final BulkQueryResult bulkResult = new BulkQueryResult(graph, distCalc, queryLats, queryLons);
+        final int size = queryLats.length;
+        if (size == 0)
+            return bulkResult;
 
-        // clone storedIds to avoid interference with forEach
-        final GHBitSet checkBitset = new GHTBitSet(new TIntHashSet(storedNetworkEntryIds));
-        // find nodes from the network entries which are close to 'point'
-        final EdgeExplorer explorer = graph.createEdgeExplorer();
-        storedNetworkEntryIds.forEach(new TIntProcedure()
+        final int[] order = sortBySpatialKey(queryLats, queryLons);
+        int chunkSize = size;
+        if (executor != null)
+            chunkSize = Math.max(MIN_BULK_CHUNK_SIZE, (size + BULK_CHUNKS - 1) / BULK_CHUNKS);
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+        for (int start = 0; start < size; start += chunkSize)
         {
-            @Override
-            public boolean execute( int networkEntryNodeId )
+            final int from = start;
+            final int to = Math.min(size, start + chunkSize);
+            tasks.add(new Callable<Object>()
             {
-                new XFirstSearchCheck(queryLat, queryLon, checkBitset, edgeFilter)
+                @Override
+                public Object call()
                 {
-                    @Override
-                    protected double getQueryDistance()
+                    SearchContext context = new SearchContext();
+                    for (int i = from; i < to; i++)
                     {
-                        return closestMatch.getQueryDistance();
+                        int index = order[i];
+                        bulkResult.set(index, findClosest(queryLats[index], queryLons[index], edgeFilter, context));
                     }
+                    return null;
+                }
+            });
+        }
 
-                    @Override
-                    protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
-                    {
-                        if (normedDist < closestMatch.getQueryDistance())
-                        {
-                            closestMatch.setQueryDistance(normedDist);
-                            closestMatch.setClosestNode(node);
-                            closestMatch.setClosestEdge(edge.detach(false));
-                            closestMatch.setWayIndex(wayIndex);
-                            closestMatch.setSnappedPosition(pos);
-                            return true;
-                        }
-                        return false;
-                    }
-                }.start(explorer, networkEntryNodeId);
+        if (executor == null || tasks.size() == 1)
+        {
+            try
+            {
+                for (Callable<Object> task : tasks)
+                {
+                    task.call();
+                }
+            } catch (RuntimeException ex)
+            {
+                throw ex;
+            } catch (Exception ex)
+            {
+                throw new IllegalStateException(ex);
+            }
+            return bulkResult;
+        }
+
+        try
+        {
+            for (Future<Object> future : executor.invokeAll(tasks))
+            {
+                future.get();
+            }
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while finding the closest edges", ex);
+        } catch (ExecutionException ex)
+        {
+            if (ex.getCause() instanceof RuntimeException)
+                throw (RuntimeException) ex.getCause();
+
+            throw new IllegalStateException(ex.getCause());
+        }
+        return bulkResult;
+    }
+
+    /**
+     * @return the indices of the specified points sorted by their spatial key. The key and the
+     * index are packed into one long to sort without boxing. If both do not fit into 63 bits the
+     * lowest bits of the key are dropped which only makes the order a bit less local.
+     */
+    int[] sortBySpatialKey( double[] queryLats, double[] queryLons )
+    {
+        int size = queryLats.length;
+        int indexBits = 1;
+        while ((1L << indexBits) < size)
+        {
+            indexBits++;
+        }
+        int dropBits = Math.max(0, keyAlgo.getBits() + indexBits - 63);
+        long indexMask = (1L << indexBits) - 1;
+        long[] packed = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            long key = keyAlgo.encode(queryLats[i], queryLons[i]) >>> dropBits;
+            packed[i] = (key << indexBits) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++)
+        {
+            order[i] = (int) (packed[i] & indexMask);
+        }
+        return order;
+    }
+
+    public List<QueryResult> findNClosest( double queryLat, double queryLon, EdgeFilter edgeFilter, int k )
+    {
+        return findNClosest(queryLat, queryLon, edgeFilter, k, new SearchContext());
+    }
+
+    /**
+     * Finds up to k different edges close to the specified location sorted by their distance, the
+     * first one is identical to the result of findClosest. Only edges which are adjacent to the
+     * nodes of the searched tiles are considered, so for a larger k use a higher maxRegionSearch.
+     * <p/>
+     * @return one snapped QueryResult per edge or an empty list if nothing was found
+     */
+    public List<QueryResult> findNClosest( double queryLat, double queryLon, EdgeFilter edgeFilter, int k,
+                                           SearchContext context )
+    {
+        if (isClosed())
+            throw new IllegalStateException("You need to create a new LocationIndex instance as it is already closed");
+        if (!context.isContextOf(this))
+            throw new IllegalArgumentException("The search context was created from another index");
+        if (k < 1)
+            throw new IllegalArgumentException("k has to be positive but was " + k);
+
+        context.search(queryLat, queryLon, edgeFilter, true);
+        TDoubleArrayList dists = context.edgeNormedDists;
+        int results = Math.min(k, dists.size());
+        List<QueryResult> list = new ArrayList<QueryResult>(results);
+        for (int i = 0; i < results; i++)
+        {
+            int minSlot = 0;
+            for (int slot = 1; slot < dists.size(); slot++)
+            {
+                if (dists.getQuick(slot) < dists.getQuick(minSlot))
+                    minSlot = slot;
+            }
+
+            list.add(createQueryResult(queryLat, queryLon, dists.getQuick(minSlot), context.edgeNodes.getQuick(minSlot),
+                    context.edgeIds.getQuick(minSlot), context.edgeAdjNodes.getQuick(minSlot),
+                    context.edgeWayIndices.getQuick(minSlot), context.edgePositions.get(minSlot)));
+            // mark as used
+            dists.setQuick(minSlot, Double.MAX_VALUE);
+        }
+        return list;
+    }
+
+    private QueryResult createQueryResult( double queryLat, double queryLon, double normedDist, int node,
+                                           int edgeId, int adjNode, int wayIndex, QueryResult.Position pos )
+    {
+        QueryResult res = new QueryResult(queryLat, queryLon);
+        // denormalize distance
+        res.setQueryDistance(distCalc.calcDenormalizedDist(normedDist));
+        res.setClosestNode(node);
+        // the edge is detached only once and not for every better match while searching
+        res.setClosestEdge(graph.getEdgeProps(edgeId, adjNode));
+        res.setWayIndex(wayIndex);
+        res.setSnappedPosition(pos);
+        res.calcSnappedPoint(distCalc);
+        return res;
+    }
+
+    /**
+     * Holds the buffers of one search. The network entries and the visited nodes are kept in
+     * primitive sets which are only cleared between two searches. Get one via createSearchContext.
+     */
+    public class SearchContext
+    {
+        private final TIntHashSet networkEntries = new TIntHashSet();
+        private final TIntHashSet visitedNodes = new TIntHashSet();
+        private final GHBitSet checkBitset = new GHTBitSet(visitedNodes);
+        private final SimpleIntDeque deque = new SimpleIntDeque();
+        private final EdgeExplorer explorer = graph.createEdgeExplorer();
+        private final ContextSearchCheck searchCheck = new ContextSearchCheck(checkBitset);
+        private final TIntProcedure startProcedure = new TIntProcedure()
+        {
+            @Override
+            public boolean execute( int networkEntryNodeId )
+            {
+                searchCheck.goFurther = true;
+                searchCheck.start(explorer, networkEntryNodeId);
                 return true;
             }
-        });
+        };
+        private double closestNormedDist;
+        private int closestNode;
+        private int closestEdge;
+        private int closestAdjNode;
+        private int closestWayIndex;
+        private QueryResult.Position closestPosition;
+        // the closest match per edge, only filled for findNClosest
+        private boolean collectEdges;
+        private final TIntIntHashMap edgeSlots = new TIntIntHashMap(16, 0.5f, -1, -1);
+        private final TIntArrayList edgeIds = new TIntArrayList();
+        private final TIntArrayList edgeAdjNodes = new TIntArrayList();
+        private final TIntArrayList edgeNodes = new TIntArrayList();
+        private final TIntArrayList edgeWayIndices = new TIntArrayList();
+        private final TDoubleArrayList edgeNormedDists = new TDoubleArrayList();
+        private final List<QueryResult.Position> edgePositions = new ArrayList<QueryResult.Position>();
+
+        private SearchContext()
+        {
+        }
+
+        public boolean isContextOf( LocationIndexTree index )
+        {
+            return LocationIndexTree.this == index;
+        }
+
+        void search( double queryLat, double queryLon, EdgeFilter edgeFilter, boolean collectEdges )
+        {
+            closestNormedDist = Double.MAX_VALUE;
+            closestNode = -1;
+            closestEdge = -1;
+            this.collectEdges = collectEdges;
+            if (collectEdges)
+            {
+                edgeSlots.clear();
+                edgeIds.resetQuick();
+                edgeAdjNodes.resetQuick();
+                edgeNodes.resetQuick();
+                edgeWayIndices.resetQuick();
+                edgeNormedDists.resetQuick();
+                edgePositions.clear();
+            }
+
+            networkEntries.clear();
+            findNetworkEntries(networkEntries, queryLat, queryLon, maxRegionSearch);
+            if (networkEntries.isEmpty())
+                return;
+
+            // avoid that the search of one network entry visits another one
+            visitedNodes.clear();
+            visitedNodes.addAll(networkEntries);
+            searchCheck.init(queryLat, queryLon, edgeFilter);
+            networkEntries.forEach(startProcedure);
+        }
 
-        if (closestMatch.isValid())
+        private void collectEdge( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
         {
-            // denormalize distance            
-            closestMatch.setQueryDistance(distCalc.calcDenormalizedDist(closestMatch.getQueryDistance()));
-            closestMatch.calcSnappedPoint(distCalc);
+            int slot = edgeSlots.get(edge.getEdge());
+            if (slot < 0)
+            {
+                edgeSlots.put(edge.getEdge(), edgeIds.size());
+                edgeIds.add(edge.getEdge());
+                edgeAdjNodes.add(edge.getAdjNode());
+                edgeNodes.add(node);
+                edgeWayIndices.add(wayIndex);
+                edgeNormedDists.add(normedDist);
+                edgePositions.add(pos);
+            } else if (normedDist < edgeNormedDists.getQuick(slot))
+            {
+                edgeAdjNodes.setQuick(slot, edge.getAdjNode());
+                edgeNodes.setQuick(slot, node);
+                edgeWayIndices.setQuick(slot, wayIndex);
+                edgeNormedDists.setQuick(slot, normedDist);
+                edgePositions.set(slot, pos);
+            }
         }
 
-        return closestMatch;
+        private class ContextSearchCheck extends XFirstSearchCheck
+        {
+            public ContextSearchCheck( GHBitSet checkBitset )
+            {
+                super(0, 0, checkBitset, EdgeFilter.ALL_EDGES);
+            }
+
+            @Override
+            protected SimpleIntDeque createDeque()
+            {
+                deque.clear();
+                return deque;
+            }
+
+            @Override
+            protected double getQueryDistance()
+            {
+                return closestNormedDist;
+            }
+
+            @Override
+            protected boolean check( int node, double normedDist, int wayIndex, EdgeIteratorState edge, QueryResult.Position pos )
+            {
+                if (collectEdges)
+                    collectEdge(node, normedDist, wayIndex, edge, pos);
+
+                if (normedDist < closestNormedDist)
+                {
+                    closestNormedDist = normedDist;
+                    closestNode = node;
+                    closestEdge = edge.getEdge();
+                    closestAdjNode = edge.getAdjNode();
+                    closestWayIndex = wayIndex;
+                    closestPosition = pos;
+                    return true;
+                }
+                return false;
+            }
+        }
     }
 
     /**
@@ -850,16 +1287,24 @@ public class LocationIndexTree implements LocationIndex
         double currLat;
         double currLon;
         int currNode;
-        final double queryLat;
-        final double queryLon;
+        double queryLat;
+        double queryLon;
         final GHBitSet checkBitset;
-        final EdgeFilter edgeFilter;
+        EdgeFilter edgeFilter;
 
         public XFirstSearchCheck( double queryLat, double queryLon, GHBitSet checkBitset, EdgeFilter edgeFilter )
+        {
+            this.checkBitset = checkBitset;
+            init(queryLat, queryLon, edgeFilter);
+        }
+
+        /**
+         * Prepares this instance for another query point, e.g. to reuse it in a SearchContext
+         */
+        void init( double queryLat, double queryLon, EdgeFilter edgeFilter )
         {
             this.queryLat = queryLat;
             this.queryLon = queryLon;
-            this.checkBitset = checkBitset;
             this.edgeFilter = edgeFilter;
         }
 
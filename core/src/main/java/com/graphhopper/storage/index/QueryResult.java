@@ -187,6 +187,23 @@ public class QueryResult
             snappedPoint = new GHPoint3D(tmpLat, tmpLon, tmpEle);
     }
 
+    /**
+     * Creates an independent copy of this result. Useful to reuse a lookup for several QueryGraph
+     * instances as QueryGraph.lookup modifies the result. The closest edge is detached again so that
+     * the copies do not share one edge state if they are used from different threads.
+     */
+    public QueryResult copy()
+    {
+        QueryResult res = new QueryResult(queryPoint.lat, queryPoint.lon);
+        res.queryDistance = queryDistance;
+        res.wayIndex = wayIndex;
+        res.closestNode = closestNode;
+        res.closestEdge = closestEdge == null ? null : closestEdge.detach(false);
+        res.snappedPoint = snappedPoint;
+        res.snappedPosition = snappedPosition;
+        return res;
+    }
+
     @Override
     public String toString()
     {
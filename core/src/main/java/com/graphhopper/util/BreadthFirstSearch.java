@@ -29,7 +29,7 @@ public class BreadthFirstSearch extends XFirstSearch
     @Override
     public void start( EdgeExplorer explorer, int startNode )
     {
-        SimpleIntDeque fifo = new SimpleIntDeque();
+        SimpleIntDeque fifo = createDeque();
         GHBitSet visited = createBitSet();
         visited.add(startNode);
         fifo.push(startNode);
@@ -52,4 +52,9 @@ public class BreadthFirstSearch extends XFirstSearch
             }
         }
     }
+
+    protected SimpleIntDeque createDeque()
+    {
+        return new SimpleIntDeque();
+    }
 }
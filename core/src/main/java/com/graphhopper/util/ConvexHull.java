@@ -0,0 +1,105 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Calculates the convex hull of points via the monotone chain algorithm from Andrew. Longitude and
+ * latitude are treated as planar coordinates which is sufficient for small areas like isochrones.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ConvexHull
+{
+    /**
+     * @return the counter clockwise hull where the first point is repeated at the end. If less
+     * than three distinct points are specified the distinct points are returned.
+     */
+    public static PointList calc( final PointList points )
+    {
+        int size = points.getSize();
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++)
+        {
+            sorted[i] = i;
+        }
+        Arrays.sort(sorted, new Comparator<Integer>()
+        {
+            @Override
+            public int compare( Integer o1, Integer o2 )
+            {
+                int res = Double.compare(points.getLon(o1), points.getLon(o2));
+                if (res != 0)
+                    return res;
+
+                return Double.compare(points.getLat(o1), points.getLat(o2));
+            }
+        });
+
+        // lower and upper hull are stored in the same array, the last point of each is the first of the other
+        int[] hull = new int[2 * size + 1];
+        int count = 0;
+        for (int i = 0; i < size; i++)
+        {
+            while (count >= 2 && cross(points, hull[count - 2], hull[count - 1], sorted[i]) <= 0)
+            {
+                count--;
+            }
+            hull[count++] = sorted[i];
+        }
+
+        int lowerCount = count + 1;
+        for (int i = size - 2; i >= 0; i--)
+        {
+            while (count >= lowerCount && cross(points, hull[count - 2], hull[count - 1], sorted[i]) <= 0)
+            {
+                count--;
+            }
+            hull[count++] = sorted[i];
+        }
+
+        PointList res = new PointList(count, false);
+        if (count < 4)
+        {
+            // all points are identical or on a line
+            for (int i = 0; i < count; i++)
+            {
+                int index = hull[i];
+                if (i > 0 && points.getLat(index) == res.getLat(0) && points.getLon(index) == res.getLon(0))
+                    break;
+
+                res.add(points.getLat(index), points.getLon(index));
+            }
+            return res;
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            res.add(points.getLat(hull[i]), points.getLon(hull[i]));
+        }
+        return res;
+    }
+
+    private static double cross( PointList points, int o, int a, int b )
+    {
+        return (points.getLon(a) - points.getLon(o)) * (points.getLat(b) - points.getLat(o))
+                - (points.getLat(a) - points.getLat(o)) * (points.getLon(b) - points.getLon(o));
+    }
+}
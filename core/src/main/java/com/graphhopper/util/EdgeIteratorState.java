@@ -63,6 +63,16 @@ public interface EdgeIteratorState
      */
     PointList fetchWayGeometry( int mode );
 
+    /**
+     * The same as fetchWayGeometry(mode) but the points are added to the specified list which is
+     * cleared before. Reuse the list to avoid the allocation per edge, e.g. when iterating over
+     * many edges.
+     * <p/>
+     * @param pillarNodes needs the same dimension as the graph
+     * @return the specified list
+     */
+    PointList fetchWayGeometry( int mode, PointList pillarNodes );
+
     /**
      * @param list is a sorted collection of nodes between the baseNode and the current adjacent
      * node. Specify the list without the adjacent and base nodes.
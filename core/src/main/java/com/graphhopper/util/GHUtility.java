@@ -25,6 +25,7 @@ import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.storage.*;
+import com.graphhopper.util.shapes.BBox;
 import gnu.trove.list.TIntList;
 import gnu.trove.list.array.TIntArrayList;
 
@@ -241,6 +242,102 @@ public class GHUtility
         return createSortedGraph(g, sortedGraph, list);
     }
 
+    /**
+     * Creates a node order along a Hilbert curve over the node coordinates. Nodes which are close
+     * to each other get close ids which improves the memory locality for e.g. the location index
+     * or bidirectional searches. Use it with GraphHopperStorage.renumberNodes.
+     * <p/>
+     * @return an array mapping old to new node ids
+     */
+    public static int[] createHilbertOrder( Graph g )
+    {
+        int nodes = g.getNodes();
+        NodeAccess na = g.getNodeAccess();
+        BBox bounds = g.getBounds();
+        // the index of a 2^15 grid needs 30 bits so that the keys stay positive and sort correctly
+        int gridSize = 1 << 15;
+        double latFactor = (gridSize - 1) / Math.max(bounds.maxLat - bounds.minLat, 1e-10);
+        double lonFactor = (gridSize - 1) / Math.max(bounds.maxLon - bounds.minLon, 1e-10);
+        long[] keys = new long[nodes];
+        for (int node = 0; node < nodes; node++)
+        {
+            int x = (int) ((na.getLongitude(node) - bounds.minLon) * lonFactor);
+            int y = (int) ((na.getLatitude(node) - bounds.minLat) * latFactor);
+            x = Math.max(0, Math.min(gridSize - 1, x));
+            y = Math.max(0, Math.min(gridSize - 1, y));
+            keys[node] = hilbertIndex(gridSize, x, y) << 32 | node;
+        }
+        Arrays.sort(keys);
+        int[] oldToNew = new int[nodes];
+        for (int i = 0; i < nodes; i++)
+        {
+            oldToNew[(int) keys[i]] = i;
+        }
+        return oldToNew;
+    }
+
+    /**
+     * @return the distance of the specified cell along the Hilbert curve filling a grid of size n x
+     * n, where n is a power of two
+     */
+    static long hilbertIndex( int n, int x, int y )
+    {
+        long index = 0;
+        for (int s = n / 2; s > 0; s /= 2)
+        {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += (long) s * s * ((3 * rx) ^ ry);
+            // rotate the quadrant
+            if (ry == 0)
+            {
+                if (rx == 1)
+                {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int tmp = x;
+                x = y;
+                y = tmp;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Creates a node order of a breadth-first search. Every subnetwork is traversed separately.
+     * <p/>
+     * @return an array mapping old to new node ids
+     */
+    public static int[] createBFSOrder( Graph g )
+    {
+        int nodes = g.getNodes();
+        final int[] oldToNew = new int[nodes];
+        final GHBitSetImpl bitset = new GHBitSetImpl(nodes);
+        final AtomicInteger ref = new AtomicInteger(-1);
+        EdgeExplorer explorer = g.createEdgeExplorer();
+        for (int startNode = 0; startNode >= 0 && startNode < nodes;
+                startNode = bitset.nextClear(startNode + 1))
+        {
+            new BreadthFirstSearch()
+            {
+                @Override
+                protected GHBitSet createBitSet()
+                {
+                    return bitset;
+                }
+
+                @Override
+                protected boolean goFurther( int nodeId )
+                {
+                    oldToNew[nodeId] = ref.incrementAndGet();
+                    return super.goFurther(nodeId);
+                }
+            }.start(explorer, startNode);
+        }
+        return oldToNew;
+    }
+
     static Graph createSortedGraph( Graph fromGraph, Graph toSortedGraph, final TIntList oldToNewNodeList )
     {
         AllEdgesIterator eIter = fromGraph.getAllEdges();
@@ -316,13 +413,16 @@ public class GHUtility
 
     static GraphStorage guessStorage( Graph g, Directory outdir, EncodingManager encodingManager )
     {
-        GraphStorage store;
+        GraphHopperStorage store;
         boolean is3D = g.getNodeAccess().is3D();
         if (g instanceof LevelGraphStorage)
             store = new LevelGraphStorage(outdir, encodingManager, is3D);
         else
             store = new GraphHopperStorage(outdir, encodingManager, is3D);
 
+        if (g instanceof GraphHopperStorage)
+            store.setCompactGeometry(((GraphHopperStorage) g).isCompactGeometry());
+
         return store;
     }
 
@@ -438,6 +538,12 @@ public class GHUtility
             throw new UnsupportedOperationException("Not supported. Edge is empty.");
         }
 
+        @Override
+        public PointList fetchWayGeometry( int type, PointList pillarNodes )
+        {
+            throw new UnsupportedOperationException("Not supported. Edge is empty.");
+        }
+
         @Override
         public EdgeIteratorState setWayGeometry( PointList list )
         {
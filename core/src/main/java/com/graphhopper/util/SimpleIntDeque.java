@@ -87,6 +87,15 @@ public class SimpleIntDeque
         return tmp;
     }
 
+    /**
+     * Removes all entries but keeps the allocated memory.
+     */
+    public void clear()
+    {
+        frontIndex = 0;
+        endIndexPlusOne = 0;
+    }
+
     public int getSize()
     {
         return endIndexPlusOne - frontIndex;
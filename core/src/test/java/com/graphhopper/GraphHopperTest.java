@@ -20,13 +20,16 @@ package com.graphhopper;
 import com.graphhopper.reader.DataReader;
 import com.graphhopper.routing.AlgorithmOptions;
 import com.graphhopper.routing.Path;
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.routing.util.EdgeFilter;
 import com.graphhopper.routing.util.EncodingManager;
 import com.graphhopper.storage.*;
+import com.graphhopper.storage.index.LocationIndexRTree;
 import com.graphhopper.storage.index.QueryResult;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.Instruction;
+import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.GHPoint;
 import org.junit.After;
 import org.junit.Before;
@@ -34,8 +37,13 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -106,6 +114,29 @@ public class GraphHopperTest
         }
     }
 
+    @Test
+    public void testWarmup() throws InterruptedException
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        instance.close();
+
+        instance = new GraphHopper().setMemoryMapped().
+                setWarmup("nodes, edges,location_index,unknown", true);
+        assertTrue(instance.load(ghLoc));
+        for (int i = 0; i < 100 && !instance.isWarmedUp(); i++)
+        {
+            Thread.sleep(10);
+        }
+        assertTrue(instance.isWarmedUp());
+        GHResponse rsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+    }
+
     @Test
     public void testLoadOSMNoCH()
     {
@@ -131,6 +162,197 @@ public class GraphHopperTest
         gh.close();
     }
 
+    @Test
+    public void testEdgeBasedIndex()
+    {
+        GraphHopper gh = new GraphHopper().setStoreOnFlush(true).
+                setEdgeBasedIndex(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        gh.importOrLoad();
+        assertTrue(gh.getLocationIndex() instanceof LocationIndexRTree);
+        GHResponse rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+
+        gh.close();
+        gh = new GraphHopper().setStoreOnFlush(true).
+                setEdgeBasedIndex(true).
+                setEncodingManager(new EncodingManager("CAR"));
+        assertTrue(gh.load(ghLoc));
+        rsp = gh.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+
+        gh.close();
+    }
+
+    @Test
+    public void testTrafficWeighting()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+        GHRequest req = new GHRequest(51.2492152, 9.4317166, 51.2, 9.4).setWeighting("traffic");
+        GHResponse rsp = instance.route(req);
+        assertFalse(rsp.hasErrors());
+        GHResponse chRsp = instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4));
+        assertEquals(chRsp.getDistance(), rsp.getDistance(), 1e-3);
+
+        // close all roads, this is ignored by the CH preparation
+        EdgeSpeedOverlay overlay = instance.getSpeedOverlay();
+        AllEdgesIterator iter = instance.getGraph().getBaseGraph().getAllEdges();
+        while (iter.next())
+        {
+            overlay.setSpeed(iter.getEdge(), 0);
+        }
+        assertTrue(instance.route(req).hasErrors());
+        assertFalse(instance.route(new GHRequest(51.2492152, 9.4317166, 51.2, 9.4)).hasErrors());
+
+        try
+        {
+            new GraphHopper().setCHWeighting("traffic").setEncodingManager(new EncodingManager("CAR")).
+                    setGraphHopperLocation(ghLoc + "2").setOSMFile(testOsm).importOrLoad();
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        } finally
+        {
+            Helper.removeDir(new File(ghLoc + "2"));
+        }
+    }
+
+    @Test
+    public void testMatrix()
+    {
+        for (boolean ch : new boolean[]
+        {
+            true, false
+        })
+        {
+            Helper.removeDir(new File(ghLoc));
+            instance = new GraphHopper().setStoreOnFlush(true).
+                    setCHEnable(ch).
+                    setEncodingManager(new EncodingManager("CAR")).
+                    setGraphHopperLocation(ghLoc).
+                    setOSMFile(testOsm);
+            instance.importOrLoad();
+
+            List<GHPoint> points = Arrays.asList(new GHPoint(51.2492152, 9.4317166), new GHPoint(51.2, 9.4),
+                    new GHPoint(49, 10), new GHPoint(51.25, 9.43));
+            GHMatrixResponse rsp = instance.matrix(new GHMatrixRequest(points, points));
+            assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+            String algoName = ch ? "manyToManyCH" : "dijkstraOneToManyMatrix";
+            assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains(algoName));
+            for (int i = 0; i < points.size(); i++)
+            {
+                for (int j = 0; j < points.size(); j++)
+                {
+                    GHResponse routeRsp = instance.route(new GHRequest(points.get(i), points.get(j)));
+                    String str = ch + ", " + i + "->" + j;
+                    if (routeRsp.hasErrors())
+                    {
+                        assertFalse(str, rsp.isConnected(i, j));
+                        continue;
+                    }
+
+                    // the other points split more edges and virtual edges use the distance of the geometry
+                    assertTrue(str, rsp.isConnected(i, j));
+                    assertEquals(str, routeRsp.getDistance(), rsp.getDistance(i, j), routeRsp.getDistance() * 1e-4);
+                    assertEquals(str, routeRsp.getTime(), rsp.getTime(i, j), routeRsp.getTime() * 1e-4);
+                }
+            }
+
+            rsp = instance.matrix(new GHMatrixRequest().addFromPoint(new GHPoint(51.2, 9.4)));
+            assertTrue(rsp.hasErrors());
+            instance.close();
+        }
+    }
+
+    @Test
+    public void testMatrixWithTurnCosts()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setCHEnable(false).
+                setEncodingManager(new EncodingManager("CAR|turnCosts=true")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile("./src/test/resources/com/graphhopper/reader/test-restrictions.xml");
+        instance.importOrLoad();
+
+        List<GHPoint> points = Arrays.asList(new GHPoint(52, 10), new GHPoint(52, 11), new GHPoint(52, 12),
+                new GHPoint(50, 12), new GHPoint(54, 11));
+        for (String tMode : new String[]
+        {
+            "edge_based_2dir", "node_based"
+        })
+        {
+            GHMatrixRequest request = new GHMatrixRequest(points, points);
+            request.getHints().put("traversal_mode", tMode);
+            GHMatrixResponse rsp = instance.matrix(request);
+            assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+            String algoName = tMode.startsWith("edge") ? "dijkstrabiMatrix" : "dijkstraOneToManyMatrix";
+            assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains(algoName));
+            for (int i = 0; i < points.size(); i++)
+            {
+                for (int j = 0; j < points.size(); j++)
+                {
+                    GHRequest routeReq = new GHRequest(points.get(i), points.get(j));
+                    routeReq.getHints().put("traversal_mode", tMode);
+                    GHResponse routeRsp = instance.route(routeReq);
+                    String str = tMode + ", " + i + "->" + j;
+                    if (routeRsp.hasErrors())
+                    {
+                        assertFalse(str, rsp.isConnected(i, j));
+                        continue;
+                    }
+
+                    assertTrue(str, rsp.isConnected(i, j));
+                    assertEquals(str, routeRsp.getDistance(), rsp.getDistance(i, j), routeRsp.getDistance() * 1e-4);
+                    assertEquals(str, routeRsp.getTime(), rsp.getTime(i, j), routeRsp.getTime() * 1e-4);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIsochrone()
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                setEncodingManager(new EncodingManager("CAR")).
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm);
+        instance.importOrLoad();
+
+        GHIsochroneResponse rsp = instance.isochrone(new GHIsochroneRequest(51.2492152, 9.4317166).setTimeLimit(24 * 3600 * 1000L));
+        assertFalse(rsp.getErrors().toString(), rsp.hasErrors());
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("shortestPathTree"));
+        assertEquals(5, rsp.size());
+        assertEquals(0, rsp.getTime(0));
+        assertEquals(0, rsp.getDistance(0), 1e-6);
+
+        // every reached location is connected
+        int last = rsp.size() - 1;
+        GHResponse routeRsp = instance.route(new GHRequest(51.2492152, 9.4317166, rsp.getPoints().getLat(last),
+                rsp.getPoints().getLon(last)));
+        assertFalse(routeRsp.hasErrors());
+        assertEquals(routeRsp.getTime(), rsp.getTime(last), 1000);
+        assertEquals(routeRsp.getDistance(), rsp.getDistance(last), 1);
+
+        long timeLimit = rsp.getTime(last) - 1;
+        GHIsochroneResponse smallerRsp = instance.isochrone(new GHIsochroneRequest(51.2492152, 9.4317166).setTimeLimit(timeLimit));
+        assertTrue(smallerRsp.size() < rsp.size());
+        assertEquals(smallerRsp.size(), rsp.getPoints(timeLimit).size());
+        for (int i = 0; i < smallerRsp.size(); i++)
+        {
+            assertTrue(smallerRsp.getTime(i) <= timeLimit);
+        }
+
+        assertTrue(instance.isochrone(new GHIsochroneRequest(51.2492152, 9.4317166)).hasErrors());
+    }
+
     @Test
     public void testAllowMultipleReadingInstances()
     {
@@ -312,6 +534,45 @@ public class GraphHopperTest
         assertEquals(3, rsp.getPoints().getSize());
     }
 
+    @Test
+    public void testFootAndCar_CHProfiles()
+    {
+        instance = new GraphHopper().
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                setCHVehicles("car,foot").
+                setGraphHopperLocation(ghLoc).
+                setOSMFile(testOsm3);
+        instance.importOrLoad();
+
+        GHResponse rsp = instance.route(new GHRequest(11.1, 50, 10, 51).setVehicle(EncodingManager.FOOT));
+        assertFalse(rsp.hasErrors());
+        assertEquals(2, rsp.getPoints().size());
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiCH"));
+
+        // no profile for this weighting, the shortcuts of foot|fastest must not be used
+        rsp = instance.route(new GHRequest(11.1, 50, 10, 51).setVehicle(EncodingManager.FOOT).
+                setWeighting("shortest"));
+        assertFalse(rsp.hasErrors());
+        assertEquals(2, rsp.getPoints().size());
+        assertFalse(rsp.getDebugInfo(), rsp.getDebugInfo().contains("CH"));
+
+        rsp = instance.route(new GHRequest(11.1, 50, 10, 51).setVehicle(EncodingManager.CAR));
+        assertFalse(rsp.hasErrors());
+        assertEquals(3, rsp.getPoints().getSize());
+        instance.close();
+
+        // load the prepared profiles from disc
+        instance = new GraphHopper().
+                setEncodingManager(new EncodingManager("CAR,FOOT")).
+                setCHVehicles("car,foot").
+                setGraphHopperLocation(ghLoc);
+        assertTrue(instance.load(ghLoc));
+        rsp = instance.route(new GHRequest(11.1, 50, 10, 51).setVehicle(EncodingManager.FOOT));
+        assertFalse(rsp.hasErrors());
+        assertEquals(2, rsp.getPoints().size());
+        assertTrue(rsp.getDebugInfo(), rsp.getDebugInfo().contains("dijkstrabiCH"));
+    }
+
     @Test
     public void testFailsForWrongConfig() throws IOException
     {
@@ -534,6 +795,96 @@ public class GraphHopperTest
         assertEquals(Instruction.REACHED_VIA, rsp.getInstructions().get(1).getSign());
     }
 
+    @Test
+    public void testRouteBatch() throws Exception
+    {
+        instance = new GraphHopper().setStoreOnFlush(true).
+                init(new CmdArgs().
+                        put("osmreader.osm", testOsm3).
+                        put("prepare.minNetworkSize", "1").
+                        put("graph.flagEncoders", "CAR")).
+                setGraphHopperLocation(ghLoc);
+        instance.importOrLoad();
+
+        GHPoint first = new GHPoint(11.1, 50);
+        GHPoint second = new GHPoint(12, 51);
+        GHPoint third = new GHPoint(11.2, 51.9);
+        List<GHRequest> requests = Arrays.asList(
+                new GHRequest().addPoint(first).addPoint(second),
+                new GHRequest().addPoint(second).addPoint(third),
+                new GHRequest().addPoint(first).addPoint(second).addPoint(third),
+                new GHRequest().addPoint(first).addPoint(second).setVehicle("foot"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try
+        {
+            List<Future<GHResponse>> futures = instance.route(requests, executor);
+            assertEquals(requests.size(), futures.size());
+            for (int i = 0; i < 3; i++)
+            {
+                GHResponse expected = instance.route(requests.get(i));
+                GHResponse rsp = futures.get(i).get();
+                assertFalse(rsp.hasErrors());
+                assertEquals(expected.getDistance(), rsp.getDistance(), 1e-6);
+                assertEquals(expected.getPoints().getSize(), rsp.getPoints().getSize());
+            }
+            assertEquals(147930.5, futures.get(0).get().getDistance(), .1);
+            assertTrue(futures.get(3).get().hasErrors());
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRouteBatchWithRepeatedPoints() throws Exception
+    {
+        // a single long edge so that the lookup and not the routing dominates
+        EncodingManager encodingManager = new EncodingManager("car");
+        GraphStorage g = new GraphHopperStorage(new RAMDirectory(), encodingManager, false).
+                setCompactGeometry(true).create(20);
+        NodeAccess na = g.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 0.1, 0.1);
+        PointList pillarNodes = new PointList();
+        for (int i = 1; i < 100; i++)
+        {
+            pillarNodes.add(i * 0.001, (i % 2) * 0.0001 + i * 0.001);
+        }
+        g.edge(1, 0, 20000, true).setWayGeometry(pillarNodes);
+        instance = new GraphHopper().setCHEnable(false).setEncodingManager(encodingManager);
+        instance.setGraph(g);
+        instance.postProcessing();
+        instance.flush();
+
+        // the same points are snapped only once and the result is shared by all requests of the batch
+        GHPoint first = new GHPoint(0.01, 0.0101);
+        GHPoint second = new GHPoint(0.09, 0.0901);
+        List<GHRequest> requests = new ArrayList<GHRequest>();
+        for (int i = 0; i < 1000; i++)
+        {
+            requests.add(new GHRequest().addPoint(first).addPoint(second));
+        }
+        GHResponse expected = instance.route(requests.get(0));
+        assertFalse(expected.hasErrors());
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try
+        {
+            List<Future<GHResponse>> futures = instance.route(requests, executor);
+            for (Future<GHResponse> future : futures)
+            {
+                GHResponse rsp = future.get();
+                assertFalse(rsp.hasErrors());
+                assertEquals(expected.getDistance(), rsp.getDistance(), 1e-6);
+                assertEquals(expected.getPoints().toString(), rsp.getPoints().toString());
+            }
+        } finally
+        {
+            executor.shutdown();
+        }
+    }
+
     @Test
     public void testGetPathsDirectionEnforcement1()
     {
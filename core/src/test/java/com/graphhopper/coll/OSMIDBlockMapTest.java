@@ -0,0 +1,111 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.coll;
+
+import com.graphhopper.storage.MMapDirectory;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+import gnu.trove.map.hash.TLongIntHashMap;
+
+import java.io.File;
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMIDBlockMapTest
+{
+    @Test
+    public void testPutAndGet()
+    {
+        OSMIDBlockMap map = new OSMIDBlockMap(new RAMDirectory(), -1, 2);
+        assertEquals(-1, map.get(10));
+        assertEquals(-1, map.put(10, 0));
+        assertEquals(-1, map.put(3, -50));
+        assertEquals(-1, map.put(123456789012L, 7));
+        assertEquals(-1, map.put(-1, 3));
+        assertEquals(-1, map.put(-5, -2));
+        assertEquals(5, map.getSize());
+
+        assertEquals(0, map.get(10));
+        assertEquals(-50, map.get(3));
+        assertEquals(7, map.get(123456789012L));
+        assertEquals(3, map.get(-1));
+        assertEquals(-2, map.get(-5));
+        assertEquals(-1, map.get(11));
+        assertEquals(-1, map.get(2));
+        assertEquals(-1, map.get(-2));
+        assertEquals(-1, map.get(123456789013L));
+
+        // update
+        assertEquals(0, map.put(10, 2));
+        assertEquals(3, map.put(-1, 4));
+        assertEquals(5, map.getSize());
+        assertEquals(2, map.get(10));
+        assertEquals(4, map.get(-1));
+
+        try
+        {
+            map.put(12, -1);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testOtherNoEntryValue()
+    {
+        OSMIDBlockMap map = new OSMIDBlockMap(new RAMDirectory(), 5, 3);
+        assertEquals(5, map.get(1));
+        assertEquals(5, map.get(-1));
+        assertEquals(5, map.put(1, -1));
+        assertEquals(5, map.put(-1, 0));
+        assertEquals(-1, map.get(1));
+        assertEquals(0, map.get(-1));
+    }
+
+    @Test
+    public void testRandomOrder()
+    {
+        String location = "./target/tmp/osmidblockmap";
+        Helper.removeDir(new File(location));
+        MMapDirectory dir = new MMapDirectory(location);
+        OSMIDBlockMap map = new OSMIDBlockMap(dir, -1, 4);
+        TLongIntHashMap expected = new TLongIntHashMap(100, .5f, -1, -1);
+        Random rand = new Random(0);
+        for (int i = 0; i < 10000; i++)
+        {
+            // mostly dense keys with some outliers
+            long key = i % 10 == 0 ? rand.nextInt(1000000) - 1000 : rand.nextInt(5000);
+            int value = rand.nextInt(100000);
+            assertEquals(expected.put(key, value), map.put(key, value));
+        }
+        assertEquals(expected.size(), map.getSize());
+        for (long key = -1000; key < 1000000; key++)
+        {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        map.clear();
+        Helper.removeDir(new File(location));
+    }
+}
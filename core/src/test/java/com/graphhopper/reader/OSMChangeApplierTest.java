@@ -0,0 +1,198 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.reader;
+
+import com.graphhopper.routing.util.AllEdgesIterator;
+import com.graphhopper.routing.util.DefaultEdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.storage.GraphHopperStorage;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.*;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class OSMChangeApplierTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+    private GraphHopperStorage graph;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        graph = new GraphHopperStorage(new RAMDirectory(), encodingManager, false).setStoreOsmIds(true);
+        new OSMReader(graph).setEncodingManager(encodingManager).setOSMFile(getFile("test-osm-change.xml")).readGraph();
+    }
+
+    File getFile( String name ) throws Exception
+    {
+        return new File(getClass().getResource(name).toURI());
+    }
+
+    int findNode( long osmId )
+    {
+        for (int node = 0; node < graph.getNodes(); node++)
+        {
+            if (graph.getOsmNodeId(node) == osmId)
+                return node;
+        }
+        return -1;
+    }
+
+    EdgeIteratorState findEdge( long wayId )
+    {
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+        {
+            if (graph.getOsmWayId(iter.getEdge()) == wayId)
+                return iter.detach(false);
+        }
+        return null;
+    }
+
+    @Test
+    public void testImportStoresOsmIds()
+    {
+        assertEquals(4, graph.getNodes());
+        assertEquals(3, graph.getAllEdges().getCount());
+
+        EdgeIteratorState edge = findEdge(100);
+        int n1 = findNode(1);
+        edge = graph.getEdgeProps(edge.getEdge(), findNode(4));
+        assertEquals(n1, edge.getBaseNode());
+        // the pillar nodes are not simplified
+        assertEquals(4, edge.fetchWayGeometry(3).getSize());
+        assertArrayEquals(new long[]
+        {
+            2, 3
+        }, graph.getOsmPillarIds(edge));
+        assertArrayEquals(new long[]
+        {
+            3, 2
+        }, graph.getOsmPillarIds(edge.detach(true)));
+        assertArrayEquals(new long[0], graph.getOsmPillarIds(findEdge(102)));
+    }
+
+    @Test
+    public void testImportWithMissingNode() throws Exception
+    {
+        graph = new GraphHopperStorage(new RAMDirectory(), encodingManager, false).setStoreOsmIds(true);
+        new OSMReader(graph).setEncodingManager(encodingManager).setOSMFile(getFile("test-osm-missing-node.xml")).readGraph();
+
+        // the pillar node before the missing node 99 is converted into a tower node
+        assertEquals(3, graph.getNodes());
+        int n1 = findNode(1), n3 = findNode(3), n4 = findNode(4);
+        assertTrue(n3 >= 0);
+        assertEquals(-1, findNode(99));
+        assertEquals(51.0, graph.getNodeAccess().getLatitude(n3), 1e-6);
+        assertEquals(9.002, graph.getNodeAccess().getLongitude(n3), 1e-6);
+
+        EdgeIteratorState edge = GHUtility.getEdge(graph, n1, n3);
+        assertEquals(200, graph.getOsmWayId(edge.getEdge()));
+        assertArrayEquals(new long[]
+        {
+            2
+        }, graph.getOsmPillarIds(edge));
+        assertNotNull(GHUtility.getEdge(graph, n3, n4));
+    }
+
+    @Test
+    public void testApplyChanges() throws Exception
+    {
+        int deletedEdge = findEdge(101).getEdge();
+        int n1 = findNode(1), n4 = findNode(4), n7 = findNode(7), n8 = findNode(8);
+        OSMChangeApplier applier = new OSMChangeApplier(graph, encodingManager);
+        applier.apply(getFile("test-osm-change.osc"));
+        assertEquals(1, applier.getUpdatedEdges());
+        assertEquals(3, applier.getCreatedEdges());
+        assertEquals(2, applier.getDisabledEdges());
+
+        // deleted way
+        assertNull(findEdge(101));
+        assertEquals(2, graph.getRemovedEdges());
+        try
+        {
+            graph.getEdgeProps(deletedEdge, Integer.MIN_VALUE);
+            fail("the edge of the deleted way should be removed");
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        // only the tags changed
+        EdgeIteratorState edge = GHUtility.getEdge(graph, n7, n8);
+        assertTrue(carEncoder.isForward(edge.getFlags()));
+        assertFalse(carEncoder.isBackward(edge.getFlags()));
+
+        // the new way is connected to the moved pillar node of way 100 which is split there
+        assertEquals(6, graph.getNodes());
+        int n3 = findNode(3), n9 = findNode(9);
+        assertEquals(51.0005, graph.getNodeAccess().getLatitude(n3), 1e-6);
+        assertEquals(9.002, graph.getNodeAccess().getLongitude(n3), 1e-6);
+        EdgeExplorer explorer = graph.createEdgeExplorer(new DefaultEdgeFilter(carEncoder));
+        assertEquals(GHUtility.asSet(n1, n4, n9), GHUtility.getNeighbors(explorer.setBaseNode(n3)));
+        assertEquals(GHUtility.asSet(n3), GHUtility.getNeighbors(explorer.setBaseNode(n1)));
+
+        edge = GHUtility.getEdge(graph, n1, n3);
+        assertEquals("main street", edge.getName());
+        assertEquals(100, graph.getOsmWayId(edge.getEdge()));
+        assertArrayEquals(new long[]
+        {
+            2
+        }, graph.getOsmPillarIds(edge));
+        PointList points = edge.fetchWayGeometry(3);
+        assertEquals(3, points.getSize());
+        assertEquals(points.calcDistance(Helper.DIST_EARTH), edge.getDistance(), 1e-2);
+        assertEquals(103, graph.getOsmWayId(GHUtility.getEdge(graph, n3, n9).getEdge()));
+    }
+
+    @Test
+    public void testApplyChangesTwice() throws Exception
+    {
+        OSMChangeApplier applier = new OSMChangeApplier(graph, encodingManager);
+        applier.apply(getFile("test-osm-change.osc"));
+        int edges = graph.getAllEdges().getCount();
+
+        // the created way already exists and is updated in place like the modified one
+        applier.apply(getFile("test-osm-change.osc"));
+        assertEquals(2, applier.getUpdatedEdges());
+        assertEquals(0, applier.getCreatedEdges());
+        assertEquals(0, applier.getDisabledEdges());
+        assertEquals(edges, graph.getAllEdges().getCount());
+        assertEquals(6, graph.getNodes());
+    }
+
+    @Test
+    public void testGraphWithoutOsmIds()
+    {
+        try
+        {
+            new OSMChangeApplier(new GraphHopperStorage(new RAMDirectory(), encodingManager, false), encodingManager);
+            fail();
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+}
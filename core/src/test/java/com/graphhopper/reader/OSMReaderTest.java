@@ -207,6 +207,30 @@ public class OSMReaderTest
         assertEquals(9, na.getLongitude(hopper.getLocationIndex().findID(51.25, 9.43)), 1e-3);
     }
 
+    @Test
+    public void testEncodingThreads()
+    {
+        GraphHopper hopper = new GraphHopperTest(fileBarriers)
+        {
+            @Override
+            protected DataReader createReader( GraphStorage tmpGraph )
+            {
+                return initOSMReader(new OSMReader(tmpGraph).setEncodingThreads(3).setWayBatchSize(1));
+            }
+        }.importOrLoad();
+        Graph graph = hopper.getGraph();
+        assertEquals(8, graph.getNodes());
+
+        int n10 = AbstractGraphStorageTester.getIdOf(graph, 51);
+        int n20 = AbstractGraphStorageTester.getIdOf(graph, 52);
+        int n30 = AbstractGraphStorageTester.getIdOf(graph, 53);
+        int n50 = AbstractGraphStorageTester.getIdOf(graph, 55);
+        // the barrier node is duplicated in the same order as for the sequential import
+        int new20 = 4;
+        assertEquals(GHUtility.asSet(n20, n30), GHUtility.getNeighbors(carOutExplorer.setBaseNode(n10)));
+        assertEquals(GHUtility.asSet(new20, n10, n50), GHUtility.getNeighbors(carOutExplorer.setBaseNode(n30)));
+    }
+
     @Test
     public void testSort()
     {
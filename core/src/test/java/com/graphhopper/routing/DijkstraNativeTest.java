@@ -0,0 +1,69 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.TraversalMode;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.util.Helper;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class DijkstraNativeTest extends AbstractRoutingAlgorithmTester
+{
+    @Override
+    public RoutingAlgorithmFactory createFactory( Graph prepareGraph, AlgorithmOptions prepareOpts )
+    {
+        return new RoutingAlgorithmFactory()
+        {
+            @Override
+            public RoutingAlgorithm createAlgo( Graph g, AlgorithmOptions opts )
+            {
+                return new DijkstraNative(g, opts.getFlagEncoder(), opts.getWeighting(), TraversalMode.NODE_BASED);
+            }
+        };
+    }
+
+    @Test
+    public void testReuseInstance()
+    {
+        Graph g = createTestGraph();
+        RoutingAlgorithm algo = createAlgo(g);
+        Path p = algo.calcPath(0, 7);
+        assertEquals(Helper.createTList(0, 4, 5, 7), p.calcNodes());
+        assertEquals(p.toString(), 62.1, p.getDistance(), .1);
+
+        // the arrays of the previous search must not influence the next one
+        p = algo.calcPath(1, 6);
+        assertEquals(createAlgo(g).calcPath(1, 6).calcNodes(), p.calcNodes());
+
+        p = algo.calcPath(0, 7);
+        assertEquals(Helper.createTList(0, 4, 5, 7), p.calcNodes());
+
+        g = createGraph(false);
+        g.edge(0, 1, 1, true);
+        g.edge(2, 3, 1, true);
+        algo = createAlgo(g);
+        assertFalse(algo.calcPath(0, 3).isFound());
+        assertTrue(algo.calcPath(0, 1).isFound());
+        assertFalse(algo.calcPath(1, 2).isFound());
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class RoutingAlgorithmFactoryPooledTest
+{
+    private final EncodingManager encodingManager = AbstractRoutingAlgorithmTester.encodingManager;
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+
+    private AlgorithmOptions createOpts( String algo )
+    {
+        return AlgorithmOptions.start().algorithm(algo).flagEncoder(carEncoder).
+                weighting(new ShortestWeighting()).build();
+    }
+
+    @Test
+    public void testSameInstancePerThread() throws Exception
+    {
+        final RoutingAlgorithmFactoryPooled factory = new RoutingAlgorithmFactoryPooled();
+        final Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        for (String algo : new String[]
+        {
+            AlgorithmOptions.DIJKSTRA_NATIVE, AlgorithmOptions.DIJKSTRA_BI_NATIVE, AlgorithmOptions.ASTAR_NATIVE,
+            AlgorithmOptions.DIJKSTRA, AlgorithmOptions.DIJKSTRA_BI, AlgorithmOptions.ASTAR
+        })
+        {
+            final AlgorithmOptions opts = createOpts(algo);
+            RoutingAlgorithm first = factory.createAlgo(g, opts);
+            assertSame(algo, first, factory.createAlgo(g, opts));
+
+            final AtomicReference<RoutingAlgorithm> otherThreadAlgo = new AtomicReference<RoutingAlgorithm>();
+            Thread thread = new Thread()
+            {
+                @Override
+                public void run()
+                {
+                    otherThreadAlgo.set(factory.createAlgo(g, opts));
+                }
+            };
+            thread.start();
+            thread.join();
+            assertNotNull(otherThreadAlgo.get());
+            assertNotSame(algo, first, otherThreadAlgo.get());
+        }
+
+        // dijkstrabi is served by the same native instance
+        RoutingAlgorithm biNative = factory.createAlgo(g, createOpts(AlgorithmOptions.DIJKSTRA_BI_NATIVE));
+        assertTrue(biNative instanceof DijkstraBidirectionNative);
+        assertSame(biNative, factory.createAlgo(g, createOpts(AlgorithmOptions.DIJKSTRA_BI)));
+
+        // not reusable algorithms are created for every call
+        AlgorithmOptions opts = createOpts(AlgorithmOptions.ASTAR_BI);
+        assertNotSame(factory.createAlgo(g, opts), factory.createAlgo(g, opts));
+
+        // the native algorithms do not support an edge based traversal
+        opts = AlgorithmOptions.start(createOpts(AlgorithmOptions.DIJKSTRA_BI)).
+                traversalMode(TraversalMode.EDGE_BASED_2DIR).build();
+        RoutingAlgorithm edgeBased = factory.createAlgo(g, opts);
+        assertTrue(edgeBased instanceof DijkstraBidirectionRef);
+        assertNotSame(edgeBased, factory.createAlgo(g, opts));
+    }
+
+    @Test
+    public void testReuseForDifferentGraphs()
+    {
+        RoutingAlgorithmFactoryPooled factory = new RoutingAlgorithmFactoryPooled();
+        Graph small = new GraphBuilder(encodingManager).create();
+        for (int i = 0; i < 7; i++)
+        {
+            small.edge(i, i + 1, 10, true);
+        }
+        // shortcut
+        small.edge(1, 5, 15, true);
+        Graph matrix = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        Weighting weighting = new ShortestWeighting();
+        for (String algo : new String[]
+        {
+            AlgorithmOptions.DIJKSTRA_NATIVE, AlgorithmOptions.DIJKSTRA_BI_NATIVE, AlgorithmOptions.ASTAR_NATIVE,
+            AlgorithmOptions.DIJKSTRA, AlgorithmOptions.DIJKSTRA_BI, AlgorithmOptions.ASTAR
+        })
+        {
+            AlgorithmOptions opts = createOpts(algo);
+            for (Graph g : new Graph[]
+            {
+                small, matrix, small
+            })
+            {
+                Path expected = new Dijkstra(g, carEncoder, weighting, TraversalMode.NODE_BASED).calcPath(0, 7);
+                Path p = factory.createAlgo(g, opts).calcPath(0, 7);
+                assertEquals(algo, expected.calcNodes(), p.calcNodes());
+                assertEquals(algo, expected.getDistance(), p.getDistance(), 1e-6);
+            }
+
+            // the weight limit of the previous request must be forgotten
+            RoutingAlgorithm limited = factory.createAlgo(matrix, opts);
+            limited.setWeightLimit(1);
+            assertFalse(algo, limited.calcPath(0, 149).isFound());
+            assertTrue(algo, factory.createAlgo(matrix, opts).calcPath(0, 149).isFound());
+        }
+    }
+}
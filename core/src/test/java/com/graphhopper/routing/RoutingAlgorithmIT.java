@@ -707,6 +707,13 @@ public class RoutingAlgorithmIT
         prepare.add(new AlgoHelperEntry(g, astarbiOpts, idx));
         prepare.add(new AlgoHelperEntry(g, dijkstrabiOpts, idx));
 
+        if (!tMode.isEdgeBased())
+        {
+            prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_NATIVE, encoder, weighting, tMode), idx));
+            prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI_NATIVE, encoder, weighting, tMode), idx));
+            prepare.add(new AlgoHelperEntry(g, new AlgorithmOptions(AlgorithmOptions.ASTAR_NATIVE, encoder, weighting, tMode), idx));
+        }
+
         if (withCh)
         {
             final LevelGraph graphCH = (LevelGraph) ((GraphStorage) g).copyTo(new GraphBuilder(manager).
@@ -0,0 +1,124 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing;
+
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.GraphBuilder;
+
+import java.util.List;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ShortestPathTreeTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+
+    @Test
+    public void testCompareWithDijkstra()
+    {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        FlagEncoder encoder = AbstractRoutingAlgorithmTester.encodingManager.getEncoder("CAR");
+        Weighting weighting = new ShortestWeighting();
+        ShortestPathTree spt = new ShortestPathTree(g, encoder, weighting, tMode).setDistanceLimit(40);
+        List<ShortestPathTree.IsoLabel> labels = spt.search(0);
+        assertEquals(labels.size(), spt.getVisitedNodes());
+        assertEquals(0, labels.get(0).adjNode);
+
+        TIntObjectHashMap<ShortestPathTree.IsoLabel> map = new TIntObjectHashMap<ShortestPathTree.IsoLabel>();
+        double prevWeight = 0;
+        for (ShortestPathTree.IsoLabel label : labels)
+        {
+            assertTrue(label.weight >= prevWeight);
+            assertTrue(label.distance <= 40);
+            prevWeight = label.weight;
+            map.put(label.adjNode, label);
+        }
+
+        int reachable = 0;
+        for (int node = 0; node < g.getNodes(); node++)
+        {
+            Path p = new Dijkstra(g, encoder, weighting, tMode).calcPath(0, node);
+            if (!p.isFound() || p.getDistance() > 40)
+            {
+                assertFalse("" + node, map.containsKey(node));
+                continue;
+            }
+
+            reachable++;
+            ShortestPathTree.IsoLabel label = map.get(node);
+            assertNotNull("" + node, label);
+            assertEquals("" + node, p.getDistance(), label.distance, 1e-6);
+            assertEquals("" + node, p.getTime(), label.time);
+        }
+        assertEquals(reachable, labels.size());
+    }
+
+    @Test
+    public void testTimeLimit()
+    {
+        Graph g = new GraphBuilder(encodingManager).create();
+        // 30km/h => 100m in 12s
+        g.edge(0, 1).setDistance(100).setFlags(carEncoder.setProperties(30, true, true));
+        g.edge(1, 2).setDistance(100).setFlags(carEncoder.setProperties(30, true, true));
+        g.edge(2, 3).setDistance(100).setFlags(carEncoder.setProperties(30, true, true));
+        // one-way in the wrong direction
+        g.edge(4, 0).setDistance(10).setFlags(carEncoder.setProperties(30, true, false));
+        // faster detour to 3
+        g.edge(1, 5).setDistance(100).setFlags(carEncoder.setProperties(60, true, true));
+        g.edge(5, 3).setDistance(100).setFlags(carEncoder.setProperties(60, true, true));
+
+        List<ShortestPathTree.IsoLabel> labels = new ShortestPathTree(g, carEncoder, new FastestWeighting(carEncoder), tMode).
+                setTimeLimit(24000).search(0);
+        assertEquals(5, labels.size());
+        assertEquals(0, labels.get(0).time);
+        assertEquals(12000, labels.get(1).time);
+
+        TIntObjectHashMap<ShortestPathTree.IsoLabel> map = new TIntObjectHashMap<ShortestPathTree.IsoLabel>();
+        for (ShortestPathTree.IsoLabel label : labels)
+        {
+            map.put(label.adjNode, label);
+        }
+        assertEquals(24000, map.get(2).time);
+        assertEquals(18000, map.get(5).time);
+        assertEquals(24000, map.get(3).time);
+        assertEquals(5, map.get(3).parent.adjNode);
+        assertFalse(map.containsKey(4));
+    }
+
+    @Test
+    public void testCalcPath()
+    {
+        Graph g = AbstractRoutingAlgorithmTester.getMatrixAlikeGraph();
+        FlagEncoder encoder = AbstractRoutingAlgorithmTester.encodingManager.getEncoder("CAR");
+        Weighting weighting = new ShortestWeighting();
+        Path expected = new Dijkstra(g, encoder, weighting, tMode).calcPath(0, 149);
+        Path p = new ShortestPathTree(g, encoder, weighting, tMode).calcPath(0, 149);
+        assertTrue(p.isFound());
+        assertEquals(expected.getDistance(), p.getDistance(), 1e-6);
+        assertEquals(expected.getTime(), p.getTime());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.routing.ch;
+
+import com.graphhopper.routing.*;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.storage.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ManyToManyCHTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final CarFlagEncoder carEncoder = (CarFlagEncoder) encodingManager.getEncoder("CAR");
+    private final Weighting weighting = new FastestWeighting(carEncoder);
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+
+    static void initSpeedGrid( Graph g, CarFlagEncoder encoder, int size, Random rand )
+    {
+        for (int row = 0; row < size; row++)
+        {
+            for (int col = 0; col < size; col++)
+            {
+                int node = row * size + col;
+                if (col + 1 < size)
+                    g.edge(node, node + 1).setDistance(1 + rand.nextDouble() * 100).
+                            setFlags(encoder.setProperties(10 + rand.nextInt(10) * 10, true, rand.nextInt(5) > 0));
+                if (row + 1 < size)
+                    g.edge(node, node + size).setDistance(1 + rand.nextDouble() * 100).
+                            setFlags(encoder.setProperties(10 + rand.nextInt(10) * 10, true, true));
+            }
+        }
+        // a node without access
+        g.getNodeAccess().setNode(size * size, 0, 0);
+    }
+
+    @Test
+    public void testCompareWithDijkstra()
+    {
+        LevelGraph g = new GraphBuilder(encodingManager).levelGraphCreate();
+        initSpeedGrid(g, carEncoder, 12, new Random(0));
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                g, carEncoder, weighting, tMode);
+        prepare.doWork();
+
+        int[] fromNodes = new int[]
+        {
+            0, 5, 17, 77, 143, 144, 99
+        };
+        int[] toNodes = new int[]
+        {
+            143, 3, 17, 144, 120, 66
+        };
+        MatrixAlgorithm algo = prepare.createMatrixAlgo(g);
+        DistanceMatrix matrix = algo.calcMatrix(fromNodes, toNodes);
+        assertTrue(algo.getVisitedNodes() > 0);
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            for (int j = 0; j < toNodes.length; j++)
+            {
+                String str = fromNodes[i] + "->" + toNodes[j];
+                Path expected = new Dijkstra(g.getBaseGraph(), carEncoder, weighting, tMode).calcPath(fromNodes[i], toNodes[j]);
+                assertEquals(str, expected.isFound(), matrix.isConnected(i, j));
+                if (!expected.isFound())
+                {
+                    assertEquals(str, -1, matrix.getDistance(i, j), 1e-6);
+                    assertEquals(str, -1, matrix.getTime(i, j));
+                    continue;
+                }
+
+                // the weight of shortcuts is stored with a limited precision
+                assertEquals(str, expected.getWeight(), matrix.getWeight(i, j), 1e-2);
+                assertEquals(str, expected.getDistance(), matrix.getDistance(i, j), 1e-6);
+                assertEquals(str, expected.getTime(), matrix.getTime(i, j));
+            }
+        }
+
+        // the same matrix is calculated without preparation
+        DistanceMatrix simpleMatrix = new DijkstraOneToManyMatrix(g.getBaseGraph(), carEncoder, weighting).
+                calcMatrix(fromNodes, toNodes);
+        for (int i = 0; i < fromNodes.length; i++)
+        {
+            for (int j = 0; j < toNodes.length; j++)
+            {
+                String str = fromNodes[i] + "->" + toNodes[j];
+                assertEquals(str, matrix.isConnected(i, j), simpleMatrix.isConnected(i, j));
+                assertEquals(str, matrix.getDistance(i, j), simpleMatrix.getDistance(i, j), 1e-6);
+                assertEquals(str, matrix.getTime(i, j), simpleMatrix.getTime(i, j));
+            }
+        }
+    }
+}
@@ -25,6 +25,7 @@ import com.graphhopper.util.*;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -554,6 +555,52 @@ public class PrepareContractionHierarchiesTest
 //        }
 //        System.out.println("---");
 //    }
+    static void initGrid( Graph g, int size, Random rand )
+    {
+        for (int row = 0; row < size; row++)
+        {
+            for (int col = 0; col < size; col++)
+            {
+                int node = row * size + col;
+                if (col + 1 < size)
+                    g.edge(node, node + 1, 1 + rand.nextInt(10), rand.nextInt(5) > 0);
+                if (row + 1 < size)
+                    g.edge(node, node + size, 1 + rand.nextInt(10), true);
+            }
+        }
+    }
+
+    @Test
+    public void testParallelContraction()
+    {
+        LevelGraph serialGraph = createGraph();
+        initGrid(serialGraph, 20, new Random(1));
+        PrepareContractionHierarchies serialPrepare = new PrepareContractionHierarchies(dir, serialGraph, carEncoder, weighting, tMode);
+        serialPrepare.doWork();
+
+        LevelGraph g = createGraph();
+        initGrid(g, 20, new Random(1));
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                g, carEncoder, weighting, tMode).setThreads(4);
+        prepare.doWork();
+
+        // quality of the parallel contraction should be similar
+        assertTrue(prepare.getShortcuts() + " vs. " + serialPrepare.getShortcuts(),
+                prepare.getShortcuts() < serialPrepare.getShortcuts() * 1.5);
+
+        Random rand = new Random(2);
+        for (int i = 0; i < 100; i++)
+        {
+            int from = rand.nextInt(g.getNodes());
+            int to = rand.nextInt(g.getNodes());
+            Path expected = new Dijkstra(g.getBaseGraph(), carEncoder, weighting, tMode).calcPath(from, to);
+            RoutingAlgorithm algo = prepare.createAlgo(g, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI, carEncoder, weighting, tMode));
+            Path p = algo.calcPath(from, to);
+            assertEquals(from + "->" + to, expected.isFound(), p.isFound());
+            assertEquals(from + "->" + to, expected.getDistance(), p.getDistance(), 1e-6);
+        }
+    }
+
     @Test
     public void testBits()
     {
@@ -18,6 +18,9 @@
 package com.graphhopper.search;
 
 import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.Helper;
+
+import java.io.File;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -90,4 +93,83 @@ public class NameIndexTest
         index.put(str);
         index.close();
     }
+
+    @Test
+    public void testDeduplicate()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).create(1000);
+        long pointer1 = index.put("Main Street");
+        long pointer2 = index.put("Other Street");
+        assertEquals(pointer1, index.put("Main Street"));
+        assertEquals(pointer2, index.put("Other Street"));
+
+        // more names than the initial table size
+        long[] pointers = new long[5000];
+        for (int i = 0; i < pointers.length; i++)
+        {
+            pointers[i] = index.put("street " + i);
+        }
+        long capacity = index.getCapacity();
+        for (int i = 0; i < pointers.length; i++)
+        {
+            assertEquals(pointers[i], index.put("street " + i));
+        }
+        assertEquals(capacity, index.getCapacity());
+        assertEquals(pointer1, index.put("Main Street"));
+        assertEquals("street 4999", index.get(pointers[4999]));
+        index.close();
+    }
+
+    @Test
+    public void testMaxEntries()
+    {
+        NameIndex index = new NameIndex(new RAMDirectory()).setMaxEntries(0).create(1000);
+        long pointer1 = index.put("Main Street");
+        index.put("Other Street");
+        assertNotEquals(pointer1, index.put("Main Street"));
+        index.close();
+
+        index = new NameIndex(new RAMDirectory()).setMaxEntries(600).create(1000);
+        long[] pointers = new long[2000];
+        for (int i = 0; i < pointers.length; i++)
+        {
+            pointers[i] = index.put("street " + i);
+        }
+        // the first names are still deduplicated, the later ones are only stored
+        assertEquals(pointers[0], index.put("street 0"));
+        assertNotEquals(pointers[1999], index.put("street 1999"));
+        assertEquals("street 1999", index.get(pointers[1999]));
+        index.close();
+    }
+
+    @Test
+    public void testFlushAndLoad()
+    {
+        String location = "./target/nameindex-store";
+        Helper.removeDir(new File(location));
+
+        NameIndex index = new NameIndex(new RAMDirectory(location, true)).create(1000);
+        long pointer1 = index.put("Main Street");
+        long pointer2 = index.put("Other Street");
+        index.flush();
+        index.close();
+
+        index = new NameIndex(new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals("Main Street", index.get(pointer1));
+        assertEquals(pointer1, index.put("Main Street"));
+        long pointer3 = index.put("New Street");
+        assertTrue(pointer3 > pointer2);
+        assertEquals("New Street", index.get(pointer3));
+        index.close();
+
+        // a missing table is rebuilt from the names
+        new File(location, "names_index").delete();
+        index = new NameIndex(new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals(pointer2, index.put("Other Street"));
+        index.close();
+
+        Helper.removeDir(new File(location));
+    }
 }
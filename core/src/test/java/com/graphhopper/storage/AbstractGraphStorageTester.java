@@ -957,19 +957,19 @@ public abstract class AbstractGraphStorageTester
         graph.optimize();
         iter = graph.getAllEdges();
         assertEquals(2, GHUtility.count(iter));
-        assertEquals(4, iter.getCount());
+        // the invalid edges were removed
+        assertEquals(2, iter.getCount());
 
         iter = graph.getAllEdges();
         iter.next();
         EdgeIteratorState eState = iter.detach(false);
         assertEquals(iter.toString(), eState.toString());
-        iter.next();
-        assertNotEquals(iter.toString(), eState.toString());
-
         EdgeIteratorState eState2 = iter.detach(true);
         assertEquals(iter.getAdjNode(), eState2.getBaseNode());
+
         iter.next();
-        assertNotEquals(iter.getAdjNode(), eState2.getBaseNode());
+        assertNotEquals(iter.toString(), eState.toString());
+        assertNotEquals(iter.getEdge(), eState2.getEdge());
     }
 
     public static void assertPList( PointList expected, PointList list )
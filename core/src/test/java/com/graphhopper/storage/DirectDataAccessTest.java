@@ -0,0 +1,80 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * @author Peter Karich
+ */
+public class DirectDataAccessTest extends DataAccessTest
+{
+    @Override
+    public DataAccess createDataAccess( String name )
+    {
+        return new DirectDataAccess(name, directory, true, defaultOrder).setSegmentSize(128);
+    }
+
+    @Test
+    public void testMixRAM2Direct()
+    {
+        DataAccess da = new RAMDataAccess(name, directory, true, defaultOrder);
+        assertFalse(da.loadExisting());
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setInt(70 * 4, 456);
+        da.flush();
+        da.close();
+        da = createDataAccess(name);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(456, da.getInt(70 * 4));
+        da.close();
+    }
+
+    @Test
+    public void testMixDirect2RAM()
+    {
+        DataAccess da = createDataAccess(name);
+        assertFalse(da.loadExisting());
+        da.create(300);
+        da.setInt(7 * 4, 123);
+        da.setInt(70 * 4, 456);
+        da.flush();
+        da.close();
+        da = new RAMDataAccess(name, directory, true, defaultOrder);
+        assertTrue(da.loadExisting());
+        assertEquals(123, da.getInt(7 * 4));
+        assertEquals(456, da.getInt(70 * 4));
+        da.close();
+    }
+
+    @Test
+    public void testType()
+    {
+        assertEquals(DAType.DIRECT_STORE, DAType.fromString("direct_store"));
+        assertEquals(DAType.DIRECT, DAType.fromString("DIRECT"));
+        assertEquals("DIRECT_STORE", DAType.DIRECT_STORE.toString());
+        DataAccess da = new GHDirectory(directory, DAType.DIRECT_STORE).find("nodes");
+        assertTrue(da instanceof DirectDataAccess);
+        assertEquals(DAType.DIRECT_STORE, da.getType());
+        da.close();
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.routing.util.FlagEncoder;
+import com.graphhopper.routing.util.TrafficWeighting;
+import com.graphhopper.util.EdgeIterator;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class EdgeSpeedOverlayTest
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+    private GraphStorage graph;
+    private EdgeSpeedOverlay overlay;
+
+    @Before
+    public void setUp()
+    {
+        graph = new GraphBuilder(encodingManager).create();
+        graph.edge(0, 1, 100, true);
+        graph.edge(2, 1, 100, true);
+        graph.edge(2, 2, 10, true);
+        overlay = new EdgeSpeedOverlay(graph, new GHDirectory("", DAType.RAM_INT)).create(3);
+    }
+
+    @Test
+    public void testSetSpeed()
+    {
+        EdgeIteratorState edge = graph.getEdgeProps(1, 1);
+        assertEquals(EdgeSpeedOverlay.NO_SPEED, overlay.getSpeed(edge, false), 1e-6);
+
+        overlay.setSpeed(1, 30);
+        assertEquals(30, overlay.getSpeed(edge, false), 1e-6);
+        assertEquals(30, overlay.getSpeed(edge, true), 1e-6);
+
+        // only towards node 1
+        overlay.setSpeed(1, 1, 12.3);
+        assertEquals(12.3, overlay.getSpeed(edge, false), 1e-6);
+        assertEquals(30, overlay.getSpeed(edge, true), 1e-6);
+        assertEquals(30, overlay.getSpeed(edge.detach(true), false), 1e-6);
+        assertEquals(12.3, overlay.getSpeed(edge.detach(true), true), 1e-6);
+        assertEquals(12.3, overlay.getMinSpeed(1), 1e-6);
+
+        // a closed road
+        overlay.setSpeed(1, 2, 0);
+        assertEquals(0, overlay.getSpeed(edge, true), 1e-6);
+        assertEquals(12.3, overlay.getSpeed(edge, false), 1e-6);
+
+        // both directions of a loop
+        overlay.setSpeed(2, 2, 20);
+        assertEquals(20, overlay.getSpeed(graph.getEdgeProps(2, 2), true), 1e-6);
+
+        overlay.removeSpeed(1);
+        assertEquals(EdgeSpeedOverlay.NO_SPEED, overlay.getSpeed(edge, true), 1e-6);
+        assertEquals(EdgeSpeedOverlay.NO_SPEED, overlay.getMinSpeed(1), 1e-6);
+        assertEquals(EdgeSpeedOverlay.NO_SPEED, overlay.getMinSpeed(100), 1e-6);
+    }
+
+    @Test
+    public void testIllegalUpdates()
+    {
+        try
+        {
+            overlay.setSpeed(3, 10);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+
+        try
+        {
+            overlay.setSpeed(0, 2, 10);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+
+        try
+        {
+            overlay.setSpeed(0, -10);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testGrowsWithGraph()
+    {
+        for (int i = 0; i < 1000; i++)
+        {
+            graph.edge(i, i + 1, 10, true);
+        }
+        overlay.setSpeed(1002, 40);
+        assertEquals(40, overlay.getMinSpeed(1002), 1e-6);
+    }
+
+    @Test
+    public void testReadUpdates() throws IOException
+    {
+        String updates = "# edge,speed or edge,adjNode,speed\n"
+                + "0,50\n"
+                + "\n"
+                + "1, 1, 20.5\n"
+                + "2,-1\n";
+        overlay.setSpeed(2, 10);
+        assertEquals(3, overlay.readUpdates(new ByteArrayInputStream(updates.getBytes(Helper.UTF_CS))));
+        assertEquals(50, overlay.getSpeed(graph.getEdgeProps(0, 1), true), 1e-6);
+        assertEquals(20.5, overlay.getSpeed(graph.getEdgeProps(1, 1), false), 1e-6);
+        assertEquals(EdgeSpeedOverlay.NO_SPEED, overlay.getSpeed(graph.getEdgeProps(1, 1), true), 1e-6);
+        assertEquals(EdgeSpeedOverlay.NO_SPEED, overlay.getMinSpeed(2), 1e-6);
+
+        try
+        {
+            overlay.readUpdates(new ByteArrayInputStream("0,50\n1;20\n".getBytes(Helper.UTF_CS)));
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Cannot read speed update in line 2"));
+        }
+    }
+
+    @Test
+    public void testTrafficWeighting()
+    {
+        EdgeIteratorState edge = graph.getEdgeProps(0, 1);
+        edge.setFlags(carEncoder.setProperties(100, true, false));
+        TrafficWeighting weighting = new TrafficWeighting(carEncoder, overlay);
+        assertEquals(3.6, weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-6);
+
+        overlay.setSpeed(0, 50);
+        assertEquals(7.2, weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-6);
+        // limited to the maximum speed of the encoder
+        overlay.setSpeed(0, 1000);
+        assertEquals(weighting.getMinWeight(100), weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE), 1e-6);
+
+        overlay.setSpeed(0, 0);
+        assertTrue(Double.isInfinite(weighting.calcWeight(edge, false, EdgeIterator.NO_EDGE)));
+    }
+}
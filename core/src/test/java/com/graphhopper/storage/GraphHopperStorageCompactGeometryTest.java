@@ -0,0 +1,32 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+/**
+ * Runs all tests with the delta encoded geometry format.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GraphHopperStorageCompactGeometryTest extends GraphHopperStorageTest
+{
+    @Override
+    protected GraphStorage newGraph( Directory dir, boolean enabled3D )
+    {
+        return new GraphHopperStorage(dir, encodingManager, enabled3D).setCompactGeometry(true);
+    }
+}
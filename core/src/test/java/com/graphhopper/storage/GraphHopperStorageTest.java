@@ -17,10 +17,14 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.routing.util.AllEdgesIterator;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.BBox;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 import static org.junit.Assert.*;
 
@@ -103,6 +107,133 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester
         checkGraph(graph);
     }
 
+    @Test
+    public void testFetchWayGeometryIntoList()
+    {
+        graph = newGraph(new RAMDirectory(), true).create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 10, 10, 0);
+        na.setNode(1, 11, 20, 1);
+        graph.edge(0, 1, 100, true).setWayGeometry(Helper.createPointList3D(10.5, 12, 0.5, 10.7, -15.25, 1000));
+        graph.edge(0, 2, 100, true);
+
+        PointList list = new PointList(1, true);
+        list.add(1, 1, 1);
+        EdgeIterator iter = graph.createEdgeExplorer().setBaseNode(0);
+        assertTrue(iter.next());
+        // edge without pillar nodes, the previous content of the list is removed
+        assertEquals(Helper.createPointList3D(10, 10, 0, 0, 0, 0), iter.fetchWayGeometry(3, list));
+
+        assertTrue(iter.next());
+        assertSame(list, iter.fetchWayGeometry(3, list));
+        assertEquals(Helper.createPointList3D(10, 10, 0, 10.5, 12, 0.5, 10.7, -15.25, 1000, 11, 20, 1), list);
+        assertEquals(iter.fetchWayGeometry(0), iter.fetchWayGeometry(0, list));
+        assertEquals(iter.fetchWayGeometry(1), iter.fetchWayGeometry(1, list));
+        assertEquals(iter.fetchWayGeometry(2), iter.fetchWayGeometry(2, list));
+
+        iter = graph.createEdgeExplorer().setBaseNode(1);
+        assertTrue(iter.next());
+        assertEquals(Helper.createPointList3D(11, 20, 1, 10.7, -15.25, 1000, 10.5, 12, 0.5, 10, 10, 0), iter.fetchWayGeometry(3, list));
+
+        try
+        {
+            iter.fetchWayGeometry(3, new PointList());
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testGeometryFormatIsStored()
+    {
+        GraphHopperStorage gs = new GraphHopperStorage(new RAMDirectory(defaultGraphLoc, true), encodingManager, false);
+        gs.setCompactGeometry(true).create(defaultSize);
+        gs.getNodeAccess().setNode(0, 10, 10);
+        gs.getNodeAccess().setNode(1, 11, 11);
+        gs.edge(0, 1, 100, true).setWayGeometry(Helper.createPointList(10.1, 10.2, 10.3, 10.6));
+        gs.flush();
+        gs.close();
+
+        // the format of an existing graph wins
+        gs = new GraphHopperStorage(new RAMDirectory(defaultGraphLoc, true), encodingManager, false);
+        assertTrue(gs.loadExisting());
+        assertTrue(gs.isCompactGeometry());
+        assertEquals(Helper.createPointList(10, 10, 10.1, 10.2, 10.3, 10.6, 11, 11),
+                GHUtility.getEdge(gs, 0, 1).fetchWayGeometry(3));
+        gs.close();
+    }
+
+    @Test
+    public void testRenumberNodes()
+    {
+        GraphHopperStorage g = (GraphHopperStorage) createGraph();
+        NodeAccess na = g.getNodeAccess();
+        for (int i = 0; i < 6; i++)
+        {
+            na.setNode(i, 50 + i * 0.01, 10 + (i % 3) * 0.01);
+        }
+        g.edge(0, 1, 100, true).setName("a").setWayGeometry(Helper.createPointList(50.001, 10.001, 50.002, 10.003));
+        g.edge(1, 2).setDistance(110).setFlags(carEncoder.setProperties(30, true, false)).setName("b");
+        g.edge(4, 2).setDistance(120).setFlags(carEncoder.setProperties(50, true, false)).
+                setWayGeometry(Helper.createPointList(50.031, 10.011));
+        g.edge(3, 5, 130, true).setName("a");
+        g.edge(5, 0, 140, false);
+        g.edge(3, 3, 10, true);
+
+        int[] oldToNew = new int[g.getNodes()];
+        for (int i = 0; i < oldToNew.length; i++)
+        {
+            oldToNew[i] = oldToNew.length - 1 - i;
+        }
+        List<String> expected = new ArrayList<String>();
+        AllEdgesIterator iter = g.getAllEdges();
+        while (iter.next())
+        {
+            expected.add(toString(iter, oldToNew[iter.getBaseNode()], oldToNew[iter.getAdjNode()]));
+        }
+
+        g.renumberNodes(oldToNew);
+        assertEquals(6, g.getNodes());
+        assertEquals(50.05, na.getLatitude(0), 1e-6);
+        assertEquals(10.02, na.getLongitude(0), 1e-6);
+        List<String> result = new ArrayList<String>();
+        int prevMinNode = -1;
+        iter = g.getAllEdges();
+        while (iter.next())
+        {
+            int minNode = Math.min(iter.getBaseNode(), iter.getAdjNode());
+            assertTrue(minNode >= prevMinNode);
+            prevMinNode = minNode;
+            String str = toString(GHUtility.getEdge(g, iter.getBaseNode(), iter.getAdjNode()), iter.getBaseNode(), iter.getAdjNode());
+            String reverseStr = toString(GHUtility.getEdge(g, iter.getAdjNode(), iter.getBaseNode()), iter.getAdjNode(), iter.getBaseNode());
+            result.add(expected.contains(str) ? str : reverseStr);
+        }
+        Collections.sort(expected);
+        Collections.sort(result);
+        assertEquals(expected, result);
+        assertEquals(GHUtility.asSet(4, 0), GHUtility.getNeighbors(g.createEdgeExplorer().setBaseNode(5)));
+        assertEquals(GHUtility.asSet(2, 5), GHUtility.getNeighbors(g.createEdgeExplorer(carOutFilter).setBaseNode(0)));
+
+        try
+        {
+            g.renumberNodes(new int[]
+            {
+                0, 1, 2, 3, 4, 4
+            });
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    private String toString( EdgeIteratorState edge, int base, int adj )
+    {
+        return base + "->" + adj + " " + edge.getDistance() + " " + edge.getName() + " "
+                + carEncoder.isForward(edge.getFlags()) + " " + carEncoder.isBackward(edge.getFlags()) + " "
+                + carEncoder.getSpeed(edge.getFlags()) + " " + edge.fetchWayGeometry(3);
+    }
+
     protected void checkGraph( Graph g )
     {
         NodeAccess na = g.getNodeAccess();
@@ -182,6 +313,139 @@ public class GraphHopperStorageTest extends AbstractGraphStorageTester
         graph.optimize();
     }
 
+    @Test
+    public void testCompactEdges()
+    {
+        Directory dir = new RAMDirectory();
+        graph = newGraph(dir, false);
+        graph.setSegmentSize(defaultSize / 2);
+        graph.create(defaultSize);
+        NodeAccess na = graph.getNodeAccess();
+        for (int i = 0; i < 300; i++)
+        {
+            na.setNode(i, 50 + i * 0.001, 10);
+        }
+        for (int i = 1; i < 200; i++)
+        {
+            graph.edge(0, i, 10, true);
+            graph.edge(i, i + 100, 20, true).setName("street " + i);
+        }
+        graph.markNodeRemoved(0);
+        long capacity = dir.find("edges").getCapacity();
+        graph.optimize();
+
+        assertEquals(299, graph.getNodes());
+        assertEquals(199, graph.getAllEdges().getCount());
+        assertTrue(dir.find("edges").getCapacity() < capacity);
+        AllEdgesIterator iter = graph.getAllEdges();
+        while (iter.next())
+        {
+            assertEquals(20, iter.getDistance(), 1e-6);
+            EdgeIteratorState edge = graph.getEdgeProps(iter.getEdge(), iter.getAdjNode());
+            assertEquals(iter.getName(), edge.getName());
+        }
+        // node 299 was moved into the removed node 0
+        assertEquals(GHUtility.asSet(199), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(0)));
+        assertEquals(GHUtility.asSet(199), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(99)));
+        assertEquals("street 99", GHUtility.getEdge(graph, 99, 199).getName());
+        assertEquals(GHUtility.asSet(150), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(50)));
+
+        // new edges still work
+        graph.edge(1, 2, 30, true);
+        assertEquals(GHUtility.asSet(101, 2), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(1)));
+    }
+
+    @Test
+    public void testRemoveEdge()
+    {
+        graph = newGraph(new RAMDirectory(), false).create(defaultSize);
+        GraphHopperStorage storage = (GraphHopperStorage) graph;
+        int edge01 = graph.edge(0, 1, 10, true).getEdge();
+        graph.edge(0, 2, 20, true);
+        graph.edge(1, 2, 30, true);
+        graph.edge(0, 3, 40, true);
+
+        storage.removeEdge(edge01);
+        assertEquals(1, storage.getRemovedEdges());
+        assertEquals(GHUtility.asSet(2, 3), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(0)));
+        assertEquals(GHUtility.asSet(2), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(1)));
+        assertEquals(3, GHUtility.count(graph.getAllEdges()));
+        try
+        {
+            storage.removeEdge(edge01);
+            fail();
+        } catch (IllegalArgumentException ex)
+        {
+        }
+
+        // the space is freed on optimize
+        graph.optimize();
+        assertEquals(0, storage.getRemovedEdges());
+        assertEquals(3, graph.getAllEdges().getCount());
+        assertEquals(GHUtility.asSet(2, 3), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(0)));
+        assertEquals(40, GHUtility.getEdge(graph, 0, 3).getDistance(), 1e-6);
+    }
+
+    @Test
+    public void testFindOsmIds()
+    {
+        GraphHopperStorage storage = new GraphHopperStorage(new RAMDirectory(defaultGraphLoc, true), encodingManager, false).
+                setStoreOsmIds(true);
+        storage.create(defaultSize);
+        for (int node = 0; node < 4; node++)
+        {
+            storage.setOsmNodeId(node, 10 + node);
+        }
+        EdgeIteratorState edge01 = storage.edge(0, 1, 10, true);
+        storage.setOsmWayId(edge01.getEdge(), 100);
+        storage.setOsmPillarIds(edge01, new long[]
+        {
+            20, 21
+        });
+        EdgeIteratorState edge12 = storage.edge(1, 2, 10, true);
+        storage.setOsmWayId(edge12.getEdge(), 100);
+        EdgeIteratorState edge23 = storage.edge(2, 3, 10, true);
+        storage.setOsmWayId(edge23.getEdge(), 101);
+        storage.setOsmPillarIds(edge23, new long[]
+        {
+            22
+        });
+
+        assertEquals(2, storage.findOsmNode(12));
+        assertEquals(-1, storage.findOsmNode(99));
+        assertEquals(edge01.getEdge(), storage.findOsmPillarEdge(21));
+        assertEquals(-1, storage.findOsmPillarEdge(12));
+        assertEquals(GHUtility.asSet(edge01.getEdge(), edge12.getEdge()), GHUtility.asSet(storage.findOsmWayEdges(100).toArray()));
+
+        // entries added after the lookup was created
+        EdgeIteratorState edge30 = storage.edge(3, 0, 10, true);
+        storage.setOsmWayId(edge30.getEdge(), 102);
+        storage.setOsmPillarIds(edge30, new long[]
+        {
+            23
+        });
+        assertEquals(edge30.getEdge(), storage.findOsmPillarEdge(23));
+
+        // removed edges are not found and the compacted edges are found with their new ids
+        storage.removeEdge(edge01.getEdge());
+        assertEquals(-1, storage.findOsmPillarEdge(21));
+        assertEquals(GHUtility.asSet(edge12.getEdge()), GHUtility.asSet(storage.findOsmWayEdges(100).toArray()));
+        storage.optimize();
+        assertEquals(GHUtility.asSet(0), GHUtility.asSet(storage.findOsmWayEdges(100).toArray()));
+        assertEquals(1, storage.findOsmPillarEdge(22));
+        assertEquals(2, storage.findOsmPillarEdge(23));
+
+        storage.flush();
+        storage.close();
+
+        storage = new GraphHopperStorage(new RAMDirectory(defaultGraphLoc, true), encodingManager, false);
+        assertTrue(storage.loadExisting());
+        assertEquals(3, storage.findOsmNode(13));
+        assertEquals(2, storage.findOsmPillarEdge(23));
+        assertEquals(GHUtility.asSet(1), GHUtility.asSet(storage.findOsmWayEdges(101).toArray()));
+        storage.close();
+    }
+
     @Test
     public void testBigDataEdge()
     {
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.util.Random;
 
 import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.GHUtility;
 import com.graphhopper.util.Helper;
 import org.junit.Test;
 
@@ -140,4 +141,107 @@ public class GraphHopperStorageWithTurnCostsTest extends GraphHopperStorageTest
         // A new segment should be added, which will support 128 / 16 = 8 more entries.
         assertEquals(112, turnCostStorage.getCapacity() / 16);
     }
+
+    @Test
+    public void testRenumberNodesUpdatesTurnCosts()
+    {
+        GraphHopperStorage g = (GraphHopperStorage) newGraph(new RAMDirectory(), false).create(defaultSize);
+        int edge01 = g.edge(0, 1, 10, true).getEdge();
+        int edge12 = g.edge(1, 2, 10, true).getEdge();
+        int edge13 = g.edge(1, 3, 10, true).getEdge();
+        turnCostStorage.addTurnInfo(edge01, 1, edge12, 1337);
+        turnCostStorage.addTurnInfo(edge01, 1, edge13, 666);
+
+        g.renumberNodes(new int[]
+        {
+            3, 2, 1, 0
+        });
+        int newEdge01 = GHUtility.getEdge(g, 3, 2).getEdge();
+        int newEdge12 = GHUtility.getEdge(g, 2, 1).getEdge();
+        int newEdge13 = GHUtility.getEdge(g, 2, 0).getEdge();
+        assertEquals(1337, turnCostStorage.getTurnCostFlags(newEdge01, 2, newEdge12));
+        assertEquals(666, turnCostStorage.getTurnCostFlags(newEdge01, 2, newEdge13));
+        assertEquals(0, turnCostStorage.getTurnCostFlags(newEdge12, 2, newEdge13));
+    }
+
+    @Test
+    public void testCompactEdgesUpdatesTurnCosts()
+    {
+        GraphHopperStorage g = (GraphHopperStorage) newGraph(new RAMDirectory(), false).create(defaultSize);
+        g.edge(0, 1, 10, true);
+        g.edge(0, 4, 10, true);
+        int edge12 = g.edge(1, 2, 10, true).getEdge();
+        int edge23 = g.edge(2, 3, 10, true).getEdge();
+        turnCostStorage.addTurnInfo(edge12, 2, edge23, 1337);
+        turnCostStorage.addTurnInfo(edge23, 2, edge12, 666);
+        // renumbering must keep the sorted entries intact
+        g.flush();
+        g.markNodeRemoved(4);
+        g.optimize();
+
+        assertEquals(3, g.getAllEdges().getCount());
+        int newEdge12 = GHUtility.getEdge(g, 1, 2).getEdge();
+        int newEdge23 = GHUtility.getEdge(g, 2, 3).getEdge();
+        assertEquals(edge12 - 1, newEdge12);
+        assertEquals(1337, turnCostStorage.getTurnCostFlags(newEdge12, 2, newEdge23));
+        assertEquals(666, turnCostStorage.getTurnCostFlags(newEdge23, 2, newEdge12));
+    }
+
+    @Test
+    public void testSortedEntries()
+    {
+        graph = newGraph(new RAMDirectory(defaultGraphLoc, true), false).create(defaultSize);
+        for (int node = 1; node < 20; node++)
+        {
+            graph.edge(0, node, 10, true);
+        }
+        // add entries in random order around node 0 and some at other nodes
+        Random r = new Random(1);
+        for (int i = 0; i < 100; i++)
+        {
+            int from = r.nextInt(19), to = r.nextInt(19);
+            turnCostStorage.addTurnInfo(from, 0, to, from * 100 + to + 1);
+        }
+        turnCostStorage.addTurnInfo(1, 0, 2, 7);
+        // a later entry for the same edges wins
+        turnCostStorage.addTurnInfo(1, 0, 2, 8);
+        turnCostStorage.addTurnInfo(3, 3, 4, 9);
+        assertEquals(8, turnCostStorage.getTurnCostFlags(1, 0, 2));
+
+        long[][] expected = new long[19][19];
+        for (int from = 0; from < 19; from++)
+        {
+            for (int to = 0; to < 19; to++)
+            {
+                expected[from][to] = turnCostStorage.getTurnCostFlags(from, 0, to);
+            }
+        }
+
+        graph.flush();
+        assertEquals(8, turnCostStorage.getTurnCostFlags(1, 0, 2));
+        assertEquals(9, turnCostStorage.getTurnCostFlags(3, 3, 4));
+        assertEquals(0, turnCostStorage.getTurnCostFlags(3, 1, 4));
+        for (int from = 0; from < 19; from++)
+        {
+            for (int to = 0; to < 19; to++)
+            {
+                assertEquals(from + "->" + to, expected[from][to], turnCostStorage.getTurnCostFlags(from, 0, to));
+            }
+        }
+
+        // adding after flush is still possible
+        turnCostStorage.addTurnInfo(1, 0, 2, 10);
+        turnCostStorage.addTurnInfo(3, 3, 5, 11);
+        assertEquals(10, turnCostStorage.getTurnCostFlags(1, 0, 2));
+        assertEquals(9, turnCostStorage.getTurnCostFlags(3, 3, 4));
+        graph.flush();
+        graph.close();
+
+        graph = newGraph(new RAMDirectory(defaultGraphLoc, true), false);
+        assertTrue(graph.loadExisting());
+        assertEquals(10, turnCostStorage.getTurnCostFlags(1, 0, 2));
+        assertEquals(9, turnCostStorage.getTurnCostFlags(3, 3, 4));
+        assertEquals(11, turnCostStorage.getTurnCostFlags(3, 3, 5));
+        assertEquals(expected[5][6], turnCostStorage.getTurnCostFlags(5, 0, 6));
+    }
 }
@@ -0,0 +1,191 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage;
+
+import com.graphhopper.routing.AlgorithmOptions;
+import com.graphhopper.routing.Dijkstra;
+import com.graphhopper.routing.Path;
+import com.graphhopper.routing.RoutingAlgorithm;
+import com.graphhopper.routing.ch.PrepareContractionHierarchies;
+import com.graphhopper.routing.util.*;
+import com.graphhopper.util.*;
+import gnu.trove.list.TIntList;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class LevelGraphLayerTest
+{
+    private final String location = "./target/tmp/levelgraphlayer";
+    private final EncodingManager encodingManager = new EncodingManager("CAR,BIKE");
+    private final FlagEncoder carEncoder = encodingManager.getEncoder("CAR");
+    private final FlagEncoder bikeEncoder = encodingManager.getEncoder("BIKE");
+    private final TraversalMode tMode = TraversalMode.NODE_BASED;
+    private GraphStorage graph;
+
+    @Before
+    public void setUp()
+    {
+        Helper.removeDir(new File(location));
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (graph != null)
+            graph.close();
+        Helper.removeDir(new File(location));
+    }
+
+    GraphStorage createGraph()
+    {
+        GraphStorage g = new GraphBuilder(encodingManager).setLocation(location).setStore(true).create();
+        //5-1-----2
+        //   \ __/|
+        //    0   |
+        //   /    |
+        //  4-----3
+        //
+        g.edge(0, 1, 1, true);
+        g.edge(0, 2, 1, true);
+        g.edge(0, 4, 3, true);
+        g.edge(1, 2, 2, true);
+        g.edge(2, 3, 1, true);
+        g.edge(4, 3, 2, true);
+        g.edge(5, 1, 2, true);
+        return g;
+    }
+
+    @Test
+    public void testShortcut()
+    {
+        graph = createGraph();
+        LevelGraphLayer layer = new LevelGraphLayer("bike_shortest", graph).create(100);
+        layer.setLevel(2, 3);
+        assertEquals(3, layer.getLevel(2));
+        assertEquals(0, layer.getLevel(5));
+
+        EdgeSkipIterState sc = layer.shortcut(4, 1);
+        assertEquals(7, sc.getEdge());
+        assertTrue(layer.isShortcut(sc.getEdge()));
+        assertFalse(layer.isShortcut(6));
+        sc.setFlags(bikeEncoder.setProperties(0, true, false));
+        sc.setWeight(4.5);
+        sc.setDistance(4);
+        sc.setSkippedEdges(2, 0);
+
+        EdgeSkipIterState fromAdj = layer.getEdgeProps(sc.getEdge(), 4);
+        assertEquals(1, fromAdj.getBaseNode());
+        assertTrue(bikeEncoder.isBackward(fromAdj.getFlags()));
+        assertFalse(bikeEncoder.isForward(fromAdj.getFlags()));
+        assertFalse(carEncoder.isForward(fromAdj.getFlags()));
+        assertEquals(4.5, fromAdj.getWeight(), 1e-3);
+        assertEquals(4, fromAdj.getDistance(), 1e-3);
+        assertEquals(2, fromAdj.getSkippedEdge1());
+        assertEquals(0, fromAdj.getSkippedEdge2());
+
+        EdgeSkipExplorer explorer = layer.createEdgeExplorer();
+        assertEquals(GHUtility.asSet(0, 1, 3), GHUtility.getNeighbors(explorer.setBaseNode(4)));
+        assertEquals(GHUtility.asSet(0, 2, 4, 5), GHUtility.getNeighbors(explorer.setBaseNode(1)));
+        // the base graph does not see the shortcut
+        assertEquals(GHUtility.asSet(0, 3), GHUtility.getNeighbors(graph.createEdgeExplorer().setBaseNode(4)));
+        assertEquals(8, layer.getAllEdges().getCount());
+        assertEquals(8, GHUtility.count(layer.getAllEdges()));
+
+        EdgeSkipIterator iter = explorer.setBaseNode(4);
+        assertTrue(iter.next());
+        assertTrue(iter.isShortcut());
+        layer.disconnect(layer.createEdgeExplorer(), iter);
+        assertEquals(GHUtility.asSet(0, 2, 5), GHUtility.getNeighbors(explorer.setBaseNode(1)));
+        assertEquals(GHUtility.asSet(0, 1, 3), GHUtility.getNeighbors(explorer.setBaseNode(4)));
+
+        try
+        {
+            layer.edge(0, 5);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testManyShortcutsOfOneNode()
+    {
+        graph = new GraphBuilder(encodingManager).create();
+        for (int i = 0; i < 1500; i++)
+        {
+            graph.edge(i, i + 1, 1, true);
+        }
+        LevelGraphLayer layer = new LevelGraphLayer("car_fastest", graph).create(100);
+        int firstShortcut = layer.shortcut(0, 2).getEdge();
+        for (int i = 3; i <= 1500; i++)
+        {
+            layer.shortcut(0, i);
+        }
+        EdgeSkipExplorer explorer = layer.createEdgeExplorer();
+        assertEquals(1 + 1499, GHUtility.count(explorer.setBaseNode(0)));
+
+        // the first shortcut is the last entry of the list of node 0
+        layer.disconnect(layer.createEdgeExplorer(), layer.getEdgeProps(firstShortcut, 0));
+        assertEquals(1 + 1498, GHUtility.count(explorer.setBaseNode(0)));
+        assertFalse(GHUtility.getNeighbors(explorer.setBaseNode(0)).contains(2));
+    }
+
+    @Test
+    public void testPrepareSecondVehicle()
+    {
+        graph = createGraph();
+        Weighting weighting = new ShortestWeighting();
+        LevelGraphLayer layer = new LevelGraphLayer("bike_shortest", graph).create(100);
+        PrepareContractionHierarchies prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT),
+                layer, bikeEncoder, weighting, tMode);
+        prepare.doWork();
+        assertTrue(layer.getAllEdges().getCount() > graph.getAllEdges().getCount());
+        assertEquals(7, graph.getAllEdges().getCount());
+
+        Path expected = new Dijkstra(graph, bikeEncoder, weighting, tMode).calcPath(4, 5);
+        RoutingAlgorithm algo = prepare.createAlgo(layer, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI, bikeEncoder, weighting, tMode));
+        Path p = algo.calcPath(4, 5);
+        TIntList expectedNodes = expected.calcNodes();
+        assertEquals(expected.getDistance(), p.getDistance(), 1e-6);
+        assertEquals(expectedNodes, p.calcNodes());
+
+        graph.flush();
+        layer.flush();
+        layer.close();
+        graph.close();
+
+        graph = new GraphBuilder(encodingManager).setLocation(location).setStore(true).load();
+        layer = new LevelGraphLayer("bike_shortest", graph);
+        assertTrue(layer.loadExisting());
+        assertFalse(new LevelGraphLayer("car_shortest", graph).loadExisting());
+        prepare = new PrepareContractionHierarchies(new GHDirectory("", DAType.RAM_INT), layer, bikeEncoder, weighting, tMode);
+        algo = prepare.createAlgo(layer, new AlgorithmOptions(AlgorithmOptions.DIJKSTRA_BI, bikeEncoder, weighting, tMode));
+        p = algo.calcPath(4, 5);
+        assertEquals(expectedNodes, p.calcNodes());
+        layer.close();
+    }
+}
@@ -160,6 +160,31 @@ public class LevelGraphStorageTest extends GraphHopperStorageTest
         assertEquals(0, GHUtility.count(carOutExplorer.setBaseNode(2)));
     }
 
+    @Test
+    public void testRemoveShortcuts()
+    {
+        LevelGraphStorage g = createGraph();
+        g.edge(0, 1, 10, true);
+        g.edge(1, 2, 10, true);
+        g.edge(2, 3, 10, true);
+        g.shortcut(0, 2).setDistance(20).setFlags(PrepareEncoder.getScDirMask());
+        g.shortcut(0, 3).setDistance(30).setFlags(PrepareEncoder.getScDirMask());
+        g.setLevel(1, 3);
+        assertEquals(5, g.getAllEdges().getCount());
+        assertEquals(3, GHUtility.count(g.createEdgeExplorer().setBaseNode(0)));
+
+        g.removeShortcuts();
+        assertEquals(3, g.getAllEdges().getCount());
+        assertEquals(0, g.getLevel(1));
+        assertEquals(GHUtility.asSet(1), GHUtility.getNeighbors(g.createEdgeExplorer().setBaseNode(0)));
+        assertEquals(GHUtility.asSet(0, 2), GHUtility.getNeighbors(g.createEdgeExplorer().setBaseNode(1)));
+
+        // new shortcuts can be added again
+        g.shortcut(0, 2).setDistance(20).setFlags(PrepareEncoder.getScDirMask());
+        assertEquals(4, g.getAllEdges().getCount());
+        assertEquals(GHUtility.asSet(1, 2), GHUtility.getNeighbors(g.createEdgeExplorer().setBaseNode(0)));
+    }
+
     @Test
     public void testGetWeight()
     {
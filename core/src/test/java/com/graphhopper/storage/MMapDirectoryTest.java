@@ -17,6 +17,15 @@
  */
 package com.graphhopper.storage;
 
+import com.graphhopper.util.ProgressListener;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
 /**
  * @author Peter Karich
  */
@@ -27,4 +36,34 @@ public class MMapDirectoryTest extends AbstractDirectoryTester
     {
         return new MMapDirectory(location);
     }
+
+    @Test
+    public void testWarmup()
+    {
+        GHDirectory dir = (GHDirectory) createDir();
+        DataAccess da = dir.find("nodes").setSegmentSize(128).create(1000);
+        da.setInt(900, 123);
+        dir.find("edges", DAType.RAM).create(100);
+
+        final long[] progress = new long[1];
+        long bytes = dir.warmup(Arrays.asList("nodes", "edges", "unknown"), new ProgressListener()
+        {
+            @Override
+            public void update( long val )
+            {
+                assertTrue(val > progress[0]);
+                progress[0] = val;
+            }
+        });
+        assertEquals(da.getCapacity(), bytes);
+        assertEquals(bytes, progress[0]);
+        assertEquals(123, da.getInt(900));
+
+        Map<String, Double> residency = dir.getResidency();
+        assertEquals(2, residency.size());
+        assertEquals(1, residency.get("edges"), 1e-6);
+        // only a hint of the operating system
+        assertTrue(residency.get("nodes") >= 0 && residency.get("nodes") <= 1);
+        dir.clear();
+    }
 }
@@ -63,4 +63,39 @@ public class VLongStorageTest
         assertEquals(7L, store.readVLong());
         assertEquals(777666555L, store.readVLong());
     }
+
+    @Test
+    public void testSignedVLong()
+    {
+        VLongStorage store = new VLongStorage(2);
+        store.writeSignedVLong(0);
+        store.writeSignedVLong(-1);
+        store.writeSignedVLong(63);
+        assertEquals(3, store.getPosition());
+        store.writeSignedVLong(-64);
+        store.writeSignedVLong(Integer.MIN_VALUE);
+        store.writeSignedVLong(Integer.MAX_VALUE);
+
+        store.seek(0);
+        assertEquals(0L, store.readSignedVLong());
+        assertEquals(-1L, store.readSignedVLong());
+        assertEquals(63L, store.readSignedVLong());
+        assertEquals(-64L, store.readSignedVLong());
+        assertEquals(Integer.MIN_VALUE, store.readSignedVLong());
+        assertEquals(Integer.MAX_VALUE, store.readSignedVLong());
+    }
+
+    @Test
+    public void testReset()
+    {
+        VLongStorage store = new VLongStorage(10);
+        store.writeVLong(777666555);
+        byte[] bytes = store.reset(5);
+        assertSame(bytes, store.getBytes());
+        assertEquals(0, store.getPosition());
+        assertEquals(777666555L, store.readVLong());
+
+        assertTrue(store.reset(20).length >= 20);
+        assertEquals(0, store.getPosition());
+    }
 }
@@ -0,0 +1,138 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.storage.index;
+
+import com.graphhopper.routing.util.EdgeFilter;
+import com.graphhopper.routing.util.EncodingManager;
+import com.graphhopper.storage.Graph;
+import com.graphhopper.storage.NodeAccess;
+import com.graphhopper.storage.RAMDirectory;
+import com.graphhopper.util.EdgeIteratorState;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.shapes.GHPoint;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class LocationIndexRTreeTest extends AbstractLocationIndexTester
+{
+    private final EncodingManager encodingManager = new EncodingManager("CAR");
+
+    @Override
+    public LocationIndexRTree createIndex( Graph g, int resolution )
+    {
+        return (LocationIndexRTree) new LocationIndexRTree(g, new RAMDirectory(location)).setMaxEntries(4).prepareIndex();
+    }
+
+    @Override
+    public boolean hasEdgeSupport()
+    {
+        return true;
+    }
+
+    @Test
+    public void testLongEdgeWithPillarNodes()
+    {
+        Graph graph = createGraph(new RAMDirectory(), encodingManager, false);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 0, 1);
+        na.setNode(2, 0.5, -0.5);
+        EdgeIteratorState edge = graph.edge(0, 1, 100, true);
+        edge.setWayGeometry(Helper.createPointList(0.1, 0.1, 0.2, 0.2, 0.3, 0.3, 0.3, 0.7, 0.2, 0.8));
+        graph.edge(0, 2, 100, true);
+
+        idx = createIndex(graph, -1);
+        // close to the pillar nodes but far away from the tower nodes
+        QueryResult res = idx.findClosest(0.31, 0.5, EdgeFilter.ALL_EDGES);
+        assertTrue(res.isValid());
+        assertEquals(edge.getEdge(), res.getClosestEdge().getEdge());
+        assertEquals(QueryResult.Position.EDGE, res.getSnappedPosition());
+        assertEquals(3, res.getWayIndex());
+        assertEquals(new GHPoint(0.3, 0.5), res.getSnappedPoint());
+        assertEquals(1112, res.getQueryDistance(), 1);
+
+        res = idx.findClosest(0.33, 0.29, EdgeFilter.ALL_EDGES);
+        assertEquals(QueryResult.Position.PILLAR, res.getSnappedPosition());
+        assertEquals(3, res.getWayIndex());
+        assertEquals(new GHPoint(0.3, 0.3), res.getSnappedPoint());
+
+        res = idx.findClosest(0, 1.01, EdgeFilter.ALL_EDGES);
+        assertEquals(QueryResult.Position.TOWER, res.getSnappedPosition());
+        assertEquals(1, res.getClosestNode());
+
+        assertFalse(idx.findClosest(0.31, 0.5, new EdgeFilter()
+        {
+            @Override
+            public boolean accept( EdgeIteratorState edgeState )
+            {
+                return false;
+            }
+        }).isValid());
+    }
+
+    @Test
+    public void testSameAsFullIndex()
+    {
+        Graph graph = createSampleGraph(encodingManager);
+        idx = createIndex(graph, -1).setApproximation(false);
+        LocationIndex fullIndex = new Location2IDFullWithEdgesIndex(graph);
+        Random rand = new Random(12);
+        for (int i = 0; i < 200; i++)
+        {
+            double lat = rand.nextDouble() * 5;
+            double lon = rand.nextDouble() * 5;
+            double expectedDist = fullIndex.findClosest(lat, lon, EdgeFilter.ALL_EDGES).getQueryDistance();
+            double dist = idx.findClosest(lat, lon, EdgeFilter.ALL_EDGES).getQueryDistance();
+            assertEquals(expectedDist, dist, expectedDist * 1e-3 + 1);
+        }
+        fullIndex.close();
+    }
+
+    @Test
+    public void testLoadExisting()
+    {
+        Graph graph = createSampleGraph(encodingManager);
+        LocationIndexRTree index = new LocationIndexRTree(graph, new RAMDirectory(location, true));
+        index.setMaxEntries(3).prepareIndex();
+        index.flush();
+        QueryResult expected = index.findClosest(2.5, 1.3, EdgeFilter.ALL_EDGES);
+        index.close();
+
+        idx = new LocationIndexRTree(graph, new RAMDirectory(location, true));
+        assertTrue(idx.loadExisting());
+        assertEquals(3, ((LocationIndexRTree) idx).getMaxEntries());
+        QueryResult res = idx.findClosest(2.5, 1.3, EdgeFilter.ALL_EDGES);
+        assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+        assertEquals(expected.getSnappedPoint(), res.getSnappedPoint());
+    }
+
+    @Test
+    public void testEmptyGraph()
+    {
+        idx = createIndex(createGraph(new RAMDirectory(), encodingManager, false), -1);
+        assertFalse(idx.findClosest(1, 1, EdgeFilter.ALL_EDGES).isValid());
+        assertEquals(-1, idx.findID(1, 1));
+    }
+}
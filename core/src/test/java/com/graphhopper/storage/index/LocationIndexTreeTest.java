@@ -28,6 +28,9 @@ import com.graphhopper.util.shapes.GHPoint;
 import gnu.trove.set.hash.TIntHashSet;
 
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.junit.Test;
 
@@ -103,6 +106,141 @@ public class LocationIndexTreeTest extends AbstractLocationIndexTester
         assertEquals(new GHPoint(-0.441624, 0.317259), res.getSnappedPoint());
     }
 
+    @Test
+    public void testSearchContext()
+    {
+        Graph graph = createSampleGraph(encodingManager);
+        LocationIndexTree index = createIndex(graph, -1);
+        LocationIndexTree.SearchContext context = index.createSearchContext();
+        LocationIndexTree otherIndex = createIndex(graph, -1);
+        for (double lat = 0; lat < 5; lat += 0.35)
+        {
+            for (double lon = 0; lon < 5; lon += 0.45)
+            {
+                QueryResult res = index.findClosest(lat, lon, EdgeFilter.ALL_EDGES, context);
+                QueryResult expected = otherIndex.findClosest(lat, lon, EdgeFilter.ALL_EDGES);
+                assertEquals(expected.getClosestNode(), res.getClosestNode());
+                assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+                assertEquals(expected.getClosestEdge().getAdjNode(), res.getClosestEdge().getAdjNode());
+                assertEquals(expected.getQueryDistance(), res.getQueryDistance(), 1e-6);
+                assertEquals(expected.getSnappedPoint(), res.getSnappedPoint());
+            }
+        }
+
+        try
+        {
+            otherIndex.findClosest(1, 1, EdgeFilter.ALL_EDGES, context);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testFindNClosest()
+    {
+        Graph graph = createTestGraph();
+        LocationIndexTree index = createIndex(graph, -1);
+        QueryResult closest = index.findClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES);
+        List<QueryResult> list = index.findNClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES, 3);
+        assertEquals(3, list.size());
+        assertEquals(closest.getClosestEdge().getEdge(), list.get(0).getClosestEdge().getEdge());
+        assertEquals(new GHPoint(-0.441624, 0.317259), list.get(0).getSnappedPoint());
+
+        TIntHashSet edges = new TIntHashSet();
+        double prevDist = 0;
+        for (QueryResult res : index.findNClosest(-0.2, 0.3, EdgeFilter.ALL_EDGES, 100))
+        {
+            assertTrue(edges.add(res.getClosestEdge().getEdge()));
+            assertTrue(res.getQueryDistance() >= prevDist);
+            prevDist = res.getQueryDistance();
+        }
+        assertEquals(graph.getAllEdges().getCount(), edges.size());
+    }
+
+    @Test
+    public void testBulkFindClosest()
+    {
+        Graph graph = createSampleGraph(encodingManager);
+        LocationIndexTree index = createIndex(graph, -1);
+        double[] lats = new double[1000];
+        double[] lons = new double[1000];
+        for (int i = 0; i < lats.length; i++)
+        {
+            // not sorted by the spatial key
+            lats[i] = 5 - (i % 50) * 0.1;
+            lons[i] = (i / 50) * 0.25;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try
+        {
+            BulkQueryResult bulk = index.findClosest(lats, lons, EdgeFilter.ALL_EDGES, executor);
+            BulkQueryResult bulkSingleThread = index.findClosest(lats, lons, EdgeFilter.ALL_EDGES, null);
+            assertEquals(lats.length, bulk.getSize());
+            for (int i = 0; i < lats.length; i++)
+            {
+                QueryResult expected = index.findClosest(lats[i], lons[i], EdgeFilter.ALL_EDGES);
+                for (BulkQueryResult res : Arrays.asList(bulk, bulkSingleThread))
+                {
+                    assertTrue(res.isValid(i));
+                    assertEquals(expected.getClosestNode(), res.getClosestNode(i));
+                    assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge(i));
+                    assertEquals(expected.getClosestEdge().getAdjNode(), res.getAdjNode(i));
+                    assertEquals(expected.getWayIndex(), res.getWayIndex(i));
+                    assertEquals(expected.getSnappedPosition(), res.getSnappedPosition(i));
+                    assertEquals(expected.getQueryDistance(), res.getQueryDistance(i), 1e-6);
+                    assertEquals(expected.getSnappedPoint().lat, res.getSnappedLat(i), 1e-6);
+                    assertEquals(expected.getSnappedPoint().lon, res.getSnappedLon(i), 1e-6);
+                }
+            }
+
+            QueryResult res = bulk.createQueryResult(17);
+            QueryResult expected = index.findClosest(lats[17], lons[17], EdgeFilter.ALL_EDGES);
+            assertEquals(expected.getClosestEdge().getEdge(), res.getClosestEdge().getEdge());
+            assertEquals(expected.getSnappedPoint(), res.getSnappedPoint());
+        } finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(0, index.findClosest(new double[0], new double[0], EdgeFilter.ALL_EDGES, null).getSize());
+        try
+        {
+            index.findClosest(new double[2], new double[1], EdgeFilter.ALL_EDGES, null);
+            assertTrue(false);
+        } catch (IllegalArgumentException ex)
+        {
+        }
+    }
+
+    @Test
+    public void testSortBySpatialKey()
+    {
+        LocationIndexTree index = createIndex(createTestGraph(), -1);
+        int[] order = index.sortBySpatialKey(new double[]
+        {
+            0.5, -1, 0.49, -0.99
+        }, new double[]
+        {
+            -0.5, -1, -0.49, -0.99
+        });
+        // close points are next to each other
+        assertEquals(4, order.length);
+        assertEquals(1, Math.abs(indexOf(order, 0) - indexOf(order, 2)));
+        assertEquals(1, Math.abs(indexOf(order, 1) - indexOf(order, 3)));
+    }
+
+    private static int indexOf( int[] arr, int value )
+    {
+        for (int i = 0; i < arr.length; i++)
+        {
+            if (arr[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
     @Test
     public void testInMemIndex()
     {
@@ -213,6 +351,52 @@ public class LocationIndexTreeTest extends AbstractLocationIndexTester
         assertEquals(str44 + "01010101111101111101", BitUtil.BIG.toBitString(index.createReverseKey(1.7, 0.099)));
     }
 
+    @Test
+    public void testAddEdges()
+    {
+        Graph graph = createGraph(encodingManager);
+        NodeAccess na = graph.getNodeAccess();
+        na.setNode(0, 0, 0);
+        na.setNode(1, 0, 0.1);
+        na.setNode(2, 1, 1);
+        na.setNode(3, 1, 1.1);
+        graph.edge(0, 1, 1000, true);
+        graph.edge(2, 3, 1000, true);
+        Directory dir = new RAMDirectory(location, true);
+        LocationIndexTree index = new LocationIndexTree(graph.getBaseGraph(), dir);
+        index.setResolution(5000);
+        index.prepareIndex();
+
+        na.setNode(4, 0.5, 0.5);
+        na.setNode(5, 0.5, 0.6);
+        int edge = graph.edge(4, 5, 1000, true).setWayGeometry(Helper.createPointList(0.6, 0.55)).getEdge();
+        QueryResult res = index.findClosest(0.58, 0.55, EdgeFilter.ALL_EDGES);
+        assertTrue(!res.isValid() || res.getClosestEdge().getEdge() != edge);
+
+        assertTrue(index.addEdges(new TIntHashSet(new int[]
+        {
+            edge
+        })));
+        res = index.findClosest(0.58, 0.55, EdgeFilter.ALL_EDGES);
+        assertEquals(edge, res.getClosestEdge().getEdge());
+        assertEquals(1, index.findClosest(0, 0.09, EdgeFilter.ALL_EDGES).getClosestNode());
+        index.flush();
+        index.close();
+
+        index = new LocationIndexTree(graph.getBaseGraph(), new RAMDirectory(location, true));
+        assertTrue(index.loadExisting());
+        assertEquals(edge, index.findClosest(0.58, 0.55, EdgeFilter.ALL_EDGES).getClosestEdge().getEdge());
+        assertEquals(2, index.findClosest(1, 1.01, EdgeFilter.ALL_EDGES).getClosestNode());
+
+        // the tiles depend on the bounds
+        na.setNode(6, 2, 2);
+        edge = graph.edge(5, 6, 1000, true).getEdge();
+        assertFalse(index.addEdges(new TIntHashSet(new int[]
+        {
+            edge
+        })));
+    }
+
     @Test
     public void testMoreReal()
     {
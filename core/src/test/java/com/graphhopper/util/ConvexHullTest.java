@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class ConvexHullTest
+{
+    @Test
+    public void testCalc()
+    {
+        PointList list = new PointList();
+        list.add(0, 0);
+        list.add(1, 0.5);
+        list.add(0.5, 0.5);
+        list.add(0, 1);
+        list.add(1, 1);
+        list.add(0.2, 0.8);
+        list.add(1, 0);
+        PointList hull = ConvexHull.calc(list);
+        assertEquals(5, hull.getSize());
+        assertEquals(hull.toGHPoint(0), hull.toGHPoint(4));
+        assertEquals(0, hull.getLat(0), 1e-6);
+        assertEquals(0, hull.getLon(0), 1e-6);
+        assertEquals(0, hull.getLat(1), 1e-6);
+        assertEquals(1, hull.getLon(1), 1e-6);
+        assertEquals(1, hull.getLat(2), 1e-6);
+        assertEquals(1, hull.getLon(2), 1e-6);
+        assertEquals(1, hull.getLat(3), 1e-6);
+        assertEquals(0, hull.getLon(3), 1e-6);
+    }
+
+    @Test
+    public void testFewPoints()
+    {
+        PointList list = new PointList();
+        assertEquals(0, ConvexHull.calc(list).getSize());
+
+        list.add(1, 2);
+        assertEquals(1, ConvexHull.calc(list).getSize());
+
+        list.add(1, 2);
+        assertEquals(1, ConvexHull.calc(list).getSize());
+
+        // points on a line
+        list.add(2, 3);
+        list.add(3, 4);
+        PointList hull = ConvexHull.calc(list);
+        assertEquals(2, hull.getSize());
+        assertEquals(1, hull.getLat(0), 1e-6);
+        assertEquals(3, hull.getLat(1), 1e-6);
+    }
+}
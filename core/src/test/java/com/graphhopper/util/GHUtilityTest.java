@@ -23,6 +23,9 @@ import com.graphhopper.storage.Graph;
 import com.graphhopper.storage.LevelGraph;
 import com.graphhopper.storage.NodeAccess;
 
+import java.util.HashSet;
+import java.util.Set;
+
 import static org.junit.Assert.*;
 
 import org.junit.Test;
@@ -90,6 +93,56 @@ public class GHUtilityTest
         assertEquals(4.6, na.getLatitude(3), 1e-4); // 8        
     }
 
+    @Test
+    public void testHilbertOrder()
+    {
+        assertEquals(0, GHUtility.hilbertIndex(4, 0, 0));
+        assertEquals(1, GHUtility.hilbertIndex(4, 1, 0));
+        assertEquals(2, GHUtility.hilbertIndex(4, 1, 1));
+        assertEquals(3, GHUtility.hilbertIndex(4, 0, 1));
+        assertEquals(15, GHUtility.hilbertIndex(4, 3, 0));
+
+        Graph g = initUnsorted(createGraph());
+        int[] order = GHUtility.createHilbertOrder(g);
+        assertPermutation(order);
+
+        // the corners of the bounds are the start, the two middle points and the end of the curve
+        g = createGraph();
+        NodeAccess na = g.getNodeAccess();
+        na.setNode(0, 0, 1);
+        na.setNode(1, 0, 0);
+        na.setNode(2, 1, 0);
+        na.setNode(3, 1, 1);
+        order = GHUtility.createHilbertOrder(g);
+        assertArrayEquals(new int[]
+        {
+            3, 0, 1, 2
+        }, order);
+    }
+
+    @Test
+    public void testBFSOrder()
+    {
+        Graph g = initUnsorted(createGraph());
+        int[] order = GHUtility.createBFSOrder(g);
+        assertPermutation(order);
+        assertEquals(0, order[0]);
+        assertEquals(1, order[1]);
+        // the neighbors of 1
+        assertEquals(GHUtility.asSet(2, 3), GHUtility.asSet(order[2], order[8]));
+    }
+
+    private void assertPermutation( int[] order )
+    {
+        Set<Integer> set = new HashSet<Integer>();
+        for (int newNode : order)
+        {
+            assertTrue(newNode >= 0 && newNode < order.length);
+            set.add(newNode);
+        }
+        assertEquals(order.length, set.size());
+    }
+
     @Test
     public void testSortDirected()
     {
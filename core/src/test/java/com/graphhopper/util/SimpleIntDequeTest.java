@@ -84,4 +84,22 @@ public class SimpleIntDequeTest
         assertEquals(52, deque.pop());
         assertEquals(10, deque.getSize());
     }
+
+    @Test
+    public void testClear()
+    {
+        SimpleIntDeque deque = new SimpleIntDeque(8, 2f);
+        for (int i = 0; i < 20; i++)
+        {
+            deque.push(i);
+        }
+        deque.pop();
+        int capacity = deque.getCapacity();
+        deque.clear();
+        assertTrue(deque.isEmpty());
+        assertEquals(capacity, deque.getCapacity());
+
+        deque.push(5);
+        assertEquals(5, deque.pop());
+    }
 }
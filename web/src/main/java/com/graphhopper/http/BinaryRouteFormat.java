@@ -0,0 +1,301 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+
+import java.io.*;
+
+/**
+ * A compact binary alternative to the JSON route response for service to service calls. The
+ * servlet writes it for type=binary or if the Accept header contains CONTENT_TYPE and
+ * GraphHopperWeb reads it if setBinary(true) is used.
+ * <p/>
+ * The response starts with a magic int including the version and a flag byte. All further
+ * integers are variable length encoded (zigzag for signed values) and strings are the length
+ * followed by the UTF-8 bytes. Errors are the class name and message per error. A route is the
+ * took in milliseconds, distance, weight and time followed by the points as deltas of latitude and
+ * longitude in micro degrees (and elevation in centimeter) and the instructions with sign, text,
+ * annotation, distance, time and the number of points until the next instruction.
+ * <p/>
+ * @author Peter Karich
+ */
+public class BinaryRouteFormat
+{
+    public static final String CONTENT_TYPE = "application/x-graphhopper-route";
+    // 'GH' plus the version of the format
+    private static final int MAGIC = 0x47480001;
+    private static final int FLAG_ERRORS = 1;
+    private static final int FLAG_POINTS = 2;
+    private static final int FLAG_ELEVATION = 4;
+    private static final int FLAG_INSTRUCTIONS = 8;
+    private static final double DEGREE_FACTOR = 1e6;
+    private static final double ELEVATION_FACTOR = 1e2;
+
+    /**
+     * Writes the specified response, use a buffered stream as single bytes are written.
+     * <p/>
+     * @param took the milliseconds the calculation took
+     */
+    public static void write( OutputStream outStream, GHResponse rsp, boolean calcPoints,
+                              boolean includeElevation, boolean enableInstructions, long took ) throws IOException
+    {
+        DataOutputStream out = new DataOutputStream(outStream);
+        out.writeInt(MAGIC);
+        if (rsp.hasErrors())
+        {
+            out.writeByte(FLAG_ERRORS);
+            writeVarInt(out, rsp.getErrors().size());
+            for (Throwable t : rsp.getErrors())
+            {
+                writeString(out, t.getClass().getName());
+                writeString(out, t.getMessage() == null ? "" : t.getMessage());
+            }
+            out.flush();
+            return;
+        }
+
+        int flags = 0;
+        if (calcPoints)
+        {
+            flags |= FLAG_POINTS;
+            if (includeElevation)
+                flags |= FLAG_ELEVATION;
+            if (enableInstructions)
+                flags |= FLAG_INSTRUCTIONS;
+        }
+        out.writeByte(flags);
+        writeVarLong(out, took);
+        out.writeDouble(rsp.getDistance());
+        out.writeDouble(rsp.getRouteWeight());
+        writeVarLong(out, rsp.getTime());
+        if (calcPoints)
+        {
+            PointList points = rsp.getPoints();
+            int size = points.getSize();
+            writeVarInt(out, size);
+            int prevLat = 0, prevLon = 0, prevEle = 0;
+            for (int i = 0; i < size; i++)
+            {
+                int lat = (int) Math.round(points.getLatitude(i) * DEGREE_FACTOR);
+                int lon = (int) Math.round(points.getLongitude(i) * DEGREE_FACTOR);
+                writeVarInt(out, zigzag(lat - prevLat));
+                writeVarInt(out, zigzag(lon - prevLon));
+                prevLat = lat;
+                prevLon = lon;
+                if (includeElevation)
+                {
+                    int ele = (int) Math.round(points.getElevation(i) * ELEVATION_FACTOR);
+                    writeVarInt(out, zigzag(ele - prevEle));
+                    prevEle = ele;
+                }
+            }
+
+            if (enableInstructions)
+                writeInstructions(out, rsp.getInstructions());
+        }
+        out.flush();
+    }
+
+    private static void writeInstructions( DataOutputStream out, InstructionList instructions ) throws IOException
+    {
+        int size = instructions.getSize();
+        writeVarInt(out, size);
+        for (int i = 0; i < size; i++)
+        {
+            Instruction instruction = instructions.get(i);
+            writeVarInt(out, zigzag(instruction.getSign()));
+            writeString(out, instructions.createText(instruction));
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (ia.isEmpty())
+            {
+                out.writeBoolean(false);
+            } else
+            {
+                out.writeBoolean(true);
+                writeVarInt(out, zigzag(ia.getImportance()));
+                writeString(out, ia.getMessage());
+            }
+            out.writeDouble(instruction.getDistance());
+            writeVarLong(out, instruction.getTime());
+            // like the interval in the JSON: the last instruction does not point to the next one
+            int points = instruction.getPoints().size();
+            writeVarInt(out, i + 1 == size ? points - 1 : points);
+        }
+    }
+
+    /**
+     * Reads the response written via write into the specified GHResponse.
+     * <p/>
+     * @return the milliseconds the calculation took on the server or -1 for errors
+     */
+    public static long read( InputStream inStream, GHResponse res ) throws IOException
+    {
+        DataInputStream in = new DataInputStream(inStream);
+        int magic = in.readInt();
+        if (magic != MAGIC)
+            throw new IllegalStateException("Not a binary route response of version " + (MAGIC & 0xFFFF)
+                    + ", magic was " + Integer.toHexString(magic));
+
+        int flags = in.readUnsignedByte();
+        if ((flags & FLAG_ERRORS) != 0)
+        {
+            int errors = readVarInt(in);
+            for (int i = 0; i < errors; i++)
+            {
+                String exClass = readString(in);
+                res.addError(GraphHopperWeb.createError(exClass, readString(in)));
+            }
+            return -1;
+        }
+
+        long took = readVarLong(in);
+        res.setDistance(in.readDouble());
+        res.setRouteWeight(in.readDouble());
+        res.setTime(readVarLong(in));
+        if ((flags & FLAG_POINTS) == 0)
+            return took;
+
+        boolean elevation = (flags & FLAG_ELEVATION) != 0;
+        int size = readVarInt(in);
+        PointList points = new PointList(size, elevation);
+        int lat = 0, lon = 0, ele = 0;
+        for (int i = 0; i < size; i++)
+        {
+            lat += unzigzag(readVarInt(in));
+            lon += unzigzag(readVarInt(in));
+            if (elevation)
+            {
+                ele += unzigzag(readVarInt(in));
+                points.add(lat / DEGREE_FACTOR, lon / DEGREE_FACTOR, ele / ELEVATION_FACTOR);
+            } else
+            {
+                points.add(lat / DEGREE_FACTOR, lon / DEGREE_FACTOR);
+            }
+        }
+        res.setPoints(points);
+
+        if ((flags & FLAG_INSTRUCTIONS) != 0)
+            res.setInstructions(readInstructions(in, points));
+
+        return took;
+    }
+
+    private static InstructionList readInstructions( DataInputStream in, PointList points ) throws IOException
+    {
+        int size = readVarInt(in);
+        InstructionList il = new InstructionList(size, null);
+        int viaCount = 1;
+        int from = 0;
+        for (int i = 0; i < size; i++)
+        {
+            int sign = unzigzag(readVarInt(in));
+            String text = readString(in);
+            InstructionAnnotation ia = InstructionAnnotation.EMPTY;
+            if (in.readBoolean())
+            {
+                int importance = unzigzag(readVarInt(in));
+                ia = new InstructionAnnotation(importance, readString(in));
+            }
+            double distance = in.readDouble();
+            long time = readVarLong(in);
+            int to = from + readVarInt(in);
+            if (to >= points.getSize())
+                throw new IllegalStateException("Instruction " + i + " points to " + to + " but only "
+                        + points.getSize() + " points exist");
+
+            PointList instPL = new PointList(to - from + 1, points.is3D());
+            for (int j = from; j <= to; j++)
+            {
+                instPL.add(points, j);
+            }
+
+            Instruction instr = GraphHopperWeb.createInstruction(sign, text, ia, instPL, viaCount);
+            if (sign == Instruction.REACHED_VIA)
+                viaCount++;
+
+            instr.setDistance(distance).setTime(time);
+            il.add(instr);
+            from = to;
+        }
+        return il;
+    }
+
+    private static int zigzag( int value )
+    {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag( int value )
+    {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarInt( DataOutputStream out, int value ) throws IOException
+    {
+        while ((value & ~0x7F) != 0)
+        {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static void writeVarLong( DataOutputStream out, long value ) throws IOException
+    {
+        while ((value & ~0x7FL) != 0)
+        {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVarInt( DataInputStream in ) throws IOException
+    {
+        return (int) readVarLong(in);
+    }
+
+    private static long readVarLong( DataInputStream in ) throws IOException
+    {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7)
+        {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalStateException("Variable length integer is too long");
+    }
+
+    private static void writeString( DataOutputStream out, String str ) throws IOException
+    {
+        byte[] bytes = str.getBytes(Helper.UTF_CS);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString( DataInputStream in ) throws IOException
+    {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, Helper.UTF_CS);
+    }
+}
@@ -25,6 +25,11 @@ import com.graphhopper.util.TranslationMap;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * @author Peter Karich
  */
@@ -39,6 +44,9 @@ public class DefaultModule extends AbstractModule
         this.args = CmdArgs.readFromConfigAndMerge(args, "config", "graphhopper.config");
     }
 
+    /**
+     * @return the initially loaded instance, see GraphHopperHolder for the current one
+     */
     public GraphHopper getGraphHopper()
     {
         if (graphHopper == null)
@@ -48,7 +56,8 @@ public class DefaultModule extends AbstractModule
     }
 
     /**
-     * @return an initialized GraphHopper instance
+     * @return an initialized GraphHopper instance. Also used for the instances loaded via reload
+     * where the arguments contain no OSM file.
      */
     protected GraphHopper createGraphHopper( CmdArgs args )
     {
@@ -61,13 +70,44 @@ public class DefaultModule extends AbstractModule
         return tmp;
     }
 
+    /**
+     * @return the bounded pool for the batched route requests. The threads do not prevent the JVM
+     * from shutting down.
+     */
+    protected ExecutorService createBatchExecutor( int threads )
+    {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            private final AtomicInteger counter = new AtomicInteger();
+
+            @Override
+            public Thread newThread( Runnable r )
+            {
+                Thread thread = new Thread(r, "gh-batch-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
     @Override
     protected void configure()
     {
         try
         {
             graphHopper = createGraphHopper(args);
-            bind(GraphHopper.class).toInstance(graphHopper);
+            // the servlets acquire the instance from the holder as it can be replaced via reload
+            GraphHopperHolder holder = new GraphHopperHolder(graphHopper, args)
+            {
+                @Override
+                protected GraphHopper createGraphHopper( CmdArgs reloadArgs )
+                {
+                    return DefaultModule.this.createGraphHopper(reloadArgs);
+                }
+            };
+            bind(GraphHopperHolder.class).toInstance(holder.
+                    setDrainTimeout(args.getLong("web.reload.drain_timeout", 60000)).
+                    setWarmupTimeout(args.getLong("web.reload.warmup_timeout", 600000)));
             bind(TranslationMap.class).toInstance(graphHopper.getTranslationMap());
 
             long timeout = args.getLong("web.timeout", 3000);
@@ -78,6 +118,12 @@ public class DefaultModule extends AbstractModule
 
             bind(Boolean.class).annotatedWith(Names.named("jsonpAllowed")).toInstance(jsonpAllowed);
 
+            int batchThreads = args.getInt("web.batch_threads", Runtime.getRuntime().availableProcessors());
+            bind(ExecutorService.class).annotatedWith(Names.named("batchExecutor")).
+                    toInstance(createBatchExecutor(batchThreads));
+            bind(Integer.class).annotatedWith(Names.named("batchMaxRequests")).
+                    toInstance(args.getInt("web.batch_max_requests", 100));
+
             bind(RouteSerializer.class).toInstance(new SimpleRouteSerializer(graphHopper.getGraph().getBounds()));
         } catch (Exception ex)
         {
@@ -17,6 +17,7 @@
  */
 package com.graphhopper.http;
 
+import com.graphhopper.util.shapes.GHPoint;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.slf4j.Logger;
@@ -41,10 +42,28 @@ import static javax.servlet.http.HttpServletResponse.SC_OK;
 public class GHBaseServlet extends HttpServlet
 {
     protected static Logger logger = LoggerFactory.getLogger(GHBaseServlet.class);
+    // the buffers are reused for all responses of a thread, see createJsonStreamWriter
+    private static final ThreadLocal<byte[]> jsonBuffers = new ThreadLocal<byte[]>();
     @Inject
     @Named("jsonpAllowed")
     private boolean jsonpAllowed;
 
+    /**
+     * Creates a writer which streams JSON into the output stream of the specified response. The
+     * buffer is reused for all responses of the current thread, so only one writer per thread must
+     * be used at the same time.
+     */
+    protected JsonStreamWriter createJsonStreamWriter( HttpServletResponse res ) throws IOException
+    {
+        byte[] buffer = jsonBuffers.get();
+        if (buffer == null)
+        {
+            buffer = new byte[16 * 1024];
+            jsonBuffers.set(buffer);
+        }
+        return new JsonStreamWriter(res.getOutputStream(), buffer);
+    }
+
     protected void writeJson( HttpServletRequest req, HttpServletResponse res, JSONObject json ) throws JSONException, IOException
     {
         String type = getParam(req, "type", "json");
@@ -123,6 +142,24 @@ public class GHBaseServlet extends HttpServlet
         return new String[0];
     }
 
+    protected List<GHPoint> getPoints( HttpServletRequest req, String key )
+    {
+        String[] pointsAsStr = getParams(req, key);
+        final List<GHPoint> infoPoints = new ArrayList<GHPoint>(pointsAsStr.length);
+        for (String str : pointsAsStr)
+        {
+            String[] fromStrs = str.split(",");
+            if (fromStrs.length == 2)
+            {
+                GHPoint point = GHPoint.parse(str);
+                if (point != null)
+                    infoPoints.add(point);
+            }
+        }
+
+        return infoPoints;
+    }
+
     protected List<Double> getDoubleParamList( HttpServletRequest req, String key )
     {
         String[] l = req.getParameterMap().get(key);
@@ -68,5 +68,17 @@ public class GHServletModule extends ServletModule
 
         serve("/nearest*").with(NearestServlet.class);
         bind(NearestServlet.class).in(Singleton.class);
+
+        serve("/matrix*").with(MatrixServlet.class);
+        bind(MatrixServlet.class).in(Singleton.class);
+
+        serve("/isochrone*").with(IsochroneServlet.class);
+        bind(IsochroneServlet.class).in(Singleton.class);
+
+        if (args.getBool("web.reload_enabled", false))
+        {
+            serve("/reload*").with(ReloadServlet.class);
+            bind(ReloadServlet.class).in(Singleton.class);
+        }
     }
 }
@@ -0,0 +1,244 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.StopWatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds the GraphHopper instance of the servlets and replaces it with a freshly imported graph
+ * under live traffic. Every request acquires the current instance and releases it afterwards.
+ * reload loads the new graph in the background, waits for its warmup, swaps it in and closes the
+ * old instance when all requests which acquired it are released. The old instance is never closed
+ * while it is in use as this would free the memory under the running requests. Acquiring is
+ * lock-free.
+ * <p/>
+ * @author Peter Karich
+ */
+public class GraphHopperHolder
+{
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final CmdArgs args;
+    private final AtomicBoolean reloading = new AtomicBoolean(false);
+    private volatile Entry current;
+    // the replaced instances until all their requests are released
+    private final List<Entry> retired = new CopyOnWriteArrayList<Entry>();
+    private long drainTimeout = 60000;
+    private long warmupTimeout = 600000;
+
+    public GraphHopperHolder( GraphHopper hopper, CmdArgs args )
+    {
+        this.current = new Entry(hopper);
+        this.args = args;
+    }
+
+    /**
+     * Specifies how many milliseconds the reload waits for the release of the requests of the old
+     * instance. Afterwards a warning is logged and the old instance is closed by the last release.
+     */
+    public GraphHopperHolder setDrainTimeout( long drainTimeout )
+    {
+        this.drainTimeout = drainTimeout;
+        return this;
+    }
+
+    /**
+     * Specifies how many milliseconds the reload waits for the warmup of the new instance.
+     * Afterwards a warning is logged and the instance is swapped in without a finished warmup.
+     */
+    public GraphHopperHolder setWarmupTimeout( long warmupTimeout )
+    {
+        this.warmupTimeout = warmupTimeout;
+        return this;
+    }
+
+    /**
+     * @return the current instance which stays open until release is called
+     */
+    public GraphHopper acquire()
+    {
+        while (true)
+        {
+            Entry entry = current;
+            entry.requests.incrementAndGet();
+            // if the instance was swapped in the meantime it could be already closed
+            if (entry == current)
+                return entry.hopper;
+
+            decrement(entry);
+        }
+    }
+
+    public void release( GraphHopper hopper )
+    {
+        Entry entry = current;
+        if (entry.hopper != hopper)
+            entry = findRetired(hopper);
+
+        // null if the old instance is already closed
+        if (entry != null)
+            decrement(entry);
+    }
+
+    private Entry findRetired( GraphHopper hopper )
+    {
+        for (Entry entry : retired)
+        {
+            if (entry.hopper == hopper)
+                return entry;
+        }
+        return null;
+    }
+
+    private void decrement( Entry entry )
+    {
+        // the retired flag is checked after the decrement so that either swap or the last
+        // release sees no requests for a retired instance
+        if (entry.requests.decrementAndGet() == 0 && entry.retired)
+            close(entry);
+    }
+
+    private void close( Entry entry )
+    {
+        if (!entry.closed.compareAndSet(false, true))
+            return;
+
+        retired.remove(entry);
+        entry.hopper.close();
+        logger.info("closed old graph " + entry.hopper.getGraphHopperLocation());
+    }
+
+    public boolean isReloading()
+    {
+        return reloading.get();
+    }
+
+    /**
+     * Loads the graph of the specified folder in a background thread and swaps it in. The graph
+     * has to be imported and prepared before, no import is done here.
+     * <p/>
+     * @return false if a reload is already running
+     */
+    public boolean reload( final String graphLocation )
+    {
+        if (!reloading.compareAndSet(false, true))
+            return false;
+
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    swap(load(graphLocation));
+                } catch (Exception ex)
+                {
+                    logger.error("Couldn't reload graph from " + graphLocation, ex);
+                } finally
+                {
+                    reloading.set(false);
+                }
+            }
+        }, "gh-reload");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * @return a loaded instance with the same configuration as the current one
+     */
+    protected GraphHopper load( String graphLocation ) throws InterruptedException
+    {
+        StopWatch sw = new StopWatch().start();
+        CmdArgs tmpArgs = new CmdArgs();
+        tmpArgs.merge(args);
+        // the graph has to exist, so no OSM file. The config file is already merged into args
+        tmpArgs.remove("osmreader.osm");
+        tmpArgs.remove("config");
+        tmpArgs.put("graph.location", graphLocation);
+        GraphHopper hopper = createGraphHopper(tmpArgs);
+
+        long start = System.currentTimeMillis();
+        while (!hopper.isWarmedUp())
+        {
+            if (System.currentTimeMillis() - start > warmupTimeout)
+            {
+                logger.warn("warmup of reloaded graph " + graphLocation + " not finished after "
+                        + warmupTimeout + "ms, swapping it in anyway");
+                break;
+            }
+            Thread.sleep(100);
+        }
+        logger.info("loaded graph for reload at:" + hopper.getGraphHopperLocation() + ", took:" + sw.stop().getSeconds());
+        return hopper;
+    }
+
+    /**
+     * Creates and loads an instance from the specified arguments. DefaultModule overrides this to
+     * create reloaded instances in the same way as the initial one.
+     */
+    protected GraphHopper createGraphHopper( CmdArgs args )
+    {
+        return new GraphHopper().forServer().init(args).importOrLoad();
+    }
+
+    void swap( GraphHopper hopper ) throws InterruptedException
+    {
+        Entry old = current;
+        retired.add(old);
+        current = new Entry(hopper);
+        old.retired = true;
+        logger.info("swapped graph " + old.hopper.getGraphHopperLocation() + " with " + hopper.getGraphHopperLocation());
+
+        long start = System.currentTimeMillis();
+        while (old.requests.get() > 0)
+        {
+            if (System.currentTimeMillis() - start > drainTimeout)
+            {
+                logger.warn("old graph is still used by " + old.requests.get()
+                        + " requests after the drain timeout, it is closed when they are finished");
+                return;
+            }
+            Thread.sleep(10);
+        }
+        close(old);
+    }
+
+    private static class Entry
+    {
+        final GraphHopper hopper;
+        final AtomicInteger requests = new AtomicInteger();
+        final AtomicBoolean closed = new AtomicBoolean(false);
+        volatile boolean retired;
+
+        Entry( GraphHopper hopper )
+        {
+            this.hopper = hopper;
+        }
+    }
+}
@@ -24,11 +24,14 @@ import com.graphhopper.routing.util.FlagEncoder;
 import com.graphhopper.routing.util.WeightingMap;
 import com.graphhopper.util.StopWatch;
 import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -38,12 +41,18 @@ import javax.xml.transform.Transformer;
 import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.StringWriter;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_OK;
 
 /**
  * Servlet to use GraphHopper in a remote client application like mobile or browser. Note: If type
@@ -56,15 +65,191 @@ import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
 public class GraphHopperServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
     @Inject
     private RouteSerializer routeSerializer;
+    @Inject
+    @Named("batchExecutor")
+    private ExecutorService batchExecutor;
+    @Inject
+    @Named("batchMaxRequests")
+    private int maxBatchRequests;
 
     @Override
     public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
     {
-        List<GHPoint> infoPoints = getPoints(httpReq, "point");
+        StopWatch sw = new StopWatch().start();
         GHResponse ghRsp = new GHResponse();
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            GHRequest request = createRequest(hopper, httpReq, ghRsp);
+            if (!ghRsp.hasErrors())
+                ghRsp = hopper.route(request);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+
+        float took = sw.stop().getSeconds();
+        log(httpReq, ghRsp, took);
+        boolean writeGPX = "gpx".equalsIgnoreCase(getParam(httpReq, "type", "json"));
+        if (writeGPX)
+        {
+            String xml = createGPXString(httpReq, httpRes, ghRsp);
+            if (ghRsp.hasErrors())
+            {
+                httpRes.setStatus(SC_BAD_REQUEST);
+                httpRes.getWriter().append(xml);
+            } else
+            {
+                writeResponse(httpRes, xml);
+            }
+        } else if (isBinaryRequested(httpReq))
+        {
+            httpRes.setContentType(BinaryRouteFormat.CONTENT_TYPE);
+            httpRes.setStatus(ghRsp.hasErrors() ? SC_BAD_REQUEST : SC_OK);
+            OutputStream out = new BufferedOutputStream(httpRes.getOutputStream());
+            BinaryRouteFormat.write(out, ghRsp,
+                    getBooleanParam(httpReq, "calc_points", true),
+                    getBooleanParam(httpReq, "elevation", false),
+                    getBooleanParam(httpReq, "instructions", true),
+                    Math.round(took * 1000));
+        } else if (ghRsp.hasErrors())
+        {
+            writeJsonError(httpRes, SC_BAD_REQUEST, toJSON(httpReq, ghRsp, took));
+        } else if (!"json".equals(getParam(httpReq, "type", "json"))
+                || getBooleanParam(httpReq, "debug", false) || getBooleanParam(httpReq, "pretty", false))
+        {
+            // jsonp and pretty printing are not streamed
+            writeJson(httpReq, httpRes, toJSON(httpReq, ghRsp, took));
+        } else
+        {
+            httpRes.setContentType("application/json");
+            httpRes.setCharacterEncoding("UTF-8");
+            httpRes.setStatus(SC_OK);
+            JsonStreamWriter writer = createJsonStreamWriter(httpRes);
+            writeJSON(writer, httpReq, ghRsp, took);
+            writer.flush();
+        }
+    }
+
+    /**
+     * Calculates a batch of independent routes. The body is a JSON array where every entry is an
+     * object with the same parameters as a GET request, arrays are used for repeated parameters like
+     * point. The routes are calculated in parallel and the response is a JSON array with one route
+     * response per entry in the order of the request, written as soon as the next entry is ready.
+     */
+    @Override
+    public void doPost( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        StopWatch sw = new StopWatch().start();
+        JSONArray entries;
+        try
+        {
+            entries = new JSONArray(WebHelper.readString(httpReq.getInputStream()));
+        } catch (JSONException ex)
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "Cannot parse batch request, a JSON array is expected. " + ex.getMessage());
+            return;
+        }
+
+        if (entries.length() > maxBatchRequests)
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "Too many requests in batch: " + entries.length()
+                    + ", maximum is " + maxBatchRequests);
+            return;
+        }
+
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            routeBatch(hopper, httpReq, httpRes, entries, sw);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+    }
+
+    private void routeBatch( GraphHopper hopper, HttpServletRequest httpReq, HttpServletResponse httpRes,
+                             JSONArray entries, StopWatch sw ) throws IOException
+    {
+        List<HttpServletRequest> entryRequests = new ArrayList<HttpServletRequest>(entries.length());
+        List<GHResponse> invalidResponses = new ArrayList<GHResponse>(entries.length());
+        List<GHRequest> requests = new ArrayList<GHRequest>(entries.length());
+        for (int i = 0; i < entries.length(); i++)
+        {
+            HttpServletRequest entryReq = new JSONParameterRequest(httpReq, entries.getJSONObject(i));
+            GHResponse ghRsp = new GHResponse();
+            GHRequest request = createRequest(hopper, entryReq, ghRsp);
+            entryRequests.add(entryReq);
+            if (ghRsp.hasErrors())
+            {
+                invalidResponses.add(ghRsp);
+            } else
+            {
+                invalidResponses.add(null);
+                requests.add(request);
+            }
+        }
+
+        List<Future<GHResponse>> futureList = hopper.route(requests, batchExecutor);
+        try
+        {
+            Iterator<Future<GHResponse>> futures = futureList.iterator();
+            httpRes.setContentType("application/json");
+            httpRes.setCharacterEncoding("UTF-8");
+            httpRes.setStatus(SC_OK);
+            JsonStreamWriter writer = createJsonStreamWriter(httpRes);
+            writer.startArray();
+            for (int i = 0; i < entryRequests.size(); i++)
+            {
+                GHResponse ghRsp = invalidResponses.get(i);
+                if (ghRsp == null)
+                    ghRsp = getResponse(futures.next());
+
+                // the time until this entry was ready
+                float took = sw.stop().getSeconds();
+                sw.start();
+                log(entryRequests.get(i), ghRsp, took);
+                writeJSON(writer, entryRequests.get(i), ghRsp, took);
+                writer.flush();
+            }
+            writer.endArray();
+            writer.flush();
+        } finally
+        {
+            // e.g. if the client disconnected the queued requests must not start after the graph
+            // is released
+            for (Future<GHResponse> future : futureList)
+            {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private GHResponse getResponse( Future<GHResponse> future )
+    {
+        try
+        {
+            return future.get();
+        } catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return new GHResponse().addError(ex);
+        } catch (ExecutionException ex)
+        {
+            return new GHResponse().addError(ex.getCause());
+        }
+    }
+
+    /**
+     * Creates the routing request from the parameters. Invalid parameters are added as errors to
+     * the specified response.
+     */
+    protected GHRequest createRequest( GraphHopper hopper, HttpServletRequest httpReq, GHResponse ghRsp )
+    {
+        List<GHPoint> infoPoints = getPoints(httpReq, "point");
 
         // we can reduce the path length based on the maximum differences to the original coordinates
         double minPathPrecision = getDoubleParam(httpReq, "way_point_max_distance", 1d);
@@ -72,7 +257,6 @@ public class GraphHopperServlet extends GHBaseServlet
         boolean enableInstructions = writeGPX || getBooleanParam(httpReq, "instructions", true);
         boolean calcPoints = getBooleanParam(httpReq, "calc_points", true);
         boolean enableElevation = getBooleanParam(httpReq, "elevation", false);
-        boolean pointsEncoded = getBooleanParam(httpReq, "points_encoded", true);
 
         String vehicleStr = getParam(httpReq, "vehicle", "car");
         String weighting = getParam(httpReq, "weighting", "fastest");
@@ -88,7 +272,6 @@ public class GraphHopperServlet extends GHBaseServlet
             throw new RuntimeException(e);
         }
 
-        StopWatch sw = new StopWatch().start();
         if (!hopper.getEncodingManager().supports(vehicleStr))
         {
             ghRsp.addError(new IllegalArgumentException("Vehicle not supported: " + vehicleStr));
@@ -99,46 +282,48 @@ public class GraphHopperServlet extends GHBaseServlet
         {
             ghRsp.addError(new IllegalArgumentException("number of headings must be <= 1 or equal number of points"));
         }
-        if (!ghRsp.hasErrors())
-        {
-            FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicleStr);
+        if (ghRsp.hasErrors())
+            return null;
+
+        FlagEncoder algoVehicle = hopper.getEncodingManager().getEncoder(vehicleStr);
 
-            GHRequest request;
-            if (favoredHeadings.size() > 0)
+        GHRequest request;
+        if (favoredHeadings.size() > 0)
+        {
+            // if only one favored heading is specified take as start heading
+            if (favoredHeadings.size() == 1)
             {
-                // if only one favored heading is specified take as start heading
-                if (favoredHeadings.size() == 1)
-                {
-                    List<Double> paddedHeadings = new ArrayList<Double>(Collections.nCopies(infoPoints.size(),
-                            Double.NaN));
-                    paddedHeadings.set(0, favoredHeadings.get(0));
-                    request = new GHRequest(infoPoints, paddedHeadings);
-                } else
-                {
-                    request = new GHRequest(infoPoints, favoredHeadings);
-                }
+                List<Double> paddedHeadings = new ArrayList<Double>(Collections.nCopies(infoPoints.size(),
+                        Double.NaN));
+                paddedHeadings.set(0, favoredHeadings.get(0));
+                request = new GHRequest(infoPoints, paddedHeadings);
             } else
             {
-                request = new GHRequest(infoPoints);
+                request = new GHRequest(infoPoints, favoredHeadings);
             }
-
-            initHints(request, httpReq.getParameterMap());
-            request.setVehicle(algoVehicle.toString()).
-                    setWeighting(weighting).
-                    setAlgorithm(algoStr).
-                    setLocale(localeStr).
-                    getHints().
-                    put("calcPoints", calcPoints).
-                    put("instructions", enableInstructions).
-                    put("wayPointMaxDistance", minPathPrecision);
-
-            ghRsp = hopper.route(request);
+        } else
+        {
+            request = new GHRequest(infoPoints);
         }
 
-        float took = sw.stop().getSeconds();
+        initHints(request, httpReq.getParameterMap());
+        request.setVehicle(algoVehicle.toString()).
+                setWeighting(weighting).
+                setAlgorithm(algoStr).
+                setLocale(localeStr).
+                getHints().
+                put("calcPoints", calcPoints).
+                put("instructions", enableInstructions).
+                put("wayPointMaxDistance", minPathPrecision);
+        return request;
+    }
+
+    private void log( HttpServletRequest httpReq, GHResponse ghRsp, float took )
+    {
         String infoStr = httpReq.getRemoteAddr() + " " + httpReq.getLocale() + " " + httpReq.getHeader("User-Agent");
-        String logStr = httpReq.getQueryString() + " " + infoStr + " " + infoPoints + ", took:"
-                + took + ", " + algoStr + ", " + weighting + ", " + vehicleStr;
+        String logStr = httpReq.getQueryString() + " " + infoStr + " " + getPoints(httpReq, "point") + ", took:"
+                + took + ", " + getParam(httpReq, "algorithm", "") + ", " + getParam(httpReq, "weighting", "fastest")
+                + ", " + getParam(httpReq, "vehicle", "car");
 
         if (ghRsp.hasErrors())
             logger.error(logStr + ", errors:" + ghRsp.getErrors());
@@ -146,32 +331,47 @@ public class GraphHopperServlet extends GHBaseServlet
             logger.info(logStr + ", distance: " + ghRsp.getDistance()
                     + ", time:" + Math.round(ghRsp.getTime() / 60000f)
                     + "min, points:" + ghRsp.getPoints().getSize() + ", debug - " + ghRsp.getDebugInfo());
+    }
 
-        if (writeGPX)
-        {
-            String xml = createGPXString(httpReq, httpRes, ghRsp);
-            if (ghRsp.hasErrors())
-            {
-                httpRes.setStatus(SC_BAD_REQUEST);
-                httpRes.getWriter().append(xml);
-            } else
-            {
-                writeResponse(httpRes, xml);
-            }
-        } else
-        {
-            Map<String, Object> map = routeSerializer.toJSON(ghRsp, calcPoints, pointsEncoded,
-                    enableElevation, enableInstructions);
+    private JSONObject toJSON( HttpServletRequest httpReq, GHResponse ghRsp, float took )
+    {
+        boolean writeGPX = "gpx".equalsIgnoreCase(getParam(httpReq, "type", "json"));
+        boolean enableInstructions = writeGPX || getBooleanParam(httpReq, "instructions", true);
+        Map<String, Object> map = routeSerializer.toJSON(ghRsp,
+                getBooleanParam(httpReq, "calc_points", true),
+                getBooleanParam(httpReq, "points_encoded", true),
+                getBooleanParam(httpReq, "elevation", false),
+                enableInstructions);
 
-            Object infoMap = map.get("info");
-            if (infoMap != null)
-                ((Map) infoMap).put("took", Math.round(took * 1000));
+        Object infoMap = map.get("info");
+        if (infoMap != null)
+            ((Map) infoMap).put("took", Math.round(took * 1000));
 
-            if (ghRsp.hasErrors())
-                writeJsonError(httpRes, SC_BAD_REQUEST, new JSONObject(map));
-            else
-                writeJson(httpReq, httpRes, new JSONObject(map));
-        }
+        return new JSONObject(map);
+    }
+
+    /**
+     * @return true if the binary format is requested via type=binary or the Accept header
+     */
+    protected boolean isBinaryRequested( HttpServletRequest httpReq )
+    {
+        if ("binary".equals(getParam(httpReq, "type", "json")))
+            return true;
+
+        String accept = httpReq.getHeader("Accept");
+        return accept != null && accept.contains(BinaryRouteFormat.CONTENT_TYPE);
+    }
+
+    private void writeJSON( JsonStreamWriter writer, HttpServletRequest httpReq, GHResponse ghRsp, float took )
+            throws IOException
+    {
+        boolean writeGPX = "gpx".equalsIgnoreCase(getParam(httpReq, "type", "json"));
+        boolean enableInstructions = writeGPX || getBooleanParam(httpReq, "instructions", true);
+        routeSerializer.writeJSON(writer, ghRsp,
+                getBooleanParam(httpReq, "calc_points", true),
+                getBooleanParam(httpReq, "points_encoded", true),
+                getBooleanParam(httpReq, "elevation", false),
+                enableInstructions, Math.round(took * 1000));
     }
 
     protected String createGPXString( HttpServletRequest req, HttpServletResponse res, GHResponse rsp )
@@ -231,24 +431,6 @@ public class GraphHopperServlet extends GHBaseServlet
         }
     }
 
-    protected List<GHPoint> getPoints( HttpServletRequest req, String key )
-    {
-        String[] pointsAsStr = getParams(req, key);
-        final List<GHPoint> infoPoints = new ArrayList<GHPoint>(pointsAsStr.length);
-        for (String str : pointsAsStr)
-        {
-            String[] fromStrs = str.split(",");
-            if (fromStrs.length == 2)
-            {
-                GHPoint point = GHPoint.parse(str);
-                if (point != null)
-                    infoPoints.add(point);
-            }
-        }
-
-        return infoPoints;
-    }
-
     protected void initHints( GHRequest request, Map<String, String[]> parameterMap )
     {
         WeightingMap m = request.getHints();
@@ -23,6 +23,8 @@ import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.util.*;
 import com.graphhopper.util.shapes.GHPoint;
 
+import java.io.BufferedInputStream;
+import java.io.InputStream;
 import java.util.List;
 
 import org.json.JSONArray;
@@ -44,6 +46,7 @@ public class GraphHopperWeb implements GraphHopperAPI
     private boolean instructions = true;
     private boolean calcPoints = true;
     private boolean elevation = false;
+    private boolean binary = false;
 
     public GraphHopperWeb()
     {
@@ -88,6 +91,16 @@ public class GraphHopperWeb implements GraphHopperAPI
         return this;
     }
 
+    /**
+     * Requests the compact binary response format instead of JSON which is smaller and faster to
+     * parse, see BinaryRouteFormat. The routing service has to support it.
+     */
+    public GraphHopperWeb setBinary( boolean binary )
+    {
+        this.binary = binary;
+        return this;
+    }
+
     @Override
     public GHResponse route( GHRequest request )
     {
@@ -111,10 +124,11 @@ public class GraphHopperWeb implements GraphHopperAPI
             boolean tmpElevation = request.getHints().getBool("elevation", elevation);
             String tmpKey = request.getHints().get("key", key);
 
+            boolean tmpBinary = request.getHints().getBool("binary", binary);
             String url = routeServiceUrl
                     + "?"
                     + places
-                    + "&type=json"
+                    + "&type=" + (tmpBinary ? "binary" : "json")
                     + "&instructions=" + tmpInstructions
                     + "&points_encoded=true"
                     + "&calc_points=" + tmpCalcPoints
@@ -128,10 +142,23 @@ public class GraphHopperWeb implements GraphHopperAPI
             if (!tmpKey.isEmpty())
                 url += "&key=" + tmpKey;
 
+            GHResponse res = new GHResponse();
+            if (tmpBinary)
+            {
+                InputStream is = downloader.fetch(url);
+                try
+                {
+                    took = BinaryRouteFormat.read(new BufferedInputStream(is), res);
+                } finally
+                {
+                    is.close();
+                }
+                return res;
+            }
+
             String str = downloader.downloadAsString(url);
             JSONObject json = new JSONObject(str);
 
-            GHResponse res = new GHResponse();
             readErrors(res.getErrors(), json);
             if (res.hasErrors())
                 return res;
@@ -192,27 +219,9 @@ public class GraphHopperWeb implements GraphHopperAPI
                         ia = new InstructionAnnotation(jsonObj.getInt("annotation_importance"), jsonObj.getString("annotation_text"));
                     }
 
-                    Instruction instr;
-                    if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
-                    {
-                        instr = new RoundaboutInstruction(sign, text, ia, instPL);
-                    } else if (sign == Instruction.REACHED_VIA)
-                    {
-                        ViaInstruction tmpInstr = new ViaInstruction(text, ia, instPL);
-                        tmpInstr.setViaCount(viaCount);
+                    Instruction instr = createInstruction(sign, text, ia, instPL, viaCount);
+                    if (sign == Instruction.REACHED_VIA)
                         viaCount++;
-                        instr = tmpInstr;
-                    } else if (sign == Instruction.FINISH)
-                    {
-                        instr = new FinishInstruction(instPL, 0);
-                    } else
-                    {
-                        instr = new Instruction(sign, text, ia, instPL);
-                    }
-
-                    // The translation is done from the routing service so just use the provided string
-                    // instead of creating a combination with sign and name etc
-                    instr.setUseRawName();
 
                     instr.setDistance(instDist).setTime(instTime);
                     il.add(instr);
@@ -223,6 +232,36 @@ public class GraphHopperWeb implements GraphHopperAPI
         res.setDistance(distance).setTime(time);
     }
 
+    /**
+     * Creates the instruction for the specified sign which uses the text from the routing service
+     * as is.
+     */
+    static Instruction createInstruction( int sign, String text, InstructionAnnotation ia, PointList instPL,
+                                          int viaCount )
+    {
+        Instruction instr;
+        if (sign == Instruction.USE_ROUNDABOUT || sign == Instruction.LEAVE_ROUNDABOUT)
+        {
+            instr = new RoundaboutInstruction(sign, text, ia, instPL);
+        } else if (sign == Instruction.REACHED_VIA)
+        {
+            ViaInstruction tmpInstr = new ViaInstruction(text, ia, instPL);
+            tmpInstr.setViaCount(viaCount);
+            instr = tmpInstr;
+        } else if (sign == Instruction.FINISH)
+        {
+            instr = new FinishInstruction(instPL, 0);
+        } else
+        {
+            instr = new Instruction(sign, text, ia, instPL);
+        }
+
+        // The translation is done from the routing service so just use the provided string
+        // instead of creating a combination with sign and name etc
+        instr.setUseRawName();
+        return instr;
+    }
+
     public static void readErrors( List<Throwable> errors, JSONObject json )
     {
         JSONArray errorJson;
@@ -258,22 +297,30 @@ public class GraphHopperWeb implements GraphHopperAPI
                 exClass = error.getString("details");
 
             String exMessage = error.getString("message");
-
-            if (exClass.equals(UnsupportedOperationException.class.getName()))
-                errors.add(new UnsupportedOperationException(exMessage));
-            else if (exClass.equals(IllegalStateException.class.getName()))
-                errors.add(new IllegalStateException(exMessage));
-            else if (exClass.equals(RuntimeException.class.getName()))
-                errors.add(new RuntimeException(exMessage));
-            else if (exClass.equals(IllegalArgumentException.class.getName()))
-                errors.add(new IllegalArgumentException(exMessage));
-            else if (exClass.isEmpty())
-                errors.add(new RuntimeException(exMessage));
-            else
-                errors.add(new RuntimeException(exClass + " " + exMessage));
+            errors.add(createError(exClass, exMessage));
         }
 
         if (json.has("message") && errors.isEmpty())
             errors.add(new RuntimeException(json.getString("message")));
     }
+
+    /**
+     * @return the exception of the specified class name if it is a known one, otherwise a
+     * RuntimeException
+     */
+    static RuntimeException createError( String exClass, String exMessage )
+    {
+        if (exClass.equals(UnsupportedOperationException.class.getName()))
+            return new UnsupportedOperationException(exMessage);
+        else if (exClass.equals(IllegalStateException.class.getName()))
+            return new IllegalStateException(exMessage);
+        else if (exClass.equals(RuntimeException.class.getName()))
+            return new RuntimeException(exMessage);
+        else if (exClass.equals(IllegalArgumentException.class.getName()))
+            return new IllegalArgumentException(exMessage);
+        else if (exClass.isEmpty())
+            return new RuntimeException(exMessage);
+        else
+            return new RuntimeException(exClass + " " + exMessage);
+    }
 }
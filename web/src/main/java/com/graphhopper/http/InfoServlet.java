@@ -18,6 +18,8 @@
 package com.graphhopper.http;
 
 import com.graphhopper.GraphHopper;
+import com.graphhopper.storage.Directory;
+import com.graphhopper.storage.GHDirectory;
 import com.graphhopper.storage.StorableProperties;
 import com.graphhopper.util.Constants;
 import com.graphhopper.util.Helper;
@@ -42,10 +44,25 @@ import org.json.JSONObject;
 public class InfoServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
 
     @Override
     public void doGet( HttpServletRequest req, HttpServletResponse res ) throws ServletException, IOException
+    {
+        JSONObject json;
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            json = createInfo(hopper);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+        json.put("reloading", hopperHolder.isReloading());
+        writeJson(req, res, json);
+    }
+
+    private JSONObject createInfo( GraphHopper hopper )
     {
         BBox bb = hopper.getGraph().getBounds();
         List<Double> list = new ArrayList<Double>(4);
@@ -77,6 +94,11 @@ public class InfoServlet extends GHBaseServlet
         if (!Helper.isEmpty(props.get("prepare.date")))
             json.put("prepare_date", props.get("prepare.date"));
 
-        writeJson(req, res, json);
+        json.put("warmed_up", hopper.isWarmedUp());
+        Directory dir = hopper.getGraph().getDirectory();
+        if (dir instanceof GHDirectory)
+            json.put("residency", ((GHDirectory) dir).getResidency());
+
+        return json;
     }
 }
@@ -0,0 +1,165 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHIsochroneRequest;
+import com.graphhopper.GHIsochroneResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.ConvexHull;
+import com.graphhopper.util.PointList;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+/**
+ * Calculates the area reachable from the specified point within time_limit seconds or
+ * distance_limit meters. The area is split into the specified number of buckets where every bucket
+ * contains the polygon of all locations reachable within (bucket + 1) / buckets of the time limit.
+ * If only the distance limit is specified the buckets are split by distance. The polygon is the
+ * convex hull of the reached locations.
+ * <p/>
+ * @author Peter Karich
+ */
+public class IsochroneServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperHolder hopperHolder;
+
+    @Override
+    public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        List<GHPoint> points = getPoints(httpReq, "point");
+        String vehicleStr = getParam(httpReq, "vehicle", "car");
+        String weighting = getParam(httpReq, "weighting", "fastest");
+        long timeLimit = getLongParam(httpReq, "time_limit", -1);
+        double distanceLimit = getDoubleParam(httpReq, "distance_limit", -1);
+        if (timeLimit < 0 && distanceLimit < 0)
+            timeLimit = 600;
+
+        int buckets = (int) getLongParam(httpReq, "buckets", 1);
+        StopWatch sw = new StopWatch().start();
+        GHIsochroneResponse ghRsp;
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            if (points.size() != 1)
+            {
+                ghRsp = new GHIsochroneResponse().addError(new IllegalArgumentException("Specify exactly one point but was " + points.size()));
+            } else if (buckets < 1 || buckets > 20)
+            {
+                ghRsp = new GHIsochroneResponse().addError(new IllegalArgumentException("Number of buckets has to be in [1, 20] but was " + buckets));
+            } else if (!hopper.getEncodingManager().supports(vehicleStr))
+            {
+                ghRsp = new GHIsochroneResponse().addError(new IllegalArgumentException("Vehicle not supported: " + vehicleStr));
+            } else
+            {
+                GHIsochroneRequest request = new GHIsochroneRequest(points.get(0)).
+                        setVehicle(vehicleStr).
+                        setWeighting(weighting);
+                if (timeLimit >= 0)
+                    request.setTimeLimit(timeLimit * 1000);
+                if (distanceLimit >= 0)
+                    request.setDistanceLimit(distanceLimit);
+
+                for (Map.Entry<String, String[]> e : httpReq.getParameterMap().entrySet())
+                {
+                    if (e.getValue().length == 1)
+                        request.getHints().put(e.getKey(), e.getValue()[0]);
+                }
+                ghRsp = hopper.isochrone(request);
+            }
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+
+        float took = sw.stop().getSeconds();
+        String logStr = httpReq.getQueryString() + " " + httpReq.getRemoteAddr() + " " + points
+                + ", took:" + took + ", " + weighting + ", " + vehicleStr;
+
+        JSONObject json = new JSONObject();
+        if (ghRsp.hasErrors())
+        {
+            logger.error(logStr + ", errors:" + ghRsp.getErrors());
+            json.put("message", ghRsp.getErrors().get(0).getMessage());
+            JSONArray hints = new JSONArray();
+            for (Throwable t : ghRsp.getErrors())
+            {
+                JSONObject hint = new JSONObject();
+                hint.put("message", t.getMessage());
+                hint.put("details", t.getClass().getName());
+                hints.put(hint);
+            }
+            json.put("hints", hints);
+            writeJsonError(httpRes, SC_BAD_REQUEST, json);
+            return;
+        }
+
+        logger.info(logStr + ", reached:" + ghRsp.size() + ", debug - " + ghRsp.getDebugInfo());
+        JSONArray polygons = new JSONArray();
+        for (int bucket = 0; bucket < buckets; bucket++)
+        {
+            JSONObject polygon = new JSONObject();
+            polygon.put("bucket", bucket);
+            PointList reached;
+            if (timeLimit >= 0)
+            {
+                long bucketLimit = timeLimit * 1000 * (bucket + 1) / buckets;
+                polygon.put("time_limit", bucketLimit / 1000);
+                reached = ghRsp.getPoints(bucketLimit);
+            } else
+            {
+                double bucketLimit = distanceLimit * (bucket + 1) / buckets;
+                polygon.put("distance_limit", bucketLimit);
+                reached = getPointsWithin(ghRsp, bucketLimit);
+            }
+            polygon.put("coordinates", ConvexHull.calc(reached).toGeoJson());
+            polygons.put(polygon);
+        }
+        json.put("polygons", polygons);
+
+        JSONObject info = new JSONObject();
+        info.put("took", Math.round(took * 1000));
+        info.put("reached", ghRsp.size());
+        json.put("info", info);
+        writeJson(httpReq, httpRes, json);
+    }
+
+    private PointList getPointsWithin( GHIsochroneResponse ghRsp, double distanceLimit )
+    {
+        PointList all = ghRsp.getPoints();
+        PointList list = new PointList(all.getSize(), false);
+        for (int i = 0; i < all.getSize(); i++)
+        {
+            if (ghRsp.getDistance(i) <= distanceLimit)
+                list.add(all.getLat(i), all.getLon(i));
+        }
+        return list;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Exposes the entries of a JSON object as request parameters so that one entry of a batch request
+ * can be handled like a GET request. Array values become multiple parameter values with the same
+ * key, e.g. {"point": ["51.1,12.1", "51.2,12.2"]} is identical to point=51.1,12.1&point=51.2,12.2
+ * <p/>
+ * @author Peter Karich
+ */
+class JSONParameterRequest extends HttpServletRequestWrapper
+{
+    private final Map<String, String[]> params = new HashMap<String, String[]>();
+    private final String queryString;
+
+    public JSONParameterRequest( HttpServletRequest req, JSONObject json )
+    {
+        super(req);
+        queryString = json.toString();
+        Iterator<String> iter = json.keys();
+        while (iter.hasNext())
+        {
+            String key = iter.next();
+            Object value = json.get(key);
+            if (value instanceof JSONArray)
+            {
+                JSONArray arr = (JSONArray) value;
+                String[] values = new String[arr.length()];
+                for (int i = 0; i < arr.length(); i++)
+                {
+                    values[i] = arr.get(i).toString();
+                }
+                params.put(key, values);
+            } else
+            {
+                params.put(key, new String[]
+                {
+                    value.toString()
+                });
+            }
+        }
+    }
+
+    @Override
+    public String getParameter( String name )
+    {
+        String[] values = params.get(name);
+        return values == null || values.length == 0 ? null : values[0];
+    }
+
+    @Override
+    public String[] getParameterValues( String name )
+    {
+        return params.get(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap()
+    {
+        return Collections.unmodifiableMap(params);
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames()
+    {
+        return Collections.enumeration(params.keySet());
+    }
+
+    @Override
+    public String getQueryString()
+    {
+        return queryString;
+    }
+}
@@ -0,0 +1,426 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Writes JSON directly as UTF-8 into an OutputStream without creating intermediate maps or
+ * strings. All values are encoded into a byte buffer which is only written to the stream if it is
+ * full or on flush, so the buffer can be reused for several responses, e.g. one per thread.
+ * <p/>
+ * The methods have to be called in a valid order, e.g. name only within an object and before
+ * every value of it, otherwise an IllegalStateException is thrown.
+ * <p/>
+ * @author Peter Karich
+ */
+public class JsonStreamWriter
+{
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+    private final OutputStream out;
+    private final byte[] buffer;
+    private int position;
+    // per nesting level: 'o' for an object, 'n' for an object after a name and 'a' for an array
+    private char[] scopes = new char[16];
+    // true if the current level has no entry yet
+    private boolean[] empty = new boolean[16];
+    private int depth;
+
+    public JsonStreamWriter( OutputStream out )
+    {
+        this(out, new byte[8 * 1024]);
+    }
+
+    /**
+     * @param buffer the buffer for the encoded bytes, its content is overwritten
+     */
+    public JsonStreamWriter( OutputStream out, byte[] buffer )
+    {
+        if (buffer.length < 32)
+            throw new IllegalArgumentException("Buffer is too small " + buffer.length);
+
+        this.out = out;
+        this.buffer = buffer;
+    }
+
+    public JsonStreamWriter startObject() throws IOException
+    {
+        beforeValue();
+        writeByte('{');
+        push('o');
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException
+    {
+        pop('o');
+        writeByte('}');
+        return this;
+    }
+
+    public JsonStreamWriter startArray() throws IOException
+    {
+        beforeValue();
+        writeByte('[');
+        push('a');
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException
+    {
+        pop('a');
+        writeByte(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next entry of the current object.
+     */
+    public JsonStreamWriter name( String name ) throws IOException
+    {
+        if (depth == 0 || scopes[depth - 1] != 'o')
+            throw new IllegalStateException("A name is only allowed within an object");
+
+        if (!empty[depth - 1])
+            writeByte(',');
+
+        empty[depth - 1] = false;
+        writeString(name);
+        writeByte(':');
+        scopes[depth - 1] = 'n';
+        return this;
+    }
+
+    public JsonStreamWriter value( CharSequence value ) throws IOException
+    {
+        if (value == null)
+            return nullValue();
+
+        beforeValue();
+        writeString(value);
+        return this;
+    }
+
+    public JsonStreamWriter value( long value ) throws IOException
+    {
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    /**
+     * Writes the number like org.json does: integral values without fraction and NaN or infinite
+     * values as null.
+     */
+    public JsonStreamWriter value( double value ) throws IOException
+    {
+        if (Double.isNaN(value) || Double.isInfinite(value))
+            return nullValue();
+
+        beforeValue();
+        if (value == (long) value && Math.abs(value) < 1e15)
+            writeLong((long) value);
+        else
+            writeAscii(Double.toString(value));
+        return this;
+    }
+
+    public JsonStreamWriter value( boolean value ) throws IOException
+    {
+        beforeValue();
+        writeAscii(value ? "true" : "false");
+        return this;
+    }
+
+    public JsonStreamWriter nullValue() throws IOException
+    {
+        beforeValue();
+        writeAscii("null");
+        return this;
+    }
+
+    /**
+     * Writes maps, collections, arrays, numbers, booleans and strings. Other objects are written via
+     * their toString method.
+     */
+    public JsonStreamWriter value( Object value ) throws IOException
+    {
+        if (value == null)
+            return nullValue();
+
+        if (value instanceof CharSequence)
+            return value((CharSequence) value);
+
+        if (value instanceof Double || value instanceof Float)
+            return value(((Number) value).doubleValue());
+
+        if (value instanceof Number)
+            return value(((Number) value).longValue());
+
+        if (value instanceof Boolean)
+            return value(((Boolean) value).booleanValue());
+
+        if (value instanceof Map)
+        {
+            startObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet())
+            {
+                name(String.valueOf(entry.getKey()));
+                value(entry.getValue());
+            }
+            return endObject();
+        }
+
+        if (value instanceof Collection)
+        {
+            startArray();
+            for (Object item : (Collection<?>) value)
+            {
+                value(item);
+            }
+            return endArray();
+        }
+
+        if (value.getClass().isArray())
+        {
+            startArray();
+            int length = Array.getLength(value);
+            for (int i = 0; i < length; i++)
+            {
+                value(Array.get(value, i));
+            }
+            return endArray();
+        }
+
+        return value(value.toString());
+    }
+
+    /**
+     * Writes the specified characters as they are, e.g. a callback name or separator between two
+     * JSON documents.
+     */
+    public JsonStreamWriter raw( String str ) throws IOException
+    {
+        for (int i = 0; i < str.length(); i++)
+        {
+            writeChar(str, i);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the buffered bytes to the stream and flushes it.
+     */
+    public void flush() throws IOException
+    {
+        flushBuffer();
+        out.flush();
+    }
+
+    private void push( char scope )
+    {
+        if (depth == scopes.length)
+        {
+            scopes = Arrays.copyOf(scopes, depth * 2);
+            empty = Arrays.copyOf(empty, depth * 2);
+        }
+        scopes[depth] = scope;
+        empty[depth] = true;
+        depth++;
+    }
+
+    private void pop( char scope )
+    {
+        if (depth == 0 || scopes[depth - 1] != scope)
+            throw new IllegalStateException("Cannot end " + (scope == 'o' ? "object" : "array") + " here");
+
+        depth--;
+    }
+
+    private void beforeValue() throws IOException
+    {
+        if (depth == 0)
+            return;
+
+        char scope = scopes[depth - 1];
+        if (scope == 'o')
+            throw new IllegalStateException("A value within an object needs a name");
+
+        if (scope == 'n')
+        {
+            scopes[depth - 1] = 'o';
+            return;
+        }
+
+        if (!empty[depth - 1])
+            writeByte(',');
+
+        empty[depth - 1] = false;
+    }
+
+    private void writeString( CharSequence str ) throws IOException
+    {
+        writeByte('"');
+        int length = str.length();
+        for (int i = 0; i < length; i++)
+        {
+            char c = str.charAt(i);
+            switch (c)
+            {
+                case '"':
+                case '\\':
+                    writeByte('\\');
+                    writeByte(c);
+                    break;
+                case '\n':
+                    writeAscii("\\n");
+                    break;
+                case '\r':
+                    writeAscii("\\r");
+                    break;
+                case '\t':
+                    writeAscii("\\t");
+                    break;
+                case '\b':
+                    writeAscii("\\b");
+                    break;
+                case '\f':
+                    writeAscii("\\f");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        writeAscii("\\u00");
+                        writeByte(HEX[c >> 4]);
+                        writeByte(HEX[c & 0xF]);
+                    } else
+                    {
+                        i = writeChar(str, i);
+                    }
+            }
+        }
+        writeByte('"');
+    }
+
+    /**
+     * Encodes the character at the specified index as UTF-8.
+     * <p/>
+     * @return the index of the last consumed character which differs for surrogate pairs
+     */
+    private int writeChar( CharSequence str, int index ) throws IOException
+    {
+        char c = str.charAt(index);
+        if (c < 0x80)
+        {
+            writeByte(c);
+        } else if (c < 0x800)
+        {
+            ensureBuffer(2);
+            buffer[position++] = (byte) (0xC0 | (c >> 6));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && index + 1 < str.length()
+                && Character.isLowSurrogate(str.charAt(index + 1)))
+        {
+            int codePoint = Character.toCodePoint(c, str.charAt(index + 1));
+            ensureBuffer(4);
+            buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+            return index + 1;
+        } else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)
+        {
+            // invalid surrogate
+            writeByte('?');
+        } else
+        {
+            ensureBuffer(3);
+            buffer[position++] = (byte) (0xE0 | (c >> 12));
+            buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[position++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return index;
+    }
+
+    private void writeLong( long value ) throws IOException
+    {
+        if (value == Long.MIN_VALUE)
+        {
+            writeAscii(Long.toString(value));
+            return;
+        }
+
+        // at most 20 characters incl. sign
+        ensureBuffer(20);
+        if (value < 0)
+        {
+            buffer[position++] = '-';
+            value = -value;
+        }
+        int start = position;
+        do
+        {
+            buffer[position++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        // reverse digits
+        for (int i = start, j = position - 1; i < j; i++, j--)
+        {
+            byte tmp = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = tmp;
+        }
+    }
+
+    private void writeAscii( String str ) throws IOException
+    {
+        for (int i = 0; i < str.length(); i++)
+        {
+            writeByte(str.charAt(i));
+        }
+    }
+
+    private void writeByte( int b ) throws IOException
+    {
+        if (position == buffer.length)
+            flushBuffer();
+
+        buffer[position++] = (byte) b;
+    }
+
+    private void ensureBuffer( int bytes ) throws IOException
+    {
+        if (position + bytes > buffer.length)
+            flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException
+    {
+        if (position > 0)
+        {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHMatrixRequest;
+import com.graphhopper.GHMatrixResponse;
+import com.graphhopper.GraphHopper;
+import com.graphhopper.routing.DistanceMatrix;
+import com.graphhopper.util.Helper;
+import com.graphhopper.util.StopWatch;
+import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+
+/**
+ * Calculates the distances and times between every from_point and every to_point. If only the
+ * parameter point is specified the matrix between all these points is calculated. Not connected
+ * entries are null.
+ * <p/>
+ * @author Peter Karich
+ */
+public class MatrixServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperHolder hopperHolder;
+
+    @Override
+    public void doGet( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        List<GHPoint> fromPoints = getPoints(httpReq, "from_point");
+        List<GHPoint> toPoints = getPoints(httpReq, "to_point");
+        if (fromPoints.isEmpty() && toPoints.isEmpty())
+        {
+            fromPoints = getPoints(httpReq, "point");
+            toPoints = fromPoints;
+        }
+
+        String vehicleStr = getParam(httpReq, "vehicle", "car");
+        String weighting = getParam(httpReq, "weighting", "fastest");
+        StopWatch sw = new StopWatch().start();
+        GHMatrixResponse ghRsp;
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            if (!hopper.getEncodingManager().supports(vehicleStr))
+            {
+                ghRsp = new GHMatrixResponse().addError(new IllegalArgumentException("Vehicle not supported: " + vehicleStr));
+            } else
+            {
+                GHMatrixRequest request = new GHMatrixRequest(fromPoints, toPoints).
+                        setVehicle(vehicleStr).
+                        setWeighting(weighting);
+                for (Map.Entry<String, String[]> e : httpReq.getParameterMap().entrySet())
+                {
+                    if (e.getValue().length == 1)
+                        request.getHints().put(e.getKey(), e.getValue()[0]);
+                }
+                ghRsp = hopper.matrix(request);
+            }
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+
+        float took = sw.stop().getSeconds();
+        String logStr = httpReq.getQueryString() + " " + httpReq.getRemoteAddr() + " " + fromPoints.size() + "x"
+                + toPoints.size() + ", took:" + took + ", " + weighting + ", " + vehicleStr;
+
+        JSONObject json = new JSONObject();
+        if (ghRsp.hasErrors())
+        {
+            logger.error(logStr + ", errors:" + ghRsp.getErrors());
+            json.put("message", ghRsp.getErrors().get(0).getMessage());
+            JSONArray hints = new JSONArray();
+            for (Throwable t : ghRsp.getErrors())
+            {
+                JSONObject hint = new JSONObject();
+                hint.put("message", t.getMessage());
+                hint.put("details", t.getClass().getName());
+                hints.put(hint);
+            }
+            json.put("hints", hints);
+            writeJsonError(httpRes, SC_BAD_REQUEST, json);
+            return;
+        }
+
+        logger.info(logStr + ", debug - " + ghRsp.getDebugInfo());
+        DistanceMatrix matrix = ghRsp.getMatrix();
+        JSONArray distances = new JSONArray();
+        JSONArray times = new JSONArray();
+        for (int i = 0; i < matrix.getFromCount(); i++)
+        {
+            JSONArray distanceRow = new JSONArray();
+            JSONArray timeRow = new JSONArray();
+            for (int j = 0; j < matrix.getToCount(); j++)
+            {
+                if (matrix.isConnected(i, j))
+                {
+                    distanceRow.put(Helper.round(matrix.getDistance(i, j), 3));
+                    timeRow.put(matrix.getTime(i, j));
+                } else
+                {
+                    distanceRow.put(JSONObject.NULL);
+                    timeRow.put(JSONObject.NULL);
+                }
+            }
+            distances.put(distanceRow);
+            times.put(timeRow);
+        }
+        json.put("distances", distances);
+        json.put("times", times);
+
+        JSONObject info = new JSONObject();
+        info.put("took", Math.round(took * 1000));
+        json.put("info", info);
+        writeJson(httpReq, httpRes, json);
+    }
+}
@@ -40,7 +40,7 @@ import java.io.IOException;
 public class NearestServlet extends GHBaseServlet
 {
     @Inject
-    private GraphHopper hopper;
+    private GraphHopperHolder hopperHolder;
     private final DistanceCalc calc = Helper.DIST_EARTH;
 
     @Override
@@ -50,6 +50,20 @@ public class NearestServlet extends GHBaseServlet
         boolean enabledElevation = getBooleanParam(httpReq, "elevation", false);
 
         JSONObject result = new JSONObject();
+        GraphHopper hopper = hopperHolder.acquire();
+        try
+        {
+            fillResult(hopper, pointStr, enabledElevation, result);
+        } finally
+        {
+            hopperHolder.release(hopper);
+        }
+
+        writeJson(httpReq, httpRes, result);
+    }
+
+    private void fillResult( GraphHopper hopper, String pointStr, boolean enabledElevation, JSONObject result )
+    {
         if (pointStr != null && !pointStr.equalsIgnoreCase(""))
         {
             GHPoint place = GHPoint.parse(pointStr);
@@ -80,7 +94,5 @@ public class NearestServlet extends GHBaseServlet
         {
             result.put("error", "No lat/lon specified!");
         }
-
-        writeJson(httpReq, httpRes, result);
     }
 }
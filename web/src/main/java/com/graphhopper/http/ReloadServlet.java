@@ -0,0 +1,65 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.Helper;
+import org.json.JSONObject;
+
+import javax.inject.Inject;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+import static javax.servlet.http.HttpServletResponse.SC_BAD_REQUEST;
+import static javax.servlet.http.HttpServletResponse.SC_CONFLICT;
+
+/**
+ * Loads the already imported graph at the specified location in the background and swaps it in
+ * without a restart, see GraphHopperHolder. /info reports reloading=true until it is finished. Only
+ * served if web.reload_enabled is true, restrict the access e.g. via jetty.whiteips.
+ * <p/>
+ * @author Peter Karich
+ */
+public class ReloadServlet extends GHBaseServlet
+{
+    @Inject
+    private GraphHopperHolder hopperHolder;
+
+    @Override
+    public void doPost( HttpServletRequest httpReq, HttpServletResponse httpRes ) throws ServletException, IOException
+    {
+        String location = getParam(httpReq, "location", "");
+        if (Helper.isEmpty(location))
+        {
+            writeError(httpRes, SC_BAD_REQUEST, "Specify the location of the new graph");
+            return;
+        }
+
+        if (!hopperHolder.reload(location))
+        {
+            writeError(httpRes, SC_CONFLICT, "A reload is already running");
+            return;
+        }
+
+        logger.info("reload of " + location + " started from " + httpReq.getRemoteAddr());
+        JSONObject json = new JSONObject();
+        json.put("reloading", true);
+        writeJson(httpReq, httpRes, json);
+    }
+}
@@ -19,6 +19,7 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHResponse;
 import com.graphhopper.util.PointList;
+import java.io.IOException;
 import java.util.Map;
 
 /**
@@ -35,6 +36,15 @@ public interface RouteSerializer
                                 boolean calcPoints, boolean pointsEncoded,
                                 boolean includeElevation, boolean enableInstructions );
 
+    /**
+     * This method writes the same JSON as toJSON directly into the specified writer.
+     * <p>
+     * @param took the milliseconds to include in the info object or a negative value to skip it
+     */
+    void writeJSON( JsonStreamWriter writer, GHResponse response,
+                    boolean calcPoints, boolean pointsEncoded,
+                    boolean includeElevation, boolean enableInstructions, long took ) throws IOException;
+
     /**
      * This method returns either a Map containing the GeoJSON of the specified points OR the string
      * encoded polyline of it.
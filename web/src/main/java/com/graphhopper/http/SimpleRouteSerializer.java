@@ -7,9 +7,12 @@ package com.graphhopper.http;
 
 import com.graphhopper.GHResponse;
 import com.graphhopper.util.Helper;
+import com.graphhopper.util.Instruction;
+import com.graphhopper.util.InstructionAnnotation;
 import com.graphhopper.util.InstructionList;
 import com.graphhopper.util.PointList;
 import com.graphhopper.util.shapes.BBox;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -78,6 +81,125 @@ public class SimpleRouteSerializer implements RouteSerializer
         return json;
     }
 
+    @Override
+    public void writeJSON( JsonStreamWriter writer, GHResponse rsp,
+                           boolean calcPoints, boolean pointsEncoded,
+                           boolean includeElevation, boolean enableInstructions, long took ) throws IOException
+    {
+        writer.startObject();
+        if (rsp.hasErrors())
+        {
+            writer.name("message").value(rsp.getErrors().get(0).getMessage());
+            writer.name("hints").startArray();
+            for (Throwable t : rsp.getErrors())
+            {
+                writer.startObject().
+                        name("message").value(t.getMessage()).
+                        name("details").value(t.getClass().getName()).
+                        endObject();
+            }
+            writer.endArray();
+        } else
+        {
+            writer.name("info").startObject().
+                    name("copyrights").startArray().value("GraphHopper").value("OpenStreetMap contributors").endArray();
+            if (took >= 0)
+                writer.name("took").value(took);
+            writer.endObject();
+
+            writer.name("paths").startArray().startObject();
+            writer.name("distance").value(Helper.round(rsp.getDistance(), 3));
+            writer.name("weight").value(Helper.round6(rsp.getDistance()));
+            writer.name("time").value(rsp.getTime());
+            if (calcPoints)
+            {
+                writer.name("points_encoded").value(pointsEncoded);
+                PointList points = rsp.getPoints();
+                if (points.getSize() >= 2)
+                {
+                    BBox maxBounds2D = new BBox(maxBounds.minLon, maxBounds.maxLon, maxBounds.minLat, maxBounds.maxLat);
+                    writer.name("bbox").value(rsp.calcRouteBBox(maxBounds2D).toGeoJson());
+                }
+
+                writer.name("points");
+                writePoints(writer, points, pointsEncoded, includeElevation);
+                if (enableInstructions)
+                {
+                    writer.name("instructions");
+                    writeInstructions(writer, rsp.getInstructions());
+                }
+            }
+            writer.endObject().endArray();
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Writes the points like createPoints but without the intermediate lists.
+     */
+    public void writePoints( JsonStreamWriter writer, PointList points, boolean pointsEncoded,
+                             boolean includeElevation ) throws IOException
+    {
+        if (pointsEncoded)
+        {
+            writer.value(WebHelper.encodePolyline(points, includeElevation, new StringBuilder(points.getSize() * 8)));
+            return;
+        }
+
+        writer.startObject().name("type").value("LineString").name("coordinates").startArray();
+        int size = points.getSize();
+        for (int i = 0; i < size; i++)
+        {
+            writer.startArray().
+                    value(Helper.round6(points.getLongitude(i))).
+                    value(Helper.round6(points.getLatitude(i)));
+            if (includeElevation)
+                writer.value(Helper.round2(points.getElevation(i)));
+            writer.endArray();
+        }
+        writer.endArray().endObject();
+    }
+
+    /**
+     * Writes the instructions like InstructionList.createJson but without the intermediate maps.
+     */
+    public void writeInstructions( JsonStreamWriter writer, InstructionList instructions ) throws IOException
+    {
+        writer.startArray();
+        int pointsIndex = 0;
+        int counter = 0;
+        for (Instruction instruction : instructions)
+        {
+            writer.startObject();
+            writer.name("text").value(instructions.createText(instruction));
+            InstructionAnnotation ia = instruction.getAnnotation();
+            if (!ia.isEmpty())
+            {
+                writer.name("annotation_text").value(ia.getMessage());
+                writer.name("annotation_importance").value(ia.getImportance());
+            }
+
+            writer.name("time").value(instruction.getTime());
+            writer.name("distance").value(Helper.round(instruction.getDistance(), 3));
+            writer.name("sign").value(instruction.getSign());
+            for (Map.Entry<String, Object> entry : instruction.getExtraInfoJSON().entrySet())
+            {
+                writer.name(entry.getKey()).value(entry.getValue());
+            }
+
+            int tmpIndex = pointsIndex + instruction.getPoints().size();
+            // the last instruction should not point to the next instruction
+            if (counter + 1 == instructions.size())
+                tmpIndex--;
+
+            writer.name("interval").startArray().value(pointsIndex).value(tmpIndex).endArray();
+            writer.endObject();
+            pointsIndex = tmpIndex;
+            counter++;
+        }
+        writer.endArray();
+    }
+
     @Override
     public Object createPoints( PointList points, boolean pointsEncoded, boolean includeElevation )
     {
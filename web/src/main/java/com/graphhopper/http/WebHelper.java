@@ -108,7 +108,15 @@ public class WebHelper
 
     public static String encodePolyline( PointList poly, boolean includeElevation )
     {
-        StringBuilder sb = new StringBuilder();
+        return encodePolyline(poly, includeElevation, new StringBuilder()).toString();
+    }
+
+    /**
+     * Appends the encoded polyline to the specified StringBuilder, e.g. to write it without
+     * creating a String.
+     */
+    public static StringBuilder encodePolyline( PointList poly, boolean includeElevation, StringBuilder sb )
+    {
         int size = poly.getSize();
         int prevLat = 0;
         int prevLon = 0;
@@ -128,7 +136,7 @@ public class WebHelper
                 prevEle = num;
             }
         }
-        return sb.toString();
+        return sb;
     }
 
     private static void encodeNumber( StringBuilder sb, int num )
@@ -23,11 +23,15 @@ import com.google.inject.Module;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Downloader;
 import com.graphhopper.util.Helper;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.URL;
 
 import static org.junit.Assert.assertEquals;
 
@@ -112,6 +116,12 @@ public class BaseServletTester
         return "http://" + host + ":" + port + "/nearest";
     }
 
+    protected String getTestMatrixAPIUrl()
+    {
+        String host = "localhost";
+        return "http://" + host + ":" + port + "/matrix";
+    }
+
     protected String queryString( String query, int code ) throws Exception
     {
         String resQuery = "";
@@ -138,6 +148,28 @@ public class BaseServletTester
         return new JSONObject(queryString(query, code));
     }
 
+    /**
+     * Posts the body to the route API and returns the JSON array of the batch response.
+     */
+    protected JSONArray batchQuery( String body, int code ) throws Exception
+    {
+        HttpURLConnection conn = (HttpURLConnection) new URL(getTestRouteAPIUrl()).openConnection();
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        conn.setRequestProperty("Content-Type", "application/json");
+        OutputStream os = conn.getOutputStream();
+        try
+        {
+            os.write(body.getBytes("UTF-8"));
+        } finally
+        {
+            os.close();
+        }
+        assertEquals(code, conn.getResponseCode());
+        InputStream is = code == 200 ? conn.getInputStream() : conn.getErrorStream();
+        return new JSONArray(Helper.isToString(is));
+    }
+
     protected JSONObject nearestQuery( String query ) throws Exception
     {
         String resQuery = "";
@@ -155,4 +187,32 @@ public class BaseServletTester
         Downloader downloader = new Downloader("web integration tester");
         return new JSONObject(downloader.downloadAsString(url));
     }
+
+    protected JSONObject matrixQuery( String query ) throws Exception
+    {
+        return apiQuery(getTestMatrixAPIUrl(), query);
+    }
+
+    protected JSONObject isochroneQuery( String query ) throws Exception
+    {
+        return apiQuery("http://localhost:" + port + "/isochrone", query);
+    }
+
+    private JSONObject apiQuery( String apiUrl, String query ) throws Exception
+    {
+        String resQuery = "";
+        for (String q : query.split("\\&"))
+        {
+            int index = q.indexOf("=");
+            if (index > 0)
+                resQuery += q.substring(0, index + 1) + WebHelper.encodeURL(q.substring(index + 1));
+            else
+                resQuery += WebHelper.encodeURL(q);
+
+            resQuery += "&";
+        }
+        String url = apiUrl + "?" + resQuery;
+        Downloader downloader = new Downloader("web integration tester");
+        return new JSONObject(downloader.downloadAsString(url));
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class BinaryRouteFormatTest
+{
+    GHResponse createResponse( boolean is3D )
+    {
+        Translation tr = new TranslationMap().doImport().getWithFallBack(Locale.US);
+        PointList points = is3D
+                ? Helper.createPointList3D(42.5, 1.5, 100, 42.51, 1.51, 120.5, 42.52, 1.51, 110, 42.53, 1.523456, 90)
+                : Helper.createPointList(42.5, 1.5, 42.51, 1.51, 42.52, 1.51, 42.53, 1.523456);
+        InstructionList instructions = new InstructionList(tr);
+        PointList pl = new PointList(2, is3D);
+        pl.add(points, 0);
+        pl.add(points, 1);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "main street", InstructionAnnotation.EMPTY, pl).
+                setDistance(1234.5678).setTime(60000));
+        pl = new PointList(1, is3D);
+        pl.add(points, 2);
+        instructions.add(new Instruction(Instruction.TURN_LEFT, "", new InstructionAnnotation(1, "toll"), pl).
+                setDistance(100).setTime(5000));
+        instructions.add(new FinishInstruction(42.53, 1.523456, 90));
+        GHResponse rsp = new GHResponse().setPoints(points).setDistance(1334.5678).setTime(65000).setRouteWeight(70.5);
+        rsp.setInstructions(instructions);
+        return rsp;
+    }
+
+    @Test
+    public void testReadWrite() throws Exception
+    {
+        for (boolean is3D : new boolean[]
+        {
+            false, true
+        })
+        {
+            GHResponse rsp = createResponse(is3D);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            BinaryRouteFormat.write(out, rsp, true, is3D, true, 12);
+
+            GHResponse res = new GHResponse();
+            assertEquals(12, BinaryRouteFormat.read(new ByteArrayInputStream(out.toByteArray()), res));
+            assertFalse(res.hasErrors());
+            assertEquals(1334.5678, res.getDistance(), 1e-6);
+            assertEquals(70.5, res.getRouteWeight(), 1e-6);
+            assertEquals(65000, res.getTime());
+            PointList points = res.getPoints();
+            assertEquals(is3D, points.is3D());
+            assertEquals(4, points.getSize());
+            for (int i = 0; i < points.getSize(); i++)
+            {
+                assertEquals(rsp.getPoints().getLatitude(i), points.getLatitude(i), 1e-6);
+                assertEquals(rsp.getPoints().getLongitude(i), points.getLongitude(i), 1e-6);
+                if (is3D)
+                    assertEquals(rsp.getPoints().getElevation(i), points.getElevation(i), 1e-2);
+            }
+
+            InstructionList instructions = res.getInstructions();
+            assertEquals(3, instructions.size());
+            assertEquals("Continue onto main street", instructions.get(0).getName());
+            assertEquals(3, instructions.get(0).getPoints().size());
+            assertEquals(1234.5678, instructions.get(0).getDistance(), 1e-6);
+            assertEquals(60000, instructions.get(0).getTime());
+            assertEquals(Instruction.TURN_LEFT, instructions.get(1).getSign());
+            assertEquals("toll", instructions.get(1).getAnnotation().getMessage());
+            assertEquals(1, instructions.get(1).getAnnotation().getImportance());
+            assertEquals(2, instructions.get(1).getPoints().size());
+            assertTrue(instructions.get(2) instanceof FinishInstruction);
+            assertEquals(1, instructions.get(2).getPoints().size());
+            assertEquals(1.523456, instructions.get(2).getPoints().getLongitude(0), 1e-6);
+
+            // much smaller than the JSON with encoded points
+            String json = new JSONObject(new SimpleRouteSerializer(new BBox(0, 2, 40, 43)).
+                    toJSON(rsp, true, true, is3D, true)).toString();
+            assertTrue(out.size() + " vs. " + json.length(), out.size() * 2 < json.length());
+        }
+    }
+
+    @Test
+    public void testWithoutPoints() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteFormat.write(out, createResponse(false), false, false, true, 3);
+        GHResponse res = new GHResponse();
+        assertEquals(3, BinaryRouteFormat.read(new ByteArrayInputStream(out.toByteArray()), res));
+        assertEquals(1334.5678, res.getDistance(), 1e-6);
+        assertTrue(res.getPoints().isEmpty());
+    }
+
+    @Test
+    public void testErrors() throws Exception
+    {
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("Vehicle not supported")).
+                addError(new UnsupportedOperationException());
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        BinaryRouteFormat.write(out, rsp, true, false, true, 3);
+        GHResponse res = new GHResponse();
+        assertEquals(-1, BinaryRouteFormat.read(new ByteArrayInputStream(out.toByteArray()), res));
+        assertEquals(2, res.getErrors().size());
+        assertTrue(res.getErrors().get(0) instanceof IllegalArgumentException);
+        assertEquals("Vehicle not supported", res.getErrors().get(0).getMessage());
+        assertTrue(res.getErrors().get(1) instanceof UnsupportedOperationException);
+
+        try
+        {
+            BinaryRouteFormat.read(new ByteArrayInputStream("{\"message\":\"\"}".getBytes("UTF-8")), new GHResponse());
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GraphHopper;
+import com.graphhopper.util.CmdArgs;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class GraphHopperHolderTest
+{
+    static class ClosableHopper extends GraphHopper
+    {
+        volatile boolean closed;
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+    }
+
+    @Test
+    public void testSwapWaitsForRequests() throws Exception
+    {
+        ClosableHopper oldHopper = new ClosableHopper();
+        final ClosableHopper newHopper = new ClosableHopper();
+        final GraphHopperHolder holder = new GraphHopperHolder(oldHopper, new CmdArgs());
+        assertSame(oldHopper, holder.acquire());
+
+        Thread thread = new Thread()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    holder.swap(newHopper);
+                } catch (InterruptedException ex)
+                {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        thread.start();
+
+        GraphHopper hopper = holder.acquire();
+        for (int i = 0; i < 100 && hopper != newHopper; i++)
+        {
+            holder.release(hopper);
+            Thread.sleep(10);
+            hopper = holder.acquire();
+        }
+        assertSame(newHopper, hopper);
+        holder.release(hopper);
+
+        // the old instance is still in use
+        Thread.sleep(50);
+        assertFalse(oldHopper.closed);
+
+        holder.release(oldHopper);
+        thread.join(5000);
+        assertTrue(oldHopper.closed);
+        assertFalse(newHopper.closed);
+    }
+
+    @Test
+    public void testDrainTimeout() throws Exception
+    {
+        ClosableHopper oldHopper = new ClosableHopper();
+        GraphHopperHolder holder = new GraphHopperHolder(oldHopper, new CmdArgs()).setDrainTimeout(0);
+        holder.acquire();
+        holder.swap(new ClosableHopper());
+        // still in use, the last release closes the old instance
+        assertFalse(oldHopper.closed);
+        holder.release(oldHopper);
+        assertTrue(oldHopper.closed);
+        // an additional release must not fail
+        holder.release(oldHopper);
+    }
+
+    @Test
+    public void testLoadWithoutFinishedWarmup() throws Exception
+    {
+        final ClosableHopper newHopper = new ClosableHopper()
+        {
+            @Override
+            public boolean isWarmedUp()
+            {
+                return false;
+            }
+        };
+        final CmdArgs createArgs = new CmdArgs();
+        GraphHopperHolder holder = new GraphHopperHolder(new ClosableHopper(),
+                new CmdArgs().put("osmreader.osm", "some.osm").put("prepare.chWeighting", "no"))
+        {
+            @Override
+            protected GraphHopper createGraphHopper( CmdArgs args )
+            {
+                createArgs.merge(args);
+                return newHopper;
+            }
+        }.setWarmupTimeout(0);
+
+        assertSame(newHopper, holder.load("new-gh"));
+        // only an existing graph is loaded
+        assertEquals("", createArgs.get("osmreader.osm", ""));
+        assertEquals("new-gh", createArgs.get("graph.location", ""));
+        assertEquals("no", createArgs.get("prepare.chWeighting", ""));
+    }
+
+    @Test
+    public void testOnlyOneReload() throws Exception
+    {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+        final ClosableHopper newHopper = new ClosableHopper();
+        GraphHopperHolder holder = new GraphHopperHolder(new ClosableHopper(), new CmdArgs())
+        {
+            @Override
+            protected GraphHopper load( String graphLocation ) throws InterruptedException
+            {
+                loading.countDown();
+                finish.await();
+                return newHopper;
+            }
+        };
+
+        assertTrue(holder.reload("new-gh"));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        assertTrue(holder.isReloading());
+        assertFalse(holder.reload("new-gh"));
+
+        finish.countDown();
+        for (int i = 0; i < 500 && holder.isReloading(); i++)
+        {
+            Thread.sleep(10);
+        }
+        assertFalse(holder.isReloading());
+        GraphHopper hopper = holder.acquire();
+        assertSame(newHopper, hopper);
+        holder.release(hopper);
+    }
+}
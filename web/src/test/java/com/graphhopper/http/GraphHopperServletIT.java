@@ -23,6 +23,7 @@ import com.graphhopper.GraphHopperAPI;
 import com.graphhopper.util.CmdArgs;
 import com.graphhopper.util.Helper;
 import com.graphhopper.util.shapes.GHPoint;
+import org.json.JSONArray;
 import org.json.JSONObject;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -70,6 +71,24 @@ public class GraphHopperServletIT extends BaseServletTester
         assertTrue("distance wasn't correct:" + distance, distance < 9500);
     }
 
+    @Test
+    public void testBatchQuery() throws Exception
+    {
+        JSONArray json = batchQuery("[{\"point\": [\"42.554851,1.536198\", \"42.510071,1.548128\"]},"
+                + "{\"point\": [\"42.510071,1.548128\", \"42.554851,1.536198\"], \"instructions\": false},"
+                + "{\"point\": [\"42.554851,1.536198\", \"42.510071,1.548128\"], \"vehicle\": \"SPACE-SHUTTLE\"}]", 200);
+        assertEquals(3, json.length());
+        for (int i = 0; i < 2; i++)
+        {
+            double distance = json.getJSONObject(i).getJSONArray("paths").getJSONObject(0).getDouble("distance");
+            assertTrue("distance wasn't correct:" + distance, distance > 9000);
+            assertTrue("distance wasn't correct:" + distance, distance < 9500);
+        }
+        assertTrue(json.getJSONObject(0).getJSONArray("paths").getJSONObject(0).has("instructions"));
+        assertFalse(json.getJSONObject(1).getJSONArray("paths").getJSONObject(0).has("instructions"));
+        assertEquals("Vehicle not supported: SPACE-SHUTTLE", json.getJSONObject(2).getString("message"));
+    }
+
     @Test
     public void testQuerywithDirections() throws Exception
     {
@@ -174,6 +193,30 @@ public class GraphHopperServletIT extends BaseServletTester
         // Exception
     }
 
+    @Test
+    public void testGraphHopperWebBinary() throws Exception
+    {
+        GraphHopperWeb jsonHopper = new GraphHopperWeb();
+        assertTrue(jsonHopper.load(getTestRouteAPIUrl()));
+        GraphHopperWeb hopper = new GraphHopperWeb().setBinary(true);
+        assertTrue(hopper.load(getTestRouteAPIUrl()));
+        GHRequest req = new GHRequest().
+                addPoint(new GHPoint(42.554851, 1.536198)).
+                addPoint(new GHPoint(42.531896, 1.553278)).
+                addPoint(new GHPoint(42.510071, 1.548128));
+        GHResponse expected = jsonHopper.route(req);
+        GHResponse rsp = hopper.route(req);
+        assertTrue(rsp.getErrors().toString(), rsp.getErrors().isEmpty());
+        assertEquals(expected.getDistance(), rsp.getDistance(), 1e-3);
+        assertEquals(expected.getTime(), rsp.getTime());
+        assertEquals(expected.getPoints().getSize(), rsp.getPoints().getSize());
+        assertEquals(expected.getInstructions().createJson(), rsp.getInstructions().createJson());
+
+        rsp = hopper.route(new GHRequest(42.554851, 1.536198, 42.510071, 1.548128).setVehicle("SPACE-SHUTTLE"));
+        assertEquals(1, rsp.getErrors().size());
+        assertTrue(rsp.getErrors().get(0) instanceof IllegalArgumentException);
+    }
+
     @Test
     public void testGPX() throws Exception
     {
@@ -0,0 +1,73 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for
+ *  additional information regarding copyright ownership.
+ *
+ *  GraphHopper licenses this file to you under the Apache License,
+ *  Version 2.0 (the "License"); you may not use this file except in
+ *  compliance with the License. You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.util.CmdArgs;
+import com.graphhopper.util.Helper;
+
+import java.io.File;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class IsochroneServletIT extends BaseServletTester
+{
+    private static final String dir = "./target/andorra-gh/";
+
+    @AfterClass
+    public static void cleanUp()
+    {
+        Helper.removeDir(new File(dir));
+        shutdownJetty(true);
+    }
+
+    @Before
+    public void setUp()
+    {
+        CmdArgs args = new CmdArgs().
+                put("config", "../config-example.properties").
+                put("osmreader.osm", "../core/files/andorra.osm.pbf").
+                put("graph.location", dir);
+        setUpJetty(args);
+    }
+
+    @Test
+    public void testBasicIsochroneQuery() throws Exception
+    {
+        JSONObject json = isochroneQuery("point=42.554851,1.536198&time_limit=300&buckets=2");
+        assertFalse(json.has("message"));
+        assertTrue(json.getJSONObject("info").getInt("reached") > 10);
+        JSONArray polygons = json.getJSONArray("polygons");
+        assertEquals(2, polygons.length());
+        assertEquals(150, polygons.getJSONObject(0).getLong("time_limit"));
+        assertEquals(300, polygons.getJSONObject(1).getLong("time_limit"));
+        JSONArray coordinates = polygons.getJSONObject(1).getJSONArray("coordinates");
+        assertTrue(coordinates.length() > 3);
+        // the polygon is closed
+        assertEquals(coordinates.getJSONArray(0).getDouble(0), coordinates.getJSONArray(coordinates.length() - 1).getDouble(0), 1e-6);
+        assertTrue(polygons.getJSONObject(0).getJSONArray("coordinates").length() > 3);
+    }
+}
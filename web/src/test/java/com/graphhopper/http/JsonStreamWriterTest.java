@@ -0,0 +1,131 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class JsonStreamWriterTest
+{
+    @Test
+    public void testWrite() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        Map<String, Object> map = new HashMap<String, Object>();
+        map.put("list", Arrays.asList(1, 2.5));
+        writer.startObject().
+                name("a").value("b").
+                name("empty").startArray().endArray().
+                name("nested").startArray().startObject().name("c").value(true).endObject().nullValue().endArray().
+                name("map").value(map).
+                name("array").value(new int[]
+                        {
+                            3, 4
+                        }).
+                endObject();
+        writer.flush();
+
+        String str = out.toString("UTF-8");
+        assertTrue(str, str.startsWith("{\"a\":\"b\",\"empty\":[],\"nested\":[{\"c\":true},null],\"map\":"));
+        JSONObject json = new JSONObject(str);
+        assertEquals("b", json.getString("a"));
+        assertEquals(0, json.getJSONArray("empty").length());
+        assertTrue(json.getJSONArray("nested").getJSONObject(0).getBoolean("c"));
+        assertTrue(json.getJSONArray("nested").isNull(1));
+        JSONArray list = json.getJSONObject("map").getJSONArray("list");
+        assertEquals(1, list.getInt(0));
+        assertEquals(2.5, list.getDouble(1), 1e-6);
+        assertEquals(4, json.getJSONArray("array").getInt(1));
+    }
+
+    @Test
+    public void testNumbers() throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        writer.startArray().value(3.0).value(-0.125).value(Double.NaN).value(0L).value(-120L).
+                value(Long.MIN_VALUE).value(1e20).endArray().flush();
+        assertEquals("[3,-0.125,null,0,-120,-9223372036854775808,1.0E20]", out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testEscapingWithSmallBuffer() throws Exception
+    {
+        String str = "quote\" backslash\\ line\n tab\t control\u0001 umlaut\u00e4 euro\u20ac clef\ud834\udd1e";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // force several flushes in the middle of a character
+        JsonStreamWriter writer = new JsonStreamWriter(out, new byte[32]);
+        for (int i = 0; i < 10; i++)
+        {
+            writer.raw(i == 0 ? "[" : ",").value(str);
+        }
+        writer.raw("]").flush();
+
+        String json = out.toString("UTF-8");
+        assertTrue(json, json.contains("\\u0001"));
+        JSONArray array = new JSONArray(json);
+        assertEquals(10, array.length());
+        for (int i = 0; i < 10; i++)
+        {
+            assertEquals(str, array.getString(i));
+        }
+    }
+
+    @Test
+    public void testInvalidOrder() throws Exception
+    {
+        JsonStreamWriter writer = new JsonStreamWriter(new ByteArrayOutputStream());
+        writer.startObject();
+        try
+        {
+            writer.value(1);
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        try
+        {
+            writer.endArray();
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+
+        writer.endObject().startArray();
+        try
+        {
+            writer.name("a");
+            assertTrue(false);
+        } catch (IllegalStateException ex)
+        {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ *  Licensed to GraphHopper and Peter Karich under one or more contributor
+ *  license agreements. See the NOTICE file distributed with this work for 
+ *  additional information regarding copyright ownership.
+ * 
+ *  GraphHopper licenses this file to you under the Apache License, 
+ *  Version 2.0 (the "License"); you may not use this file except in 
+ *  compliance with the License. You may obtain a copy of the License at
+ * 
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package com.graphhopper.http;
+
+import com.graphhopper.GHResponse;
+import com.graphhopper.util.*;
+import com.graphhopper.util.shapes.BBox;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Locale;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Peter Karich
+ */
+public class SimpleRouteSerializerTest
+{
+    private final SimpleRouteSerializer serializer = new SimpleRouteSerializer(new BBox(0, 2, 40, 43));
+
+    GHResponse createResponse()
+    {
+        Translation tr = new TranslationMap().doImport().getWithFallBack(Locale.US);
+        InstructionList instructions = new InstructionList(tr);
+        instructions.add(new Instruction(Instruction.CONTINUE_ON_STREET, "main street", InstructionAnnotation.EMPTY,
+                Helper.createPointList(42.5, 1.5, 42.51, 1.51)).setDistance(1234.5678).setTime(60000));
+        instructions.add(new RoundaboutInstruction(Instruction.USE_ROUNDABOUT, "", new InstructionAnnotation(1, "toll"),
+                Helper.createPointList(42.52, 1.51)).setExitNumber(2).setRadian(1.5).setDistance(100).setTime(5000));
+        instructions.add(new FinishInstruction(42.53, 1.52, 0));
+        GHResponse rsp = new GHResponse().
+                setPoints(Helper.createPointList(42.5, 1.5, 42.51, 1.51, 42.52, 1.51, 42.53, 1.52)).
+                setDistance(1334.5678).setTime(65000);
+        rsp.setInstructions(instructions);
+        return rsp;
+    }
+
+    JSONObject write( GHResponse rsp, boolean pointsEncoded, long took ) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        JsonStreamWriter writer = new JsonStreamWriter(out);
+        serializer.writeJSON(writer, rsp, true, pointsEncoded, false, true, took);
+        writer.flush();
+        return new JSONObject(out.toString("UTF-8"));
+    }
+
+    @Test
+    public void testWriteSameAsMap() throws Exception
+    {
+        for (boolean pointsEncoded : new boolean[]
+        {
+            true, false
+        })
+        {
+            GHResponse rsp = createResponse();
+            // parse the written map to get the same number types
+            JSONObject expected = new JSONObject(new JSONObject(serializer.toJSON(rsp, true, pointsEncoded, false, true)).toString());
+            JSONObject json = write(rsp, pointsEncoded, 12);
+            assertEquals(12, json.getJSONObject("info").getLong("took"));
+            assertEquals(expected.getJSONObject("info").getJSONArray("copyrights").toString(),
+                    json.getJSONObject("info").getJSONArray("copyrights").toString());
+
+            JSONObject expectedPath = expected.getJSONArray("paths").getJSONObject(0);
+            JSONObject path = json.getJSONArray("paths").getJSONObject(0);
+            assertEquals(expectedPath.keySet(), path.keySet());
+            for (String key : new String[]
+            {
+                "distance", "weight", "time", "points_encoded", "bbox", "points"
+            })
+            {
+                assertEquals(key, expectedPath.get(key).toString(), path.get(key).toString());
+            }
+
+            JSONArray expectedInstructions = expectedPath.getJSONArray("instructions");
+            JSONArray instructions = path.getJSONArray("instructions");
+            assertEquals(3, instructions.length());
+            for (int i = 0; i < instructions.length(); i++)
+            {
+                JSONObject expectedInstruction = expectedInstructions.getJSONObject(i);
+                JSONObject instruction = instructions.getJSONObject(i);
+                assertEquals(expectedInstruction.keySet(), instruction.keySet());
+                for (Object key : expectedInstruction.keySet())
+                {
+                    assertEquals(key.toString(), expectedInstruction.get((String) key).toString(),
+                            instruction.get((String) key).toString());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWriteErrors() throws Exception
+    {
+        GHResponse rsp = new GHResponse().addError(new IllegalArgumentException("Vehicle not supported"));
+        JSONObject json = write(rsp, true, 12);
+        assertEquals("Vehicle not supported", json.getString("message"));
+        JSONObject hint = json.getJSONArray("hints").getJSONObject(0);
+        assertEquals("Vehicle not supported", hint.getString("message"));
+        assertEquals(IllegalArgumentException.class.getName(), hint.getString("details"));
+        assertFalse(json.has("info"));
+    }
+}